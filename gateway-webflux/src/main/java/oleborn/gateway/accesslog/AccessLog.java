@@ -0,0 +1,371 @@
+package oleborn.gateway.accesslog;
+
+import oleborn.gateway.metrics.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AccessLog
+ *
+ * Асинхронный access-log Gateway.
+ *
+ * Цель этого класса — убрать запись лога из потока event-loop:
+ * System.out.println синхронизирован и пишет в stdout
+ * системным вызовом на КАЖДУЮ строку, то есть под нагрузкой
+ * event-loop стоит в очереди за монитором и ждёт терминал.
+ *
+ * Архитектурный смысл:
+ * - поток запроса только копирует несколько полей
+ *   в заранее выделенный слот кольцевого буфера (AccessLogRing);
+ * - форматирование и запись в файл выполняет ОДИН отдельный поток;
+ * - поток записи забирает записи пачками и пишет их
+ *   одним вызовом FileChannel.write на пачку (RollingFile).
+ *
+ * Если поток записи не успевает и буфер заполнен:
+ * - overflow-policy: drop  — запись отбрасывается сразу;
+ * - overflow-policy: block — поток запроса ждёт свободный слот
+ *   не дольше block-timeout, затем запись отбрасывается.
+ * Отброшенные записи учитываются в счётчике dropped;
+ * поток записи периодически сообщает о них в лог приложения,
+ * а счётчики доступны через GET {gateway.metrics.base-path}/access-log.
+ */
+public class AccessLog implements DisposableBean, MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(AccessLog.class);
+
+    // Пауза потока записи, когда буфер пуст.
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Пауза производителя при overflow-policy: block.
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    // Как часто сообщать об отброшенных записях.
+    private static final long DROP_REPORT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final DateTimeFormatter SECONDS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final AccessLogProperties properties;
+
+    private final AccessLogRing ring;
+
+    private final LongAdder appended = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    // Пишет только поток записи.
+    private volatile long written;
+
+    private volatile boolean running;
+
+    private final Thread writer;
+
+    public AccessLog(AccessLogProperties properties) {
+        this.properties = properties;
+        this.ring = new AccessLogRing(properties.getCapacity(), properties.getMaxUriLength());
+
+        if (!properties.isEnabled()) {
+            this.writer = null;
+            return;
+        }
+
+        RollingFile file;
+        try {
+            file = new RollingFile(
+                    Path.of(properties.getFile()),
+                    properties.getMaxFileSize().toBytes(),
+                    properties.getMaxHistory()
+            );
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open access log " + properties.getFile(), e);
+        }
+
+        this.running = true;
+        this.writer = new Thread(new Writer(file), "access-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Добавление записи о завершённом запросе.
+     *
+     * Вызывается на потоке event-loop: не выделяет памяти,
+     * не берёт блокировок и (при overflow-policy: drop) не ждёт.
+     *
+     * @param status        HTTP-статус; 0 — статус не установлен.
+     * @param durationNanos длительность обработки запроса.
+     * @return false, если запись отброшена.
+     */
+    public boolean append(ServerHttpRequest request, String routeId, int status, long durationNanos) {
+        if (!running) {
+            return false;
+        }
+
+        long seq = ring.tryClaim();
+        if (seq < 0 && properties.getOverflowPolicy() == AccessLogProperties.OverflowPolicy.BLOCK) {
+            seq = awaitSlot();
+        }
+        if (seq < 0) {
+            dropped.increment();
+            return false;
+        }
+
+        AccessLogRecord record = ring.slot(seq);
+        URI uri = request.getURI();
+        record.timestamp = System.currentTimeMillis();
+        record.durationNanos = durationNanos;
+        record.status = status;
+        record.method = request.getMethod().name();
+        record.routeId = routeId;
+        record.setUri(uri.getRawPath(), uri.getRawQuery());
+        ring.publish(seq);
+
+        appended.increment();
+        return true;
+    }
+
+    private long awaitSlot() {
+        long deadline = System.nanoTime() + properties.getBlockTimeout().toNanos();
+        long seq;
+        while ((seq = ring.tryClaim()) < 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return -1;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        return seq;
+    }
+
+    /**
+     * @return принято записей.
+     */
+    public long appended() {
+        return appended.sum();
+    }
+
+    /**
+     * @return отброшено записей (буфер заполнен или ошибка записи).
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return записано в файл.
+     */
+    public long written() {
+        return written;
+    }
+
+    /**
+     * @return ожидают записи.
+     */
+    public long pending() {
+        return ring.pending();
+    }
+
+    @Override
+    public String metricsName() {
+        return "access-log";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("appended", appended());
+        result.put("written", written());
+        result.put("dropped", dropped());
+        result.put("pending", pending());
+        result.put("capacity", ring.capacity());
+        return result;
+    }
+
+    /**
+     * Остановка: поток записи дописывает всё принятое и закрывает файл.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Поток записи: единственный потребитель кольца.
+     */
+    private final class Writer implements Runnable {
+
+        private final RollingFile file;
+
+        private final ByteBuffer buffer;
+
+        // Максимальный размер одной строки.
+        private final int maxLineBytes;
+
+        // Кеш "yyyy-MM-ddTHH:mm:ss" для текущей секунды.
+        private long cachedSecond = Long.MIN_VALUE;
+
+        private byte[] cachedPrefix;
+
+        private long reportedDrops;
+
+        private long lastReport = System.nanoTime();
+
+        Writer(RollingFile file) {
+            this.file = file;
+            this.maxLineBytes = properties.getMaxUriLength() + 256;
+            this.buffer = ByteBuffer.allocateDirect(Math.max(64 * 1024, maxLineBytes * 4));
+        }
+
+        @Override
+        public void run() {
+            long next = ring.consumed();
+            try {
+                while (running || ring.pending() > 0) {
+                    int batch = 0;
+                    while (batch < properties.getBatchSize() && ring.isPublished(next)) {
+                        if (buffer.remaining() < maxLineBytes) {
+                            flush();
+                        }
+                        format(ring.slot(next));
+                        next++;
+                        batch++;
+                    }
+                    // Слоты освобождаются один раз на пачку:
+                    // счётчик consumed читают все производители,
+                    // и запись в него на каждый слот гоняла бы
+                    // его кеш-линию между ядрами.
+                    if (batch > 0) {
+                        ring.release(next - 1);
+                    }
+                    flush();
+                    written += batch;
+                    reportDrops();
+
+                    if (batch == 0) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                }
+            } finally {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close access log", e);
+                }
+            }
+        }
+
+        private void flush() {
+            if (buffer.position() == 0) {
+                return;
+            }
+            buffer.flip();
+            try {
+                file.write(buffer);
+            } catch (IOException e) {
+                // Строки пачки потеряны; поток записи продолжает работу,
+                // следующая пачка снова попробует записать файл.
+                log.error("Failed to write access log", e);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Строка вида:
+         * 2026-01-01T12:00:00.123Z GET /a/ping?x=1 200 12.345ms route-to-a
+         */
+        private void format(AccessLogRecord record) {
+            long second = Math.floorDiv(record.timestamp, 1000);
+            if (second != cachedSecond) {
+                cachedSecond = second;
+                cachedPrefix = SECONDS.format(LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC))
+                        .getBytes(StandardCharsets.US_ASCII);
+            }
+            buffer.put(cachedPrefix).put((byte) '.');
+            putThreeDigits(Math.floorMod(record.timestamp, 1000));
+            buffer.put((byte) 'Z').put((byte) ' ');
+
+            putAscii(record.method);
+            buffer.put((byte) ' ');
+
+            buffer.put(record.uri, 0, record.uriLength);
+            if (record.truncated) {
+                buffer.put((byte) '.').put((byte) '.').put((byte) '.');
+            }
+            buffer.put((byte) ' ');
+
+            if (record.status > 0) {
+                putLong(record.status);
+            } else {
+                buffer.put((byte) '-');
+            }
+            buffer.put((byte) ' ');
+
+            long micros = record.durationNanos / 1000;
+            putLong(micros / 1000);
+            buffer.put((byte) '.');
+            putThreeDigits(micros % 1000);
+            buffer.put((byte) 'm').put((byte) 's').put((byte) ' ');
+
+            putAscii(record.routeId != null ? record.routeId : "-");
+            buffer.put((byte) '\n');
+
+            // Ссылки не удерживают объекты до следующего оборота кольца.
+            record.method = null;
+            record.routeId = null;
+        }
+
+        private void putAscii(String value) {
+            int n = Math.min(value.length(), 128);
+            for (int i = 0; i < n; i++) {
+                char c = value.charAt(i);
+                buffer.put(c < 0x80 ? (byte) c : (byte) '?');
+            }
+        }
+
+        private void putLong(long value) {
+            if (value >= 10) {
+                putLong(value / 10);
+            }
+            buffer.put((byte) ('0' + value % 10));
+        }
+
+        private void putThreeDigits(long value) {
+            buffer.put((byte) ('0' + value / 100))
+                    .put((byte) ('0' + value / 10 % 10))
+                    .put((byte) ('0' + value % 10));
+        }
+
+        private void reportDrops() {
+            long now = System.nanoTime();
+            if (now - lastReport < DROP_REPORT_NANOS) {
+                return;
+            }
+            lastReport = now;
+            long total = dropped.sum();
+            if (total != reportedDrops) {
+                log.warn("Access log dropped {} entries in the last period, {} in total",
+                        total - reportedDrops, total);
+                reportedDrops = total;
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package oleborn.gateway.accesslog;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * AccessLogConfig
+ *
+ * Регистрация асинхронного access-log.
+ */
+@Configuration
+@EnableConfigurationProperties(AccessLogProperties.class)
+public class AccessLogConfig {
+
+    @Bean
+    public AccessLog accessLog(AccessLogProperties properties) {
+        return new AccessLog(properties);
+    }
+}
@@ -0,0 +1,128 @@
+package oleborn.gateway.accesslog;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * AccessLogProperties
+ *
+ * Настройки access-log (блок gateway.access-log).
+ */
+@ConfigurationProperties(prefix = "gateway.access-log")
+public class AccessLogProperties {
+
+    // false — записи не принимаются, поток записи не запускается.
+    private boolean enabled = true;
+
+    // Текущий файл лога; архивы — file.1, file.2, ...
+    private String file = "logs/access.log";
+
+    // Число слотов кольцевого буфера (округляется вверх до степени двойки).
+    private int capacity = 8192;
+
+    // Поведение при заполненном буфере.
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    // Максимальное ожидание свободного слота при overflow-policy: block.
+    // По истечении запись всё равно отбрасывается:
+    // event-loop нельзя блокировать без ограничения.
+    private Duration blockTimeout = Duration.ofMillis(5);
+
+    // Максимум записей в одной пачке записи в файл.
+    private int batchSize = 512;
+
+    // Размер файла, после которого он переименовывается в архив.
+    private DataSize maxFileSize = DataSize.ofMegabytes(64);
+
+    // Количество хранимых архивов.
+    private int maxHistory = 5;
+
+    // Максимальная длина URI в записи; длиннее — обрезается.
+    private int maxUriLength = 256;
+
+    /**
+     * Поведение при заполненном буфере.
+     */
+    public enum OverflowPolicy {
+
+        // Запись сразу отбрасывается и учитывается в счётчике dropped.
+        DROP,
+
+        // Поток запроса ждёт освобождения слота не дольше block-timeout.
+        BLOCK
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public Duration getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    public void setBlockTimeout(Duration blockTimeout) {
+        this.blockTimeout = blockTimeout;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public DataSize getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(DataSize maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public int getMaxHistory() {
+        return maxHistory;
+    }
+
+    public void setMaxHistory(int maxHistory) {
+        this.maxHistory = maxHistory;
+    }
+
+    public int getMaxUriLength() {
+        return maxUriLength;
+    }
+
+    public void setMaxUriLength(int maxUriLength) {
+        this.maxUriLength = maxUriLength;
+    }
+}
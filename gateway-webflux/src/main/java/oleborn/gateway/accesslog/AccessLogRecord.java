@@ -0,0 +1,73 @@
+package oleborn.gateway.accesslog;
+
+/**
+ * AccessLogRecord
+ *
+ * Слот кольцевого буфера фиксированного размера.
+ *
+ * Слоты создаются один раз при старте и переиспользуются:
+ * запись в access-log не выделяет памяти на запрос.
+ * URI копируется в заранее выделенный массив байт
+ * (URI запроса уже закодирован и состоит из ASCII),
+ * остальные поля — примитивы и ссылки на долгоживущие строки.
+ *
+ * Поля пишет ровно один производитель (владелец номера слота)
+ * и читает ровно один потребитель (поток записи);
+ * видимость обеспечивает публикация номера в AccessLogRing.
+ */
+final class AccessLogRecord {
+
+    // Момент завершения запроса, мс с эпохи.
+    long timestamp;
+
+    // Длительность обработки, нс.
+    long durationNanos;
+
+    // HTTP-статус ответа; 0 — статус не установлен (ошибка, отмена).
+    int status;
+
+    // Метод запроса (константа HttpMethod.name()).
+    String method;
+
+    // Идентификатор маршрута; null — маршрут не выбран.
+    String routeId;
+
+    // Сырые path и query.
+    final byte[] uri;
+
+    int uriLength;
+
+    // URI не поместился и был обрезан.
+    boolean truncated;
+
+    AccessLogRecord(int maxUriLength) {
+        this.uri = new byte[maxUriLength];
+    }
+
+    /**
+     * Копирование "path?query" без создания промежуточной строки.
+     */
+    void setUri(String path, String query) {
+        int length = 0;
+        truncated = false;
+        length = copy(path, length);
+        if (query != null && !truncated) {
+            length = copy("?", length);
+            length = copy(query, length);
+        }
+        uriLength = length;
+    }
+
+    private int copy(String value, int length) {
+        int n = value.length();
+        for (int i = 0; i < n; i++) {
+            if (length == uri.length) {
+                truncated = true;
+                return length;
+            }
+            char c = value.charAt(i);
+            uri[length++] = c < 0x80 ? (byte) c : (byte) '?';
+        }
+        return length;
+    }
+}
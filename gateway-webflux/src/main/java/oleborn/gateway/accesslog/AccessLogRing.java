@@ -0,0 +1,102 @@
+package oleborn.gateway.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * AccessLogRing
+ *
+ * Кольцевой буфер без блокировок:
+ * много производителей (потоки event-loop), один потребитель (поток записи).
+ *
+ * Протокол:
+ * 1) производитель занимает номер (CAS на claimed),
+ *    если в кольце есть свободное место;
+ * 2) заполняет слот номер & mask;
+ * 3) публикует номер в published[слот] (release-запись);
+ * 4) потребитель читает слоты строго по порядку номеров,
+ *    дожидаясь публикации каждого (acquire-чтение);
+ * 5) после обработки сдвигает consumed — слот снова свободен.
+ *
+ * Ни одна из операций не берёт монитор и не делает системных вызовов.
+ */
+final class AccessLogRing {
+
+    private final AccessLogRecord[] slots;
+
+    // Номер, опубликованный в слоте; -1 — слот ещё не использовался.
+    private final AtomicLongArray published;
+
+    private final int mask;
+
+    // Следующий номер для производителей.
+    private final AtomicLong claimed = new AtomicLong();
+
+    // Следующий номер для потребителя; всё, что меньше, — свободно.
+    private final AtomicLong consumed = new AtomicLong();
+
+    AccessLogRing(int capacity, int maxUriLength) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AccessLogRecord[size];
+        this.published = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new AccessLogRecord(maxUriLength);
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Попытка занять слот.
+     *
+     * @return номер слота либо -1, если кольцо заполнено.
+     */
+    long tryClaim() {
+        while (true) {
+            long seq = claimed.get();
+            if (seq - consumed.get() >= slots.length) {
+                return -1;
+            }
+            if (claimed.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    AccessLogRecord slot(long seq) {
+        return slots[(int) seq & mask];
+    }
+
+    /**
+     * Слот заполнен и может быть прочитан потребителем.
+     */
+    void publish(long seq) {
+        published.setRelease((int) seq & mask, seq);
+    }
+
+    boolean isPublished(long seq) {
+        return published.getAcquire((int) seq & mask) == seq;
+    }
+
+    /**
+     * Слот seq обработан потребителем и может быть занят снова.
+     */
+    void release(long seq) {
+        consumed.setRelease(seq + 1);
+    }
+
+    long consumed() {
+        return consumed.get();
+    }
+
+    /**
+     * @return записи, занятые производителями, но ещё не записанные.
+     */
+    long pending() {
+        return claimed.get() - consumed.get();
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
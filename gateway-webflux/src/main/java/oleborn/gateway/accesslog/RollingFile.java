@@ -0,0 +1,95 @@
+package oleborn.gateway.accesslog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * RollingFile
+ *
+ * Файл с ротацией по размеру поверх FileChannel.
+ *
+ * Когда очередная пачка не помещается в max-file-size,
+ * текущий файл становится file.1, file.1 — file.2 и так далее;
+ * самый старый архив сверх max-history удаляется.
+ *
+ * Используется только потоком записи access-log —
+ * синхронизация не нужна.
+ */
+final class RollingFile implements Closeable {
+
+    private final Path file;
+
+    private final long maxBytes;
+
+    private final int maxHistory;
+
+    private FileChannel channel;
+
+    private long size;
+
+    RollingFile(Path file, long maxBytes, int maxHistory) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.maxBytes = maxBytes;
+        this.maxHistory = maxHistory;
+        Path parent = this.file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    /**
+     * Запись всего содержимого буфера (position → limit).
+     */
+    void write(ByteBuffer buffer) throws IOException {
+        if (size > 0 && size + buffer.remaining() > maxBytes) {
+            roll();
+        }
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+    }
+
+    private void roll() throws IOException {
+        channel.close();
+
+        if (maxHistory > 0) {
+            Files.deleteIfExists(archive(maxHistory));
+            for (int i = maxHistory - 1; i >= 1; i--) {
+                Path from = archive(i);
+                if (Files.exists(from)) {
+                    Files.move(from, archive(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, archive(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+
+        open();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    private Path archive(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+}
@@ -0,0 +1,67 @@
+package oleborn.gateway.cache;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * CacheConfig
+ *
+ * Регистрация фильтров, отдающих ответы без вызова backend'а,
+ * и их метрик.
+ */
+@Configuration
+@EnableConfigurationProperties({DiskCacheProperties.class, ETagProperties.class})
+public class CacheConfig {
+
+    @Bean
+    public SharedResponseFilter sharedResponseFilter() {
+        return new SharedResponseFilter();
+    }
+
+    @Bean
+    public CoalescingMetrics coalescingMetrics() {
+        return new CoalescingMetrics();
+    }
+
+    @Bean
+    public CoalescingGatewayFilterFactory coalescingGatewayFilterFactory(CoalescingMetrics coalescingMetrics) {
+        return new CoalescingGatewayFilterFactory(coalescingMetrics);
+    }
+
+    /**
+     * Закрывается вместе с контекстом (AutoCloseable):
+     * очередь записи дописывается, сегменты сбрасываются на диск.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "gateway.cache.disk.enabled")
+    public DiskCacheStore diskCacheStore(DiskCacheProperties properties) throws IOException {
+        return new DiskCacheStore(properties);
+    }
+
+    @Bean
+    public ResponseCaches responseCaches(ObjectProvider<DiskCacheStore> diskCacheStore) {
+        return new ResponseCaches(diskCacheStore.getIfAvailable());
+    }
+
+    @Bean
+    public ResponseCacheFilter responseCacheFilter(ResponseCaches responseCaches) {
+        return new ResponseCacheFilter(responseCaches);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.etag.enabled", matchIfMissing = true)
+    public ETagIndex etagIndex(ETagProperties properties) {
+        return new ETagIndex(properties.getIndexSize());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.etag.enabled", matchIfMissing = true)
+    public ETagFilter etagFilter(ETagIndex etagIndex) {
+        return new ETagFilter(etagIndex);
+    }
+}
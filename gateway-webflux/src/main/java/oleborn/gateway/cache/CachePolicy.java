@@ -0,0 +1,79 @@
+package oleborn.gateway.cache;
+
+import oleborn.gateway.routing.RouteMetadata;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CachePolicy
+ *
+ * Настройки кеша ответов маршрута из Route metadata
+ * (в стиле Step7RoutesWithMetadata):
+ *
+ *   .metadata("cache.ttl", "30s")
+ *   .metadata("cache.maxBytes", "16MB")
+ *   .metadata("cache.staleWhileRevalidate", "30s")
+ *   .metadata("cache.staleIfError", "5m")
+ *
+ * Кеш включён, если задан cache.ttl.
+ *
+ * @param ttl                  срок хранения ответа; Cache-Control: max-age / s-maxage
+ *                             backend'а может его только сократить.
+ * @param staleWhileRevalidate сколько после ttl устаревший ответ отдаётся сразу,
+ *                             пока в фоне запрашивается новый (0 — не отдаётся).
+ * @param staleIfError         сколько после ttl устаревший ответ заменяет
+ *                             5xx, ошибку соединения или открытый breaker (0 — не заменяет).
+ * @param maxBytes             объём кеша маршрута.
+ * @param maxEntryBytes        ответ с большим Content-Length не кешируется.
+ * @param keyHeaders           заголовки запроса, входящие в ключ вместе с путём и query.
+ *                             Без Authorization в ключе ответ на запрос с Authorization
+ *                             сохраняется, только если backend разрешил общий кеш
+ *                             (public, s-maxage, must-revalidate); чтобы кешировать
+ *                             ответы каждому пользователю отдельно — добавьте Authorization.
+ */
+record CachePolicy(
+        Duration ttl,
+        Duration staleWhileRevalidate,
+        Duration staleIfError,
+        long maxBytes,
+        long maxEntryBytes,
+        List<String> keyHeaders
+) {
+
+    static final String PREFIX = "cache.";
+
+    static final String TTL = PREFIX + "ttl";
+
+    /**
+     * @return политика маршрута либо null, если кеш не включён.
+     * @throws IllegalArgumentException при некорректных значениях.
+     */
+    static CachePolicy from(Map<String, Object> metadata) {
+        Duration ttl = RouteMetadata.duration(metadata, TTL, null);
+        if (ttl == null) {
+            return null;
+        }
+        long maxBytes = RouteMetadata.dataSize(metadata, PREFIX + "maxBytes", DataSize.ofMegabytes(16)).toBytes();
+        long maxEntryBytes = RouteMetadata.dataSize(metadata, PREFIX + "maxEntryBytes", DataSize.ofMegabytes(1)).toBytes();
+        Duration staleWhileRevalidate = RouteMetadata.duration(metadata, PREFIX + "staleWhileRevalidate", Duration.ZERO);
+        Duration staleIfError = RouteMetadata.duration(metadata, PREFIX + "staleIfError", Duration.ZERO);
+        if (ttl.isNegative() || ttl.isZero() || maxBytes < 1024 || maxEntryBytes < 1) {
+            throw new IllegalArgumentException("Invalid cache ttl=" + ttl + ", maxBytes=" + maxBytes + ", maxEntryBytes=" + maxEntryBytes);
+        }
+        if (staleWhileRevalidate.isNegative() || staleIfError.isNegative()) {
+            throw new IllegalArgumentException("Invalid cache staleWhileRevalidate=" + staleWhileRevalidate + ", staleIfError=" + staleIfError);
+        }
+        return new CachePolicy(
+                ttl,
+                staleWhileRevalidate,
+                staleIfError,
+                maxBytes,
+                Math.min(maxEntryBytes, maxBytes / 2),
+                RouteMetadata.list(metadata, PREFIX + "keyHeaders", List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING))
+        );
+    }
+}
@@ -0,0 +1,116 @@
+package oleborn.gateway.cache;
+
+import io.netty.buffer.ByteBuf;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CachedResponse
+ *
+ * Ответ в кеше: статус, заголовки и тело в буфере из пула Netty
+ * (PooledByteBufAllocator, вне heap).
+ *
+ * Ответ из кеша уходит клиенту без копирования:
+ * клиент получает retainedDuplicate() того же буфера,
+ * и Netty освобождает свою ссылку после отправки.
+ *
+ * Собственный счётчик refs защищает от гонки "вытеснение
+ * одновременно с выдачей": буфер из пула после освобождения
+ * переиспользуется, и retain() на нём нельзя вызывать наугад.
+ * Пока refs > 0, ссылка кеша на буфер гарантированно жива.
+ */
+final class CachedResponse {
+
+    final HttpStatusCode status;
+
+    // Только для чтения.
+    final HttpHeaders headers;
+
+    private final ByteBuf body;
+
+    // Байты, которые запись занимает в кеше (тело + оценка ключа и заголовков).
+    final int weight;
+
+    final long storedAt;
+
+    // До этого момента ответ свежий.
+    final long expiresAt;
+
+    // До этого момента устаревший ответ отдаётся сразу,
+    // а в фоне запрашивается новый (stale-while-revalidate).
+    final long staleUntil;
+
+    // До этого момента устаревший ответ заменяет ошибку backend'а (stale-if-error).
+    final long errorUntil;
+
+    // 1 — ссылка кеша; +1 на время выдачи тела клиенту.
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    CachedResponse(HttpStatusCode status, HttpHeaders headers, ByteBuf body, int weight, long storedAt, Freshness freshness) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.weight = weight;
+        this.storedAt = storedAt;
+        this.expiresAt = storedAt + freshness.ttlNanos();
+        this.staleUntil = expiresAt + freshness.staleWhileRevalidateNanos();
+        this.errorUntil = expiresAt + freshness.staleIfErrorNanos();
+    }
+
+    boolean fresh(long now) {
+        return now - expiresAt < 0;
+    }
+
+    boolean revalidatable(long now) {
+        return now - staleUntil < 0;
+    }
+
+    boolean usableOnError(long now) {
+        return now - errorUntil < 0;
+    }
+
+    /**
+     * Ответ больше не пригоден ни в каком виде и удаляется из кеша.
+     */
+    boolean dead(long now) {
+        return !revalidatable(now) && !usableOnError(now);
+    }
+
+    int bodyLength() {
+        return body.readableBytes();
+    }
+
+    /**
+     * Тело для отправки клиенту; вызывающий должен освободить его
+     * (это делает Netty после записи).
+     *
+     * @return null, если запись уже вытеснена из кеша.
+     */
+    ByteBuf retainBody() {
+        while (true) {
+            int current = refs.get();
+            if (current == 0) {
+                return null;
+            }
+            if (refs.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        try {
+            return body.retainedDuplicate();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Освободить ссылку кеша (вытеснение, замена, истечение срока).
+     */
+    void release() {
+        if (refs.decrementAndGet() == 0) {
+            body.release();
+        }
+    }
+}
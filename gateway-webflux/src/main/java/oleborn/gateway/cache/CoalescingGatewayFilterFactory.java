@@ -0,0 +1,285 @@
+package oleborn.gateway.cache;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CoalescingGatewayFilterFactory
+ *
+ * Объединение одинаковых одновременных GET-запросов (single-flight).
+ *
+ * Проблема:
+ * - многие клиенты опрашивают одни и те же ресурсы
+ *   (service B /info, service A /ping) в один и тот же момент;
+ * - каждый такой запрос — отдельный вызов backend'а,
+ *   хотя ответы у всех одинаковые.
+ *
+ * Что делает этот фильтр:
+ * - первый запрос с данным ключом (метод, путь, query и vary-headers)
+ *   становится ведущим и выполняет вызов backend'а как обычно;
+ * - одинаковые запросы, пришедшие, пока ведущий ещё в работе,
+ *   backend не вызывают, а ждут его ответ;
+ * - ответ читается один раз в массив байт (SharedResponse)
+ *   и отдаётся всем ожидающим без копирования.
+ *
+ * Это не кеш: ключ удаляется, как только ответ получен,
+ * и следующий запрос снова идёт к backend'у.
+ *
+ * Ответ НЕ разделяется (ожидающие вызывают backend сами), если:
+ * - статус 5xx — его может исправить Retry каждого запроса;
+ * - нет Content-Length или тело больше max-body-size;
+ * - есть Set-Cookie или Cache-Control: private / no-store —
+ *   ответ предназначен одному клиенту;
+ * - ведущий запрос отменён клиентом или завершился ошибкой.
+ * Ошибка ведущего ожидающим не передаётся: она может зависеть
+ * не от ключа, а от самого запроса (например, его короткий
+ * X-Request-Timeout дал 504), и каждый ожидающий вызывает backend сам.
+ *
+ * Архитектурный смысл:
+ * - фильтр стоит раньше DeadlineFilter, CircuitBreakerFilter и BulkheadFilter
+ *   (order -12): ожидающие не занимают места в bulkhead'е
+ *   и не считаются breaker'ом отдельно от ведущего;
+ * - тело ведущего перехватывается декоратором ответа,
+ *   в который NettyWriteResponseFilter (order -1) пишет тело;
+ * - ожидающий, получив ответ, проходит цепочку дальше
+ *   (access-log и метрики видят его как обычный запрос),
+ *   а SharedResponseFilter перед вызовом backend'а
+ *   подставляет готовый ответ вместо проксирования.
+ *
+ * Доступен и из YAML: filters: - name: Coalescing.
+ */
+public class CoalescingGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<CoalescingGatewayFilterFactory.Config> {
+
+    public static final int ORDER = -12;
+
+    // Ответ ведущего не подходит для разделения.
+    private static final SharedResponse NOT_SHARED = new SharedResponse(null, HttpHeaders.EMPTY, new byte[0]);
+
+    private final CoalescingMetrics metrics;
+
+    public CoalescingGatewayFilterFactory(CoalescingMetrics metrics) {
+        super(Config.class);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // Запросы в работе по ключу. Своя таблица у каждого экземпляра фильтра:
+        // после обновления маршрутов начатые вызовы завершаются в старой.
+        Map<String, Flight> flights = new ConcurrentHashMap<>();
+        long maxBodySize = config.maxBodySize.toBytes();
+
+        GatewayFilter coalescing = new GatewayFilter() {
+
+            @Override
+            public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+                ServerHttpRequest request = exchange.getRequest();
+                if (request.getMethod() != HttpMethod.GET || hasBody(request)) {
+                    return chain.filter(exchange);
+                }
+                CoalescingMetrics.RouteCoalescing route = metrics.route(routeId(config, exchange));
+                String key = RequestKeys.key(request, config.varyHeaders);
+
+                Flight flight = new Flight();
+                Flight existing = flights.putIfAbsent(key, flight);
+                if (existing != null) {
+                    return follow(exchange, chain, existing, route);
+                }
+                route.leaders.increment();
+                return lead(exchange, chain, key, flight, flights, maxBodySize);
+            }
+
+            @Override
+            public String toString() {
+                return "Coalescing[vary=" + config.varyHeaders + ", maxBodySize=" + config.maxBodySize + "]";
+            }
+        };
+        return new OrderedGatewayFilter(coalescing, ORDER);
+    }
+
+    /**
+     * Ведущий: обычный вызов backend'а, тело ответа перехватывается
+     * и публикуется ожидающим.
+     */
+    private static Mono<Void> lead(
+            ServerWebExchange exchange,
+            GatewayFilterChain chain,
+            String key,
+            Flight flight,
+            Map<String, Flight> flights,
+            long maxBodySize
+    ) {
+        ServerHttpResponse capturing = new ServerHttpResponseDecorator(exchange.getResponse()) {
+
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                HttpStatusCode status = getStatusCode();
+                HttpHeaders headers = getHeaders();
+                if (!shareable(status, headers, maxBodySize)) {
+                    flight.publish(flights, key, NOT_SHARED);
+                    return super.writeWith(body);
+                }
+                return DataBufferUtils.join(body).flatMap(joined -> {
+                    byte[] bytes = new byte[joined.readableByteCount()];
+                    joined.read(bytes);
+                    DataBufferUtils.release(joined);
+                    HttpHeaders copy = new HttpHeaders();
+                    copy.putAll(headers);
+                    flight.publish(flights, key, new SharedResponse(status, HttpHeaders.readOnlyHttpHeaders(copy), bytes));
+                    return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                });
+            }
+
+            @Override
+            public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                // Потоковые ответы (text/event-stream и т.п.) не разделяются.
+                flight.publish(flights, key, NOT_SHARED);
+                return super.writeAndFlushWith(body);
+            }
+        };
+
+        return chain.filter(exchange.mutate().response(capturing).build())
+                // Ответ без тела, ошибка, отмена клиентом и т.п.: ожидающие идут к backend'у сами.
+                .doFinally(signal -> flight.publish(flights, key, NOT_SHARED));
+    }
+
+    /**
+     * Ожидающий: ждёт ответ ведущего и проходит цепочку с готовым ответом.
+     */
+    private static Mono<Void> follow(
+            ServerWebExchange exchange,
+            GatewayFilterChain chain,
+            Flight flight,
+            CoalescingMetrics.RouteCoalescing route
+    ) {
+        return flight.result.asMono().flatMap(shared -> {
+            if (shared == NOT_SHARED) {
+                route.notShared.increment();
+                return chain.filter(exchange);
+            }
+            route.coalesced.increment();
+            exchange.getAttributes().put(SharedResponseFilter.SHARED_RESPONSE_ATTR, shared);
+            return chain.filter(exchange).then(Mono.defer(() -> {
+                // Тело пишется здесь, если ответ действительно подставил SharedResponseFilter,
+                // а не, например, fallback breaker'а или отказ bulkhead'а.
+                if (exchange.getAttributes().remove(SharedResponseFilter.APPLIED_ATTR) == null
+                        || exchange.getResponse().isCommitted()) {
+                    return Mono.empty();
+                }
+                return shared.writeBody(exchange.getResponse());
+            }));
+        });
+    }
+
+    private static boolean shareable(HttpStatusCode status, HttpHeaders headers, long maxBodySize) {
+        if (status == null || status.is5xxServerError()) {
+            return false;
+        }
+        long length = headers.getContentLength();
+        if (length < 0 || length > maxBodySize || headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+        String cacheControl = headers.getCacheControl();
+        return cacheControl == null || !(cacheControl.contains("private") || cacheControl.contains("no-store"));
+    }
+
+    private static boolean hasBody(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        return headers.getContentLength() > 0 || headers.containsKey(HttpHeaders.TRANSFER_ENCODING);
+    }
+
+    private static String routeId(Config config, ServerWebExchange exchange) {
+        if (config.routeId != null) {
+            return config.routeId;
+        }
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : "unknown";
+    }
+
+    /**
+     * Один вызов backend'а и ожидающие его запросы.
+     * Sinks.one хранит результат для подписавшихся позже.
+     */
+    private static final class Flight {
+
+        final Sinks.One<SharedResponse> result = Sinks.one();
+
+        /**
+         * Убрать ключ (новые запросы начнут новый вызов)
+         * и отдать ответ ожидающим. Повторные вызовы игнорируются.
+         */
+        void publish(Map<String, Flight> flights, String key, SharedResponse response) {
+            flights.remove(key, this);
+            result.tryEmitValue(response);
+        }
+    }
+
+    /**
+     * Настройки фильтра.
+     *
+     * Setter'ы возвращают this — для Java DSL.
+     */
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        // Заголовки, от которых зависит ответ: запросы с разными значениями
+        // не объединяются. Authorization — чтобы ответы разных
+        // пользователей не смешивались.
+        private List<String> varyHeaders = List.of(HttpHeaders.AUTHORIZATION, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+
+        // Ответ больше этого размера не разделяется.
+        private DataSize maxBodySize = DataSize.ofMegabytes(1);
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        public List<String> getVaryHeaders() {
+            return varyHeaders;
+        }
+
+        public Config setVaryHeaders(String... varyHeaders) {
+            this.varyHeaders = List.of(varyHeaders);
+            return this;
+        }
+
+        public DataSize getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public Config setMaxBodySize(DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package oleborn.gateway.cache;
+
+import oleborn.gateway.metrics.MetricsSource;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CoalescingMetrics
+ *
+ * Счётчики объединения одинаковых запросов по маршрутам.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/coalescing.
+ */
+public class CoalescingMetrics implements MetricsSource {
+
+    private final Map<String, RouteCoalescing> routes = new ConcurrentHashMap<>();
+
+    RouteCoalescing route(String routeId) {
+        return routes.computeIfAbsent(routeId, id -> new RouteCoalescing());
+    }
+
+    @Override
+    public String metricsName() {
+        return "coalescing";
+    }
+
+    @Override
+    public Map<String, CoalescingSnapshot> metricsSnapshot() {
+        Map<String, CoalescingSnapshot> result = new TreeMap<>();
+        routes.forEach((id, route) -> result.put(id, route.snapshot()));
+        return result;
+    }
+
+    static final class RouteCoalescing {
+
+        // Запросы, выполнившие вызов backend'а за себя и за ожидающих.
+        final LongAdder leaders = new LongAdder();
+
+        // Запросы, получившие чужой ответ без вызова backend'а.
+        final LongAdder coalesced = new LongAdder();
+
+        // Ожидавшие, которым ответ не подошёл (не 2xx-4xx, без Content-Length,
+        // слишком большой, Set-Cookie) — они обратились к backend'у сами.
+        final LongAdder notShared = new LongAdder();
+
+        CoalescingSnapshot snapshot() {
+            long leaderCount = leaders.sum();
+            long coalescedCount = coalesced.sum();
+            long notSharedCount = notShared.sum();
+            long total = leaderCount + coalescedCount + notSharedCount;
+            return new CoalescingSnapshot(
+                    leaderCount,
+                    coalescedCount,
+                    notSharedCount,
+                    total == 0 ? 0.0 : (double) coalescedCount / total
+            );
+        }
+    }
+
+    /**
+     * @param savedRatio доля запросов, обслуженных без вызова backend'а.
+     */
+    public record CoalescingSnapshot(
+            long leaders,
+            long coalesced,
+            long notShared,
+            double savedRatio
+    ) {
+    }
+}
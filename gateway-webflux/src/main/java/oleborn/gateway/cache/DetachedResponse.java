@@ -0,0 +1,54 @@
+package oleborn.gateway.cache;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * DetachedResponse
+ *
+ * Ответ без клиента: для фонового запроса к backend'у,
+ * результат которого нужен только кешу.
+ *
+ * Статус и заголовки остаются в объекте,
+ * тело читается и сразу освобождается
+ * (сохраняет его декоратор ResponseCacheFilter).
+ */
+final class DetachedResponse extends AbstractServerHttpResponse {
+
+    DetachedResponse(DataBufferFactory bufferFactory) {
+        super(bufferFactory);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getNativeResponse() {
+        return (T) this;
+    }
+
+    @Override
+    protected void applyStatusCode() {
+    }
+
+    @Override
+    protected void applyHeaders() {
+    }
+
+    @Override
+    protected void applyCookies() {
+    }
+
+    @Override
+    protected Mono<Void> writeWithInternal(Publisher<? extends DataBuffer> body) {
+        return Flux.from(body).doOnNext(DataBufferUtils::release).then();
+    }
+
+    @Override
+    protected Mono<Void> writeAndFlushWithInternal(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        return Flux.from(body).concatMap(part -> Flux.from(part).doOnNext(DataBufferUtils::release)).then();
+    }
+}
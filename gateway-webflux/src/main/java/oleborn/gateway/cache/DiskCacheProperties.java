@@ -0,0 +1,104 @@
+package oleborn.gateway.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * DiskCacheProperties
+ *
+ * Настройки второго уровня кеша ответов на диске
+ * (блок gateway.cache.disk).
+ */
+@ConfigurationProperties(prefix = "gateway.cache.disk")
+public class DiskCacheProperties {
+
+    // false — кеш только в памяти, как раньше.
+    private boolean enabled = false;
+
+    // Каталог сегментов. Сохраняется между перезапусками.
+    private String directory = System.getProperty("java.io.tmpdir") + "/gateway-cache";
+
+    // Размер одного сегмента: файл отображается в память целиком.
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    // Объём всех сегментов; сверх него удаляется самый старый сегмент.
+    private DataSize maxSize = DataSize.ofGigabytes(1);
+
+    // Ёмкость индекса: 16 байт на ячейку, ячеек вдвое больше записей.
+    private int maxEntries = 1_000_000;
+
+    // Период уплотнения сегментов и сброса активного сегмента на диск.
+    private Duration compactionInterval = Duration.ofSeconds(30);
+
+    // Сегмент уплотняется, когда живых данных в нём меньше этой доли.
+    private double compactionThreshold = 0.5;
+
+    // Ответов, ожидающих записи на диск; сверх этого новые не пишутся.
+    private int writeQueue = 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public DataSize getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(DataSize segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    public void setCompactionInterval(Duration compactionInterval) {
+        this.compactionInterval = compactionInterval;
+    }
+
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(double compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    public int getWriteQueue() {
+        return writeQueue;
+    }
+
+    public void setWriteQueue(int writeQueue) {
+        this.writeQueue = writeQueue;
+    }
+}
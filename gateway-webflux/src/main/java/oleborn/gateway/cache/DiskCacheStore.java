@@ -0,0 +1,532 @@
+package oleborn.gateway.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import oleborn.gateway.metrics.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * DiskCacheStore
+ *
+ * Второй уровень кеша ответов (L2): сегменты на диске,
+ * отображённые в память, и индекс вне heap.
+ *
+ * Проблема:
+ * - ResponseCache живёт в памяти процесса:
+ *   после перезапуска Gateway кеш пуст, и весь поток запросов
+ *   разом уходит на backend'ы;
+ * - держать в heap миллионы ответов нельзя — растут паузы GC.
+ *
+ * Что делает этот класс:
+ * - каждый сохранённый в ResponseCache ответ дописывается в конец
+ *   активного сегмента (SegmentFile) — запись только добавлением;
+ * - индекс ключ → положение (OffHeapIndex) лежит вне heap;
+ * - промах ResponseCache ищет ответ здесь; найденный поднимается в память;
+ * - при запуске индекс восстанавливается проходом по сегментам,
+ *   записи с истёкшим сроком пропускаются;
+ * - уплотнение переписывает живые записи из сегментов, где их мало,
+ *   и удаляет сегмент; сверх max-size удаляется самый старый сегмент.
+ *
+ * Heap не зависит от объёма кеша: в нём только объекты сегментов
+ * (по одному на 64 MB) и очередь ожидающих записи ответов.
+ *
+ * Потоки:
+ * - запись, уплотнение и удаление сегментов — один поток "gateway-cache-disk":
+ *   event loop только ставит ответ в очередь (ограниченную write-queue);
+ * - поиск — на вызывающем потоке без блокировок: индекс читается
+ *   оптимистично, запись — из отображённой памяти;
+ *   горячие сегменты — в страничном кеше ОС; чтение холодной записи
+ *   может стоить page fault на event loop, но и это обычно дешевле
+ *   вызова backend'а.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/cache-disk.
+ */
+public class DiskCacheStore implements MetricsSource, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskCacheStore.class);
+
+    private final DiskCacheProperties properties;
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final OffHeapIndex index;
+
+    // Сегменты по номеру: чем больше номер, тем новее записи.
+    private final NavigableMap<Integer, SegmentFile> segments = new ConcurrentSkipListMap<>();
+
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gateway-cache-disk");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    // Поля ниже меняет только поток записи.
+    private SegmentFile active;
+
+    private int nextId;
+
+    // Сегмент, который сейчас уплотняется: его нельзя удалить по max-size.
+    private SegmentFile compacting;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder writes = new LongAdder();
+
+    // Очередь записи переполнена — ответ не записан на диск.
+    private final LongAdder dropped = new LongAdder();
+
+    // Индекс заполнен — новый ключ не записан.
+    private final LongAdder rejected = new LongAdder();
+
+    // Записи, удалённые вместе с самым старым сегментом.
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder compactions = new LongAdder();
+
+    private final long recoveredEntries;
+
+    private final long recoveryMillis;
+
+    public DiskCacheStore(DiskCacheProperties properties) throws IOException {
+        this.properties = properties;
+        this.directory = Path.of(properties.getDirectory());
+        long segmentBytes = properties.getSegmentSize().toBytes();
+        if (segmentBytes < 1024 * 1024 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Disk cache segment-size must be in 1MB..2GB: " + properties.getSegmentSize());
+        }
+        this.segmentSize = (int) segmentBytes;
+        this.maxSegments = (int) Math.max(2, properties.getMaxSize().toBytes() / segmentSize);
+        Files.createDirectories(directory);
+        this.index = new OffHeapIndex(directory.resolve("index.tmp"), properties.getMaxEntries());
+
+        long started = System.nanoTime();
+        this.recoveredEntries = recover();
+        this.recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        log.info("Disk cache recovered {} entries from {} segments in {} ms ({})",
+                recoveredEntries, segments.size(), recoveryMillis, directory);
+
+        long interval = properties.getCompactionInterval().toMillis();
+        writer.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Восстановить индекс по сегментам в порядке номеров:
+     * более поздняя запись ключа заменяет раннюю.
+     *
+     * @return записей в индексе.
+     */
+    private long recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> SegmentFile.parseId(path) >= 0).toList();
+        }
+        long now = System.currentTimeMillis();
+        for (Path path : files) {
+            int id = SegmentFile.parseId(path);
+            SegmentFile segment;
+            try {
+                segment = SegmentFile.open(path, id);
+            } catch (IOException e) {
+                log.warn("Skipping unreadable disk cache segment {}", path, e);
+                continue;
+            }
+            segments.put(id, segment);
+            nextId = Math.max(nextId, id + 1);
+        }
+        for (SegmentFile segment : segments.values()) {
+            int offset = 0;
+            int length;
+            while ((length = segment.validLength(offset)) > 0) {
+                if (!dead(segment, offset, now)) {
+                    index(segment, offset, length);
+                }
+                offset += length;
+            }
+            segment.writePosition = offset;
+        }
+        if (!segments.isEmpty()) {
+            active = segments.lastEntry().getValue();
+        }
+        return index.size();
+    }
+
+    /**
+     * Найти ответ на диске и прочитать его в буфер из пула Netty.
+     *
+     * @param namespace маршрут: у разных маршрутов одинаковые пути — разные ответы.
+     * @return ответ, пригодный хотя бы как устаревший, либо null.
+     */
+    CachedResponse lookup(String namespace, String key, long now) {
+        byte[] keyBytes = diskKey(namespace, key);
+        long hash = OffHeapIndex.hash(keyBytes);
+        long location = index.get(hash);
+        SegmentFile segment = location >= 0 ? segments.get(segmentId(location)) : null;
+        int offset = offset(location);
+        long nowMillis = System.currentTimeMillis();
+        if (segment == null || segment.hash(offset) != hash || !segment.keyEquals(offset, keyBytes)
+                || dead(segment, offset, nowMillis)) {
+            misses.increment();
+            return null;
+        }
+
+        HttpHeaders headers = decodeHeaders(segment.headers(offset));
+        ByteBuffer source = segment.body(offset);
+        ByteBuf body = PooledByteBufAllocator.DEFAULT.directBuffer(source.remaining(), source.remaining());
+        body.writeBytes(source);
+
+        // Сроки на диске — по часам; в памяти — по System.nanoTime().
+        long storedAt = segment.time(offset, SegmentFile.STORED_AT);
+        long expiresAt = segment.time(offset, SegmentFile.EXPIRES_AT);
+        Freshness freshness = new Freshness(
+                TimeUnit.MILLISECONDS.toNanos(expiresAt - storedAt),
+                TimeUnit.MILLISECONDS.toNanos(segment.time(offset, SegmentFile.STALE_UNTIL) - expiresAt),
+                TimeUnit.MILLISECONDS.toNanos(segment.time(offset, SegmentFile.ERROR_UNTIL) - expiresAt)
+        );
+        hits.increment();
+        return new CachedResponse(
+                HttpStatusCode.valueOf(segment.status(offset)),
+                HttpHeaders.readOnlyHttpHeaders(headers),
+                body,
+                ResponseCacheFilter.weight(key, headers, body.readableBytes()),
+                now - TimeUnit.MILLISECONDS.toNanos(nowMillis - storedAt),
+                freshness
+        );
+    }
+
+    /**
+     * Поставить ответ в очередь записи на диск.
+     * Не блокирует: при переполнении очереди ответ просто не записывается.
+     */
+    void offer(String namespace, String key, CachedResponse value, long now) {
+        if (pendingWrites.incrementAndGet() > properties.getWriteQueue()) {
+            pendingWrites.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        ByteBuf body = value.retainBody();
+        if (body == null) {
+            pendingWrites.decrementAndGet();
+            return;
+        }
+        long nowMillis = System.currentTimeMillis();
+        long[] times = {
+                nowMillis - TimeUnit.NANOSECONDS.toMillis(now - value.storedAt),
+                nowMillis + TimeUnit.NANOSECONDS.toMillis(value.expiresAt - now),
+                nowMillis + TimeUnit.NANOSECONDS.toMillis(value.staleUntil - now),
+                nowMillis + TimeUnit.NANOSECONDS.toMillis(value.errorUntil - now)
+        };
+        try {
+            writer.execute(() -> {
+                try {
+                    append(diskKey(namespace, key), times, value.status.value(), encodeHeaders(value.headers), body);
+                } catch (RuntimeException | IOException e) {
+                    log.warn("Disk cache write failed for {}", key, e);
+                } finally {
+                    body.release();
+                    pendingWrites.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Хранилище закрывается.
+            body.release();
+            pendingWrites.decrementAndGet();
+        }
+    }
+
+    // Поток записи.
+    private void append(byte[] key, long[] times, int status, byte[] headers, ByteBuf body) throws IOException {
+        int length = SegmentFile.HEADER + key.length + headers.length + body.readableBytes();
+        if (length > segmentSize) {
+            rejected.increment();
+            return;
+        }
+        SegmentFile segment = writableSegment(length);
+        long hash = OffHeapIndex.hash(key);
+        int offset = segment.append(hash, times, status, key, headers, body);
+        if (index(segment, offset, length)) {
+            writes.increment();
+        } else {
+            rejected.increment();
+        }
+    }
+
+    /**
+     * Указать индексом на запись; байты прежней записи ключа становятся мёртвыми.
+     *
+     * @return false — индекс заполнен.
+     */
+    private boolean index(SegmentFile segment, int offset, int length) {
+        long previous = index.put(segment.hash(offset), location(segment.id, offset));
+        if (previous == OffHeapIndex.REJECTED) {
+            return false;
+        }
+        segment.liveBytes += length;
+        if (previous >= 0) {
+            SegmentFile old = segments.get(segmentId(previous));
+            if (old != null) {
+                old.liveBytes -= old.length(offset(previous));
+            }
+        }
+        return true;
+    }
+
+    private SegmentFile writableSegment(int length) throws IOException {
+        if (active != null && active.remaining() >= length) {
+            return active;
+        }
+        SegmentFile segment = SegmentFile.create(directory, nextId++, segmentSize);
+        segments.put(segment.id, segment);
+        active = segment;
+        while (segments.size() > maxSegments) {
+            SegmentFile oldest = segments.firstEntry().getValue();
+            if (oldest == compacting) {
+                // Уплотняемый сегмент удалится сам, как только его записи будут переписаны.
+                break;
+            }
+            evictions.add(drop(oldest));
+        }
+        return segment;
+    }
+
+    /**
+     * Удалить сегмент вместе с записями индекса, которые на него указывают.
+     *
+     * @return удалённых записей индекса.
+     */
+    private long drop(SegmentFile segment) throws IOException {
+        long removed = 0;
+        for (int offset = 0; offset < segment.writePosition; offset += segment.length(offset)) {
+            if (index.remove(segment.hash(offset), location(segment.id, offset))) {
+                removed++;
+            }
+        }
+        segments.remove(segment.id);
+        if (segment == active) {
+            active = null;
+        }
+        segment.delete();
+        return removed;
+    }
+
+    /**
+     * Периодическое обслуживание (поток записи):
+     * уплотнение закрытых сегментов и сброс активного на диск.
+     */
+    private void maintain() {
+        try {
+            long now = System.currentTimeMillis();
+            for (SegmentFile segment : new ArrayList<>(segments.values())) {
+                if (segment == active || !segments.containsKey(segment.id)) {
+                    continue;
+                }
+                if (segment.liveBytes <= 0) {
+                    drop(segment);
+                } else if (segment.liveBytes < properties.getCompactionThreshold() * segment.writePosition) {
+                    compact(segment, now);
+                }
+            }
+            if (active != null) {
+                active.force();
+            }
+        } catch (RuntimeException | IOException e) {
+            log.warn("Disk cache maintenance failed", e);
+        }
+    }
+
+    /**
+     * Переписать живые записи сегмента в активный и удалить сегмент.
+     * Записи с истёкшим сроком не переписываются.
+     */
+    private void compact(SegmentFile segment, long now) throws IOException {
+        compacting = segment;
+        try {
+            for (int offset = 0; offset < segment.writePosition; offset += segment.length(offset)) {
+                long hash = segment.hash(offset);
+                long location = location(segment.id, offset);
+                if (index.get(hash) != location) {
+                    continue;
+                }
+                if (dead(segment, offset, now)) {
+                    index.remove(hash, location);
+                    continue;
+                }
+                int length = segment.length(offset);
+                SegmentFile target = writableSegment(length);
+                int copied = target.copy(segment, offset);
+                index(target, copied, length);
+            }
+            drop(segment);
+            compactions.increment();
+        } finally {
+            compacting = null;
+        }
+    }
+
+    private static boolean dead(SegmentFile segment, int offset, long nowMillis) {
+        return nowMillis >= segment.time(offset, SegmentFile.STALE_UNTIL)
+                && nowMillis >= segment.time(offset, SegmentFile.ERROR_UNTIL);
+    }
+
+    private static long location(int segmentId, int offset) {
+        return ((long) segmentId << 32) | offset;
+    }
+
+    private static int segmentId(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offset(long location) {
+        return (int) location;
+    }
+
+    private static byte[] diskKey(String namespace, String key) {
+        return (namespace + '\n' + key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encodeHeaders(HttpHeaders headers) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    out.writeUTF(header.getKey());
+                    out.writeUTF(value);
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static HttpHeaders decodeHeaders(ByteBuffer source) {
+        HttpHeaders headers = new HttpHeaders();
+        while (source.hasRemaining()) {
+            headers.add(readUtf(source), readUtf(source));
+        }
+        return headers;
+    }
+
+    // Формат DataOutputStream.writeUTF для ASCII-заголовков совпадает с UTF-8.
+    private static String readUtf(ByteBuffer source) {
+        int length = source.getShort() & 0xffff;
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String metricsName() {
+        return "cache-disk";
+    }
+
+    @Override
+    public DiskCacheSnapshot metricsSnapshot() {
+        long bytesOnDisk = 0;
+        long liveBytes = 0;
+        for (SegmentFile segment : segments.values()) {
+            bytesOnDisk += segment.capacity;
+            liveBytes += segment.liveBytes;
+        }
+        return new DiskCacheSnapshot(
+                index.size(),
+                segments.size(),
+                bytesOnDisk,
+                liveBytes,
+                hits.sum(),
+                misses.sum(),
+                writes.sum(),
+                pendingWrites.get(),
+                dropped.sum(),
+                rejected.sum(),
+                evictions.sum(),
+                compactions.sum(),
+                recoveredEntries,
+                recoveryMillis
+        );
+    }
+
+    /**
+     * Состояние дискового кеша.
+     *
+     * @param bytesOnDisk      размер файлов сегментов.
+     * @param liveBytes        записи, на которые указывает индекс.
+     * @param dropped          ответы, не записанные из-за переполнения очереди.
+     * @param rejected         ответы, не записанные из-за заполненного индекса.
+     * @param evictions        записи, удалённые вместе с самым старым сегментом.
+     * @param recoveredEntries записей, восстановленных при запуске.
+     */
+    public record DiskCacheSnapshot(
+            int entries,
+            int segments,
+            long bytesOnDisk,
+            long liveBytes,
+            long hits,
+            long misses,
+            long writes,
+            int pendingWrites,
+            long dropped,
+            long rejected,
+            long evictions,
+            long compactions,
+            long recoveredEntries,
+            long recoveryMillis
+    ) {
+    }
+
+    /**
+     * Дописать очередь, сбросить сегменты на диск и закрыть файлы.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Disk cache writer did not finish in 5s");
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            // Закрытие прервано: недописанную очередь бросаем,
+            // но файлы всё равно сбрасываем и закрываем.
+            Thread.currentThread().interrupt();
+            writer.shutdownNow();
+        }
+        for (SegmentFile segment : segments.values()) {
+            segment.force();
+            segment.close();
+        }
+        index.close();
+    }
+}
@@ -0,0 +1,280 @@
+package oleborn.gateway.cache;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ETagFilter
+ *
+ * Сильный ETag для ответов GET и условные запросы If-None-Match.
+ *
+ * Проблема:
+ * - ответы service A и B не содержат валидаторов:
+ *   клиент каждый раз заново скачивает неизменившееся тело.
+ *
+ * Что делает этот фильтр:
+ * - хеш тела (SHA-256, первые 128 бит) считается потоково,
+ *   пока буферы проходят к клиенту, — тело не накапливается;
+ * - если тело целиком в первом буфере (короткие ответы backend'а,
+ *   ответы из ResponseCacheFilter и Coalescing), хеш известен
+ *   до отправки заголовков: ответ получает заголовок ETag,
+ *   а совпавший If-None-Match — 304 без тела;
+ * - тело из нескольких буферов: заголовки уходят раньше, чем готов хеш,
+ *   поэтому ETag попадает только в индекс;
+ * - ETagIndex хранит последний ETag по ключу запроса:
+ *   пока он актуален (metadata "etag.maxAge", сокращается Cache-Control
+ *   backend'а), If-None-Match с ним получает 304 без вызова backend'а.
+ *
+ * Не трогаются: ответы не 200, ответы с ETag от backend'а,
+ * ответы без Content-Length (потоковые).
+ *
+ * Архитектурный смысл:
+ * - фильтр стоит раньше ResponseCacheFilter (order -14):
+ *   попадания кеша проходят через тот же декоратор и получают ETag,
+ *   а 304 из индекса не доходит даже до кеша.
+ */
+public class ETagFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = ResponseCacheFilter.ORDER - 1;
+
+    // 128 бит SHA-256: столкновение случайных тел невероятно.
+    private static final int ETAG_BYTES = 16;
+
+    private final ETagIndex index;
+
+    public ETagFilter(ETagIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        ETagPolicy policy = route != null ? index.policy(route) : null;
+        ServerHttpRequest request = exchange.getRequest();
+        if (policy == null || request.getMethod() != HttpMethod.GET) {
+            return chain.filter(exchange);
+        }
+
+        String key = route.getId() + '\n' + RequestKeys.key(request, policy.keyHeaders());
+        List<String> ifNoneMatch = request.getHeaders().getIfNoneMatch();
+        long now = System.nanoTime();
+        if (!ifNoneMatch.isEmpty() && !policy.maxAge().isZero()) {
+            String current = index.current(key, now);
+            if (current != null && matches(ifNoneMatch, current)) {
+                index.notModifiedFromIndex.increment();
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.NOT_MODIFIED);
+                response.getHeaders().setETag(current);
+                return response.setComplete();
+            }
+        }
+        ServerHttpResponse tagging = new TaggingResponse(exchange.getResponse(), index, policy, key, ifNoneMatch);
+        return chain.filter(exchange.mutate().response(tagging).build());
+    }
+
+    /**
+     * Ответ, хеш тела которого считается по мере записи.
+     */
+    private static final class TaggingResponse extends ServerHttpResponseDecorator {
+
+        private final ETagIndex index;
+
+        private final ETagPolicy policy;
+
+        private final String key;
+
+        private final List<String> ifNoneMatch;
+
+        // Состояние записи тела; тело пишется одной подпиской.
+        private boolean first = true;
+
+        private long contentLength;
+
+        private long validNanos;
+
+        // Хеш тела из нескольких буферов; null — не считается.
+        private MessageDigest digest;
+
+        TaggingResponse(ServerHttpResponse delegate, ETagIndex index, ETagPolicy policy, String key, List<String> ifNoneMatch) {
+            super(delegate);
+            this.index = index;
+            this.policy = policy;
+            this.key = key;
+            this.ifNoneMatch = ifNoneMatch;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            HttpStatusCode status = getStatusCode();
+            HttpHeaders headers = getHeaders();
+            contentLength = headers.getContentLength();
+            if (status == null || status.value() != HttpStatus.OK.value()
+                    || contentLength < 0 || headers.getETag() != null) {
+                return super.writeWith(body);
+            }
+            validNanos = validNanos(headers, policy);
+            // Mono (кеш, Coalescing) остаётся Mono: у него короткий путь записи.
+            if (body instanceof Mono<? extends DataBuffer> mono) {
+                return super.writeWith(mono.handle(this::onBuffer));
+            }
+            return super.writeWith(Flux.from(body)
+                    .handle(this::onBuffer)
+                    .doOnComplete(this::onComplete));
+        }
+
+        /**
+         * Заголовки применяются при первом буфере (ChannelSendOperator),
+         * поэтому ETag и статус 304, выставленные здесь, ещё уходят клиенту.
+         */
+        private void onBuffer(DataBuffer buffer, SynchronousSink<DataBuffer> sink) {
+            if (first) {
+                first = false;
+                if (buffer.readableByteCount() == contentLength) {
+                    MessageDigest whole = sha256();
+                    update(whole, buffer);
+                    String etag = etag(whole);
+                    remember(etag);
+                    index.tagged.increment();
+                    getHeaders().setETag(etag);
+                    if (matches(ifNoneMatch, etag)) {
+                        index.notModified.increment();
+                        DataBufferUtils.release(buffer);
+                        notModified();
+                        return;
+                    }
+                    sink.next(buffer);
+                    return;
+                }
+                // Хеш нужен только индексу; индекс не используется — не считаем.
+                if (validNanos > 0) {
+                    digest = sha256();
+                    index.untagged.increment();
+                }
+            }
+            if (digest != null) {
+                update(digest, buffer);
+            }
+            sink.next(buffer);
+        }
+
+        private void onComplete() {
+            if (digest != null) {
+                remember(etag(digest));
+            }
+        }
+
+        private void remember(String etag) {
+            if (validNanos > 0) {
+                long now = System.nanoTime();
+                index.put(key, etag, now + validNanos, now);
+            }
+        }
+
+        /**
+         * 304: только валидаторы и Cache-Control, без тела и его метаданных.
+         */
+        private void notModified() {
+            setStatusCode(HttpStatus.NOT_MODIFIED);
+            HttpHeaders headers = getHeaders();
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            headers.remove(HttpHeaders.CONTENT_ENCODING);
+        }
+    }
+
+    /**
+     * Сколько ETag ответа можно подтверждать без backend'а:
+     * etag.maxAge маршрута, сокращённый Cache-Control backend'а.
+     */
+    static long validNanos(HttpHeaders headers, ETagPolicy policy) {
+        long valid = policy.maxAge().toNanos();
+        String cacheControl = headers.getCacheControl();
+        if (valid == 0 || cacheControl == null) {
+            return valid;
+        }
+        for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+            String name = directive.trim();
+            if (name.equals("no-store") || name.equals("no-cache") || name.equals("private")) {
+                return 0;
+            }
+            if (name.startsWith("s-maxage=") || name.startsWith("max-age=")) {
+                try {
+                    long seconds = Long.parseLong(name.substring(name.indexOf('=') + 1).trim());
+                    valid = Math.min(valid, TimeUnit.SECONDS.toNanos(Math.max(0, seconds)));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Слабое сравнение (RFC 9110, If-None-Match): префикс W/ не учитывается.
+     */
+    static boolean matches(List<String> ifNoneMatch, String etag) {
+        String opaque = opaque(etag);
+        for (String candidate : ifNoneMatch) {
+            if (candidate.equals("*") || opaque(candidate).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+        }
+    }
+
+    // Без копирования: дайджест читает представления ByteBuffer над буфером.
+    private static void update(MessageDigest digest, DataBuffer buffer) {
+        try (DataBuffer.ByteBufferIterator buffers = buffer.readableByteBuffers()) {
+            while (buffers.hasNext()) {
+                digest.update(buffers.next());
+            }
+        }
+    }
+
+    private static String etag(MessageDigest digest) {
+        byte[] hash = Arrays.copyOf(digest.digest(), ETAG_BYTES);
+        return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + '"';
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
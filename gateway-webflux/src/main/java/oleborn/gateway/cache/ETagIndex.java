@@ -0,0 +1,150 @@
+package oleborn.gateway.cache;
+
+import oleborn.gateway.metrics.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ETagIndex
+ *
+ * Последний известный ETag ответа по ключу запроса
+ * и политики ETag маршрутов.
+ *
+ * Индекс маленький: строка ETag и срок на ключ, без тел.
+ * Запись обновляется после КАЖДОГО ответа 200, прошедшего через Gateway,
+ * поэтому изменившийся ответ backend'а сразу вытесняет старый ETag.
+ *
+ * Ограничение по числу ключей: при переполнении вытесняется
+ * истёкшая запись из первых нескольких, иначе — первая попавшаяся.
+ * Точность LRU здесь не нужна: потерянная запись стоит
+ * только одного вызова backend'а.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/etag.
+ */
+public class ETagIndex implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ETagIndex.class);
+
+    // Сколько записей просматривается в поисках истёкшей при вытеснении.
+    private static final int EVICTION_SAMPLE = 8;
+
+    private final int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Map<String, Binding> policies = new ConcurrentHashMap<>();
+
+    // Ответу 200 поставлен ETag.
+    final LongAdder tagged = new LongAdder();
+
+    // Тело пришло несколькими буферами: заголовки ушли раньше,
+    // чем был известен хеш, и ETag попал только в индекс.
+    final LongAdder untagged = new LongAdder();
+
+    // 304 после ответа backend'а: тело клиенту не передавалось.
+    final LongAdder notModified = new LongAdder();
+
+    // 304 из индекса: backend не вызывался.
+    final LongAdder notModifiedFromIndex = new LongAdder();
+
+    public ETagIndex(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    record Entry(String etag, long validUntil) {
+    }
+
+    /**
+     * @return политика маршрута либо null, если ETag отключён
+     *         или metadata некорректна.
+     */
+    ETagPolicy policy(Route route) {
+        Binding binding = policies.get(route.getId());
+        if (binding != null && binding.route == route) {
+            return binding.policy;
+        }
+        ETagPolicy policy = null;
+        try {
+            policy = ETagPolicy.from(route.getMetadata());
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid etag metadata on route '{}', ETag disabled", route.getId(), e);
+        }
+        policies.put(route.getId(), new Binding(route, policy));
+        return policy;
+    }
+
+    /**
+     * @return ETag, который можно подтвердить без вызова backend'а, либо null.
+     */
+    String current(String key, long now) {
+        Entry entry = entries.get(key);
+        return entry != null && now - entry.validUntil < 0 ? entry.etag : null;
+    }
+
+    void put(String key, String etag, long validUntil, long now) {
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            evictOne(now);
+        }
+        entries.put(key, new Entry(etag, validUntil));
+    }
+
+    private void evictOne(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        String first = null;
+        for (int i = 0; i < EVICTION_SAMPLE && iterator.hasNext(); i++) {
+            Map.Entry<String, Entry> candidate = iterator.next();
+            if (now - candidate.getValue().validUntil >= 0) {
+                entries.remove(candidate.getKey(), candidate.getValue());
+                return;
+            }
+            if (first == null) {
+                first = candidate.getKey();
+            }
+        }
+        if (first != null) {
+            entries.remove(first);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "etag";
+    }
+
+    @Override
+    public ETagSnapshot metricsSnapshot() {
+        return new ETagSnapshot(
+                entries.size(),
+                tagged.sum(),
+                untagged.sum(),
+                notModified.sum(),
+                notModifiedFromIndex.sum()
+        );
+    }
+
+    /**
+     * Состояние ETag.
+     *
+     * @param untagged             тело из нескольких буферов: ETag только в индексе.
+     * @param notModified          304 после ответа backend'а.
+     * @param notModifiedFromIndex 304 без вызова backend'а.
+     */
+    public record ETagSnapshot(
+            int entries,
+            long tagged,
+            long untagged,
+            long notModified,
+            long notModifiedFromIndex
+    ) {
+    }
+
+    // policy == null — ETag для маршрута отключён.
+    private record Binding(Route route, ETagPolicy policy) {
+    }
+}
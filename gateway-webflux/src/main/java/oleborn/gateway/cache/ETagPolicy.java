@@ -0,0 +1,52 @@
+package oleborn.gateway.cache;
+
+import oleborn.gateway.routing.RouteMetadata;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ETagPolicy
+ *
+ * Настройки ETag маршрута из Route metadata.
+ * ETag включён для всех маршрутов; metadata нужна только,
+ * чтобы отключить его или разрешить ответ 304 без вызова backend'а:
+ *
+ *   .metadata("etag.enabled", false)
+ *   .metadata("etag.maxAge", "5s")
+ *   .metadata("etag.keyHeaders", "Accept, Accept-Encoding, Authorization")
+ *
+ * @param maxAge     сколько ETag из индекса считается актуальным без вызова backend'а;
+ *                   0 — If-None-Match всегда проверяется по новому ответу backend'а.
+ *                   Cache-Control backend'а (max-age, s-maxage, no-cache)
+ *                   может срок только сократить.
+ * @param keyHeaders заголовки запроса, входящие в ключ индекса вместе с путём и query.
+ *                   По умолчанию — с Authorization: 304 из индекса подтверждает
+ *                   ответ, полученный тем же пользователем.
+ */
+record ETagPolicy(Duration maxAge, List<String> keyHeaders) {
+
+    static final String PREFIX = "etag.";
+
+    static final ETagPolicy DEFAULT = new ETagPolicy(
+            Duration.ZERO,
+            List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.AUTHORIZATION)
+    );
+
+    /**
+     * @return политика маршрута либо null, если ETag для маршрута отключён.
+     * @throws IllegalArgumentException при некорректных значениях.
+     */
+    static ETagPolicy from(Map<String, Object> metadata) {
+        if (!Boolean.parseBoolean(RouteMetadata.string(metadata, PREFIX + "enabled", "true").trim())) {
+            return null;
+        }
+        Duration maxAge = RouteMetadata.duration(metadata, PREFIX + "maxAge", DEFAULT.maxAge());
+        if (maxAge.isNegative()) {
+            throw new IllegalArgumentException("Invalid etag.maxAge: " + maxAge);
+        }
+        return new ETagPolicy(maxAge, RouteMetadata.list(metadata, PREFIX + "keyHeaders", DEFAULT.keyHeaders()));
+    }
+}
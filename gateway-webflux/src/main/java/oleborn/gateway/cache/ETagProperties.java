@@ -0,0 +1,34 @@
+package oleborn.gateway.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * ETagProperties
+ *
+ * Настройки ETag и условных GET (блок gateway.etag).
+ */
+@ConfigurationProperties(prefix = "gateway.etag")
+public class ETagProperties {
+
+    // false — ETag не вычисляются, If-None-Match передаётся backend'у как есть.
+    private boolean enabled = true;
+
+    // Ключей в индексе ETag; сверх этого вытесняются истёкшие или произвольные.
+    private int indexSize = 10_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getIndexSize() {
+        return indexSize;
+    }
+
+    public void setIndexSize(int indexSize) {
+        this.indexSize = indexSize;
+    }
+}
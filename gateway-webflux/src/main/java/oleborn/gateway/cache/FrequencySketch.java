@@ -0,0 +1,97 @@
+package oleborn.gateway.cache;
+
+/**
+ * FrequencySketch
+ *
+ * Приблизительная частота обращений к ключам (Count-Min Sketch)
+ * для решения W-TinyLFU "пускать ли новую запись в основную часть кеша".
+ *
+ * Устройство:
+ * - счётчики 4-битные, по 16 в одном long;
+ * - у ключа 4 счётчика в разных long'ах, частота — минимум из них
+ *   (коллизии только завышают оценку, и минимум её уточняет);
+ * - после 10 × (число long'ов) увеличений все счётчики делятся пополам —
+ *   старая популярность "забывается", и кеш следует за сменой трафика.
+ *
+ * Память — 8 байт на каждые 16 счётчиков, независимо от числа ключей.
+ *
+ * Класс не потокобезопасен: вызывается под блокировкой ResponseCache.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    // Маска для деления всех 16 счётчиков long'а пополам одним сдвигом.
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int length = Integer.highestOneBit(Math.clamp(expectedEntries, 64, 1 << 24) - 1) << 1;
+        this.table = new long[length];
+        this.mask = length - 1;
+        this.sampleSize = 10 * length;
+    }
+
+    /**
+     * Оценка частоты ключа: 0..15.
+     */
+    int frequency(int hashCode) {
+        int hash = spread(hashCode);
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            long word = table[index(hash, i)];
+            frequency = Math.min(frequency, (int) ((word >>> offset(hash, i)) & 0xF));
+        }
+        return frequency;
+    }
+
+    void increment(int hashCode) {
+        int hash = spread(hashCode);
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = index(hash, i);
+            int offset = offset(hash, i);
+            long word = table[index];
+            if (((word >>> offset) & 0xF) != 0xF) {
+                table[index] = word + (1L << offset);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int index(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+
+    // Номер 4-битного счётчика внутри long'а: свой для каждой из 4 строк.
+    private static int offset(int hash, int i) {
+        return ((hash >>> (i << 3)) & 0xF) << 2;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
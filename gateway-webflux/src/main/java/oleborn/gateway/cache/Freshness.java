@@ -0,0 +1,14 @@
+package oleborn.gateway.cache;
+
+/**
+ * Freshness
+ *
+ * Сроки сохраняемого ответа: политика маршрута (CachePolicy),
+ * сокращённая директивами Cache-Control backend'а.
+ *
+ * @param ttlNanos                  сколько ответ свежий.
+ * @param staleWhileRevalidateNanos сколько после этого он отдаётся с фоновым обновлением.
+ * @param staleIfErrorNanos         сколько после этого он заменяет ошибку backend'а.
+ */
+record Freshness(long ttlNanos, long staleWhileRevalidateNanos, long staleIfErrorNanos) {
+}
@@ -0,0 +1,215 @@
+package oleborn.gateway.cache;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * OffHeapIndex
+ *
+ * Индекс дискового кеша: хеш ключа → положение записи в сегменте.
+ *
+ * Хранится вне heap — в отображённом в память временном файле:
+ * 10 млн записей занимают 512 MB страничного кеша
+ * и ни одного объекта в heap (ни Long, ни узлов HashMap).
+ * Файл не переживает перезапуск: индекс восстанавливается по сегментам.
+ *
+ * Устройство — открытая адресация с линейным пробированием,
+ * ячейка 16 байт: [хеш ключа (long)][положение (long)].
+ * Хеш 0 означает пустую ячейку. Удаление — сдвигом назад,
+ * без "надгробий": цепочки пробирования не деградируют.
+ *
+ * Потоки:
+ * - изменяет индекс один поток записи DiskCacheStore (под write-lock);
+ * - чтение — оптимистичное (StampedLock) без блокировки;
+ *   если во время чтения была запись, чтение повторяется под read-lock.
+ *
+ * Совпадение 64-битных хешей разных ключей не исключено:
+ * читающий сверяет ключ, сохранённый в записи.
+ */
+final class OffHeapIndex implements AutoCloseable {
+
+    static final long ABSENT = -1;
+
+    // Индекс заполнен, новый ключ не добавлен.
+    static final long REJECTED = -2;
+
+    private static final int SLOT = 16;
+
+    // 2^26 ячеек по 16 байт (1 GB): один MappedByteBuffer — меньше 2 GB.
+    private static final long MAX_SLOTS = 1L << 26;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer slots;
+
+    private final int mask;
+
+    private final int maxEntries;
+
+    private final StampedLock lock = new StampedLock();
+
+    private volatile int size;
+
+    OffHeapIndex(Path file, int maxEntries) throws IOException {
+        // Степень двойки, не меньше удвоенного числа записей: заполнение не выше 50%.
+        long slotCount = Long.highestOneBit(Math.max(16L, maxEntries) * 2 - 1) << 1;
+        if (maxEntries < 1 || slotCount > MAX_SLOTS) {
+            throw new IllegalArgumentException("Invalid disk cache max-entries: " + maxEntries);
+        }
+        Files.deleteIfExists(file);
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        // Новый файл разрежённый и заполнен нулями: все ячейки пусты.
+        this.slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, slotCount * SLOT);
+        this.mask = (int) slotCount - 1;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 64-битный хеш ключа: FNV-1a и перемешивание из SplitMix64.
+     */
+    static long hash(byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * @return положение записи либо ABSENT.
+     */
+    long get(long hash) {
+        long stamp = lock.tryOptimisticRead();
+        long location = probe(hash);
+        if (lock.validate(stamp)) {
+            return location;
+        }
+        stamp = lock.readLock();
+        try {
+            return probe(hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long probe(long hash) {
+        int slot = slot(hash);
+        for (int i = 0; i <= mask; i++) {
+            long current = slots.getLong(slot * SLOT);
+            if (current == 0) {
+                return ABSENT;
+            }
+            if (current == hash) {
+                return slots.getLong(slot * SLOT + 8);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    /**
+     * @return прежнее положение записи, ABSENT — ключ новый,
+     *         REJECTED — индекс заполнен и ключ не добавлен.
+     */
+    long put(long hash, long location) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(hash);
+            while (true) {
+                long current = slots.getLong(slot * SLOT);
+                if (current == hash) {
+                    long previous = slots.getLong(slot * SLOT + 8);
+                    slots.putLong(slot * SLOT + 8, location);
+                    return previous;
+                }
+                if (current == 0) {
+                    if (size >= maxEntries) {
+                        return REJECTED;
+                    }
+                    slots.putLong(slot * SLOT + 8, location);
+                    slots.putLong(slot * SLOT, hash);
+                    size++;
+                    return ABSENT;
+                }
+                slot = (slot + 1) & mask;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Удалить ключ, только если он всё ещё указывает на location:
+     * более новая запись того же ключа не затрагивается.
+     */
+    boolean remove(long hash, long location) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(hash);
+            while (true) {
+                long current = slots.getLong(slot * SLOT);
+                if (current == 0) {
+                    return false;
+                }
+                if (current == hash) {
+                    if (slots.getLong(slot * SLOT + 8) != location) {
+                        return false;
+                    }
+                    shiftBack(slot);
+                    size--;
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Удаление без "надгробий": следующие ячейки цепочки,
+     * которые можно найти с позиции освободившейся ячейки, сдвигаются в неё.
+     */
+    private void shiftBack(int hole) {
+        int next = (hole + 1) & mask;
+        while (true) {
+            long hash = slots.getLong(next * SLOT);
+            if (hash == 0) {
+                break;
+            }
+            int ideal = slot(hash);
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                slots.putLong(hole * SLOT, hash);
+                slots.putLong(hole * SLOT + 8, slots.getLong(next * SLOT + 8));
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots.putLong(hole * SLOT, 0);
+        slots.putLong(hole * SLOT + 8, 0);
+    }
+
+    private int slot(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
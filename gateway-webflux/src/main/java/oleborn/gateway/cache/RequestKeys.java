@@ -0,0 +1,38 @@
+package oleborn.gateway.cache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.util.List;
+
+/**
+ * RequestKeys
+ *
+ * Ключ GET-запроса для объединения одинаковых запросов и кеша ответов.
+ */
+final class RequestKeys {
+
+    private RequestKeys() {
+    }
+
+    /**
+     * Ключ: путь, query и значения заголовков headers (метод всегда GET).
+     * Разделитель — перевод строки, недопустимый в пути и значениях заголовков.
+     */
+    static String key(ServerHttpRequest request, List<String> headers) {
+        StringBuilder key = new StringBuilder(128).append(request.getURI().getRawPath());
+        String query = request.getURI().getRawQuery();
+        if (query != null) {
+            key.append('?').append(query);
+        }
+        HttpHeaders requestHeaders = request.getHeaders();
+        for (String name : headers) {
+            key.append('\n');
+            List<String> values = requestHeaders.get(name);
+            if (values != null) {
+                key.append(String.join(",", values));
+            }
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,420 @@
+package oleborn.gateway.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ResponseCache
+ *
+ * Кеш ответов одного маршрута, ограниченный по БАЙТАМ,
+ * с вытеснением W-TinyLFU (как в Caffeine).
+ *
+ * Почему не LRU:
+ * - один проход по тысячам разных URL (сканирование, краулер)
+ *   вытесняет из LRU все действительно популярные ответы;
+ * - W-TinyLFU пускает новую запись в основную часть кеша,
+ *   только если к её ключу обращались ЧАЩЕ, чем к записи,
+ *   которую придётся вытеснить (частоты — FrequencySketch).
+ *
+ * Устройство (доли от max-bytes):
+ * - window (1%) — LRU для новых записей: короткий всплеск
+ *   обращений к новому ключу успевает набрать частоту;
+ * - probation (20% основной части) — записи, допущенные из window;
+ * - protected (80% основной части) — записи, к которым обращались
+ *   повторно, пока они были в probation.
+ * Запись, вытесненная из window, соревнуется с "жертвой" из конца probation;
+ * крупная запись вытесняет жертв по одной, пока не освободится место,
+ * и проигрывает, как только встречает более частую.
+ *
+ * Потоки:
+ * - поиск — ConcurrentHashMap без блокировок;
+ * - учёт обращения (частота, порядок очередей) — под tryLock:
+ *   если блокировка занята, обращение не учитывается (как буфер чтения
+ *   в Caffeine, допускающий потери) и поток не ждёт;
+ * - добавление и вытеснение — под блокировкой.
+ *
+ * Если включён DiskCacheStore, он — второй уровень за этим кешем:
+ * сохранённые ответы дописываются на диск, промах ищется на диске,
+ * и найденный ответ поднимается в память.
+ */
+final class ResponseCache {
+
+    private static final int WINDOW = 0;
+
+    private static final int PROBATION = 1;
+
+    private static final int PROTECTED = 2;
+
+    // Средний размер записи для оценки ширины FrequencySketch.
+    private static final int ESTIMATED_ENTRY_BYTES = 2048;
+
+    final CachePolicy policy;
+
+    // Второй уровень; null — кеш только в памяти.
+    private final DiskCacheStore disk;
+
+    // Id маршрута: пространство ключей маршрута на диске.
+    private final String namespace;
+
+    private final Map<String, Node> data = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final FrequencySketch sketch;
+
+    private final AccessQueue window = new AccessQueue();
+
+    private final AccessQueue probation = new AccessQueue();
+
+    private final AccessQueue protectedQueue = new AccessQueue();
+
+    private final long windowMax;
+
+    private final long mainMax;
+
+    private final long protectedMax;
+
+    // Размеры очередей в байтах; меняются только под lock.
+    private long windowBytes;
+
+    private long probationBytes;
+
+    private long protectedBytes;
+
+    // Для чтения метрик без блокировки.
+    private volatile long bytesUsed;
+
+    // Ключи, для которых идёт фоновое обновление (stale-while-revalidate).
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+    final LongAdder hits = new LongAdder();
+
+    // Устаревший ответ отдан сразу, обновление — в фоне.
+    final LongAdder staleHits = new LongAdder();
+
+    // Устаревший ответ отдан вместо ошибки backend'а.
+    final LongAdder staleOnError = new LongAdder();
+
+    final LongAdder revalidations = new LongAdder();
+
+    final LongAdder misses = new LongAdder();
+
+    final LongAdder stores = new LongAdder();
+
+    final LongAdder evictions = new LongAdder();
+
+    // Запись не допущена: её ключ реже "жертвы" из основной части.
+    final LongAdder rejections = new LongAdder();
+
+    ResponseCache(CachePolicy policy) {
+        this(policy, null, null);
+    }
+
+    ResponseCache(CachePolicy policy, DiskCacheStore disk, String namespace) {
+        this.policy = policy;
+        this.disk = disk;
+        this.namespace = namespace;
+        long maxBytes = policy.maxBytes();
+        this.windowMax = Math.max(1, maxBytes / 100);
+        this.mainMax = maxBytes - windowMax;
+        this.protectedMax = mainMax * 8 / 10;
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maxBytes / ESTIMATED_ENTRY_BYTES));
+    }
+
+    /**
+     * Поиск с учётом обращения для W-TinyLFU.
+     * Счётчики попаданий ведёт вызывающий: только он знает,
+     * отдан ли ответ как свежий, как устаревший или не отдан вовсе.
+     *
+     * @return ответ, пригодный хотя бы как устаревший, либо null.
+     */
+    CachedResponse lookup(String key, long now) {
+        Node node = data.get(key);
+        if (node == null) {
+            recordMiss(key);
+            return lookupDisk(key, now);
+        }
+        if (node.value.dead(now)) {
+            lock.lock();
+            try {
+                sketch.increment(key.hashCode());
+                if (data.remove(key, node)) {
+                    unlink(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return lookupDisk(key, now);
+        }
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(key.hashCode());
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * @return true — фоновое обновление ключа начинает вызывающий;
+     *         false — оно уже идёт.
+     */
+    boolean startRevalidation(String key) {
+        return revalidating.add(key);
+    }
+
+    void finishRevalidation(String key) {
+        revalidating.remove(key);
+    }
+
+    /**
+     * Промах памяти: ответ с диска поднимается в память.
+     * Обратно на диск он не пишется — он там уже есть.
+     */
+    private CachedResponse lookupDisk(String key, long now) {
+        if (disk == null) {
+            return null;
+        }
+        CachedResponse value = disk.lookup(namespace, key, now);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Сохранить ответ backend'а: в память и, если включён, на диск.
+     */
+    void store(String key, CachedResponse value) {
+        if (put(key, value) && disk != null) {
+            disk.offer(namespace, key, value, System.nanoTime());
+        }
+    }
+
+    private void recordMiss(String key) {
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(key.hashCode());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Сохранить ответ. Новая запись попадает в window,
+     * решение о допуске в основную часть — при вытеснении из window.
+     *
+     * @return false — запись больше основной части кеша и не сохранена
+     *         (ссылка кеша на тело уже освобождена).
+     */
+    boolean put(String key, CachedResponse value) {
+        if (value.weight > mainMax) {
+            value.release();
+            return false;
+        }
+        lock.lock();
+        try {
+            Node node = new Node(key, value);
+            Node previous = data.put(key, node);
+            if (previous != null) {
+                unlink(previous);
+            }
+            window.addFirst(node);
+            node.queue = WINDOW;
+            windowBytes += value.weight;
+            stores.increment();
+            evictFromWindow();
+            bytesUsed = windowBytes + probationBytes + protectedBytes;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Обращение к записи: window — в начало window;
+     * probation — повышение в protected; protected — в начало protected.
+     */
+    private void onAccess(Node node) {
+        if (node.prev == null) {
+            // Уже вытеснена другим потоком.
+            return;
+        }
+        switch (node.queue) {
+            case WINDOW -> window.moveToFirst(node);
+            case PROBATION -> {
+                probation.remove(node);
+                probationBytes -= node.value.weight;
+                protectedQueue.addFirst(node);
+                node.queue = PROTECTED;
+                protectedBytes += node.value.weight;
+                // Protected переполнен — самые давние возвращаются в probation.
+                while (protectedBytes > protectedMax) {
+                    Node demoted = protectedQueue.removeLast();
+                    protectedBytes -= demoted.value.weight;
+                    probation.addFirst(demoted);
+                    demoted.queue = PROBATION;
+                    probationBytes += demoted.value.weight;
+                }
+            }
+            default -> protectedQueue.moveToFirst(node);
+        }
+    }
+
+    /**
+     * Записи, не помещающиеся в window, переходят в probation,
+     * если побеждают по частоте записи из основной части.
+     */
+    private void evictFromWindow() {
+        while (windowBytes > windowMax) {
+            Node candidate = window.removeLast();
+            windowBytes -= candidate.value.weight;
+            admit(candidate);
+        }
+    }
+
+    private void admit(Node candidate) {
+        int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+        while (probationBytes + protectedBytes + candidate.value.weight > mainMax) {
+            Node victim = probation.peekLast();
+            AccessQueue victimQueue = probation;
+            if (victim == null) {
+                victim = protectedQueue.peekLast();
+                victimQueue = protectedQueue;
+            }
+            if (candidateFrequency <= sketch.frequency(victim.key.hashCode())) {
+                rejections.increment();
+                evict(candidate);
+                return;
+            }
+            victimQueue.remove(victim);
+            if (victimQueue == probation) {
+                probationBytes -= victim.value.weight;
+            } else {
+                protectedBytes -= victim.value.weight;
+            }
+            evict(victim);
+        }
+        probation.addFirst(candidate);
+        candidate.queue = PROBATION;
+        probationBytes += candidate.value.weight;
+    }
+
+    /**
+     * Убрать запись из очереди и карты и освободить тело.
+     */
+    private void unlink(Node node) {
+        switch (node.queue) {
+            case WINDOW -> windowBytes -= node.value.weight;
+            case PROBATION -> probationBytes -= node.value.weight;
+            default -> protectedBytes -= node.value.weight;
+        }
+        switch (node.queue) {
+            case WINDOW -> window.remove(node);
+            case PROBATION -> probation.remove(node);
+            default -> protectedQueue.remove(node);
+        }
+        node.value.release();
+        bytesUsed = windowBytes + probationBytes + protectedBytes;
+    }
+
+    // Узел уже вне очередей.
+    private void evict(Node node) {
+        data.remove(node.key, node);
+        node.value.release();
+        evictions.increment();
+    }
+
+    long bytesUsed() {
+        return bytesUsed;
+    }
+
+    int entries() {
+        return data.size();
+    }
+
+    /**
+     * Освободить все тела (маршрут удалён или политика изменилась).
+     */
+    void clear() {
+        lock.lock();
+        try {
+            for (Node node : data.values()) {
+                if (data.remove(node.key, node)) {
+                    unlink(node);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Node {
+
+        final String key;
+
+        final CachedResponse value;
+
+        int queue;
+
+        // null — узел не в очереди.
+        Node prev;
+
+        Node next;
+
+        Node(String key, CachedResponse value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Двусвязная очередь узлов в порядке обращений:
+     * начало — недавние, конец — кандидаты на вытеснение.
+     */
+    private static final class AccessQueue {
+
+        // Кольцо с фиктивным узлом: пустая очередь — head.next == head.
+        private final Node head = new Node(null, null);
+
+        AccessQueue() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        void addFirst(Node node) {
+            node.next = head.next;
+            node.prev = head;
+            head.next.prev = node;
+            head.next = node;
+        }
+
+        void remove(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToFirst(Node node) {
+            remove(node);
+            addFirst(node);
+        }
+
+        Node peekLast() {
+            return head.prev == head ? null : head.prev;
+        }
+
+        Node removeLast() {
+            Node last = head.prev;
+            remove(last);
+            return last;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package oleborn.gateway.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import oleborn.gateway.filter.RouteScopedFilter;
+import oleborn.gateway.resilience.Deadline;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResponseCacheFilter
+ *
+ * Кеш ответов GET для маршрутов с metadata "cache.ttl".
+ *
+ * Проблема:
+ * - у Gateway нет кеша: каждый /b/info — вызов service B,
+ *   хотя ответ не меняется секундами.
+ *
+ * Что делает этот фильтр:
+ * - свежий ответ из кеша отдаётся сразу, backend не вызывается
+ *   (заголовки Age и X-Cache: HIT);
+ * - иначе ответ backend'а копируется в буфер из пула Netty
+ *   и сохраняется в ResponseCache маршрута (W-TinyLFU, лимит в байтах);
+ * - ключ — путь, query и cache.keyHeaders (по умолчанию Accept, Accept-Encoding).
+ *
+ * Cache-Control backend'а соблюдается:
+ * - no-store, no-cache, private — ответ не сохраняется;
+ * - s-maxage / max-age сокращают cache.ttl маршрута;
+ * - Vary: * или Vary по заголовку не из ключа — ответ не сохраняется;
+ * - Set-Cookie — не сохраняется;
+ * - ответ на запрос с Authorization сохраняется, только если backend
+ *   разрешил общий кеш (public, s-maxage или must-revalidate, RFC 9111 §3.5)
+ *   либо Authorization входит в cache.keyHeaders маршрута:
+ *   иначе ответ одному пользователю достался бы другому.
+ * Cache-Control: no-cache / no-store (или Pragma: no-cache) в запросе
+ * клиента — ответ берётся от backend'а.
+ *
+ * Сохраняются только ответы 200 с Content-Length не больше cache.maxEntryBytes:
+ * тело читается в память целиком.
+ *
+ * Устаревший ответ (RFC 5861, сроки — cache.staleWhileRevalidate
+ * и cache.staleIfError маршрута):
+ * - в пределах stale-while-revalidate отдаётся сразу (X-Cache: STALE),
+ *   а за новым идёт ОДИН фоновый запрос на ключ — по той же цепочке фильтров,
+ *   но с ответом без клиента (DetachedResponse);
+ * - в пределах stale-if-error клиент ждёт backend, но 5xx, ошибка соединения,
+ *   таймаут или fallback открытого breaker'а заменяются устаревшим ответом;
+ * - stale-while-revalidate / stale-if-error в Cache-Control backend'а
+ *   сокращают сроки маршрута, must-revalidate / proxy-revalidate запрещают
+ *   отдавать ответ устаревшим.
+ * Во время инцидента клиенты получают последний хороший ответ без задержки,
+ * а backend — по одному запросу на ключ вместо потока повторов.
+ *
+ * Архитектурный смысл:
+ * - фильтр стоит раньше Coalescing (-12), DeadlineFilter, CircuitBreakerFilter
+ *   и BulkheadFilter (order -13): попадание в кеш не занимает
+ *   ни места в bulkhead'е, ни попытки breaker'а —
+ *   и отдаётся, даже когда breaker открыт;
+ * - промахи дальше объединяет Coalescing:
+ *   при истечении срока популярного ответа к backend'у идёт один запрос.
+ */
+public class ResponseCacheFilter implements GlobalFilter, Ordered, RouteScopedFilter {
+
+    public static final int ORDER = CoalescingGatewayFilterFactory.ORDER - 1;
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseCacheFilter.class);
+
+    private final ResponseCaches caches;
+
+    public ResponseCacheFilter(ResponseCaches caches) {
+        this.caches = caches;
+    }
+
+    @Override
+    public boolean appliesTo(Route route) {
+        return route.getMetadata().containsKey(CachePolicy.TTL);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        ResponseCache cache = route != null ? caches.cache(route) : null;
+        ServerHttpRequest request = exchange.getRequest();
+        if (cache == null || request.getMethod() != HttpMethod.GET) {
+            return chain.filter(exchange);
+        }
+
+        String requestCacheControl = lowerCase(request.getHeaders().getCacheControl());
+        boolean noStore = requestCacheControl.contains("no-store");
+        boolean noCache = noStore || requestCacheControl.contains("no-cache")
+                || "no-cache".equalsIgnoreCase(request.getHeaders().getPragma());
+
+        String key = RequestKeys.key(request, cache.policy.keyHeaders());
+        boolean authorized = request.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)
+                && !covers(cache.policy.keyHeaders(), HttpHeaders.AUTHORIZATION);
+        long now = System.nanoTime();
+        CachedResponse cached = noCache ? null : cache.lookup(key, now);
+        if (cached != null && cached.fresh(now)) {
+            ByteBuf body = cached.retainBody();
+            if (body != null) {
+                cache.hits.increment();
+                return writeCached(exchange.getResponse(), cached, body, now, "HIT");
+            }
+        } else if (cached != null && cached.revalidatable(now)) {
+            ByteBuf body = cached.retainBody();
+            if (body != null) {
+                cache.staleHits.increment();
+                revalidate(exchange, chain, cache, key, authorized);
+                return writeCached(exchange.getResponse(), cached, body, now, "STALE");
+            }
+        }
+        cache.misses.increment();
+        if (noStore) {
+            return chain.filter(exchange);
+        }
+        CachedResponse fallback = cached != null && cached.usableOnError(now) ? cached : null;
+        StoringResponse storing = new StoringResponse(exchange.getResponse(), cache, key, authorized, now, fallback);
+        Mono<Void> result = chain.filter(exchange.mutate().response(storing).build());
+        return fallback == null ? result : result.onErrorResume(storing::writeStaleOnError);
+    }
+
+    private static Mono<Void> writeCached(ServerHttpResponse response, CachedResponse cached, ByteBuf body, long now, String xCache) {
+        response.setStatusCode(cached.status);
+        HttpHeaders headers = response.getHeaders();
+        headers.putAll(cached.headers);
+        headers.set(HttpHeaders.AGE, Long.toString(TimeUnit.NANOSECONDS.toSeconds(now - cached.storedAt)));
+        headers.set("X-Cache", xCache);
+        return response.writeWith(Mono.just(wrap(response.bufferFactory(), body)));
+    }
+
+    /**
+     * Фоновое обновление устаревшего ответа: не больше одного на ключ.
+     *
+     * Запрос проходит остаток цепочки (Coalescing, deadline, breaker, bulkhead),
+     * но со своими атрибутами, пустым телом запроса
+     * и ответом без клиента — клиенту уже отдан устаревший ответ.
+     * Новый ответ попадает в кеш через StoringResponse; ошибка оставляет старый.
+     */
+    private static void revalidate(ServerWebExchange exchange, GatewayFilterChain chain, ResponseCache cache, String key,
+                                   boolean authorized) {
+        if (!cache.startRevalidation(key)) {
+            return;
+        }
+        cache.revalidations.increment();
+        ServerHttpRequest request = new ServerHttpRequestDecorator(exchange.getRequest()) {
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return Flux.empty();
+            }
+        };
+        DetachedResponse detached = new DetachedResponse(exchange.getResponse().bufferFactory());
+        StoringResponse storing = new StoringResponse(detached, cache, key, authorized, System.nanoTime(), null);
+        Map<String, Object> attributes = new ConcurrentHashMap<>(exchange.getAttributes());
+        attributes.remove(Deadline.ATTR);
+        ServerWebExchange background = new ServerWebExchangeDecorator(exchange.mutate().request(request).response(storing).build()) {
+            @Override
+            public Map<String, Object> getAttributes() {
+                return attributes;
+            }
+        };
+        chain.filter(background)
+                .doFinally(signal -> cache.finishRevalidation(key))
+                .subscribe(null, error -> log.debug("Background revalidation of {} failed: {}", key, error.toString()));
+    }
+
+    /**
+     * Тело из кеша без копирования — если сервер работает на Netty;
+     * иначе (другой сервер) — копия в heap.
+     */
+    private static DataBuffer wrap(DataBufferFactory factory, ByteBuf body) {
+        if (factory instanceof NettyDataBufferFactory netty) {
+            return netty.wrap(body);
+        }
+        try {
+            return factory.wrap(ByteBufUtil.getBytes(body));
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * Ответ backend'а: копия тела сохраняется в кеш,
+     * клиенту уходит исходный буфер.
+     *
+     * С fallback (устаревший ответ в пределах stale-if-error)
+     * ответ 5xx заменяется им — и при записи тела, и при setComplete
+     * (отказы bulkhead'а и deadline'а приходят без тела).
+     */
+    private static final class StoringResponse extends ServerHttpResponseDecorator {
+
+        private final ResponseCache cache;
+
+        private final String key;
+
+        // Запрос с Authorization, не входящим в ключ (см. freshness).
+        private final boolean authorized;
+
+        private final long requestedAt;
+
+        private final CachedResponse fallback;
+
+        StoringResponse(ServerHttpResponse delegate, ResponseCache cache, String key, boolean authorized,
+                        long requestedAt, CachedResponse fallback) {
+            super(delegate);
+            this.cache = cache;
+            this.key = key;
+            this.authorized = authorized;
+            this.requestedAt = requestedAt;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            HttpStatusCode status = getStatusCode();
+            HttpHeaders headers = getHeaders();
+            if (replaceWithStale(status)) {
+                // Тело ошибки дочитывается, чтобы соединение с backend'ом вернулось в пул.
+                return Flux.from(body)
+                        .doOnNext(DataBufferUtils::release)
+                        .then(Mono.defer(() -> writeStale(null)));
+            }
+            Freshness freshness = freshness(status, headers, cache.policy, authorized);
+            if (freshness == null) {
+                return super.writeWith(body);
+            }
+            return DataBufferUtils.join(body).flatMap(joined -> {
+                store(status, headers, joined, freshness);
+                return super.writeWith(Mono.just(joined));
+            });
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            return replaceWithStale(getStatusCode()) ? writeStale(null) : super.setComplete();
+        }
+
+        /**
+         * Ошибка цепочки (соединение, таймаут, deadline) до начала ответа.
+         */
+        Mono<Void> writeStaleOnError(Throwable error) {
+            return isCommitted() ? Mono.error(error) : writeStale(error);
+        }
+
+        private boolean replaceWithStale(HttpStatusCode status) {
+            return fallback != null && status != null && status.is5xxServerError();
+        }
+
+        private Mono<Void> writeStale(Throwable error) {
+            ByteBuf body = fallback.retainBody();
+            if (body == null) {
+                // Запись успели вытеснить — отдаём то, что есть.
+                return error != null ? Mono.error(error) : super.setComplete();
+            }
+            cache.staleOnError.increment();
+            getHeaders().clear();
+            return writeCached(getDelegate(), fallback, body, System.nanoTime(), "STALE");
+        }
+
+        private void store(HttpStatusCode status, HttpHeaders headers, DataBuffer joined, Freshness freshness) {
+            int length = joined.readableByteCount();
+            ByteBuf stored = PooledByteBufAllocator.DEFAULT.directBuffer(length, length);
+            try (DataBuffer.ByteBufferIterator buffers = joined.readableByteBuffers()) {
+                while (buffers.hasNext()) {
+                    stored.writeBytes(buffers.next());
+                }
+            }
+            HttpHeaders copy = new HttpHeaders();
+            copy.putAll(headers);
+            // Срок считается от момента запроса к backend'у:
+            // ответ не может быть свежее, чем backend его сформировал.
+            cache.store(key, new CachedResponse(
+                    status,
+                    HttpHeaders.readOnlyHttpHeaders(copy),
+                    stored,
+                    weight(key, copy, length),
+                    requestedAt,
+                    freshness
+            ));
+        }
+    }
+
+    /**
+     * Сроки хранения ответа с учётом Cache-Control backend'а.
+     *
+     * @param authorized запрос с Authorization, не входящим в ключ:
+     *                   ответ сохраняется, только если Cache-Control
+     *                   разрешает общий кеш (RFC 9111 §3.5).
+     * @return сроки; null — ответ не кешируется.
+     */
+    static Freshness freshness(HttpStatusCode status, HttpHeaders headers, CachePolicy policy, boolean authorized) {
+        if (status == null || status.value() != HttpStatus.OK.value()) {
+            return null;
+        }
+        long length = headers.getContentLength();
+        if (length < 0 || length > policy.maxEntryBytes() || headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return null;
+        }
+        if (!varyCoveredByKey(headers.getVary(), policy.keyHeaders())) {
+            return null;
+        }
+
+        long ttl = policy.ttl().toNanos();
+        long staleWhileRevalidate = policy.staleWhileRevalidate().toNanos();
+        long staleIfError = policy.staleIfError().toNanos();
+        String cacheControl = lowerCase(headers.getCacheControl());
+        if (authorized && !sharedWithAuthorization(cacheControl)) {
+            return null;
+        }
+        if (cacheControl.isEmpty()) {
+            return new Freshness(ttl, staleWhileRevalidate, staleIfError);
+        }
+        long maxAge = -1;
+        long sharedMaxAge = -1;
+        for (String directive : cacheControl.split(",")) {
+            String name = directive.trim();
+            if (name.equals("no-store") || name.equals("no-cache") || name.equals("private")) {
+                return null;
+            }
+            if (name.startsWith("s-maxage=")) {
+                sharedMaxAge = seconds(name.substring("s-maxage=".length()));
+            } else if (name.startsWith("max-age=")) {
+                maxAge = seconds(name.substring("max-age=".length()));
+            } else if (name.startsWith("stale-while-revalidate=")) {
+                staleWhileRevalidate = Math.min(staleWhileRevalidate,
+                        TimeUnit.SECONDS.toNanos(seconds(name.substring("stale-while-revalidate=".length()))));
+            } else if (name.startsWith("stale-if-error=")) {
+                staleIfError = Math.min(staleIfError,
+                        TimeUnit.SECONDS.toNanos(seconds(name.substring("stale-if-error=".length()))));
+            } else if (name.equals("must-revalidate") || name.equals("proxy-revalidate")) {
+                staleWhileRevalidate = 0;
+                staleIfError = 0;
+            }
+        }
+        // Gateway — общий кеш: s-maxage важнее max-age.
+        long limit = sharedMaxAge >= 0 ? sharedMaxAge : maxAge;
+        if (limit >= 0) {
+            ttl = Math.min(ttl, TimeUnit.SECONDS.toNanos(limit));
+        }
+        return ttl > 0 ? new Freshness(ttl, staleWhileRevalidate, staleIfError) : null;
+    }
+
+    private static boolean varyCoveredByKey(List<String> vary, List<String> keyHeaders) {
+        for (String header : vary) {
+            if (header.equals("*") || !covers(keyHeaders, header)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean covers(List<String> keyHeaders, String header) {
+        return keyHeaders.stream().anyMatch(header::equalsIgnoreCase);
+    }
+
+    // RFC 9111 §3.5: директивы, разрешающие общему кешу хранить ответ на запрос с Authorization.
+    private static boolean sharedWithAuthorization(String cacheControl) {
+        for (String directive : cacheControl.split(",")) {
+            String name = directive.trim();
+            if (name.equals("public") || name.equals("must-revalidate") || name.startsWith("s-maxage=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Некорректное значение — как max-age=0: не кешировать.
+    private static long seconds(String value) {
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String lowerCase(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Тело + оценка ключа и заголовков + накладные расходы узла.
+     */
+    static int weight(String key, HttpHeaders headers, int bodyLength) {
+        long weight = bodyLength + 2L * key.length() + 96;
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            weight += header.getKey().length();
+            for (String value : header.getValue()) {
+                weight += value.length();
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,134 @@
+package oleborn.gateway.cache;
+
+import oleborn.gateway.metrics.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ResponseCaches
+ *
+ * Реестр кешей ответов по маршрутам.
+ *
+ * Устроен так же, как CircuitBreakerMetrics:
+ * политика читается из metadata маршрута,
+ * а кеш пересоздаётся только при изменении политики —
+ * обновление маршрутов не сбрасывает накопленные ответы.
+ * Тела заменённого кеша возвращаются в пул Netty.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/cache.
+ */
+public class ResponseCaches implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseCaches.class);
+
+    private final Map<String, Binding> caches = new ConcurrentHashMap<>();
+
+    // Второй уровень для всех маршрутов; null — кеш только в памяти.
+    private final DiskCacheStore disk;
+
+    public ResponseCaches(DiskCacheStore disk) {
+        this.disk = disk;
+    }
+
+    /**
+     * @return кеш маршрута либо null, если кеш не включён
+     *         или его metadata некорректна.
+     */
+    ResponseCache cache(Route route) {
+        Binding binding = caches.get(route.getId());
+        if (binding != null && binding.route == route) {
+            return binding.cache;
+        }
+        return bind(route);
+    }
+
+    // synchronized: два параллельных bind создали бы два кеша,
+    // и тела одного из них никогда не вернулись бы в пул.
+    private synchronized ResponseCache bind(Route route) {
+        Binding previous = caches.get(route.getId());
+        if (previous != null && previous.route == route) {
+            return previous.cache;
+        }
+        ResponseCache cache = null;
+        try {
+            CachePolicy policy = CachePolicy.from(route.getMetadata());
+            if (policy != null) {
+                cache = previous != null && previous.cache != null && previous.cache.policy.equals(policy)
+                        ? previous.cache
+                        : new ResponseCache(policy, disk, route.getId());
+            }
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid cache metadata on route '{}', cache disabled", route.getId(), e);
+        }
+        caches.put(route.getId(), new Binding(route, cache));
+        if (previous != null && previous.cache != null && previous.cache != cache) {
+            previous.cache.clear();
+        }
+        return cache;
+    }
+
+    @Override
+    public String metricsName() {
+        return "cache";
+    }
+
+    @Override
+    public Map<String, CacheSnapshot> metricsSnapshot() {
+        Map<String, CacheSnapshot> result = new TreeMap<>();
+        caches.forEach((id, binding) -> {
+            ResponseCache cache = binding.cache;
+            if (cache != null) {
+                long hits = cache.hits.sum();
+                long misses = cache.misses.sum();
+                result.put(id, new CacheSnapshot(
+                        hits,
+                        misses,
+                        hits + misses == 0 ? 0.0 : (double) hits / (hits + misses),
+                        cache.staleHits.sum(),
+                        cache.staleOnError.sum(),
+                        cache.revalidations.sum(),
+                        cache.entries(),
+                        cache.bytesUsed(),
+                        cache.policy.maxBytes(),
+                        cache.stores.sum(),
+                        cache.evictions.sum(),
+                        cache.rejections.sum()
+                ));
+            }
+        });
+        return result;
+    }
+
+    private record Binding(Route route, ResponseCache cache) {
+    }
+
+    /**
+     * Состояние кеша маршрута.
+     *
+     * @param hitRatio     hits / (hits + misses), без устаревших ответов.
+     * @param staleHits    устаревший ответ отдан сразу, обновление — в фоне.
+     * @param staleOnError устаревший ответ отдан вместо ошибки backend'а.
+     * @param bytesUsed    занято телами и оценкой заголовков.
+     * @param rejections   новые записи, не допущенные W-TinyLFU.
+     */
+    public record CacheSnapshot(
+            long hits,
+            long misses,
+            double hitRatio,
+            long staleHits,
+            long staleOnError,
+            long revalidations,
+            int entries,
+            long bytesUsed,
+            long maxBytes,
+            long stores,
+            long evictions,
+            long rejections
+    ) {
+    }
+}
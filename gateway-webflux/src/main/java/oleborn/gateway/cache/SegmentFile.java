@@ -0,0 +1,253 @@
+package oleborn.gateway.cache;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * SegmentFile
+ *
+ * Файл дискового кеша фиксированного размера, отображённый в память целиком.
+ * Записи только дописываются в конец и никогда не меняются:
+ * прочитанное по положению из индекса остаётся верным,
+ * пока существует объект сегмента (даже после удаления файла).
+ *
+ * Формат записи:
+ *
+ *   0  int  длина записи целиком (0 — конец данных)
+ *   4  int  CRC32C байт [8, длина)
+ *   8  long хеш ключа
+ *   16 long сохранён (epoch ms)
+ *   24 long свежий до (epoch ms)
+ *   32 long stale-while-revalidate до (epoch ms)
+ *   40 long stale-if-error до (epoch ms)
+ *   48 int  статус
+ *   52 int  длина ключа
+ *   56 int  длина заголовков
+ *   60 int  длина тела
+ *   64 ключ, заголовки, тело
+ *
+ * Время хранится по часам, а не System.nanoTime():
+ * записи читаются и после перезапуска процесса.
+ * CRC проверяется при восстановлении: запись, оборванная
+ * падением процесса, и всё после неё отбрасываются.
+ */
+final class SegmentFile {
+
+    static final int HEADER = 64;
+
+    static final int STORED_AT = 16;
+
+    static final int EXPIRES_AT = 24;
+
+    static final int STALE_UNTIL = 32;
+
+    static final int ERROR_UNTIL = 40;
+
+    private static final String PREFIX = "segment-";
+
+    private static final String SUFFIX = ".dat";
+
+    final int id;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    final MappedByteBuffer buffer;
+
+    final int capacity;
+
+    // Конец данных; меняет только поток записи.
+    int writePosition;
+
+    // Байты записей, на которые указывает индекс.
+    volatile long liveBytes;
+
+    private SegmentFile(int id, Path path, FileChannel channel, int capacity) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    static SegmentFile create(Path directory, int id, int capacity) throws IOException {
+        Path path = directory.resolve(String.format("%s%08x%s", PREFIX, id, SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new SegmentFile(id, path, channel, capacity);
+    }
+
+    static SegmentFile open(Path path, int id) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER || size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Unexpected segment size " + size + ": " + path);
+        }
+        return new SegmentFile(id, path, channel, (int) size);
+    }
+
+    /**
+     * @return номер сегмента либо -1, если файл — не сегмент.
+     */
+    static int parseId(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseUnsignedInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    int remaining() {
+        return capacity - writePosition;
+    }
+
+    /**
+     * Дописать запись. Вызывающий проверил remaining().
+     *
+     * @return смещение записи.
+     */
+    int append(long hash, long[] times, int status, byte[] key, byte[] headers, ByteBuf body) {
+        int offset = writePosition;
+        int bodyLength = body.readableBytes();
+        int length = HEADER + key.length + headers.length + bodyLength;
+        buffer.putLong(offset + 8, hash);
+        buffer.putLong(offset + STORED_AT, times[0]);
+        buffer.putLong(offset + EXPIRES_AT, times[1]);
+        buffer.putLong(offset + STALE_UNTIL, times[2]);
+        buffer.putLong(offset + ERROR_UNTIL, times[3]);
+        buffer.putInt(offset + 48, status);
+        buffer.putInt(offset + 52, key.length);
+        buffer.putInt(offset + 56, headers.length);
+        buffer.putInt(offset + 60, bodyLength);
+        buffer.put(offset + HEADER, key);
+        buffer.put(offset + HEADER + key.length, headers);
+        body.getBytes(body.readerIndex(), buffer.slice(offset + HEADER + key.length + headers.length, bodyLength));
+        seal(offset, length);
+        return offset;
+    }
+
+    /**
+     * Скопировать готовую запись другого сегмента (уплотнение).
+     *
+     * @return смещение записи.
+     */
+    int copy(SegmentFile source, int sourceOffset) {
+        int offset = writePosition;
+        int length = source.length(sourceOffset);
+        buffer.put(offset, source.buffer, sourceOffset, length);
+        writePosition = offset + length;
+        return offset;
+    }
+
+    // Длина и CRC пишутся последними: оборванная запись не пройдёт проверку.
+    private void seal(int offset, int length) {
+        buffer.putInt(offset + 4, crc(offset, length));
+        buffer.putInt(offset, length);
+        writePosition = offset + length;
+    }
+
+    private int crc(int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + 8, length - 8));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Длина корректной записи по смещению (восстановление после перезапуска).
+     *
+     * @return длина либо 0 — дальше данных нет или они повреждены.
+     */
+    int validLength(int offset) {
+        if (offset + HEADER > capacity) {
+            return 0;
+        }
+        int length = buffer.getInt(offset);
+        if (length < HEADER || length > capacity - offset) {
+            return 0;
+        }
+        long parts = (long) HEADER + keyLength(offset) + headersLength(offset) + bodyLength(offset);
+        if (parts != length || buffer.getInt(offset + 4) != crc(offset, length)) {
+            return 0;
+        }
+        return length;
+    }
+
+    int length(int offset) {
+        return buffer.getInt(offset);
+    }
+
+    long hash(int offset) {
+        return buffer.getLong(offset + 8);
+    }
+
+    long time(int offset, int field) {
+        return buffer.getLong(offset + field);
+    }
+
+    int status(int offset) {
+        return buffer.getInt(offset + 48);
+    }
+
+    int keyLength(int offset) {
+        return buffer.getInt(offset + 52);
+    }
+
+    int headersLength(int offset) {
+        return buffer.getInt(offset + 56);
+    }
+
+    int bodyLength(int offset) {
+        return buffer.getInt(offset + 60);
+    }
+
+    boolean keyEquals(int offset, byte[] key) {
+        if (keyLength(offset) != key.length) {
+            return false;
+        }
+        return buffer.slice(offset + HEADER, key.length).equals(ByteBuffer.wrap(key));
+    }
+
+    ByteBuffer headers(int offset) {
+        return buffer.slice(offset + HEADER + keyLength(offset), headersLength(offset));
+    }
+
+    ByteBuffer body(int offset) {
+        return buffer.slice(offset + HEADER + keyLength(offset) + headersLength(offset), bodyLength(offset));
+    }
+
+    /**
+     * Сбросить изменённые страницы на диск.
+     * Без этого данные переживают падение процесса (они в страничном кеше ОС),
+     * но не падение машины.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Закрыть и удалить файл. Отображение остаётся доступным
+     * для читающих, пока на сегмент есть ссылки.
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,36 @@
+package oleborn.gateway.cache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * SharedResponse
+ *
+ * Полностью прочитанный ответ backend'а,
+ * который можно отдать нескольким клиентам.
+ *
+ * Тело хранится одним массивом байт и никогда не изменяется:
+ * каждый клиент получает свою обёртку DataBuffer
+ * над тем же массивом, без копирования.
+ *
+ * @param headers только для чтения.
+ */
+record SharedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+
+    /**
+     * Статус и заголовки — в ответ клиента, без тела.
+     */
+    void applyHeaders(ServerHttpResponse response) {
+        response.setStatusCode(status);
+        response.getHeaders().putAll(headers);
+    }
+
+    Mono<Void> writeBody(ServerHttpResponse response) {
+        if (body.length == 0) {
+            return response.setComplete();
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+}
@@ -0,0 +1,55 @@
+package oleborn.gateway.cache;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * SharedResponseFilter
+ *
+ * Подставляет готовый ответ (SharedResponse) вместо вызова backend'а.
+ *
+ * Стоит раньше всех фильтров вызова backend'а
+ * (UpstreamDeadlineFilter, ConcurrencyLimitFilter, UpstreamLatencyFilter,
+ * NettyRoutingFilter): запрос с готовым ответом не занимает
+ * ни место в лимите backend'а, ни соединение,
+ * и не искажает задержки backend'а.
+ *
+ * Здесь устанавливаются только статус и заголовки;
+ * тело пишет тот, кто положил ответ в атрибут,
+ * после завершения цепочки — так же, как NettyWriteResponseFilter
+ * пишет тело уже после NettyRoutingFilter.
+ */
+public class SharedResponseFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = NettyRoutingFilter.ORDER - 10;
+
+    /**
+     * Готовый ответ для этого запроса.
+     */
+    public static final String SHARED_RESPONSE_ATTR = SharedResponseFilter.class.getName() + ".response";
+
+    /**
+     * Ответ подставлен: осталось записать тело.
+     */
+    public static final String APPLIED_ATTR = SharedResponseFilter.class.getName() + ".applied";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        SharedResponse shared = exchange.getAttribute(SHARED_RESPONSE_ATTR);
+        if (shared == null) {
+            return chain.filter(exchange);
+        }
+        shared.applyHeaders(exchange.getResponse());
+        exchange.getAttributes().put(APPLIED_ATTR, Boolean.TRUE);
+        return Mono.empty();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,30 @@
+package oleborn.gateway.chain;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * FilterChainConfig
+ *
+ * Подключение заранее собранных цепочек фильтров.
+ *
+ * FilteringWebHandler в GatewayAutoConfiguration объявлен
+ * с @ConditionalOnMissingBean, поэтому этот бин заменяет его.
+ *
+ * Отключается свойством gateway.filter-chain.precompiled=false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "gateway.filter-chain.precompiled", matchIfMissing = true)
+public class FilterChainConfig {
+
+    @Bean
+    public FilteringWebHandler filteringWebHandler(List<GlobalFilter> globalFilters, RouteLocator routeLocator) {
+        return new PrecompiledFilteringWebHandler(globalFilters, routeLocator);
+    }
+}
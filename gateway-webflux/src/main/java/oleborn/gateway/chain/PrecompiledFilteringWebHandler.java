@@ -0,0 +1,199 @@
+package oleborn.gateway.chain;
+
+import oleborn.gateway.filter.RouteScopedFilter;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PrecompiledFilteringWebHandler
+ *
+ * Замена стандартного FilteringWebHandler,
+ * которая собирает цепочку фильтров маршрута ЗАРАНЕЕ.
+ *
+ * Стандартная реализация на КАЖДЫЙ запрос:
+ * - копирует список GlobalFilter'ов;
+ * - добавляет к нему фильтры Route (stripPrefix, addRequestHeader, retry);
+ * - сортирует объединённый список по order;
+ * - создаёт новый объект цепочки на каждом шаге.
+ *
+ * Архитектурный смысл:
+ * - порядок фильтров зависит только от Route и набора GlobalFilter'ов,
+ *   а не от запроса;
+ * - значит, его можно вычислить один раз при загрузке маршрутов;
+ * - GlobalFilter, реализующий RouteScopedFilter,
+ *   исключается из цепочек маршрутов, которым он не нужен.
+ *
+ * Ключевая идея:
+ * - на каждый Route строится неизменяемый массив звеньев цепочки;
+ * - звено i знает свой фильтр и ссылку на звено i + 1;
+ * - запрос просто проходит по готовым звеньям.
+ *
+ * Снимок "Route → цепочка" пересобирается после каждого
+ * успешного обновления маршрутов и подменяется целиком.
+ */
+public class PrecompiledFilteringWebHandler extends FilteringWebHandler {
+
+    // Конец цепочки: фильтров больше нет, обработка завершена.
+    private static final GatewayFilterChain END = exchange -> Mono.empty();
+
+    private final List<GlobalFilter> globalFilters;
+
+    private final List<GatewayFilter> orderedGlobalFilters;
+
+    private final RouteLocator routeLocator;
+
+    // Неизменяемый после публикации снимок.
+    // Ключ — сам объект Route (по ссылке): CachingRouteLocator
+    // отдаёт одни и те же экземпляры до следующего обновления,
+    // а identity-поиск не вычисляет Route.hashCode() на каждый запрос.
+    private volatile Map<Route, GatewayFilterChain> chains = Collections.emptyMap();
+
+    public PrecompiledFilteringWebHandler(List<GlobalFilter> globalFilters, RouteLocator routeLocator) {
+        super(globalFilters, false);
+        this.globalFilters = List.copyOf(globalFilters);
+        this.orderedGlobalFilters = adapt(globalFilters);
+        this.routeLocator = routeLocator;
+    }
+
+    /**
+     * Пересборка цепочек после обновления таблицы маршрутов.
+     */
+    @EventListener
+    public void onRoutesRefreshed(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess()) {
+            return;
+        }
+        routeLocator.getRoutes()
+                .collectList()
+                .subscribe(
+                        routes -> {
+                            Map<Route, GatewayFilterChain> next = new IdentityHashMap<>(routes.size() * 2);
+                            for (Route route : routes) {
+                                next.put(route, compile(route));
+                            }
+                            chains = next;
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Precompiled filter chains for " + next.size() + " routes");
+                            }
+                        },
+                        error -> logger.error("Failed to precompile filter chains, keeping previous ones", error)
+                );
+    }
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange) {
+        Route route = exchange.getRequiredAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+
+        GatewayFilterChain chain = chains.get(route);
+
+        // Маршрут, которого нет в снимке (создан вне RouteLocator
+        // или пришёл между обновлением маршрутов и пересборкой),
+        // обрабатывается цепочкой, собранной на месте.
+        if (chain == null) {
+            chain = compile(route);
+        }
+        return chain.filter(exchange);
+    }
+
+    /**
+     * Совместимость с наследниками и отладкой:
+     * объединённый отсортированный список фильтров маршрута.
+     */
+    @Override
+    protected List<GatewayFilter> getAllFilters(Route route) {
+        List<GatewayFilter> combined = new ArrayList<>(orderedGlobalFilters.size() + route.getFilters().size());
+
+        for (int i = 0; i < globalFilters.size(); i++) {
+            GlobalFilter global = globalFilters.get(i);
+            if (global instanceof RouteScopedFilter scoped && !scoped.appliesTo(route)) {
+                continue;
+            }
+            combined.add(orderedGlobalFilters.get(i));
+        }
+        combined.addAll(route.getFilters());
+
+        // Та же сортировка, что и в стандартном FilteringWebHandler:
+        // стабильная, с учётом Ordered и @Order.
+        AnnotationAwareOrderComparator.sort(combined);
+        return combined;
+    }
+
+    /**
+     * Сборка цепочки маршрута: звенья связываются с конца к началу.
+     */
+    private GatewayFilterChain compile(Route route) {
+        List<GatewayFilter> filters = getAllFilters(route);
+        GatewayFilterChain next = END;
+        for (int i = filters.size() - 1; i >= 0; i--) {
+            next = new Link(filters.get(i), next);
+        }
+        return next;
+    }
+
+    /**
+     * Приведение GlobalFilter'ов к GatewayFilter с сохранением order —
+     * повторяет FilteringWebHandler.loadFilters(...).
+     */
+    private static List<GatewayFilter> adapt(List<GlobalFilter> filters) {
+        List<GatewayFilter> adapted = new ArrayList<>(filters.size());
+        for (GlobalFilter filter : filters) {
+            GatewayFilter gatewayFilter = new GlobalFilterAdapter(filter);
+            if (filter instanceof Ordered ordered) {
+                adapted.add(new OrderedGatewayFilter(gatewayFilter, ordered.getOrder()));
+                continue;
+            }
+            Order order = AnnotationUtils.findAnnotation(filter.getClass(), Order.class);
+            adapted.add(order != null ? new OrderedGatewayFilter(gatewayFilter, order.value()) : gatewayFilter);
+        }
+        return adapted;
+    }
+
+    /**
+     * Звено готовой цепочки.
+     *
+     * Неизменяемо и не хранит состояния запроса,
+     * поэтому одно и то же звено безопасно используется всеми запросами.
+     *
+     * Mono.defer сохраняет ленивость стандартной цепочки:
+     * фильтр выполняется при ПОДПИСКЕ, а не при сборке pipeline.
+     * Это важно для Retry, который переподписывается на chain.filter(...).
+     */
+    private record Link(GatewayFilter filter, GatewayFilterChain next) implements GatewayFilterChain {
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange) {
+            return Mono.defer(() -> filter.filter(exchange, next));
+        }
+    }
+
+    /**
+     * Обёртка GlobalFilter → GatewayFilter.
+     */
+    private record GlobalFilterAdapter(GlobalFilter delegate) implements GatewayFilter {
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            return delegate.filter(exchange, chain);
+        }
+    }
+}
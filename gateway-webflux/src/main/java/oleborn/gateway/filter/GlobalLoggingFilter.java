@@ -1,8 +1,12 @@
 package oleborn.gateway.filter;
 
+import oleborn.gateway.accesslog.AccessLog;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
@@ -57,6 +61,21 @@ public class GlobalLoggingFilter implements GlobalFilter
         //, Ordered
 {
 
+    // Асинхронный access-log.
+    //
+    // Фильтр НЕ пишет лог сам: System.out.println синхронизирован
+    // и делает системный вызов на каждую строку — под нагрузкой
+    // event-loop простаивал бы в ожидании stdout.
+    //
+    // Вместо этого фильтр кладёт запись фиксированного размера
+    // в кольцевой буфер, а отдельный поток пишет записи
+    // в файл пачками.
+    private final AccessLog accessLog;
+
+    public GlobalLoggingFilter(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
     /**
      * Метод filter — основная точка входа GlobalFilter.
      *
@@ -87,27 +106,17 @@ public class GlobalLoggingFilter implements GlobalFilter
             GatewayFilterChain chain
     ) {
 
-        // Сохранение текущего времени в attributes exchange.
+        // Момент входа запроса в Gateway.
         //
-        // exchange.getAttributes() — это Map,
-        // используемая для передачи данных
-        // между фильтрами В РАМКАХ ОДНОГО ЗАПРОСА.
+        // System.nanoTime() — монотонное время:
+        // в отличие от currentTimeMillis(), оно не скачет
+        // при коррекции системных часов и подходит
+        // для измерения длительности.
         //
-        // Здесь сохраняется момент входа запроса
-        // для последующего вычисления времени обработки.
-        exchange.getAttributes().put(
-                "startTime",
-                System.currentTimeMillis()
-        );
-
-        // Логирование факта поступления запроса в Gateway.
-        //
-        // exchange.getRequest() возвращает ServerHttpRequest,
-        // представляющий входящий HTTP-запрос.
-        //
-        // getURI() возвращает полный URI запроса,
-        // что удобно для диагностики и обучения.
-        System.out.println("[GLOBAL] incoming " + exchange.getRequest().getURI());
+        // Значение хранится в локальной переменной,
+        // а не в attributes exchange: не нужен ни boxing в Long,
+        // ни запись в Map.
+        long start = System.nanoTime();
 
         // Вызов chain.filter(exchange) передаёт управление
         // следующему фильтру в цепочке Gateway.
@@ -118,48 +127,35 @@ public class GlobalLoggingFilter implements GlobalFilter
         // - backend вызван не будет.
         return chain.filter(exchange)
 
-                // Метод then(...) регистрирует действие,
-                // которое будет выполнено ПОСЛЕ завершения
-                // downstream-обработки.
+                // doFinally(...) — это post-фаза Gateway pipeline.
                 //
-                // Это post-фаза Gateway pipeline.
-                .then(
-                        // Mono.fromRunnable(...) создаёт реактивный шаг,
-                        // который будет выполнен без блокировок
-                        // после завершения обработки запроса.
-                        Mono.fromRunnable(
-                                () -> {
-
-                                    // Извлечение времени начала обработки
-                                    // из attributes exchange.
-                                    //
-                                    // Тип Long используется,
-                                    // так как ранее было сохранено
-                                    // значение System.currentTimeMillis().
-                                    Long start = exchange.getAttribute(
-                                            "startTime"
-                                    );
+                // В отличие от then(...), выполняется при ЛЮБОМ
+                // завершении: успешном, с ошибкой или при отмене
+                // (клиент закрыл соединение). Для access-log
+                // это важно: неуспешные запросы тоже должны попасть в лог.
+                .doFinally(signal -> {
 
-                                    // Вычисление длительности обработки запроса.
-                                    //
-                                    // Это разница между текущим временем
-                                    // и моментом входа запроса в Gateway.
-                                    long duration =
-                                            System.currentTimeMillis() - start;
+                    // Route, выбранный для запроса
+                    // (может отсутствовать, если цепочка прервана раньше).
+                    Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
 
-                                    // Логирование факта отправки ответа клиенту.
-                                    System.out.println("[GLOBAL] response sent");
+                    // Статус ответа; при ошибке он может быть
+                    // ещё не установлен — тогда в лог попадёт "-".
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
 
-                                    // Логирование времени обработки запроса.
-                                    //
-                                    // Это значение включает:
-                                    // - время маршрутизации;
-                                    // - время выполнения backend;
-                                    // - время работы фильтров.
-                                    System.out.println("[GLOBAL] time = " + duration + " ms");
-                                }
-                        )
-                );
+                    // Запись в кольцевой буфер.
+                    //
+                    // Время обработки включает:
+                    // - время маршрутизации;
+                    // - время выполнения backend;
+                    // - время работы фильтров.
+                    accessLog.append(
+                            exchange.getRequest(),
+                            route != null ? route.getId() : null,
+                            status != null ? status.value() : 0,
+                            System.nanoTime() - start
+                    );
+                });
     }
 
 //
@@ -0,0 +1,27 @@
+package oleborn.gateway.filter;
+
+import org.springframework.cloud.gateway.route.Route;
+
+/**
+ * RouteScopedFilter
+ *
+ * Контракт для GlobalFilter'ов, которые нужны НЕ всем маршрутам.
+ *
+ * GlobalFilter по определению применяется ко ВСЕМ маршрутам.
+ * Но многие инфраструктурные фильтры включаются через Route metadata
+ * (в стиле Step7MetadataAwareFilter) и для остальных маршрутов
+ * только передают управление дальше.
+ *
+ * Реализуя этот интерфейс, фильтр сообщает,
+ * нужен ли он конкретному маршруту.
+ * Решение принимается ОДИН раз при сборке цепочки фильтров маршрута,
+ * а не на каждый запрос.
+ */
+public interface RouteScopedFilter {
+
+    /**
+     * @param route маршрут, для которого собирается цепочка фильтров.
+     * @return true, если фильтр должен участвовать в цепочке этого маршрута.
+     */
+    boolean appliesTo(Route route);
+}
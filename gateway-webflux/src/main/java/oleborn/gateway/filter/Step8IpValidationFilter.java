@@ -1,17 +1,20 @@
 package oleborn.gateway.filter;
 
+import oleborn.gateway.ip.ClientIpResolver;
+import oleborn.gateway.ip.IpAccessList;
+import oleborn.gateway.ip.IpAddress;
+import oleborn.gateway.ip.IpRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.annotation.Order;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.util.Set;
-
 /**
  * Step8IpValidationFilter
  *
@@ -50,29 +53,41 @@ import java.util.Set;
 // - ДО backend-вызова.
 public class Step8IpValidationFilter implements GlobalFilter {
 
-    // Статический набор разрешённых IP-адресов.
+    private static final Logger log = LoggerFactory.getLogger(Step8IpValidationFilter.class);
+
+    // Список доступа allow/deny по подсетям.
     //
-    // В учебном примере используется фиксированный allowlist.
-    // В реальных системах:
-    // - список может приходить из конфигурации;
-    // - может храниться в Redis или базе;
-    // - может быть сегментирован по Route metadata.
-    private static final Set<String> ALLOWED_IPS =
-            Set.of(
-                    // Loopback-адрес, используемый для локального тестирования.
-                    "127.0.0.1",
-                    // Пример внутреннего IP-адреса.
-                    "192.168.1.10",
-                    // Адрес из postman
-                    "0:0:0:0:0:0:0:1"
-            );
+    // Правила приходят из конфигурации (gateway.ip-access)
+    // и/или файла и компилируются в префиксное дерево:
+    // - "10.0.0.0/8 allow" + "10.66.0.0/16 deny" — решает
+    //   самая специфичная подсеть;
+    // - "::1", "0:0:0:0:0:0:0:1" и "::ffff:127.0.0.1" / "127.0.0.1"
+    //   сравниваются в числовой форме;
+    // - список перезагружается без рестарта и без блокировок.
+    private final IpAccessList ipAccessList;
+
+    // Черновик адреса клиента на каждый поток event-loop.
+    //
+    // filter(...) использует его синхронно, до вызова chain.filter(...),
+    // поэтому один экземпляр на поток безопасен
+    // и не требует выделения памяти на запрос.
+    private static final ThreadLocal<IpAddress> CLIENT_IP =
+            ThreadLocal.withInitial(IpAddress::new);
+
+    // Компонент определения IP клиента за цепочкой proxy.
+    private final ClientIpResolver clientIpResolver;
+
+    public Step8IpValidationFilter(ClientIpResolver clientIpResolver, IpAccessList ipAccessList) {
+        this.clientIpResolver = clientIpResolver;
+        this.ipAccessList = ipAccessList;
+    }
 
     /**
      * Метод filter — основная точка входа GlobalFilter.
      *
      * В данном методе выполняется:
      * - определение IP клиента;
-     * - проверка IP по allowlist;
+     * - проверка IP по списку доступа;
      * - принятие решения о продолжении pipeline
      *   или его остановке (short-circuit).
      *
@@ -96,20 +111,29 @@ public class Step8IpValidationFilter implements GlobalFilter {
 
         // Определение IP-адреса клиента.
         //
-        // Вынесено в отдельный метод,
-        // так как логика определения IP
-        // не является тривиальной.
-        String clientIp = resolveClientIp(exchange);
-
-        // Проверка, содержится ли IP клиента
-        // в списке разрешённых адресов.
-        if (!ALLOWED_IPS.contains(clientIp)) {
+        // Вынесено в ClientIpResolver, так как логика определения IP
+        // не является тривиальной: цепочка X-Forwarded-For
+        // разбирается справа налево с учётом доверенных proxy.
+        IpAddress clientIp = CLIENT_IP.get();
+        boolean resolved = clientIpResolver.resolve(exchange.getRequest(), clientIp);
+
+        // Проверка IP клиента по списку доступа:
+        // правило самой специфичной подсети
+        // либо default-action, если подсеть не найдена.
+        //
+        // Адрес, который не удалось определить
+        // (мусор в X-Forwarded-For, нет RemoteAddress),
+        // считается неразрешённым.
+        if (!resolved || ipAccessList.decide(clientIp) == IpRule.DENY) {
 
             // Логирование факта блокировки запроса.
             //
-            // Это учебный лог,
-            // позволяющий явно увидеть причину отказа.
-            System.out.println("[IP] blocked request from " + clientIp);
+            // Только на уровне DEBUG и под проверкой уровня:
+            // иначе каждый запрос превращал бы адрес в String
+            // и писал в stdout под блокировкой прямо на event-loop.
+            if (log.isDebugEnabled()) {
+                log.debug("[IP] blocked request from {}", resolved ? clientIp.toString() : "unknown");
+            }
 
             // Установка HTTP-статуса FORBIDDEN (403).
             //
@@ -128,8 +152,10 @@ public class Step8IpValidationFilter implements GlobalFilter {
         }
 
         // Логирование факта,
-        // что запрос прошёл IP-валидацию.
-        System.out.println("[IP] allowed request from " + clientIp);
+        // что запрос прошёл IP-валидацию (DEBUG, как и выше).
+        if (log.isDebugEnabled()) {
+            log.debug("[IP] allowed request from {}", clientIp.toString());
+        }
 
         // Продолжение Gateway pipeline.
         //
@@ -137,70 +163,4 @@ public class Step8IpValidationFilter implements GlobalFilter {
         // или backend-вызову.
         return chain.filter(exchange);
     }
-
-    /**
-     * Определение IP-адреса клиента.
-     *
-     * Метод реализует ПРАВИЛЬНЫЙ порядок
-     * определения реального IP клиента
-     * в условиях работы за proxy / load balancer.
-     *
-     * @param exchange ServerWebExchange —
-     *                 объект запроса,
-     *                 содержащий HTTP-заголовки
-     *                 и сетевую информацию.
-     * @return строковое представление IP-адреса клиента
-     *         либо "unknown", если IP определить невозможно.
-     */
-    private String resolveClientIp(ServerWebExchange exchange) {
-
-        // Получение HTTP-заголовков входящего запроса.
-        HttpHeaders headers = exchange.getRequest().getHeaders();
-
-        // Попытка получить заголовок X-Forwarded-For.
-        //
-        // Это стандартный заголовок,
-        // добавляемый proxy и load balancer'ами.
-        String xff = headers.getFirst("X-Forwarded-For");
-
-        // Проверка, что заголовок присутствует и не пустой.
-        if (xff != null && !xff.isBlank()) {
-
-            // X-Forwarded-For может содержать цепочку IP:
-            // client, proxy1, proxy2
-            //
-            // По стандарту первый IP — это исходный клиент.
-            return xff.split(",")[0].trim();
-        }
-
-        // Попытка получить заголовок X-Real-IP.
-        //
-        // Это неформальный, но широко используемый заголовок,
-        // часто добавляемый nginx.
-        String realIp = headers.getFirst("X-Real-IP");
-
-        // Проверка наличия и непустоты X-Real-IP.
-        if (realIp != null && !realIp.isBlank()) {
-            return realIp;
-        }
-
-        // Использование RemoteAddress как последнего источника.
-        //
-        // ВАЖНО:
-        // - это IP последнего сетевого хопа;
-        // - чаще всего это IP proxy или ingress,
-        //   а НЕ реального клиента.
-        if (exchange.getRequest().getRemoteAddress() != null) {
-
-            // Извлечение IP-адреса из RemoteAddress.
-            return exchange.getRequest()
-                    .getRemoteAddress()
-                    .getAddress()
-                    .getHostAddress();
-        }
-
-        // Фолбэк-значение, если IP определить невозможно.
-        return "unknown";
-    }
 }
-
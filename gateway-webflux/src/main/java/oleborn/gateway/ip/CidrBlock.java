@@ -0,0 +1,84 @@
+package oleborn.gateway.ip;
+
+/**
+ * CidrBlock
+ *
+ * Подсеть в CIDR-нотации ("10.0.0.0/8", "2001:db8::/32")
+ * в том же 128-битном пространстве, что и IpAddress.
+ *
+ * IPv4-подсети хранятся как IPv4-mapped:
+ * "/8" для IPv4 превращается в "/104" (96 + 8).
+ * Адрес без "/n" считается подсетью из одного адреса.
+ *
+ * @param hi     старшие 64 бита адреса сети.
+ * @param lo     младшие 64 бита адреса сети.
+ * @param prefix длина префикса в 128-битном пространстве (0..128).
+ */
+public record CidrBlock(long hi, long lo, int prefix) {
+
+    public CidrBlock {
+        if (prefix < 0 || prefix > 128) {
+            throw new IllegalArgumentException("Prefix length out of range: " + prefix);
+        }
+        // Нормализация: биты за пределами префикса обнуляются,
+        // чтобы "10.1.2.3/8" и "10.0.0.0/8" были одной подсетью.
+        hi &= maskHi(prefix);
+        lo &= maskLo(prefix);
+    }
+
+    /**
+     * Разбор "адрес[/длина]".
+     *
+     * @throws IllegalArgumentException при некорректной записи.
+     */
+    public static CidrBlock parse(String text) {
+        String value = text.trim();
+        int slash = value.indexOf('/');
+
+        IpAddress address = new IpAddress();
+        int end = slash < 0 ? value.length() : slash;
+        if (!address.parse(value, 0, end)) {
+            throw new IllegalArgumentException("Not a CIDR block: " + text);
+        }
+
+        int maxBits = address.isIpv4() ? 32 : 128;
+        int bits;
+        try {
+            bits = slash < 0 ? maxBits : Integer.parseInt(value.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a CIDR block: " + text, e);
+        }
+        if (bits < 0 || bits > maxBits) {
+            throw new IllegalArgumentException("Prefix length out of range: " + text);
+        }
+
+        return new CidrBlock(address.hi(), address.lo(), address.isIpv4() ? 96 + bits : bits);
+    }
+
+    public boolean contains(IpAddress address) {
+        return (address.hi() & maskHi(prefix)) == hi
+                && (address.lo() & maskLo(prefix)) == lo;
+    }
+
+    static long maskHi(int prefix) {
+        if (prefix >= 64) {
+            return -1L;
+        }
+        return prefix == 0 ? 0 : -1L << (64 - prefix);
+    }
+
+    static long maskLo(int prefix) {
+        if (prefix <= 64) {
+            return 0;
+        }
+        return prefix == 128 ? -1L : -1L << (128 - prefix);
+    }
+
+    @Override
+    public String toString() {
+        IpAddress network = new IpAddress().set(hi, lo);
+        return network.isIpv4() && prefix >= 96
+                ? network + "/" + (prefix - 96)
+                : network + "/" + prefix;
+    }
+}
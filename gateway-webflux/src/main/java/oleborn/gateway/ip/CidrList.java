@@ -0,0 +1,46 @@
+package oleborn.gateway.ip;
+
+import java.util.Collection;
+
+/**
+ * CidrList
+ *
+ * Небольшой список подсетей с линейной проверкой.
+ *
+ * Подходит для коротких списков, заданных в конфигурации
+ * (доверенные proxy, несколько адресов allowlist):
+ * перебор десятка масок дешевле любой структуры поиска.
+ */
+public final class CidrList implements IpMatcher {
+
+    private final CidrBlock[] blocks;
+
+    private CidrList(CidrBlock[] blocks) {
+        this.blocks = blocks;
+    }
+
+    /**
+     * @param cidrs записи вида "10.0.0.0/8", "::1", "192.168.1.10".
+     */
+    public static CidrList of(Collection<String> cidrs) {
+        return new CidrList(cidrs.stream().map(CidrBlock::parse).toArray(CidrBlock[]::new));
+    }
+
+    public static CidrList of(String... cidrs) {
+        return of(java.util.List.of(cidrs));
+    }
+
+    public boolean isEmpty() {
+        return blocks.length == 0;
+    }
+
+    @Override
+    public boolean matches(IpAddress address) {
+        for (CidrBlock block : blocks) {
+            if (block.contains(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,39 @@
+package oleborn.gateway.ip;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ClientIpProperties
+ *
+ * Настройки определения IP клиента (блок gateway.client-ip).
+ */
+@ConfigurationProperties(prefix = "gateway.client-ip")
+public class ClientIpProperties {
+
+    // Подсети proxy / load balancer'ов, которым разрешено
+    // передавать X-Forwarded-For и X-Real-IP.
+    private List<String> trustedProxies = new ArrayList<>();
+
+    // Число proxy перед Gateway.
+    // Если больше 0 — используется вместо trusted-proxies.
+    private int trustedHops;
+
+    public List<String> getTrustedProxies() {
+        return trustedProxies;
+    }
+
+    public void setTrustedProxies(List<String> trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    public int getTrustedHops() {
+        return trustedHops;
+    }
+
+    public void setTrustedHops(int trustedHops) {
+        this.trustedHops = trustedHops;
+    }
+}
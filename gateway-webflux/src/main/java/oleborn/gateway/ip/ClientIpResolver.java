@@ -0,0 +1,176 @@
+package oleborn.gateway.ip;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * ClientIpResolver
+ *
+ * Определение реального IP клиента за цепочкой proxy
+ * без создания строк и массивов.
+ *
+ * Почему нельзя брать первый адрес X-Forwarded-For:
+ * - клиент сам может прислать "X-Forwarded-For: 1.2.3.4";
+ * - каждый proxy ДОПИСЫВАЕТ адрес справа;
+ * - значит, достоверна только ПРАВАЯ часть цепочки,
+ *   добавленная нашими proxy.
+ *
+ * Поддерживаются два режима доверия:
+ *
+ * 1) trusted-proxies (список CIDR):
+ *    - заголовки учитываются, только если само соединение
+ *      пришло от доверенного proxy;
+ *    - цепочка просматривается справа налево;
+ *    - клиент — первый адрес, НЕ входящий в доверенные.
+ *
+ * 2) trusted-hops (число proxy перед Gateway):
+ *    - клиент — N-й адрес справа в X-Forwarded-For;
+ *    - если адресов меньше — самый левый.
+ *
+ * Если не настроено ни то, ни другое,
+ * заголовки игнорируются и используется RemoteAddress.
+ */
+public final class ClientIpResolver {
+
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+    private static final String X_REAL_IP = "X-Real-IP";
+
+    private final IpMatcher trustedProxies;
+
+    private final int trustedHops;
+
+    public ClientIpResolver(IpMatcher trustedProxies, int trustedHops) {
+        this.trustedProxies = trustedProxies;
+        this.trustedHops = trustedHops;
+    }
+
+    /**
+     * Определение адреса клиента.
+     *
+     * @param request входящий запрос.
+     * @param out     черновик, в который записывается результат.
+     * @return true, если адрес определён;
+     *         false, если адреса нет или цепочка содержит мусор
+     *         (такой запрос следует считать недоверенным).
+     */
+    public boolean resolve(ServerHttpRequest request, IpAddress out) {
+
+        InetSocketAddress remote = request.getRemoteAddress();
+        boolean hasRemote = remote != null && remote.getAddress() != null;
+
+        if (trustedHops > 0) {
+            List<String> xff = request.getHeaders().get(X_FORWARDED_FOR);
+            if (xff != null && !xff.isEmpty()) {
+                return byHopCount(xff, out);
+            }
+            if (realIp(request.getHeaders(), out)) {
+                return true;
+            }
+            if (!hasRemote) {
+                return false;
+            }
+            out.set(remote.getAddress());
+            return true;
+        }
+
+        if (!hasRemote) {
+            return false;
+        }
+        out.set(remote.getAddress());
+
+        // Соединение не от нашего proxy — заголовкам верить нельзя.
+        if (!trustedProxies.matches(out)) {
+            return true;
+        }
+
+        List<String> xff = request.getHeaders().get(X_FORWARDED_FOR);
+        if (xff != null && !xff.isEmpty()) {
+            return byTrustedProxies(xff, out);
+        }
+        if (realIp(request.getHeaders(), out)) {
+            return true;
+        }
+
+        // Заголовков нет — клиентом считается сам proxy.
+        out.set(remote.getAddress());
+        return true;
+    }
+
+    /**
+     * Справа налево: первый адрес вне доверенных proxy.
+     *
+     * Несколько строк заголовка X-Forwarded-For
+     * рассматриваются как одна цепочка в порядке следования.
+     */
+    private boolean byTrustedProxies(List<String> values, IpAddress out) {
+        boolean any = false;
+        for (int v = values.size() - 1; v >= 0; v--) {
+            String header = values.get(v);
+            int end = header.length();
+            while (end >= 0) {
+                int comma = header.lastIndexOf(',', end - 1);
+                int start = comma + 1;
+                if (!isBlank(header, start, end)) {
+                    if (!out.parse(header, start, end)) {
+                        return false;
+                    }
+                    any = true;
+                    if (!trustedProxies.matches(out)) {
+                        return true;
+                    }
+                }
+                end = comma;
+            }
+        }
+        // Все адреса цепочки — доверенные proxy:
+        // в out остался самый левый из них.
+        return any;
+    }
+
+    /**
+     * N-й адрес справа (N = trusted-hops), либо самый левый.
+     */
+    private boolean byHopCount(List<String> values, IpAddress out) {
+        int remaining = trustedHops;
+        String lastHeader = null;
+        int lastStart = 0;
+        int lastEnd = 0;
+
+        for (int v = values.size() - 1; v >= 0; v--) {
+            String header = values.get(v);
+            int end = header.length();
+            while (end >= 0) {
+                int comma = header.lastIndexOf(',', end - 1);
+                int start = comma + 1;
+                if (!isBlank(header, start, end)) {
+                    if (--remaining == 0) {
+                        return out.parse(header, start, end);
+                    }
+                    lastHeader = header;
+                    lastStart = start;
+                    lastEnd = end;
+                }
+                end = comma;
+            }
+        }
+        return lastHeader != null && out.parse(lastHeader, lastStart, lastEnd);
+    }
+
+    private static boolean realIp(HttpHeaders headers, IpAddress out) {
+        String realIp = headers.getFirst(X_REAL_IP);
+        return realIp != null && !realIp.isBlank() && out.parse(realIp, 0, realIp.length());
+    }
+
+    private static boolean isBlank(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
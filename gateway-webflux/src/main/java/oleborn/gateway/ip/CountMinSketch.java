@@ -0,0 +1,92 @@
+package oleborn.gateway.ip;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * CountMinSketch
+ *
+ * Приблизительное число запросов с каждого IP в памяти фиксированного размера.
+ *
+ * Устройство:
+ * - 4 строки по width счётчиков int;
+ * - у адреса по одному счётчику в каждой строке (свой хеш на строку),
+ *   оценка — минимум из них: коллизии только завышают счётчик,
+ *   и минимум отбрасывает большую часть завышения;
+ * - ошибка оценки — не больше ~e / width от общего числа запросов
+ *   (с вероятностью 1 - e^-4).
+ *
+ * Миллион поддельных адресов не увеличивает память ни на байт —
+ * в отличие от карты "IP → счётчик".
+ *
+ * Потоки event loop увеличивают счётчики атомарно без блокировок.
+ * halve() не атомарен относительно увеличений: увеличение,
+ * пришедшееся на деление, может потеряться — для оценки это несущественно.
+ */
+final class CountMinSketch {
+
+    private static final int DEPTH = 4;
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private static final VarHandle COUNTER = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // Строки подряд: строка i — [i * width, (i + 1) * width).
+    private final int[] table;
+
+    private final int width;
+
+    private final int mask;
+
+    CountMinSketch(int width) {
+        this.width = Integer.highestOneBit(Math.clamp(width, 1024, 1 << 24) - 1) << 1;
+        this.mask = this.width - 1;
+        this.table = new int[DEPTH * this.width];
+    }
+
+    /**
+     * Учесть запрос с адреса.
+     *
+     * @return оценка числа запросов с адреса, включая этот.
+     */
+    int increment(IpAddress address) {
+        long hash = hash(address);
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = index(hash, i);
+            int value = (int) COUNTER.getAndAdd(table, index, 1) + 1;
+            // Насыщение вместо переполнения.
+            if (value < 0) {
+                COUNTER.setOpaque(table, index, Integer.MAX_VALUE);
+                value = Integer.MAX_VALUE;
+            }
+            estimate = Math.min(estimate, value);
+        }
+        return estimate;
+    }
+
+    /**
+     * Разделить все счётчики пополам: старые запросы "забываются".
+     */
+    void halve() {
+        for (int i = 0; i < table.length; i++) {
+            COUNTER.setOpaque(table, i, (int) COUNTER.getOpaque(table, i) >>> 1);
+        }
+    }
+
+    private int index(long hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 32;
+        return row * width + ((int) h & mask);
+    }
+
+    // SplitMix64 обоих половин адреса.
+    private static long hash(IpAddress address) {
+        long h = address.hi() * 0x9E3779B97F4A7C15L + address.lo();
+        h = (h ^ h >>> 30) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ h >>> 27) * 0x94D049BB133111EBL;
+        return h ^ h >>> 31;
+    }
+}
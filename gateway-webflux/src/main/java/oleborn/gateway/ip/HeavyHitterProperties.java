@@ -0,0 +1,119 @@
+package oleborn.gateway.ip;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * HeavyHitterProperties
+ *
+ * Настройки поиска самых активных IP клиентов (блок gateway.heavy-hitters).
+ */
+@ConfigurationProperties(prefix = "gateway.heavy-hitters")
+public class HeavyHitterProperties {
+
+    // Считать запросы по IP клиента.
+    private boolean enabled = true;
+
+    // Сколько самых активных адресов отслеживается точно (Space-Saving).
+    private int topK = 64;
+
+    // Счётчиков в строке Count-Min Sketch (округляется до степени двойки).
+    // Память — 4 строки × width × 4 байта: 65536 — 1 MB.
+    private int sketchWidth = 65536;
+
+    // Раз в interval все счётчики делятся пополам:
+    // оценка отражает последние ~interval, а не всё время работы.
+    private Duration interval = Duration.ofSeconds(10);
+
+    // Временный запрет самых активных адресов.
+    private AutoDeny autoDeny = new AutoDeny();
+
+    public static class AutoDeny {
+
+        // Запрещать адреса, чья оценка превысила threshold.
+        private boolean enabled = false;
+
+        // Порог оценки: при постоянном темпе r запросов в секунду
+        // оценка колеблется между r × interval и 2 × r × interval.
+        private long threshold = 10_000;
+
+        // Срок запрета; по истечении адрес снова проверяется по оценке.
+        private Duration duration = Duration.ofMinutes(5);
+
+        // Наибольшее число запрещённых адресов одновременно.
+        private int maxEntries = 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(long threshold) {
+            this.threshold = threshold;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        public void setDuration(Duration duration) {
+            this.duration = duration;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public void setTopK(int topK) {
+        this.topK = topK;
+    }
+
+    public int getSketchWidth() {
+        return sketchWidth;
+    }
+
+    public void setSketchWidth(int sketchWidth) {
+        this.sketchWidth = sketchWidth;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public AutoDeny getAutoDeny() {
+        return autoDeny;
+    }
+
+    public void setAutoDeny(AutoDeny autoDeny) {
+        this.autoDeny = autoDeny;
+    }
+}
@@ -0,0 +1,314 @@
+package oleborn.gateway.ip;
+
+import oleborn.gateway.metrics.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HeavyHitterTracker
+ *
+ * Самые активные IP клиентов в реальном времени при фиксированной памяти.
+ *
+ * Проблема:
+ * - Step8IpValidationFilter знает только allow/deny по подсетям;
+ * - карта "IP → счётчик" под потоком с поддельными адресами
+ *   растёт без ограничений.
+ *
+ * Устройство:
+ * - каждый запрос увеличивает счётчики адреса в CountMinSketch
+ *   и получает оценку его числа запросов;
+ * - top-K адресов хранится в таблице Space-Saving из K ячеек:
+ *   адрес попадает в неё, только если его оценка выше наименьшей в таблице,
+ *   и вытесняет этот наименьший; error — счёт вытесненного,
+ *   то есть сколько из count могло достаться адресу "по наследству";
+ * - раз в interval все счётчики делятся пополам —
+ *   таблица показывает активных сейчас, а не за всё время.
+ *
+ * Горячий путь без блокировок:
+ * - адрес не в таблице и с оценкой не выше её минимума (почти все запросы) —
+ *   только атомарные увеличения sketch'а и чтение карты;
+ * - адрес в таблице — запись его новой оценки;
+ * - допуск в таблицу — под tryLock: занятая блокировка —
+ *   допуск пропускается (следующий запрос адреса его повторит).
+ *
+ * Временный запрет (auto-deny): адрес таблицы, чья оценка достигла threshold,
+ * получает 403 на duration. Запрещённых не больше max-entries.
+ *
+ * Память: sketch (4 × width × 4 байта) + K ячеек + max-entries запретов,
+ * независимо от числа адресов.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/heavy-hitters.
+ */
+public class HeavyHitterTracker implements MetricsSource, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(HeavyHitterTracker.class);
+
+    private final CountMinSketch sketch;
+
+    private final int capacity;
+
+    private final Duration interval;
+
+    private final boolean autoDeny;
+
+    private final long denyThreshold;
+
+    private final long denyNanos;
+
+    private final int maxDenied;
+
+    // Таблица Space-Saving: адрес → ячейка. Ключи — копии адресов,
+    // поиск допускает черновик IpAddress потока.
+    private final Map<IpAddress, Counter> counters = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Наименьший count таблицы, если она заполнена; иначе 0.
+    // Читается без блокировки: отсекает почти все запросы.
+    private volatile long floor;
+
+    // Запрещённые адреса → до какого момента (System.nanoTime()).
+    private final Map<IpAddress, Long> denied = new ConcurrentHashMap<>();
+
+    private final LongAdder observed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gateway-heavy-hitters");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public HeavyHitterTracker(HeavyHitterProperties properties) {
+        this.sketch = new CountMinSketch(properties.getSketchWidth());
+        this.capacity = Math.max(1, properties.getTopK());
+        this.interval = properties.getInterval();
+        HeavyHitterProperties.AutoDeny deny = properties.getAutoDeny();
+        this.autoDeny = deny.isEnabled();
+        this.denyThreshold = deny.getThreshold();
+        this.denyNanos = deny.getDuration().toNanos();
+        this.maxDenied = deny.getMaxEntries();
+        long period = interval.toMillis();
+        scheduler.scheduleAtFixedRate(this::decay, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ячейка таблицы. count растёт без блокировки,
+     * остальное меняется под блокировкой трекера.
+     */
+    private static final class Counter {
+
+        final IpAddress address;
+
+        volatile long count;
+
+        long error;
+
+        Counter(IpAddress address, long count, long error) {
+            this.address = address;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Учесть запрос с адреса.
+     *
+     * @param address адрес клиента; черновик потока допустим.
+     */
+    void observe(IpAddress address) {
+        observed.increment();
+        long estimate = sketch.increment(address);
+        Counter counter = counters.get(address);
+        if (counter != null) {
+            // Адрес уже в таблице: оценка только растёт, гонка записей
+            // теряет не больше одного запроса.
+            if (estimate > counter.count) {
+                counter.count = estimate;
+            }
+        } else {
+            if (estimate <= floor || !lock.tryLock()) {
+                return;
+            }
+            try {
+                counter = counters.get(address);
+                if (counter == null) {
+                    counter = admit(address, estimate);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (autoDeny && counter != null && estimate >= denyThreshold) {
+            deny(counter.address);
+        }
+    }
+
+    /**
+     * @return true, если адрес временно запрещён.
+     */
+    boolean denied(IpAddress address, long now) {
+        if (denied.isEmpty()) {
+            return false;
+        }
+        Long until = denied.get(address);
+        if (until == null) {
+            return false;
+        }
+        if (now - until >= 0) {
+            denied.remove(address, until);
+            return false;
+        }
+        rejected.increment();
+        return true;
+    }
+
+    // Под блокировкой.
+    private Counter admit(IpAddress address, long estimate) {
+        if (counters.size() < capacity) {
+            Counter counter = new Counter(address.copy(), estimate, 0);
+            counters.put(counter.address, counter);
+            if (counters.size() == capacity) {
+                floor = minCount();
+            }
+            return counter;
+        }
+        Counter victim = null;
+        for (Counter candidate : counters.values()) {
+            if (victim == null || candidate.count < victim.count) {
+                victim = candidate;
+            }
+        }
+        if (estimate <= victim.count) {
+            // Счета адресов таблицы росли без блокировки: порог устарел.
+            floor = victim.count;
+            return null;
+        }
+        counters.remove(victim.address);
+        Counter counter = new Counter(address.copy(), estimate, victim.count);
+        counters.put(counter.address, counter);
+        floor = minCount();
+        return counter;
+    }
+
+    private long minCount() {
+        if (counters.size() < capacity) {
+            return 0;
+        }
+        long min = Long.MAX_VALUE;
+        for (Counter counter : counters.values()) {
+            min = Math.min(min, counter.count);
+        }
+        return min;
+    }
+
+    private void deny(IpAddress address) {
+        if (denied.containsKey(address)) {
+            return;
+        }
+        if (denied.size() >= maxDenied) {
+            return;
+        }
+        if (denied.putIfAbsent(address, System.nanoTime() + denyNanos) == null) {
+            log.warn("Heavy hitter {} denied for {}", address, Duration.ofNanos(denyNanos));
+        }
+    }
+
+    /**
+     * Раз в interval: деление счётчиков пополам и уборка истёкших запретов.
+     */
+    private void decay() {
+        try {
+            sketch.halve();
+            lock.lock();
+            try {
+                for (Counter counter : counters.values()) {
+                    counter.count >>>= 1;
+                    counter.error >>>= 1;
+                }
+                floor = minCount();
+            } finally {
+                lock.unlock();
+            }
+            long now = System.nanoTime();
+            denied.entrySet().removeIf(entry -> now - entry.getValue() >= 0);
+        } catch (RuntimeException e) {
+            log.error("Heavy hitter decay failed", e);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "heavy-hitters";
+    }
+
+    @Override
+    public HeavyHitterSnapshot metricsSnapshot() {
+        List<Hitter> top = new ArrayList<>(capacity);
+        lock.lock();
+        try {
+            for (Counter counter : counters.values()) {
+                top.add(new Hitter(counter.address.toString(), counter.count, counter.error));
+            }
+        } finally {
+            lock.unlock();
+        }
+        top.sort(Comparator.comparingLong(Hitter::count).reversed());
+        long now = System.nanoTime();
+        List<Denied> deniedNow = new ArrayList<>();
+        denied.forEach((address, until) -> {
+            long remaining = until - now;
+            if (remaining > 0) {
+                deniedNow.add(new Denied(address.toString(), TimeUnit.NANOSECONDS.toSeconds(remaining)));
+            }
+        });
+        return new HeavyHitterSnapshot(interval.toString(), observed.sum(), rejected.sum(), top, deniedNow);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Состояние трекера.
+     *
+     * @param interval период деления счётчиков пополам.
+     * @param observed запросов учтено.
+     * @param rejected запросов отклонено временным запретом.
+     * @param top      самые активные адреса, по убыванию count.
+     * @param denied   запрещённые сейчас адреса.
+     */
+    public record HeavyHitterSnapshot(
+            String interval,
+            long observed,
+            long rejected,
+            List<Hitter> top,
+            List<Denied> denied
+    ) {
+    }
+
+    /**
+     * @param count оценка числа запросов за последние ~interval (с затуханием).
+     * @param error сколько из count могло достаться от вытесненного адреса:
+     *              запросов не меньше count - error.
+     */
+    public record Hitter(String ip, long count, long error) {
+    }
+
+    public record Denied(String ip, long remainingSeconds) {
+    }
+}
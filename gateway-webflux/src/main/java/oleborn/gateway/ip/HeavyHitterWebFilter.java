@@ -0,0 +1,64 @@
+package oleborn.gateway.ip;
+
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * HeavyHitterWebFilter
+ *
+ * Учёт каждого запроса в HeavyHitterTracker по IP клиента
+ * и отказ временно запрещённым адресам.
+ *
+ * Почему WebFilter, а не GlobalFilter:
+ * - поток с поддельных адресов обычно не проходит аутентификацию,
+ *   и до GlobalFilter'ов Gateway его запросы не доходят —
+ *   трекер их бы не увидел;
+ * - фильтр стоит раньше цепочки Spring Security (order -100):
+ *   запрещённый адрес получает 403, не тратя время на проверку токена.
+ *
+ * IP определяется тем же ClientIpResolver, что и в Step8IpValidationFilter;
+ * адрес, который определить не удалось, не учитывается.
+ */
+public class HeavyHitterWebFilter implements WebFilter, Ordered {
+
+    // Раньше WebFilterChainProxy Spring Security.
+    public static final int ORDER = -200;
+
+    // Черновик адреса клиента на каждый поток event-loop
+    // (как в Step8IpValidationFilter): трекер копирует адрес,
+    // только когда тот попадает в top-K или под запрет.
+    private static final ThreadLocal<IpAddress> CLIENT_IP =
+            ThreadLocal.withInitial(IpAddress::new);
+
+    private final HeavyHitterTracker tracker;
+
+    private final ClientIpResolver clientIpResolver;
+
+    public HeavyHitterWebFilter(HeavyHitterTracker tracker, ClientIpResolver clientIpResolver) {
+        this.tracker = tracker;
+        this.clientIpResolver = clientIpResolver;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        IpAddress clientIp = CLIENT_IP.get();
+        if (!clientIpResolver.resolve(exchange.getRequest(), clientIp)) {
+            return chain.filter(exchange);
+        }
+        tracker.observe(clientIp);
+        if (tracker.denied(clientIp, System.nanoTime())) {
+            exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
+            return exchange.getResponse().setComplete();
+        }
+        return chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,311 @@
+package oleborn.gateway.ip;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.context.event.EventListener;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * IpAccessList
+ *
+ * Список доступа allow/deny по подсетям.
+ *
+ * Цель этого класса — дать фильтрам одно решение на адрес:
+ * - правило самой специфичной подсети (longest-prefix match);
+ * - либо default-action, если адрес не попал ни в одну подсеть.
+ *
+ * Архитектурный смысл:
+ * - правила берутся из конфигурации и/или файла;
+ * - небольшой список (только rules) компилируется в IpPrefixTrie в heap;
+ * - список из файла (миллионы записей) по умолчанию компилируется
+ *   в MappedIpRanges — файл вне heap, отображённый в память;
+ * - при перезагрузке строится НОВАЯ таблица,
+ *   старая продолжает обслуживать запросы до атомарной подмены;
+ * - чтение — одна volatile-ссылка и поиск, без блокировок.
+ *
+ * Перезагрузка выполняется:
+ * - при изменении файла (IpListWatcher, после паузы debounce);
+ * - при обновлении маршрутов Gateway;
+ * - при изменении gateway.ip-access.*.
+ *
+ * Все перезагрузки идут по одной на отдельном потоке ip-access-loader:
+ * чтение файла и компиляция никогда не занимают event-loop,
+ * а две перезагрузки не компилируют список одновременно.
+ * Если новая версия не собралась — остаётся предыдущая.
+ */
+public class IpAccessList implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(IpAccessList.class);
+
+    private static final String FILE_PREFIX = "ip-access-";
+
+    private static final String FILE_SUFFIX = ".bin";
+
+    private static final long PID = ProcessHandle.current().pid();
+
+    private final IpAccessProperties properties;
+
+    private final AtomicReference<IpRuleTable> table = new AtomicReference<>();
+
+    private final Scheduler loader = Schedulers.newSingle("ip-access-loader", true);
+
+    // Номер версии скомпилированного файла; меняется только на loader.
+    private long generation;
+
+    // Наблюдатель за текущим file; меняется на loader (и один раз при старте).
+    private volatile IpListWatcher watcher;
+
+    public IpAccessList(IpAccessProperties properties) {
+        this.properties = properties;
+        // Первая загрузка — синхронно: с ошибочным списком
+        // приложение не должно стартовать.
+        try {
+            deleteStaleFiles();
+            this.table.set(compile());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compile IP access list", e);
+        }
+    }
+
+    /**
+     * Запуск наблюдения за file.
+     *
+     * Не в конструкторе: watcher получает ссылку this::reload
+     * и может вызвать её из своего потока,
+     * поэтому объект к этому моменту должен быть построен полностью.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        watch();
+    }
+
+    /**
+     * Решение для адреса клиента.
+     *
+     * @return ALLOW или DENY — никогда не null.
+     */
+    public IpRule decide(IpAddress address) {
+        IpRule rule = table.get().lookup(address);
+        return rule != null ? rule : properties.getDefaultAction();
+    }
+
+    /**
+     * @return текущая таблица (для диагностики).
+     */
+    public IpRuleTable current() {
+        return table.get();
+    }
+
+    /**
+     * Перезагрузка после изменения gateway.ip-access.*.
+     */
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        boolean affected = event.getKeys()
+                .stream()
+                .anyMatch(key -> key.startsWith("gateway.ip-access"));
+        if (affected) {
+            reload();
+        }
+    }
+
+    /**
+     * Перезагрузка вместе с обновлением маршрутов Gateway.
+     */
+    @EventListener
+    public void onRefreshRoutes(RefreshRoutesEvent event) {
+        reload();
+    }
+
+    /**
+     * Асинхронная сборка новой таблицы и атомарная подмена текущей.
+     *
+     * Возвращает управление сразу: вызывающий поток
+     * (event-loop, watcher) не ждёт компиляции.
+     */
+    public void reload() {
+        Mono.fromCallable(this::compile)
+                .subscribeOn(loader)
+                .subscribe(
+                        next -> {
+                            release(table.getAndSet(next));
+                            watch();
+                            log.info("IP access list reloaded: {} entries={}",
+                                    next.getClass().getSimpleName(), next.size());
+                        },
+                        error -> log.error("Failed to reload IP access list, keeping previous one", error)
+                );
+    }
+
+    @Override
+    public void destroy() {
+        IpListWatcher current = watcher;
+        if (current != null) {
+            current.close();
+        }
+        loader.dispose();
+    }
+
+    /**
+     * Компиляция текущей конфигурации.
+     *
+     * Дерево строится всегда; при storage: mapped и заданном file
+     * оно сразу "разворачивается" в файл диапазонов
+     * и становится мусором — в heap остаётся только ссылка на буфер.
+     */
+    private IpRuleTable compile() throws IOException {
+        IpPrefixTrie trie = buildTrie(properties);
+
+        String file = properties.getFile();
+        if (file == null || file.isBlank() || properties.getStorage() == IpAccessProperties.Storage.HEAP) {
+            return trie;
+        }
+
+        Path dir = Path.of(properties.getCompiledDir());
+        Files.createDirectories(dir);
+        return MappedIpRanges.compile(trie, dir.resolve(FILE_PREFIX + PID + "-" + (++generation) + FILE_SUFFIX));
+    }
+
+    /**
+     * Удаление файла заменённой таблицы.
+     *
+     * Запросы, ещё читающие старый буфер, не пострадают:
+     * отображение остаётся действительным, пока буфер достижим,
+     * а ОС освобождает данные после его сборки GC.
+     */
+    private static void release(IpRuleTable previous) {
+        if (previous instanceof MappedIpRanges mapped) {
+            try {
+                Files.deleteIfExists(mapped.file());
+            } catch (IOException e) {
+                log.warn("Failed to delete previous IP range file {}", mapped.file(), e);
+            }
+        }
+    }
+
+    /**
+     * Удаление файлов, оставшихся от завершившихся процессов.
+     *
+     * Файлы живых процессов (например, второго экземпляра Gateway
+     * с тем же compiled-dir) не трогаются.
+     */
+    private void deleteStaleFiles() throws IOException {
+        Path dir = Path.of(properties.getCompiledDir());
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, FILE_PREFIX + "*" + FILE_SUFFIX + "*")) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                int dash = name.indexOf('-', FILE_PREFIX.length());
+                if (dash < 0) {
+                    continue;
+                }
+                try {
+                    long pid = Long.parseLong(name.substring(FILE_PREFIX.length(), dash));
+                    if (ProcessHandle.of(pid).isEmpty()) {
+                        Files.deleteIfExists(path);
+                    }
+                } catch (NumberFormatException ignored) {
+                    // Чужой файл с похожим именем.
+                }
+            }
+        }
+    }
+
+    /**
+     * Запуск, перезапуск или остановка наблюдения за file
+     * в соответствии с текущей конфигурацией.
+     */
+    private void watch() {
+        String file = properties.getFile();
+        boolean enabled = properties.isWatch() && file != null && !file.isBlank();
+        Path path = enabled ? Path.of(file).toAbsolutePath() : null;
+
+        IpListWatcher current = watcher;
+        if (current != null && current.file().equals(path)) {
+            return;
+        }
+        if (current != null) {
+            current.close();
+        }
+        watcher = null;
+
+        if (path != null) {
+            try {
+                watcher = new IpListWatcher(path, properties.getDebounce(), this::reload);
+            } catch (IOException e) {
+                log.warn("Cannot watch IP access list {}, reload on refresh only", path, e);
+            }
+        }
+    }
+
+    static IpPrefixTrie buildTrie(IpAccessProperties properties) {
+        IpPrefixTrie.Builder builder = IpPrefixTrie.builder();
+
+        for (String rule : properties.getRules()) {
+            addLine(builder, rule);
+        }
+
+        String file = properties.getFile();
+        if (file != null && !file.isBlank()) {
+            try (BufferedReader reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+                int number = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    number++;
+                    try {
+                        addLine(builder, line);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException(file + ":" + number + ": " + e.getMessage(), e);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read IP access list " + file, e);
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Разбор строки "[allow|deny] адрес[/длина]".
+     *
+     * Пустые строки и комментарии "#" пропускаются.
+     */
+    private static void addLine(IpPrefixTrie.Builder builder, String line) {
+        int comment = line.indexOf('#');
+        String value = (comment < 0 ? line : line.substring(0, comment)).trim();
+        if (value.isEmpty()) {
+            return;
+        }
+
+        int space = 0;
+        while (space < value.length() && !Character.isWhitespace(value.charAt(space))) {
+            space++;
+        }
+        if (space == value.length()) {
+            builder.add(CidrBlock.parse(value), IpRule.ALLOW);
+            return;
+        }
+        builder.add(
+                CidrBlock.parse(value.substring(space + 1)),
+                IpRule.parse(value.substring(0, space))
+        );
+    }
+}
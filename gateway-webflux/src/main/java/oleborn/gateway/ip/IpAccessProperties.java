@@ -0,0 +1,108 @@
+package oleborn.gateway.ip;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IpAccessProperties
+ *
+ * Настройки списка доступа по IP (блок gateway.ip-access).
+ */
+@ConfigurationProperties(prefix = "gateway.ip-access")
+public class IpAccessProperties {
+
+    // Правила прямо в конфигурации: "allow 10.0.0.0/8", "deny 10.66.0.0/16".
+    // Подсеть без действия считается allow.
+    private List<String> rules = new ArrayList<>();
+
+    // Путь к файлу с правилами в том же формате (по одному на строку).
+    // Может содержать миллионы строк; пусто — файл не используется.
+    private String file;
+
+    // Решение для адреса, не попавшего ни в одну подсеть.
+    private IpRule defaultAction = IpRule.DENY;
+
+    // Где хранить скомпилированный список, если задан file.
+    private Storage storage = Storage.MAPPED;
+
+    // Каталог для скомпилированных файлов (storage: mapped).
+    private String compiledDir = System.getProperty("java.io.tmpdir") + "/gateway-ip-access";
+
+    // Перечитывать file при его изменении.
+    private boolean watch = true;
+
+    // Пауза "тишины" после изменения файла перед перезагрузкой:
+    // фид успевает дописать файл целиком.
+    private Duration debounce = Duration.ofMillis(500);
+
+    /**
+     * Хранилище скомпилированного списка.
+     */
+    public enum Storage {
+
+        // Префиксное дерево в heap.
+        HEAP,
+
+        // Отсортированные диапазоны в memory-mapped файле вне heap.
+        MAPPED
+    }
+
+    public List<String> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<String> rules) {
+        this.rules = rules;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public IpRule getDefaultAction() {
+        return defaultAction;
+    }
+
+    public void setDefaultAction(IpRule defaultAction) {
+        this.defaultAction = defaultAction;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public void setStorage(Storage storage) {
+        this.storage = storage;
+    }
+
+    public String getCompiledDir() {
+        return compiledDir;
+    }
+
+    public void setCompiledDir(String compiledDir) {
+        this.compiledDir = compiledDir;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public Duration getDebounce() {
+        return debounce;
+    }
+
+    public void setDebounce(Duration debounce) {
+        this.debounce = debounce;
+    }
+}
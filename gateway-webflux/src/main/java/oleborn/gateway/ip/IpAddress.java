@@ -0,0 +1,347 @@
+package oleborn.gateway.ip;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+/**
+ * IpAddress
+ *
+ * Изменяемое 128-битное представление IP-адреса в двух long.
+ *
+ * Цель этого класса — разбирать адрес прямо из фрагмента заголовка
+ * (X-Forwarded-For, X-Real-IP) без создания промежуточных строк,
+ * массивов и объектов InetAddress.
+ *
+ * Архитектурный смысл:
+ * - IPv4 хранится как IPv4-mapped IPv6 (::ffff:a.b.c.d);
+ * - поэтому "10.0.0.1" и "::ffff:10.0.0.1" — ОДИН и тот же адрес;
+ * - разные текстовые формы IPv6 ("::1", "0:0:0:0:0:0:0:1")
+ *   тоже дают одинаковые hi/lo.
+ *
+ * Ключевая идея:
+ * - один экземпляр переиспользуется как "черновик" на потоке event-loop;
+ * - parse(...) перезаписывает его и сообщает, удался ли разбор.
+ *
+ * Экземпляр НЕ потокобезопасен.
+ */
+public final class IpAddress {
+
+    // Префикс IPv4-mapped адресов в младших 64 битах: 0000:0000:ffff:xxxx:xxxx.
+    private static final long IPV4_MAPPED_PREFIX = 0x0000_FFFF_0000_0000L;
+
+    // Старшие 64 бита адреса (группы 0..3).
+    private long hi;
+
+    // Младшие 64 бита адреса (группы 4..7).
+    private long lo;
+
+    public long hi() {
+        return hi;
+    }
+
+    public long lo() {
+        return lo;
+    }
+
+    /**
+     * @return true, если адрес является IPv4 (в mapped-форме).
+     */
+    public boolean isIpv4() {
+        return hi == 0 && (lo & 0xFFFF_FFFF_0000_0000L) == IPV4_MAPPED_PREFIX;
+    }
+
+    public IpAddress set(long hi, long lo) {
+        this.hi = hi;
+        this.lo = lo;
+        return this;
+    }
+
+    public IpAddress set(IpAddress other) {
+        return set(other.hi, other.lo);
+    }
+
+    /**
+     * Заполнение из InetAddress (например, RemoteAddress соединения).
+     */
+    public IpAddress set(InetAddress address) {
+        if (address instanceof Inet4Address) {
+            // Inet4Address.hashCode() — это сам адрес в int,
+            // getAddress() создал бы копию массива.
+            return set(0, IPV4_MAPPED_PREFIX | (address.hashCode() & 0xFFFF_FFFFL));
+        }
+        byte[] bytes = address.getAddress();
+        return set(toLong(bytes, 0), toLong(bytes, 8));
+    }
+
+    /**
+     * Разбор адреса из всей строки.
+     *
+     * @throws IllegalArgumentException если строка не является IP-адресом.
+     */
+    public static IpAddress of(CharSequence text) {
+        IpAddress address = new IpAddress();
+        if (!address.parse(text, 0, text.length())) {
+            throw new IllegalArgumentException("Not an IP address: " + text);
+        }
+        return address;
+    }
+
+    public IpAddress copy() {
+        return new IpAddress().set(this);
+    }
+
+    /**
+     * Разбор адреса из фрагмента [from, to) без выделения памяти.
+     *
+     * Допускаются формы, встречающиеся в X-Forwarded-For:
+     * - пробелы по краям;
+     * - "1.2.3.4" и "1.2.3.4:8080";
+     * - "2001:db8::1", "[2001:db8::1]", "[2001:db8::1]:8080";
+     * - zone id "fe80::1%eth0" (отбрасывается).
+     *
+     * @return true, если фрагмент — корректный адрес.
+     *         При false содержимое экземпляра не определено.
+     */
+    public boolean parse(CharSequence s, int from, int to) {
+
+        while (from < to && s.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && s.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return false;
+        }
+
+        // [IPv6] или [IPv6]:port
+        if (s.charAt(from) == '[') {
+            int close = indexOf(s, ']', from + 1, to);
+            if (close < 0) {
+                return false;
+            }
+            return parseIpv6(s, from + 1, close);
+        }
+
+        int colons = 0;
+        int lastColon = -1;
+        boolean dots = false;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == ':') {
+                colons++;
+                lastColon = i;
+            } else if (c == '.') {
+                dots = true;
+            }
+        }
+
+        if (colons == 0) {
+            return parseIpv4Into(s, from, to);
+        }
+        // IPv4 с портом: единственное двоеточие после точек.
+        if (colons == 1 && dots && lastColon > from) {
+            return parseIpv4Into(s, from, lastColon);
+        }
+        return parseIpv6(s, from, to);
+    }
+
+    private boolean parseIpv4Into(CharSequence s, int from, int to) {
+        long v4 = parseIpv4(s, from, to);
+        if (v4 < 0) {
+            return false;
+        }
+        set(0, IPV4_MAPPED_PREFIX | v4);
+        return true;
+    }
+
+    /**
+     * @return адрес IPv4 в младших 32 битах либо -1.
+     */
+    private static long parseIpv4(CharSequence s, int from, int to) {
+        long result = 0;
+        int octets = 0;
+        int i = from;
+        while (i <= to) {
+            int value = 0;
+            int digits = 0;
+            while (i < to && s.charAt(i) != '.') {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9' || ++digits > 3) {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+                i++;
+            }
+            if (digits == 0 || value > 255 || ++octets > 4) {
+                return -1;
+            }
+            result = (result << 8) | value;
+            // Пропуск точки (или выход за конец на последнем октете).
+            i++;
+        }
+        return octets == 4 ? result : -1;
+    }
+
+    /**
+     * Разбор IPv6 с поддержкой "::" и IPv4-хвоста.
+     *
+     * Группы до "::" размещаются с позиции 0,
+     * группы после "::" — вплотную к концу адреса.
+     */
+    private boolean parseIpv6(CharSequence s, int from, int to) {
+
+        int zone = indexOf(s, '%', from, to);
+        if (zone >= 0) {
+            to = zone;
+        }
+
+        int gap = indexOf(s, "::", from, to);
+        if (gap >= 0 && indexOf(s, "::", gap + 1, to) >= 0) {
+            return false;
+        }
+
+        hi = 0;
+        lo = 0;
+
+        if (gap < 0) {
+            return groups(s, from, to, 0, true) == 8;
+        }
+
+        // IPv4-хвост допустим только в самом конце адреса.
+        if (indexOf(s, '.', from, gap) >= 0) {
+            return false;
+        }
+
+        int head = groups(s, from, gap, 0, true);
+        int tail = groups(s, gap + 2, to, 0, false);
+        if (head < 0 || tail < 0 || head + tail > 7) {
+            return false;
+        }
+        return groups(s, gap + 2, to, 8 - tail, true) == tail;
+    }
+
+    /**
+     * Обход групп "x:x:x" во фрагменте.
+     *
+     * @param position позиция первой группы (0..7).
+     * @param place    true — записывать значения, false — только считать.
+     * @return количество групп (IPv4-хвост считается за две) либо -1.
+     */
+    private int groups(CharSequence s, int from, int to, int position, boolean place) {
+        if (from == to) {
+            return 0;
+        }
+        int count = 0;
+        int i = from;
+        while (true) {
+            int end = indexOf(s, ':', i, to);
+            if (end < 0) {
+                end = to;
+            }
+
+            // Последний токен с точкой — встроенный IPv4 (::ffff:1.2.3.4).
+            if (end == to && indexOf(s, '.', i, to) >= 0) {
+                long v4 = parseIpv4(s, i, to);
+                if (v4 < 0) {
+                    return -1;
+                }
+                if (place) {
+                    setGroup(position + count, (int) (v4 >>> 16));
+                    setGroup(position + count + 1, (int) (v4 & 0xFFFF));
+                }
+                return count + 2;
+            }
+
+            int value = 0;
+            int digits = end - i;
+            if (digits == 0 || digits > 4) {
+                return -1;
+            }
+            for (int k = i; k < end; k++) {
+                int hex = Character.digit(s.charAt(k), 16);
+                if (hex < 0) {
+                    return -1;
+                }
+                value = (value << 4) | hex;
+            }
+            if (place) {
+                if (position + count > 7) {
+                    return -1;
+                }
+                setGroup(position + count, value);
+            }
+            count++;
+
+            if (end == to) {
+                return count;
+            }
+            i = end + 1;
+        }
+    }
+
+    private void setGroup(int index, int value) {
+        long v = value & 0xFFFFL;
+        if (index < 4) {
+            hi |= v << (16 * (3 - index));
+        } else {
+            lo |= v << (16 * (7 - index));
+        }
+    }
+
+    private static int indexOf(CharSequence s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(CharSequence s, String pair, int from, int to) {
+        for (int i = from; i + 1 < to; i++) {
+            if (s.charAt(i) == pair.charAt(0) && s.charAt(i + 1) == pair.charAt(1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof IpAddress other && other.hi == hi && other.lo == lo;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hi * 31 + lo);
+    }
+
+    /**
+     * Текстовая форма — только для логов и диагностики.
+     */
+    @Override
+    public String toString() {
+        if (isIpv4()) {
+            return ((lo >>> 24) & 0xFF) + "." + ((lo >>> 16) & 0xFF) + "."
+                    + ((lo >>> 8) & 0xFF) + "." + (lo & 0xFF);
+        }
+        StringBuilder out = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i > 0) {
+                out.append(':');
+            }
+            long word = i < 4 ? hi : lo;
+            out.append(Long.toHexString((word >>> (16 * (3 - (i & 3)))) & 0xFFFF));
+        }
+        return out.toString();
+    }
+}
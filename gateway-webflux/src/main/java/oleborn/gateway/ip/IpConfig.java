@@ -0,0 +1,41 @@
+package oleborn.gateway.ip;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * IpConfig
+ *
+ * Регистрация компонентов работы с IP-адресами клиентов.
+ */
+@Configuration
+@EnableConfigurationProperties({ClientIpProperties.class, IpAccessProperties.class, HeavyHitterProperties.class})
+public class IpConfig {
+
+    @Bean
+    public ClientIpResolver clientIpResolver(ClientIpProperties properties) {
+        return new ClientIpResolver(
+                CidrList.of(properties.getTrustedProxies()),
+                properties.getTrustedHops()
+        );
+    }
+
+    @Bean
+    public IpAccessList ipAccessList(IpAccessProperties properties) {
+        return new IpAccessList(properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.heavy-hitters.enabled", matchIfMissing = true)
+    public HeavyHitterTracker heavyHitterTracker(HeavyHitterProperties properties) {
+        return new HeavyHitterTracker(properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.heavy-hitters.enabled", matchIfMissing = true)
+    public HeavyHitterWebFilter heavyHitterWebFilter(HeavyHitterTracker heavyHitterTracker, ClientIpResolver clientIpResolver) {
+        return new HeavyHitterWebFilter(heavyHitterTracker, clientIpResolver);
+    }
+}
@@ -0,0 +1,111 @@
+package oleborn.gateway.ip;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IpListWatcher
+ *
+ * Наблюдение за файлом списка доступа.
+ *
+ * Фиды denylist'ов обычно перезаписывают файл целиком
+ * (или кладут новый и переименовывают), порождая пачку событий.
+ * Watcher дожидается "тишины" длительностью debounce
+ * и только после этого сообщает об изменении — один раз на пачку.
+ *
+ * Работает в отдельном daemon-потоке:
+ * ожидание событий файловой системы никогда не занимает event-loop.
+ */
+final class IpListWatcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(IpListWatcher.class);
+
+    private final Path file;
+
+    private final Duration debounce;
+
+    private final Runnable onChange;
+
+    private final WatchService watchService;
+
+    IpListWatcher(Path file, Duration debounce, Runnable onChange) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.debounce = debounce;
+        this.onChange = onChange;
+        // Наблюдается каталог: атомарная замена файла (rename)
+        // видна только как событие каталога.
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(
+                watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY
+        );
+
+        Thread thread = new Thread(this::run, "ip-access-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    Path file() {
+        return file;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = concernsFile(key);
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+
+                // Пачка событий: ждём, пока запись в файл закончится.
+                WatchKey next;
+                while ((next = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    next.pollEvents();
+                    next.reset();
+                }
+
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    log.error("IP access list change handler failed", e);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Нормальная остановка через close().
+        }
+    }
+
+    private boolean concernsFile(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // OVERFLOW — события потеряны: файл мог измениться.
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Failed to close IP access list watcher", e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package oleborn.gateway.ip;
+
+/**
+ * IpMatcher
+ *
+ * Проверка принадлежности адреса списку (allowlist, denylist,
+ * доверенные proxy).
+ *
+ * Контракт принимает уже разобранный IpAddress,
+ * а не строку: разбор выполняется один раз,
+ * а проверка не создаёт объектов.
+ */
+@FunctionalInterface
+public interface IpMatcher {
+
+    /**
+     * Пустой список: не содержит ни одного адреса.
+     */
+    IpMatcher NONE = address -> false;
+
+    /**
+     * @param address разобранный адрес клиента.
+     * @return true, если адрес входит в список.
+     */
+    boolean matches(IpAddress address);
+}
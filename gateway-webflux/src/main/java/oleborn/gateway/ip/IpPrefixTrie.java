@@ -0,0 +1,267 @@
+package oleborn.gateway.ip;
+
+import java.util.Arrays;
+
+/**
+ * IpPrefixTrie
+ *
+ * Бинарное префиксное дерево (radix trie) по битам адреса
+ * для поиска самого длинного совпадающего префикса (longest-prefix match).
+ *
+ * Цель этого класса — заменить точное сравнение строк
+ * проверкой по подсетям:
+ * - "10.0.0.0/8 allow" + "10.66.0.0/16 deny" — работает как ожидается:
+ *   побеждает более специфичная подсеть;
+ * - IPv4 и IPv6 живут в одном 128-битном пространстве
+ *   (IPv4 — как IPv4-mapped), поэтому одно дерево обслуживает оба семейства.
+ *
+ * Архитектурный смысл:
+ * - стоимость поиска ограничена длиной адреса (не более 128 шагов)
+ *   и НЕ зависит от числа префиксов — хоть 10, хоть 1 000 000;
+ * - узлы хранятся в одном плоском массиве int, а не в объектах:
+ *   миллион префиксов не превращается в миллионы объектов в heap;
+ * - оба потомка узла лежат рядом (links[2n], links[2n + 1]),
+ *   а правило потомка упаковано в младшие биты ссылки на него —
+ *   шаг поиска = ОДНО чтение из массива.
+ *
+ * Ключевая идея:
+ * - дерево строится целиком через Builder и дальше НЕ меняется;
+ * - перезагрузка списка = сборка нового дерева
+ *   и атомарная подмена ссылки (см. IpAccessList);
+ * - читатели никогда не видят дерево в промежуточном состоянии
+ *   и не берут блокировок.
+ */
+public final class IpPrefixTrie implements IpRuleTable {
+
+    // Коды правил в младших двух битах ссылки.
+    private static final int NONE = 0;
+    private static final int ALLOW = 1;
+    private static final int DENY = 2;
+
+    private static final int RULE_BITS = 2;
+    private static final int RULE_MASK = (1 << RULE_BITS) - 1;
+
+    // links[2n + b] — потомок узла n по биту b:
+    // (индекс потомка << 2) | правило потомка.
+    // Значение 0 — потомка нет (корень имеет индекс 0
+    // и потомком быть не может).
+    private final int[] links;
+
+    // Правило корня — подсеть "/0".
+    private final int rootRule;
+
+    // Количество уникальных префиксов.
+    private final int prefixes;
+
+    private IpPrefixTrie(int[] links, int rootRule, int prefixes) {
+        this.links = links;
+        this.rootRule = rootRule;
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * Поиск самого длинного префикса, содержащего адрес.
+     *
+     * @return правило этого префикса либо null, если адрес
+     *         не попал ни в одну подсеть.
+     */
+    @Override
+    public IpRule lookup(IpAddress address) {
+        int node = 0;
+        int best = rootRule;
+        long word = address.hi();
+
+        for (int bit = 0; bit < 128; bit++) {
+            if (bit == 64) {
+                word = address.lo();
+            }
+            int link = links[(node << 1) | (int) (word >>> (63 - (bit & 63)) & 1L)];
+            if (link == 0) {
+                break;
+            }
+            if ((link & RULE_MASK) != NONE) {
+                best = link & RULE_MASK;
+            }
+            node = link >>> RULE_BITS;
+        }
+        return decode(best);
+    }
+
+    /**
+     * @return количество префиксов в дереве.
+     */
+    @Override
+    public int size() {
+        return prefixes;
+    }
+
+    /**
+     * @return количество узлов — для оценки занимаемой памяти.
+     */
+    public int nodes() {
+        return links.length >> 1;
+    }
+
+    /**
+     * Обход дерева как разбиения всего адресного пространства
+     * на непересекающиеся диапазоны в порядке возрастания.
+     *
+     * Каждый диапазон задаётся началом: он продолжается
+     * до начала следующего (последний — до конца пространства).
+     * Соседние диапазоны с одинаковым правилом объединяются.
+     *
+     * Используется для компиляции дерева в MappedIpRanges.
+     */
+    void forEachRange(RangeConsumer consumer) {
+        new RangeWalker(consumer).walk(0, 0, 0, 0, rootRule);
+    }
+
+    /**
+     * Получатель диапазонов из forEachRange(...).
+     */
+    @FunctionalInterface
+    interface RangeConsumer {
+
+        /**
+         * @param hi   старшие 64 бита начала диапазона.
+         * @param lo   младшие 64 бита начала диапазона.
+         * @param rule правило диапазона либо null.
+         */
+        void accept(long hi, long lo, IpRule rule);
+    }
+
+    /**
+     * Обход в глубину: отсутствующий потомок узла —
+     * это целое поддерево адресов с унаследованным правилом.
+     * Глубина рекурсии ограничена длиной адреса (128).
+     */
+    private final class RangeWalker {
+
+        private final RangeConsumer consumer;
+
+        // Правило последнего отданного диапазона;
+        // -1 — ещё ничего не отдано.
+        private int last = -1;
+
+        RangeWalker(RangeConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        void walk(int node, int depth, long hi, long lo, int inherited) {
+            if (depth == 128) {
+                emit(hi, lo, inherited);
+                return;
+            }
+            for (int b = 0; b < 2; b++) {
+                long childHi = hi;
+                long childLo = lo;
+                if (b == 1) {
+                    if (depth < 64) {
+                        childHi |= 1L << (63 - depth);
+                    } else {
+                        childLo |= 1L << (127 - depth);
+                    }
+                }
+                int link = links[(node << 1) | b];
+                if (link == 0) {
+                    emit(childHi, childLo, inherited);
+                } else {
+                    int rule = link & RULE_MASK;
+                    walk(link >>> RULE_BITS, depth + 1, childHi, childLo, rule != NONE ? rule : inherited);
+                }
+            }
+        }
+
+        private void emit(long hi, long lo, int rule) {
+            if (rule != last) {
+                last = rule;
+                consumer.accept(hi, lo, decode(rule));
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static IpRule decode(int code) {
+        return switch (code) {
+            case ALLOW -> IpRule.ALLOW;
+            case DENY -> IpRule.DENY;
+            default -> null;
+        };
+    }
+
+    /**
+     * Изменяемый построитель дерева.
+     *
+     * Не потокобезопасен: используется одним потоком загрузки.
+     */
+    public static final class Builder {
+
+        // Верхняя граница узлов: индекс должен помещаться
+        // в ссылку вместе с двумя битами правила.
+        private static final int MAX_NODES = Integer.MAX_VALUE >>> RULE_BITS;
+
+        private int[] links = new int[2048];
+        private int rootRule = NONE;
+        private int nodes = 1;
+        private int prefixes;
+
+        /**
+         * Добавление подсети.
+         *
+         * При повторном добавлении той же подсети
+         * DENY имеет приоритет над ALLOW.
+         */
+        public Builder add(CidrBlock block, IpRule rule) {
+            int code = rule == IpRule.DENY ? DENY : ALLOW;
+
+            if (block.prefix() == 0) {
+                if (rootRule == NONE) {
+                    prefixes++;
+                }
+                rootRule = merge(rootRule, code);
+                return this;
+            }
+
+            int node = 0;
+            int slot = 0;
+            for (int bit = 0; bit < block.prefix(); bit++) {
+                long word = bit < 64 ? block.hi() : block.lo();
+                slot = (node << 1) | (int) (word >>> (63 - (bit & 63)) & 1L);
+                if (links[slot] == 0) {
+                    int child = allocate();
+                    links[slot] = child << RULE_BITS;
+                }
+                node = links[slot] >>> RULE_BITS;
+            }
+
+            // slot — ссылка на последний узел префикса.
+            int current = links[slot] & RULE_MASK;
+            if (current == NONE) {
+                prefixes++;
+            }
+            links[slot] = (links[slot] & ~RULE_MASK) | merge(current, code);
+            return this;
+        }
+
+        public IpPrefixTrie build() {
+            return new IpPrefixTrie(Arrays.copyOf(links, nodes << 1), rootRule, prefixes);
+        }
+
+        private static int merge(int current, int code) {
+            return current == DENY ? DENY : code;
+        }
+
+        private int allocate() {
+            if (nodes == MAX_NODES) {
+                throw new IllegalStateException("IP prefix trie is full: " + nodes + " nodes");
+            }
+            if ((nodes << 1) == links.length) {
+                links = Arrays.copyOf(links, (int) Math.min((long) links.length * 2, (long) MAX_NODES << 1));
+            }
+            return nodes++;
+        }
+    }
+}
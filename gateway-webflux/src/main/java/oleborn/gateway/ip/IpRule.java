@@ -0,0 +1,28 @@
+package oleborn.gateway.ip;
+
+/**
+ * IpRule
+ *
+ * Действие, привязанное к подсети в списке доступа.
+ */
+public enum IpRule {
+
+    // Запрос из подсети пропускается дальше по pipeline.
+    ALLOW,
+
+    // Запрос из подсети отклоняется с 403.
+    DENY;
+
+    /**
+     * Разбор "allow" / "deny" без учёта регистра.
+     *
+     * @throws IllegalArgumentException для других значений.
+     */
+    public static IpRule parse(String value) {
+        return switch (value.trim().toLowerCase()) {
+            case "allow" -> ALLOW;
+            case "deny" -> DENY;
+            default -> throw new IllegalArgumentException("Unknown IP rule: " + value);
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package oleborn.gateway.ip;
+
+/**
+ * IpRuleTable
+ *
+ * Скомпилированный неизменяемый список доступа:
+ * адрес → правило самой специфичной подсети.
+ *
+ * Реализации:
+ * - IpPrefixTrie — дерево в heap, для небольших списков из конфигурации;
+ * - MappedIpRanges — отсортированные диапазоны в memory-mapped файле,
+ *   для списков на миллионы записей.
+ */
+public interface IpRuleTable {
+
+    /**
+     * @return правило подсети, содержащей адрес,
+     *         либо null, если адрес не попал ни в одну подсеть.
+     */
+    IpRule lookup(IpAddress address);
+
+    /**
+     * @return размер таблицы (префиксы или диапазоны) — для диагностики.
+     */
+    int size();
+}
@@ -0,0 +1,198 @@
+package oleborn.gateway.ip;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedIpRanges
+ *
+ * Список доступа в виде отсортированных непересекающихся диапазонов,
+ * хранящихся в memory-mapped файле.
+ *
+ * Цель этого класса — держать списки на миллионы записей
+ * ВНЕ heap:
+ * - данные лежат в page cache ОС, а не в объектах JVM;
+ * - размер heap и паузы GC не зависят от размера списка;
+ * - поиск — бинарный поиск прямо по отображённому буферу,
+ *   без копирования и без выделения памяти.
+ *
+ * Формат файла (big-endian):
+ *
+ *   [0]                  int  MAGIC
+ *   [4]                  int  VERSION
+ *   [8]                  int  count — число диапазонов
+ *   [12]                 int  зарезервировано
+ *   [16]                 count × (long hi, long lo) — начала диапазонов
+ *   [16 + 16 × count]    count × byte — правило (0 нет, 1 allow, 2 deny)
+ *
+ * Диапазоны разбивают ВСЁ 128-битное пространство:
+ * первый начинается с нуля, каждый продолжается до начала следующего.
+ * Вложенные подсети уже "развёрнуты" при компиляции,
+ * поэтому самая специфичная подсеть определяет правило диапазона
+ * и longest-prefix match сводится к поиску диапазона.
+ *
+ * Экземпляр неизменяем; файл не переписывается на месте —
+ * новая версия списка компилируется в новый файл.
+ */
+public final class MappedIpRanges implements IpRuleTable {
+
+    // "IPRG"
+    private static final int MAGIC = 0x49505247;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 16;
+
+    private static final int START_BYTES = 16;
+
+    // Максимум диапазонов, при котором файл помещается в один MappedByteBuffer.
+    private static final int MAX_RANGES = (Integer.MAX_VALUE - HEADER_BYTES) / (START_BYTES + 1);
+
+    private final Path file;
+
+    private final MappedByteBuffer buffer;
+
+    private final int count;
+
+    private final int rulesOffset;
+
+    private MappedIpRanges(Path file, MappedByteBuffer buffer, int count) {
+        this.file = file;
+        this.buffer = buffer;
+        this.count = count;
+        this.rulesOffset = HEADER_BYTES + START_BYTES * count;
+    }
+
+    /**
+     * Компиляция дерева в файл target и его отображение в память.
+     *
+     * Файл сначала пишется во временный рядом с target
+     * и затем атомарно переименовывается,
+     * поэтому по пути target никогда не лежит недописанный файл.
+     */
+    public static MappedIpRanges compile(IpPrefixTrie trie, Path target) throws IOException {
+        int[] count = new int[1];
+        trie.forEachRange((hi, lo, rule) -> count[0]++);
+        if (count[0] > MAX_RANGES) {
+            throw new IllegalStateException("Too many IP ranges for a mapped file: " + count[0]);
+        }
+
+        int ranges = count[0];
+        long size = HEADER_BYTES + (long) (START_BYTES + 1) * ranges;
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(MAGIC).putInt(VERSION).putInt(ranges).putInt(0);
+
+            int[] index = new int[1];
+            int rules = HEADER_BYTES + START_BYTES * ranges;
+            trie.forEachRange((hi, lo, rule) -> {
+                int i = index[0]++;
+                out.putLong(HEADER_BYTES + START_BYTES * i, hi);
+                out.putLong(HEADER_BYTES + START_BYTES * i + 8, lo);
+                out.put(rules + i, encode(rule));
+            });
+            out.force();
+        }
+
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return open(target);
+    }
+
+    /**
+     * Отображение ранее скомпилированного файла в память.
+     *
+     * @throws IOException если файл повреждён или имеет чужой формат.
+     */
+    public static MappedIpRanges open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not an IP range file: " + file);
+            }
+            // Отображение остаётся действительным и после закрытия канала.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int count = buffer.getInt(8);
+            if (buffer.getInt(0) != MAGIC
+                    || buffer.getInt(4) != VERSION
+                    || count <= 0
+                    || count > MAX_RANGES
+                    || size != HEADER_BYTES + (long) (START_BYTES + 1) * count) {
+                throw new IOException("Not an IP range file: " + file);
+            }
+            return new MappedIpRanges(file, buffer, count);
+        }
+    }
+
+    /**
+     * Бинарный поиск последнего диапазона, начало которого ≤ адреса.
+     *
+     * Используются только абсолютные get(...): они не меняют
+     * position буфера, поэтому один буфер безопасно читают
+     * все потоки event-loop одновременно.
+     */
+    @Override
+    public IpRule lookup(IpAddress address) {
+        long hi = address.hi();
+        long lo = address.lo();
+
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            int offset = HEADER_BYTES + START_BYTES * mid;
+            int cmp = Long.compareUnsigned(buffer.getLong(offset), hi);
+            if (cmp == 0) {
+                cmp = Long.compareUnsigned(buffer.getLong(offset + 8), lo);
+            }
+            if (cmp <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return decode(buffer.get(rulesOffset + low));
+    }
+
+    /**
+     * @return количество диапазонов.
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return файл, из которого отображены данные.
+     */
+    public Path file() {
+        return file;
+    }
+
+    private static byte encode(IpRule rule) {
+        if (rule == null) {
+            return 0;
+        }
+        return rule == IpRule.ALLOW ? (byte) 1 : (byte) 2;
+    }
+
+    private static IpRule decode(byte code) {
+        return switch (code) {
+            case 1 -> IpRule.ALLOW;
+            case 2 -> IpRule.DENY;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,218 @@
+package oleborn.gateway.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * LatencyHistogram
+ *
+ * Гистограмма задержек в стиле HdrHistogram со скользящим окном.
+ *
+ * Устройство корзин (log-linear, как в HdrHistogram):
+ * - значения в микросекундах;
+ * - 0..31 мкс — корзины шириной 1 мкс;
+ * - дальше каждая "октава" [2^k, 2^(k+1)) делится на 16 равных корзин;
+ * - относительная погрешность не хуже 1/16 (~6%) во всём диапазоне
+ *   от 1 мкс до ~71 минуты, при этом корзин всего 464.
+ *
+ * Память: счётчики — int (за один интервал их не переполнить),
+ * интервал занимает ~1.9 КБ, гистограмма с окном 5m по 10s — до ~56 КБ.
+ * Гистограмм много (маршрут × класс статуса), поэтому точность
+ * выбрана в пользу памяти: для перцентилей задержки 6% достаточно.
+ *
+ * Скользящее окно:
+ * - время делится на интервалы (slice), у каждого свой набор корзин;
+ * - слоты интервалов образуют кольцо;
+ * - запись попадает в интервал текущего момента;
+ * - окно "последние N интервалов" собирается при чтении;
+ *   при нём же вышедшие из кольца интервалы освобождаются —
+ *   гистограмма маршрута без трафика не держит память.
+ *
+ * Запись без блокировок:
+ * - индекс корзины вычисляется битовыми операциями;
+ * - счётчик увеличивается атомарно (AtomicIntegerArray);
+ * - новый интервал устанавливается в слот CAS-ом —
+ *   его создаёт первый поток, попавший в новый интервал,
+ *   остальные используют уже установленный.
+ * Много потоков event-loop пишут в одну гистограмму одновременно.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private static final int SUB_MASK = SUB_COUNT - 1;
+
+    private static final int HALF = SUB_COUNT >> 1;
+
+    // Наибольшее отслеживаемое значение, мкс (~71 минута);
+    // большие значения попадают в последнюю корзину.
+    private static final long MAX_VALUE = (1L << 32) - 1;
+
+    private static final int LENGTH = index(MAX_VALUE) + 1;
+
+    private final long sliceNanos;
+
+    private final AtomicReferenceArray<Slice> slices;
+
+    /**
+     * @param sliceNanos длительность одного интервала.
+     * @param slices     число интервалов в кольце
+     *                   (наибольшее окно = sliceNanos × slices).
+     */
+    public LatencyHistogram(long sliceNanos, int slices) {
+        this.sliceNanos = sliceNanos;
+        this.slices = new AtomicReferenceArray<>(slices);
+    }
+
+    /**
+     * Запись одного измерения.
+     *
+     * @param nanos длительность, измеренная через System.nanoTime().
+     */
+    public void record(long nanos) {
+        long micros = Math.min(Math.max(nanos / 1000, 0), MAX_VALUE);
+        long epoch = System.nanoTime() / sliceNanos;
+        int slot = (int) Math.floorMod(epoch, (long) slices.length());
+
+        Slice slice = slices.get(slot);
+        // Повтор: слот мог быть одновременно освобождён чтением (merge).
+        while (slice == null || slice.epoch < epoch) {
+            Slice fresh = new Slice(epoch);
+            slice = slices.compareAndSet(slot, slice, fresh) ? fresh : slices.get(slot);
+        }
+
+        slice.counts.getAndIncrement(index(micros));
+        if (micros > slice.max.get()) {
+            slice.max.accumulateAndGet(micros, Math::max);
+        }
+    }
+
+    /**
+     * Сводка за последние window интервалов (включая текущий).
+     */
+    public LatencySnapshot snapshot(int window) {
+        long[] merged = new long[LENGTH];
+        long[] totals = merge(window, merged);
+        long total = totals[0];
+        long max = totals[1];
+
+        if (total == 0) {
+            return LatencySnapshot.EMPTY;
+        }
+        return new LatencySnapshot(
+                total,
+                percentile(merged, total, max, 50.0),
+                percentile(merged, total, max, 90.0),
+                percentile(merged, total, max, 99.0),
+                percentile(merged, total, max, 99.9),
+                max
+        );
+    }
+
+    /**
+     * Один перцентиль за последние window интервалов, мкс.
+     *
+     * Для тех, кто подстраивается под наблюдаемую задержку
+     * (например, задержка hedge-запроса = p95 маршрута).
+     *
+     * @param minCount минимум измерений в окне, при котором
+     *                 перцентиль считается достоверным.
+     * @return значение перцентиля либо -1, если измерений меньше minCount.
+     */
+    public long percentile(int window, double percent, long minCount) {
+        long[] merged = new long[LENGTH];
+        long[] totals = merge(window, merged);
+        if (totals[0] == 0 || totals[0] < minCount) {
+            return -1;
+        }
+        return percentile(merged, totals[0], totals[1], percent);
+    }
+
+    /**
+     * Сложение корзин интервалов окна в merged.
+     *
+     * @return {число измерений, максимум}.
+     */
+    private long[] merge(int window, long[] merged) {
+        long now = System.nanoTime() / sliceNanos;
+        long total = 0;
+        long max = 0;
+
+        for (int i = 0; i < slices.length(); i++) {
+            Slice slice = slices.get(i);
+            if (slice != null && now - slice.epoch >= slices.length()) {
+                // Интервал старше кольца в окно уже не попадёт.
+                slices.compareAndSet(i, slice, null);
+                continue;
+            }
+            if (slice == null || slice.epoch > now || now - slice.epoch >= window) {
+                continue;
+            }
+            for (int b = 0; b < LENGTH; b++) {
+                long count = slice.counts.get(b);
+                merged[b] += count;
+                total += count;
+            }
+            max = Math.max(max, slice.max.get());
+        }
+        return new long[]{total, max};
+    }
+
+    /**
+     * Значение, не меньше которого percent процентов измерений.
+     *
+     * Как и в HdrHistogram, возвращается верхняя граница корзины
+     * (но не больше фактического максимума).
+     */
+    private static long percentile(long[] counts, long total, long max, double percent) {
+        long target = Math.max(1, (long) Math.ceil(percent / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Индекс корзины для значения.
+     *
+     * k — номер октавы (0 для значений < 128),
+     * sub — позиция внутри октавы с шагом 2^k.
+     */
+    static int index(long value) {
+        int k = 64 - Long.numberOfLeadingZeros(value | SUB_MASK) - SUB_BITS;
+        int sub = (int) (value >>> k);
+        return k * HALF + sub;
+    }
+
+    /**
+     * Наибольшее значение, попадающее в корзину index.
+     */
+    static long upperBound(int index) {
+        int k = index < SUB_COUNT ? 0 : index / HALF - 1;
+        long sub = index - (long) k * HALF;
+        return ((sub + 1) << k) - 1;
+    }
+
+    /**
+     * Корзины одного интервала.
+     */
+    private static final class Slice {
+
+        final long epoch;
+
+        final AtomicIntegerArray counts = new AtomicIntegerArray(LENGTH);
+
+        final AtomicLong max = new AtomicLong();
+
+        Slice(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package oleborn.gateway.metrics;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * LatencyRecorder
+ *
+ * Реестр гистограмм задержек:
+ * - по маршрутам (id Route) — полное время обработки в Gateway;
+ * - по upstream'ам (host:port backend'а) — время проксирования.
+ *
+ * Внутри каждого ключа измерения разделены по классу статуса
+ * (1xx..5xx; "none" — статус не установлен: ошибка или отмена),
+ * чтобы быстрые 4xx/5xx не "улучшали" перцентили успешных ответов.
+ *
+ * Гистограммы создаются лениво при первом измерении ключа;
+ * дальше запись — поиск в ConcurrentHashMap и атомарный инкремент.
+ * Число ключей ограничено конфигурацией (маршруты и их backend'ы).
+ */
+public class LatencyRecorder implements MetricsSource {
+
+    private static final String[] STATUS_CLASSES = {"none", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final Duration slice;
+
+    private final long sliceNanos;
+
+    private final int slices;
+
+    // Окно → число интервалов в нём.
+    private final Map<String, Integer> windows = new LinkedHashMap<>();
+
+    private final Map<String, StatusClasses> routes = new ConcurrentHashMap<>();
+
+    private final Map<String, StatusClasses> upstreams = new ConcurrentHashMap<>();
+
+    public LatencyRecorder(MetricsProperties properties) {
+        this.slice = properties.getSlice();
+        this.sliceNanos = slice.toNanos();
+        int widest = 1;
+        for (Duration window : properties.getWindows()) {
+            int count = (int) Math.max(1, Math.ceilDiv(window.toNanos(), sliceNanos));
+            windows.put(format(window), count);
+            widest = Math.max(widest, count);
+        }
+        this.slices = widest;
+    }
+
+    public void recordRoute(String routeId, int status, long nanos) {
+        routes.computeIfAbsent(routeId, key -> new StatusClasses()).record(status, nanos);
+    }
+
+    public void recordUpstream(String authority, int status, long nanos) {
+        upstreams.computeIfAbsent(authority, key -> new StatusClasses()).record(status, nanos);
+    }
+
+    @Override
+    public String metricsName() {
+        return "latency";
+    }
+
+    /**
+     * Сводка по всем окнам:
+     * окно → {routes, upstreams} → ключ → класс статуса → перцентили.
+     */
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> windowsSnapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> window : windows.entrySet()) {
+            Map<String, Object> byKind = new LinkedHashMap<>();
+            byKind.put("routes", snapshot(routes, window.getValue()));
+            byKind.put("upstreams", snapshot(upstreams, window.getValue()));
+            windowsSnapshot.put(window.getKey(), byKind);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("unit", "microseconds");
+        result.put("slice", format(slice));
+        result.put("windows", windowsSnapshot);
+        return result;
+    }
+
+    private static Map<String, Map<String, LatencySnapshot>> snapshot(Map<String, StatusClasses> source, int window) {
+        Map<String, Map<String, LatencySnapshot>> result = new TreeMap<>();
+        source.forEach((key, classes) -> {
+            Map<String, LatencySnapshot> byClass = classes.snapshot(window);
+            if (!byClass.isEmpty()) {
+                result.put(key, byClass);
+            }
+        });
+        return result;
+    }
+
+    private static String format(Duration window) {
+        return window.toSeconds() % 60 == 0 ? window.toMinutes() + "m" : window.toSeconds() + "s";
+    }
+
+    /**
+     * @return метки окон в порядке конфигурации.
+     */
+    public List<String> windows() {
+        return List.copyOf(windows.keySet());
+    }
+
+    /**
+     * Гистограммы одного ключа по классам статуса.
+     */
+    private final class StatusClasses {
+
+        private final AtomicReferenceArray<LatencyHistogram> histograms =
+                new AtomicReferenceArray<>(STATUS_CLASSES.length);
+
+        void record(int status, long nanos) {
+            int index = status >= 100 && status < 600 ? status / 100 : 0;
+            LatencyHistogram histogram = histograms.get(index);
+            if (histogram == null) {
+                histograms.compareAndSet(index, null, new LatencyHistogram(sliceNanos, slices));
+                histogram = histograms.get(index);
+            }
+            histogram.record(nanos);
+        }
+
+        Map<String, LatencySnapshot> snapshot(int window) {
+            Map<String, LatencySnapshot> result = new LinkedHashMap<>();
+            for (int i = 1; i <= STATUS_CLASSES.length; i++) {
+                // "none" — последним, после 1xx..5xx.
+                int index = i % STATUS_CLASSES.length;
+                LatencyHistogram histogram = histograms.get(index);
+                if (histogram != null) {
+                    LatencySnapshot snapshot = histogram.snapshot(window);
+                    if (snapshot.count() > 0) {
+                        result.put(STATUS_CLASSES[index], snapshot);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package oleborn.gateway.metrics;
+
+/**
+ * Сводка гистограммы задержек за окно.
+ *
+ * Значения — в микросекундах.
+ *
+ * @param count число измерений.
+ * @param p50   медиана.
+ * @param p90   90-й перцентиль.
+ * @param p99   99-й перцентиль.
+ * @param p999  99.9-й перцентиль.
+ * @param max   точный максимум.
+ */
+public record LatencySnapshot(long count, long p50, long p90, long p99, long p999, long max) {
+
+    public static final LatencySnapshot EMPTY = new LatencySnapshot(0, 0, 0, 0, 0, 0);
+}
@@ -0,0 +1,47 @@
+package oleborn.gateway.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * MetricsConfig
+ *
+ * Регистрация гистограмм задержек, фильтров измерения
+ * и endpoint'а метрик.
+ *
+ * Endpoint собирает все бины MetricsSource приложения:
+ * другие подсистемы публикуют метрики, просто объявив такой бин.
+ */
+@Configuration
+@EnableConfigurationProperties(MetricsProperties.class)
+public class MetricsConfig {
+
+    @Bean
+    public LatencyRecorder latencyRecorder(MetricsProperties properties) {
+        return new LatencyRecorder(properties);
+    }
+
+    @Bean
+    public RouteLatencyFilter routeLatencyFilter(LatencyRecorder latencyRecorder) {
+        return new RouteLatencyFilter(latencyRecorder);
+    }
+
+    @Bean
+    public UpstreamLatencyFilter upstreamLatencyFilter(LatencyRecorder latencyRecorder) {
+        return new UpstreamLatencyFilter(latencyRecorder);
+    }
+
+    @Bean
+    public MetricsEndpoint metricsEndpoint(MetricsProperties properties, ObjectProvider<MetricsSource> sources) {
+        return new MetricsEndpoint(properties, sources.orderedStream().toList());
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> metricsRoutes(MetricsEndpoint metricsEndpoint) {
+        return metricsEndpoint.routes();
+    }
+}
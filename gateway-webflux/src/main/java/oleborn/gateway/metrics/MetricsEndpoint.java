@@ -0,0 +1,44 @@
+package oleborn.gateway.metrics;
+
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.util.List;
+
+/**
+ * MetricsEndpoint
+ *
+ * HTTP-endpoint'ы метрик Gateway в духе actuator:
+ * - GET {base-path}        — список доступных источников;
+ * - GET {base-path}/{name} — метрики источника (MetricsSource).
+ *
+ * RouterFunction обрабатывается RouterFunctionMapping,
+ * который стоит РАНЬШЕ RoutePredicateHandlerMapping:
+ * на эти пути отвечает сам Gateway, а не backend.
+ * Доступ защищён тем же SecurityWebFilterChain, что и маршруты.
+ */
+public class MetricsEndpoint {
+
+    private final MetricsProperties properties;
+
+    private final List<MetricsSource> sources;
+
+    public MetricsEndpoint(MetricsProperties properties, List<MetricsSource> sources) {
+        this.properties = properties;
+        this.sources = List.copyOf(sources);
+    }
+
+    public RouterFunction<ServerResponse> routes() {
+        List<String> names = sources.stream().map(MetricsSource::metricsName).toList();
+
+        RouterFunctions.Builder builder = RouterFunctions.route()
+                .GET(properties.getBasePath(), request -> ServerResponse.ok().bodyValue(names));
+
+        for (MetricsSource source : sources) {
+            builder.GET(properties.getBasePath() + "/" + source.metricsName(),
+                    request -> ServerResponse.ok().bodyValue(source.metricsSnapshot()));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,50 @@
+package oleborn.gateway.metrics;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MetricsProperties
+ *
+ * Настройки метрик Gateway (блок gateway.metrics).
+ */
+@ConfigurationProperties(prefix = "gateway.metrics")
+public class MetricsProperties {
+
+    // Путь, под которым публикуются endpoint'ы метрик.
+    private String basePath = "/gateway/metrics";
+
+    // Длительность одного интервала скользящего окна.
+    private Duration slice = Duration.ofSeconds(10);
+
+    // Окна, за которые считаются перцентили.
+    // Наибольшее окно определяет число хранимых интервалов.
+    private List<Duration> windows = new ArrayList<>(List.of(Duration.ofMinutes(1), Duration.ofMinutes(5)));
+
+    public String getBasePath() {
+        return basePath;
+    }
+
+    public void setBasePath(String basePath) {
+        this.basePath = basePath;
+    }
+
+    public Duration getSlice() {
+        return slice;
+    }
+
+    public void setSlice(Duration slice) {
+        this.slice = slice;
+    }
+
+    public List<Duration> getWindows() {
+        return windows;
+    }
+
+    public void setWindows(List<Duration> windows) {
+        this.windows = windows;
+    }
+}
@@ -0,0 +1,23 @@
+package oleborn.gateway.metrics;
+
+/**
+ * MetricsSource
+ *
+ * Компонент, публикующий свои метрики через MetricsEndpoint.
+ *
+ * Каждый источник получает собственный путь
+ * GET {base-path}/{name}; snapshot() сериализуется в JSON.
+ */
+public interface MetricsSource {
+
+    /**
+     * @return сегмент пути endpoint'а (например, "latency").
+     */
+    String metricsName();
+
+    /**
+     * @return текущие значения метрик — Map, record или другой
+     *         сериализуемый в JSON объект.
+     */
+    Object metricsSnapshot();
+}
@@ -0,0 +1,49 @@
+package oleborn.gateway.metrics;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * RouteLatencyFilter
+ *
+ * Измерение полного времени обработки запроса в Gateway
+ * по маршрутам.
+ *
+ * Выполняется раньше всех фильтров проекта,
+ * поэтому в измерение входят и они сами,
+ * и запросы, остановленные short-circuit'ом (403 Step8 и т.п.).
+ */
+public class RouteLatencyFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = -30;
+
+    private final LatencyRecorder recorder;
+
+    public RouteLatencyFilter(LatencyRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+                    if (route != null) {
+                        HttpStatusCode status = exchange.getResponse().getStatusCode();
+                        recorder.recordRoute(route.getId(), status != null ? status.value() : 0, System.nanoTime() - start);
+                    }
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,57 @@
+package oleborn.gateway.metrics;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * UpstreamLatencyFilter
+ *
+ * Измерение времени проксирования по backend'ам (host:port).
+ *
+ * Стоит непосредственно перед NettyRoutingFilter:
+ * к этому моменту RouteToRequestUrlFilter и фильтры маршрута
+ * уже вычислили итоговый URL, а в измерение входят только
+ * вызов backend'а и передача ответа клиенту.
+ *
+ * Retry переподписывается на эту часть цепочки,
+ * поэтому каждая попытка измеряется отдельно.
+ */
+public class UpstreamLatencyFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = NettyRoutingFilter.ORDER - 1;
+
+    private final LatencyRecorder recorder;
+
+    public UpstreamLatencyFilter(LatencyRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        // Только HTTP-backend'ы: forward:, ws: и т.п. не измеряются.
+        if (url == null || url.getRawAuthority() == null || !url.getScheme().startsWith("http")) {
+            return chain.filter(exchange);
+        }
+
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    recorder.recordUpstream(url.getRawAuthority(), status != null ? status.value() : 0, System.nanoTime() - start);
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
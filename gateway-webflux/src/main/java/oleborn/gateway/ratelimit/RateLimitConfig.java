@@ -0,0 +1,24 @@
+package oleborn.gateway.ratelimit;
+
+import oleborn.gateway.ip.ClientIpResolver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RateLimitConfig
+ *
+ * Регистрация ограничения частоты запросов и его метрик.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    public RateLimiters rateLimiters() {
+        return new RateLimiters();
+    }
+
+    @Bean
+    public RateLimitFilter rateLimitFilter(RateLimiters rateLimiters, ClientIpResolver clientIpResolver) {
+        return new RateLimitFilter(rateLimiters, clientIpResolver);
+    }
+}
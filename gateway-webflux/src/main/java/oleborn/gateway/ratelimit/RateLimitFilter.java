@@ -0,0 +1,115 @@
+package oleborn.gateway.ratelimit;
+
+import oleborn.gateway.cache.ETagFilter;
+import oleborn.gateway.filter.RouteScopedFilter;
+import oleborn.gateway.ip.ClientIpResolver;
+import oleborn.gateway.ip.IpAddress;
+import oleborn.gateway.routing.RouteMetadata;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * RateLimitFilter
+ *
+ * Ограничение частоты запросов клиента для маршрутов,
+ * включивших его через metadata "rate-limit.enabled".
+ *
+ * Проблема:
+ * - встроенный RequestRateLimiter хранит корзины в Redis:
+ *   сетевой вызов на каждый запрос и ещё одна зависимость на горячем пути.
+ *
+ * Что делает этот фильтр:
+ * - у каждого клиента маршрута своё состояние в памяти Gateway:
+ *   корзина токенов (capacity запросов подряд, refill-rate в секунду в среднем)
+ *   либо скользящее окно (limit запросов за любые window подряд —
+ *   так записаны договоры с партнёрами: "N запросов в минуту");
+ * - клиент — имя пользователя, установленного SecurityConfig,
+ *   либо IP клиента (ClientIpResolver, как у Step8IpValidationFilter);
+ * - лимит исчерпан — 429 с Retry-After без обращения к backend'у.
+ *
+ * Ограничение локально: за N экземплярами Gateway клиент получает
+ * до N-кратного лимита. Для защиты backend'а
+ * от одного клиента этого достаточно; точная общая квота —
+ * задача общего хранилища.
+ *
+ * Архитектурный смысл:
+ * - фильтр стоит после проверки IP (Step8, order -20)
+ *   и раньше ETag и кеша (order -15): ограничение действует
+ *   и на ответы, которые Gateway отдал бы сам.
+ */
+public class RateLimitFilter implements GlobalFilter, Ordered, RouteScopedFilter {
+
+    public static final int ORDER = ETagFilter.ORDER - 1;
+
+    // Черновик адреса клиента на каждый поток event-loop
+    // (как в Step8IpValidationFilter): копия создаётся,
+    // только когда клиент приходит впервые.
+    private static final ThreadLocal<IpAddress> CLIENT_IP =
+            ThreadLocal.withInitial(IpAddress::new);
+
+    // Общая корзина клиентов, чей адрес определить не удалось.
+    private static final Object UNKNOWN_CLIENT = new Object();
+
+    private final RateLimiters limiters;
+
+    private final ClientIpResolver clientIpResolver;
+
+    public RateLimitFilter(RateLimiters limiters, ClientIpResolver clientIpResolver) {
+        this.limiters = limiters;
+        this.clientIpResolver = clientIpResolver;
+    }
+
+    @Override
+    public boolean appliesTo(Route route) {
+        return RouteMetadata.flag(route.getMetadata(), RateLimitPolicy.ENABLED);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        RouteRateLimiter limiter = route != null ? limiters.limiter(route) : null;
+        if (limiter == null) {
+            return chain.filter(exchange);
+        }
+        if (limiter.policy.key() == RateLimitPolicy.KeyMode.IP) {
+            return proceed(exchange, chain, limiter.tryAcquire(clientIp(exchange)));
+        }
+        // Principal уже в контексте безопасности: Mono завершается синхронно.
+        return exchange.getPrincipal()
+                .filter(principal -> !(principal instanceof Authentication authentication)
+                        || authentication.isAuthenticated())
+                .map(principal -> limiter.tryAcquire(principal.getName()))
+                .switchIfEmpty(Mono.fromSupplier(() -> limiter.tryAcquire(clientIp(exchange))))
+                .flatMap(wait -> proceed(exchange, chain, wait));
+    }
+
+    private Object clientIp(ServerWebExchange exchange) {
+        IpAddress clientIp = CLIENT_IP.get();
+        return clientIpResolver.resolve(exchange.getRequest(), clientIp) ? clientIp : UNKNOWN_CLIENT;
+    }
+
+    private static Mono<Void> proceed(ServerWebExchange exchange, GatewayFilterChain chain, long waitMillis) {
+        if (waitMillis == 0) {
+            return chain.filter(exchange);
+        }
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        // Retry-After — в целых секундах, с округлением вверх.
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString((waitMillis + 999) / 1000));
+        return response.setComplete();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
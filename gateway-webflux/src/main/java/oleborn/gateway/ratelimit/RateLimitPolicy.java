@@ -0,0 +1,136 @@
+package oleborn.gateway.ratelimit;
+
+import oleborn.gateway.routing.RouteMetadata;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * RateLimitPolicy
+ *
+ * Настройки ограничения частоты запросов маршрута из Route metadata.
+ *
+ * Корзина токенов (по умолчанию):
+ *
+ *   .metadata("rate-limit.enabled", true)
+ *   .metadata("rate-limit.capacity", 20)
+ *   .metadata("rate-limit.refill-rate", 10)
+ *
+ * Скользящее окно ("N запросов за любую минуту"):
+ *
+ *   .metadata("rate-limit.enabled", true)
+ *   .metadata("rate-limit.algorithm", "sliding-window")
+ *   .metadata("rate-limit.limit", 600)
+ *   .metadata("rate-limit.window", "1m")
+ *   .metadata("rate-limit.max-hot-keys", 1024)
+ *
+ * Общие:
+ *
+ *   .metadata("rate-limit.key", "principal")
+ *   .metadata("rate-limit.max-keys", 100000)
+ *
+ * @param algorithm  способ подсчёта.
+ * @param capacity   корзина: запросов подряд (ёмкость корзины клиента).
+ * @param refillRate корзина: запросов в секунду в среднем (пополнение).
+ * @param limit      окно: запросов за окно.
+ * @param window     окно: длина скользящего окна.
+ * @param key        чем различаются клиенты.
+ * @param maxKeys    клиентов маршрута в памяти; лишние вытесняются (LRU).
+ * @param maxHotKeys окно: клиентов, которым разрешены ячейки
+ *                   для одновременных запросов (по ~2 * 128 байт на поток).
+ */
+record RateLimitPolicy(
+        Algorithm algorithm,
+        int capacity,
+        int refillRate,
+        int limit,
+        Duration window,
+        KeyMode key,
+        int maxKeys,
+        int maxHotKeys
+) {
+
+    static final String PREFIX = "rate-limit.";
+
+    static final String ENABLED = PREFIX + "enabled";
+
+    // Токены хранятся в тысячных долях в 32 битах состояния корзины.
+    static final int MAX_CAPACITY = 4_000_000;
+
+    static final int MAX_REFILL_RATE = 1_000_000;
+
+    // Произведения счётчиков окна на его длину в мс остаются в long.
+    static final Duration MAX_WINDOW = Duration.ofDays(1);
+
+    /**
+     * Способ подсчёта.
+     */
+    enum Algorithm {
+
+        // TokenBucket: всплеск до capacity, затем refill-rate в секунду.
+        TOKEN_BUCKET,
+
+        // SlidingWindowCounter: не больше limit за любые window подряд.
+        SLIDING_WINDOW
+    }
+
+    /**
+     * Ключ клиента.
+     */
+    enum KeyMode {
+
+        // IP клиента (ClientIpResolver, как у Step8IpValidationFilter).
+        IP,
+
+        // Имя аутентифицированного пользователя (SecurityConfig);
+        // для анонимных запросов (/public/**) — IP клиента.
+        PRINCIPAL
+    }
+
+    /**
+     * @return политика маршрута либо null, если ограничение не включено.
+     * @throws IllegalArgumentException при некорректных значениях.
+     */
+    static RateLimitPolicy from(Map<String, Object> metadata) {
+        if (!RouteMetadata.flag(metadata, ENABLED)) {
+            return null;
+        }
+        Algorithm algorithm = constant(Algorithm.class, metadata, "algorithm", "token-bucket");
+        int refillRate = RouteMetadata.integer(metadata, PREFIX + "refill-rate", 10);
+        int capacity = RouteMetadata.integer(metadata, PREFIX + "capacity", refillRate);
+        int limit = RouteMetadata.integer(metadata, PREFIX + "limit", 100);
+        Duration window = RouteMetadata.duration(metadata, PREFIX + "window", Duration.ofMinutes(1));
+        int maxKeys = RouteMetadata.integer(metadata, PREFIX + "max-keys", 100_000);
+        int maxHotKeys = RouteMetadata.integer(metadata, PREFIX + "max-hot-keys", 1024);
+        if (refillRate < 1 || refillRate > MAX_REFILL_RATE || capacity < 1 || capacity > MAX_CAPACITY
+                || maxKeys < 1 || maxHotKeys < 0) {
+            throw new IllegalArgumentException("Invalid rate-limit capacity=" + capacity
+                    + ", refill-rate=" + refillRate + ", max-keys=" + maxKeys + ", max-hot-keys=" + maxHotKeys);
+        }
+        if (limit < 1 || window.toMillis() < 1 || window.compareTo(MAX_WINDOW) > 0) {
+            throw new IllegalArgumentException("Invalid rate-limit limit=" + limit + ", window=" + window);
+        }
+        KeyMode key = constant(KeyMode.class, metadata, "key", "principal");
+        return new RateLimitPolicy(algorithm, capacity, refillRate, limit, window, key, maxKeys, maxHotKeys);
+    }
+
+    // "sliding-window" -> SLIDING_WINDOW.
+    private static <E extends Enum<E>> E constant(Class<E> type, Map<String, Object> metadata, String name, String defaultValue) {
+        String value = RouteMetadata.string(metadata, PREFIX + name, defaultValue);
+        try {
+            return Enum.valueOf(type, value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for metadata '" + PREFIX + name + "': " + value, e);
+        }
+    }
+
+    /**
+     * Описание ограничения для метрик.
+     */
+    String describe() {
+        return algorithm == Algorithm.TOKEN_BUCKET
+                ? capacity + " burst, " + refillRate + "/s"
+                : limit + " per " + window;
+    }
+}
@@ -0,0 +1,112 @@
+package oleborn.gateway.ratelimit;
+
+import oleborn.gateway.metrics.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RateLimiters
+ *
+ * Реестр ограничителей частоты запросов по маршрутам.
+ *
+ * Устроен так же, как Bulkheads:
+ * политика читается из metadata маршрута,
+ * а состояния клиентов пересоздаются только при изменении политики —
+ * иначе обновление маршрутов обнуляло бы ограничение.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/rate-limit.
+ */
+public class RateLimiters implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimiters.class);
+
+    private final Map<String, Binding> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * @return ограничитель маршрута либо null, если он не включён
+     *         или его metadata некорректна.
+     */
+    RouteRateLimiter limiter(Route route) {
+        Binding binding = limiters.get(route.getId());
+        if (binding != null && binding.route == route) {
+            return binding.limiter;
+        }
+        return bind(route, binding);
+    }
+
+    private RouteRateLimiter bind(Route route, Binding previous) {
+        RouteRateLimiter limiter = null;
+        try {
+            RateLimitPolicy policy = RateLimitPolicy.from(route.getMetadata());
+            if (policy != null) {
+                limiter = previous != null && previous.limiter != null && previous.limiter.policy.equals(policy)
+                        ? previous.limiter
+                        : new RouteRateLimiter(policy);
+            }
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid rate-limit metadata on route '{}', rate limiting disabled", route.getId(), e);
+        }
+        limiters.put(route.getId(), new Binding(route, limiter));
+        return limiter;
+    }
+
+    @Override
+    public String metricsName() {
+        return "rate-limit";
+    }
+
+    @Override
+    public Map<String, RateLimitSnapshot> metricsSnapshot() {
+        Map<String, RateLimitSnapshot> result = new TreeMap<>();
+        limiters.forEach((id, binding) -> {
+            RouteRateLimiter limiter = binding.limiter;
+            if (limiter != null) {
+                RateLimitPolicy policy = limiter.policy;
+                result.put(id, new RateLimitSnapshot(
+                        policy.algorithm().name().toLowerCase(Locale.ROOT).replace('_', '-'),
+                        policy.describe(),
+                        policy.key().name().toLowerCase(Locale.ROOT),
+                        limiter.size(),
+                        policy.algorithm() == RateLimitPolicy.Algorithm.SLIDING_WINDOW
+                                ? policy.maxHotKeys() - limiter.hotKeys.get()
+                                : 0,
+                        limiter.allowed.sum(),
+                        limiter.limited.sum(),
+                        limiter.evicted.sum()
+                ));
+            }
+        });
+        return result;
+    }
+
+    private record Binding(Route route, RouteRateLimiter limiter) {
+    }
+
+    /**
+     * Состояние ограничителя маршрута.
+     *
+     * @param limit   ограничение: "50 burst, 20/s" или "600 per PT1M".
+     * @param keys    клиентов в памяти сейчас.
+     * @param hotKeys из них — с ячейками для одновременных запросов (окно).
+     * @param allowed разрешённых запросов.
+     * @param limited отклонённых (429).
+     * @param evicted клиентов, вытесненных при переполнении max-keys.
+     */
+    public record RateLimitSnapshot(
+            String algorithm,
+            String limit,
+            String key,
+            int keys,
+            int hotKeys,
+            long allowed,
+            long limited,
+            long evicted
+    ) {
+    }
+}
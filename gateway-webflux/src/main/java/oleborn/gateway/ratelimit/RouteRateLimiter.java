@@ -0,0 +1,226 @@
+package oleborn.gateway.ratelimit;
+
+import oleborn.gateway.ip.IpAddress;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RouteRateLimiter
+ *
+ * Состояние клиентов одного маршрута: корзины токенов (TokenBucket)
+ * либо счётчики скользящего окна (SlidingWindowCounter).
+ *
+ * Состояния хранятся в ограниченной карте с вытеснением LRU.
+ * Карта разбита на полосы (stripes) по хешу ключа; в каждой полосе:
+ * - поиск — ConcurrentHashMap без блокировок;
+ * - порядок обращений — двусвязная очередь под tryLock,
+ *   как в ResponseCache: занятая блокировка — обращение не учитывается,
+ *   поток не ждёт. Один клиент переставляется не чаще раза в миллисекунду,
+ *   поэтому горячий ключ — это только чтения, и его запросы
+ *   со всех event loop'ов встречаются лишь в CAS его состояния;
+ * - добавление и вытеснение самого давнего — под блокировкой полосы.
+ *
+ * Память постоянна: не больше max-keys клиентов
+ * и не больше max-hot-keys из них с ячейками для одновременных запросов.
+ *
+ * Вытесненный клиент при следующем запросе начинает с чистого листа.
+ * Поэтому max-keys должен покрывать клиентов, активных за время
+ * наполнения корзины (capacity / refill-rate секунд) или за окно:
+ * вытесняются давно не приходившие, а их состояние и так было бы пустым.
+ */
+final class RouteRateLimiter {
+
+    final RateLimitPolicy policy;
+
+    private final Stripe[] stripes;
+
+    private final int mask;
+
+    // Корзина: тысячные токена и тысячные за миллисекунду.
+    private final long capacity;
+
+    private final long refillRate;
+
+    // Окно.
+    private final long limit;
+
+    private final long windowMillis;
+
+    // Сколько ещё клиентов окна могут получить ячейки.
+    final AtomicInteger hotKeys;
+
+    // Начало отсчёта времени состояний.
+    private final long originNanos = System.nanoTime();
+
+    final LongAdder allowed = new LongAdder();
+
+    final LongAdder limited = new LongAdder();
+
+    final LongAdder evicted = new LongAdder();
+
+    RouteRateLimiter(RateLimitPolicy policy) {
+        this.policy = policy;
+        this.capacity = policy.capacity() * TokenBucket.ONE;
+        this.refillRate = policy.refillRate();
+        this.limit = policy.limit();
+        this.windowMillis = policy.window().toMillis();
+        this.hotKeys = new AtomicInteger(policy.maxHotKeys());
+        int count = Math.min(
+                Integer.highestOneBit(Math.max(1, policy.maxKeys() / 64)),
+                Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 8 - 1) << 1
+        );
+        this.stripes = new Stripe[count];
+        this.mask = count - 1;
+        int perStripe = (policy.maxKeys() + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Учесть запрос клиента.
+     *
+     * @param key ключ клиента; черновик IpAddress потока допустим —
+     *            в карту попадает его копия.
+     * @return 0, если запрос разрешён; иначе — через сколько мс его повторить.
+     */
+    long tryAcquire(Object key) {
+        long now = (System.nanoTime() - originNanos) / 1_000_000;
+        long wait = switch (state(key, now)) {
+            case TokenBucket bucket -> bucket.tryAcquire(capacity, refillRate, now);
+            case SlidingWindowCounter counter -> counter.tryAcquire(limit, windowMillis, now, hotKeys);
+            default -> throw new IllegalStateException();
+        };
+        (wait == 0 ? allowed : limited).increment();
+        return wait;
+    }
+
+    private Object state(Object key, long now) {
+        int h = key.hashCode() * 0x9E3779B9;
+        Stripe stripe = stripes[(h ^ h >>> 16) & mask];
+        Node node = stripe.nodes.get(key);
+        if (node == null) {
+            return stripe.add(key, now);
+        }
+        if (node.touched != now && stripe.lock.tryLock()) {
+            try {
+                node.touched = now;
+                stripe.moveToFirst(node);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return node.state;
+    }
+
+    private Object newState(long now) {
+        return policy.algorithm() == RateLimitPolicy.Algorithm.TOKEN_BUCKET
+                ? new TokenBucket(capacity, now)
+                : new SlidingWindowCounter();
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.nodes.size();
+        }
+        return size;
+    }
+
+    /**
+     * Клиент в очереди обращений полосы.
+     */
+    private static final class Node {
+
+        final Object key;
+
+        final Object state;
+
+        // Время последней перестановки в начало очереди, мс.
+        volatile long touched;
+
+        // Под блокировкой полосы.
+        Node prev;
+
+        Node next;
+
+        Node(Object key, Object state, long touched) {
+            this.key = key;
+            this.state = state;
+            this.touched = touched;
+        }
+    }
+
+    /**
+     * Полоса карты: поиск без блокировок,
+     * порядок обращений и вытеснение — под своей блокировкой.
+     */
+    private final class Stripe {
+
+        final Map<Object, Node> nodes = new ConcurrentHashMap<>();
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        private final int maxSize;
+
+        // Кольцо с фиктивным узлом: начало — недавние, конец — самые давние.
+        private final Node head = new Node(null, null, 0);
+
+        Stripe(int maxSize) {
+            this.maxSize = maxSize;
+            head.prev = head;
+            head.next = head;
+        }
+
+        Object add(Object key, long now) {
+            lock.lock();
+            try {
+                Node node = nodes.get(key);
+                if (node != null) {
+                    return node.state;
+                }
+                node = new Node(key instanceof IpAddress ip ? ip.copy() : key, newState(now), now);
+                nodes.put(node.key, node);
+                addFirst(node);
+                if (nodes.size() > maxSize) {
+                    Node eldest = head.prev;
+                    unlink(eldest);
+                    nodes.remove(eldest.key);
+                    evicted.increment();
+                    if (eldest.state instanceof SlidingWindowCounter counter) {
+                        counter.release(hotKeys);
+                    }
+                }
+                return node.state;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void moveToFirst(Node node) {
+            // Узел мог быть вытеснен, пока поток шёл к блокировке.
+            if (node.prev != null) {
+                unlink(node);
+                addFirst(node);
+            }
+        }
+
+        private void addFirst(Node node) {
+            node.next = head.next;
+            node.prev = head;
+            head.next.prev = node;
+            head.next = node;
+        }
+
+        private void unlink(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+}
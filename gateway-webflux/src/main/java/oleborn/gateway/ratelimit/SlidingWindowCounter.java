@@ -0,0 +1,192 @@
+package oleborn.gateway.ratelimit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SlidingWindowCounter
+ *
+ * Скользящее окно "limit запросов за window" для одного клиента.
+ *
+ * Хранятся только два счётчика: текущего окна фиксированной сетки
+ * и предыдущего. Число запросов за последние window оценивается как
+ *
+ *   предыдущее * (непрошедшая доля текущего окна) + текущее,
+ *
+ * то есть запросы предыдущего окна считаются распределёнными равномерно.
+ * Ошибка оценки — доли процента при ровном потоке;
+ * в отличие от фиксированного окна, на стыке окон клиент
+ * не получает 2 * limit запросов подряд.
+ *
+ * Счётчик устроен как LongAdder:
+ * - пока к клиенту не обращаются одновременно, считает одно поле base;
+ * - первая неудачная CAS на base создаёт массив ячеек, разнесённых
+ *   по разным кеш-линиям, и дальше каждый поток считает в своей ячейке —
+ *   горячий ключ не превращается в одну линию кеша, за которую
+ *   соревнуются все event loop'ы;
+ * - холодные клиенты (почти все) ячеек не получают
+ *   и занимают несколько десятков байт;
+ * - число клиентов с ячейками ограничено бюджетом маршрута (max-hot-keys):
+ *   без него память зависела бы от того, сколько клиентов
+ *   хоть раз пришли двумя запросами одновременно.
+ *   Без бюджета счётчик остаётся на base и просто повторяет CAS.
+ *
+ * Каждая ячейка — long: номер окна в старших 32 битах, число в младших.
+ * Ячеек по две на поток: для чётных и нечётных окон,
+ * поэтому начало нового окна не стирает предыдущее.
+ * Устаревшее значение (окно старше предыдущего) просто не учитывается
+ * и перезаписывается при следующем запросе.
+ *
+ * Проверка и увеличение не атомарны вместе: одновременные запросы
+ * одного клиента могут превысить limit на число event loop'ов.
+ * Для "N запросов в минуту" это неразличимо, а точность стоила бы
+ * общей блокировки на горячем ключе.
+ */
+final class SlidingWindowCounter {
+
+    // 128 байт между ячейками (и перед первой — от заголовка массива):
+    // соседние линии кеша процессор тоже загружает парами.
+    private static final int STRIDE = 16;
+
+    private static final int CELLS = Math.min(64,
+            Math.max(2, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+    private static final long LOW_32 = 0xFFFF_FFFFL;
+
+    private static final VarHandle CELLS_ARRAY;
+
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(long[].class);
+
+    static {
+        try {
+            CELLS_ARRAY = MethodHandles.lookup().findVarHandle(SlidingWindowCounter.class, "cells", long[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Ячейки вытесненного клиента: место в бюджете возвращено,
+    // запоздавшие запросы считают на base и новых ячеек не создают.
+    private static final long[] RELEASED = new long[0];
+
+    // base[0] — чётные окна, base[1] — нечётные.
+    private final long[] base = new long[2];
+
+    // null, пока не было одновременных обращений.
+    @SuppressWarnings("unused") // через CELLS_ARRAY
+    private volatile long[] cells;
+
+    /**
+     * Учесть запрос, если он укладывается в окно.
+     *
+     * @param limit        запросов за окно.
+     * @param windowMillis длина окна, мс.
+     * @param nowMillis    текущее время, мс от начала отсчёта лимитера.
+     * @param hotKeys      оставшийся бюджет клиентов с ячейками.
+     * @return 0, если запрос разрешён; иначе — через сколько мс оценка
+     *         опустится ниже limit (если клиент перестанет присылать запросы).
+     */
+    long tryAcquire(long limit, long windowMillis, long nowMillis, AtomicInteger hotKeys) {
+        long window = nowMillis / windowMillis;
+        long remaining = (window + 1) * windowMillis - nowMillis;
+        long current = count(window);
+        long previous = count(window - 1);
+        // previous * remaining / windowMillis + current < limit — без деления.
+        if (previous * remaining + current * windowMillis < limit * windowMillis) {
+            add(window, hotKeys);
+            return 0;
+        }
+        if (current < limit) {
+            // Ждём, пока вклад предыдущего окна не уменьшится.
+            return remaining - ((limit - current) * windowMillis - 1) / previous;
+        }
+        // Текущее окно уже исчерпано: ждём следующего,
+        // где оно станет предыдущим и начнёт "вытекать".
+        return remaining + windowMillis - (limit * windowMillis - 1) / current;
+    }
+
+    private long count(long window) {
+        int parity = (int) window & 1;
+        long sum = valueIn((long) CELL.getVolatile(base, parity), window);
+        long[] cells = this.cells;
+        if (cells != null) {
+            for (int i = (parity + 1) * STRIDE; i < cells.length; i += 2 * STRIDE) {
+                sum += valueIn((long) CELL.getVolatile(cells, i), window);
+            }
+        }
+        return sum;
+    }
+
+    private void add(long window, AtomicInteger hotKeys) {
+        int parity = (int) window & 1;
+        long[] cells = this.cells;
+        while (cells == null || cells == RELEASED) {
+            long value = (long) CELL.getVolatile(base, parity);
+            if (CELL.compareAndSet(base, parity, value, increment(value, window))) {
+                return;
+            }
+            // Соревнование за base: дальше каждый поток считает в своей ячейке.
+            cells = inflate(hotKeys);
+        }
+        int probe = probe();
+        for (;;) {
+            int index = ((probe & (CELLS - 1)) * 2 + parity + 1) * STRIDE;
+            long value = (long) CELL.getVolatile(cells, index);
+            if (CELL.compareAndSet(cells, index, value, increment(value, window))) {
+                return;
+            }
+            probe++;
+        }
+    }
+
+    /**
+     * @return ячейки счётчика либо null, если бюджет исчерпан.
+     */
+    private long[] inflate(AtomicInteger hotKeys) {
+        long[] cells = this.cells;
+        if (cells != null) {
+            return cells == RELEASED ? null : cells;
+        }
+        // Сначала чтение: исчерпанный бюджет не становится
+        // ещё одной общей линией кеша для всех потоков.
+        if (hotKeys.get() <= 0) {
+            return null;
+        }
+        if (hotKeys.getAndDecrement() <= 0) {
+            hotKeys.incrementAndGet();
+            return null;
+        }
+        cells = new long[(2 * CELLS + 1) * STRIDE];
+        if (CELLS_ARRAY.compareAndSet(this, null, cells)) {
+            return cells;
+        }
+        hotKeys.incrementAndGet();
+        cells = this.cells;
+        return cells == RELEASED ? null : cells;
+    }
+
+    /**
+     * Вернуть место в бюджете, когда клиент вытеснен.
+     */
+    void release(AtomicInteger hotKeys) {
+        long[] cells = (long[]) CELLS_ARRAY.getAndSet(this, RELEASED);
+        if (cells != null && cells != RELEASED) {
+            hotKeys.incrementAndGet();
+        }
+    }
+
+    // Потоки event loop постоянны: номер потока — его ячейка.
+    private static int probe() {
+        long id = Thread.currentThread().threadId();
+        return (int) (id ^ id >>> 32) * 0x9E3779B9 >>> 16;
+    }
+
+    private static long valueIn(long cell, long window) {
+        return (int) (cell >>> 32) == (int) window ? cell & LOW_32 : 0;
+    }
+
+    private static long increment(long cell, long window) {
+        return (int) (cell >>> 32) == (int) window ? cell + 1 : window << 32 | 1;
+    }
+}
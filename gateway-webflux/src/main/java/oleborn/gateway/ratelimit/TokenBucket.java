@@ -0,0 +1,89 @@
+package oleborn.gateway.ratelimit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * TokenBucket
+ *
+ * Корзина токенов одного клиента без блокировок.
+ *
+ * Всё состояние — одно long-значение:
+ *
+ *   старшие 32 бита  токены в тысячных долях (без знака);
+ *   младшие 32 бита  время последнего пополнения, мс от начала отсчёта лимитера.
+ *
+ * Пополнение и списание — один compareAndSet:
+ * параллельные запросы одного клиента с разных event loop'ов
+ * не теряют ни токенов, ни времени, и ни один поток не ждёт другого.
+ *
+ * Пополнение в тысячных долях удобно: refill-rate токенов в секунду —
+ * это ровно refill-rate тысячных за миллисекунду.
+ *
+ * Время в 32 битах переполняется; разность берётся по модулю 2^32
+ * как int и верна, пока к корзине обращались чаще, чем раз в ~24 дня.
+ * Корзина, которую не трогали так долго, давно вытеснена (LRU).
+ * Отрицательная разность — другой поток уже записал более позднее время:
+ * пополнения нет, время корзины не откатывается.
+ */
+final class TokenBucket {
+
+    // Один запрос — тысяча тысячных.
+    static final long ONE = 1000;
+
+    private static final long LOW_32 = 0xFFFF_FFFFL;
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(TokenBucket.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @SuppressWarnings("unused") // через STATE
+    private volatile long state;
+
+    /**
+     * Новая корзина полна: первый запрос клиента проходит сразу.
+     */
+    TokenBucket(long capacity, long nowMillis) {
+        this.state = pack(capacity, nowMillis);
+    }
+
+    /**
+     * Списать токен на запрос.
+     *
+     * @param capacity   ёмкость корзины, тысячные.
+     * @param refillRate пополнение, тысячные за миллисекунду.
+     * @param nowMillis  текущее время, мс от начала отсчёта лимитера.
+     * @return 0, если запрос разрешён; иначе — через сколько мс появится токен.
+     */
+    long tryAcquire(long capacity, long refillRate, long nowMillis) {
+        for (;;) {
+            long current = state;
+            int elapsed = (int) (nowMillis - current);
+            long tokens = (current >>> 32);
+            long time = nowMillis;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed * refillRate);
+            } else {
+                time = current;
+            }
+            if (tokens < ONE) {
+                // Отказ не пишет состояние: пополнение досчитается
+                // от прежнего времени при следующем запросе.
+                return (ONE - tokens + refillRate - 1) / refillRate;
+            }
+            if (STATE.weakCompareAndSet(this, current, pack(tokens - ONE, time))) {
+                return 0;
+            }
+        }
+    }
+
+    private static long pack(long tokens, long millis) {
+        return tokens << 32 | (millis & LOW_32);
+    }
+}
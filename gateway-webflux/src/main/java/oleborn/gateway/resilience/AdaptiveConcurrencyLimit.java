@@ -0,0 +1,186 @@
+package oleborn.gateway.resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AdaptiveConcurrencyLimit
+ *
+ * Адаптивный лимит параллельных запросов к одному backend'у
+ * (по мотивам алгоритмов Vegas / Gradient из TCP и Netflix concurrency-limits).
+ *
+ * Цель этого класса — держать очередь ВНУТРИ backend'а короткой.
+ * Пока backend успевает, время ответа (RTT) близко к минимальному;
+ * когда запросов больше, чем потоков обработки, они ждут в его очереди,
+ * и RTT растёт пропорционально длине этой очереди.
+ *
+ * Ключевая идея — после каждого ответа:
+ *   gradient = clamp(rtt-tolerance × minRtt / rtt, 0.5, 1.0)
+ *   newLimit = limit × gradient + √limit
+ * - RTT около минимума → gradient = 1, лимит растёт на √limit
+ *   (запас на поиск большей пропускной способности);
+ * - RTT заметно выше минимума → gradient < 1, лимит сокращается
+ *   пропорционально разрыву — очередь переезжает из backend'а в Gateway,
+ *   где лишние запросы сразу получают 503;
+ * - ошибка или таймаут → лимит × backoff-ratio.
+ * Новое значение сглаживается (smoothing), чтобы одиночный выброс
+ * не обрушивал лимит.
+ *
+ * Лимит не меняется, если backend недогружен (занято меньше половины лимита):
+ * иначе при малом трафике он "уплыл" бы к max-limit без всякой проверки,
+ * а случайные колебания RTT снижали бы его без перегрузки.
+ *
+ * Базовая линия общая для всех путей backend'а:
+ * если у одного backend'а есть и быстрые (1 мс), и медленные (500 мс)
+ * endpoint'ы, медленные выглядят как очередь — такие пути
+ * лучше вынести на отдельный host:port или ограничивать bulkhead'ом.
+ *
+ * Минимальный RTT берётся по двум последним окнам min-rtt-window:
+ * если backend стал медленнее надолго (другая версия, холодный кеш),
+ * базовая линия обновится, а не будет вечно занижать лимит.
+ *
+ * Всё состояние — атомарные переменные, без блокировок.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double rttTolerance;
+
+    private final double smoothing;
+
+    private final double backoffRatio;
+
+    private final long minRttWindowNanos;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    // Текущий лимит как double (Double.doubleToRawLongBits).
+    private final AtomicLong limit;
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong currentMinRtt = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong previousMinRtt = new AtomicLong(Long.MAX_VALUE);
+
+    // Запросы, отклонённые из-за лимита.
+    final LongAdder rejected = new LongAdder();
+
+    // Ответы, по которым пересчитывался лимит.
+    final LongAdder samples = new LongAdder();
+
+    // Ошибки и таймауты, снизившие лимит.
+    final LongAdder drops = new LongAdder();
+
+    AdaptiveConcurrencyLimit(ConcurrencyLimitProperties properties) {
+        this.minLimit = Math.max(1, properties.getMinLimit());
+        this.maxLimit = Math.max(minLimit, properties.getMaxLimit());
+        this.rttTolerance = Math.max(1.0, properties.getRttTolerance());
+        this.smoothing = Math.clamp(properties.getSmoothing(), 0.01, 1.0);
+        this.backoffRatio = Math.clamp(properties.getBackoffRatio(), 0.1, 1.0);
+        this.minRttWindowNanos = properties.getMinRttWindow().toNanos();
+        this.limit = new AtomicLong(Double.doubleToRawLongBits(
+                Math.clamp(properties.getInitialLimit(), minLimit, maxLimit)));
+    }
+
+    /**
+     * Занять место под запрос.
+     *
+     * @return число запросов в работе ДО этого (≥ 0)
+     *         либо -1, если лимит исчерпан.
+     */
+    int tryAcquire() {
+        int current = (int) limit();
+        while (true) {
+            int busy = inflight.get();
+            if (busy >= current) {
+                rejected.increment();
+                return -1;
+            }
+            if (inflight.compareAndSet(busy, busy + 1)) {
+                return busy;
+            }
+        }
+    }
+
+    void release() {
+        inflight.decrementAndGet();
+    }
+
+    /**
+     * Ответ backend'а получен.
+     *
+     * @param rttNanos время до заголовков ответа.
+     * @param busy     запросов в работе в момент отправки (из tryAcquire).
+     */
+    void onSample(long rttNanos, int busy) {
+        samples.increment();
+        long minRtt = minRtt(Math.max(rttNanos, 1));
+        double gradient = Math.clamp(rttTolerance * minRtt / Math.max(rttNanos, 1), 0.5, 1.0);
+
+        while (true) {
+            long bits = limit.get();
+            double current = Double.longBitsToDouble(bits);
+            // Backend недогружен: лимит ни при чём,
+            // и колебания RTT не говорят о его очереди.
+            if (busy + 1 < current / 2) {
+                return;
+            }
+            double target = current * gradient + Math.sqrt(current);
+            double next = Math.clamp(current * (1 - smoothing) + target * smoothing, minLimit, maxLimit);
+            if (next == current || limit.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ошибка или таймаут вызова.
+     */
+    void onDrop() {
+        drops.increment();
+        while (true) {
+            long bits = limit.get();
+            double current = Double.longBitsToDouble(bits);
+            double next = Math.max(minLimit, current * backoffRatio);
+            if (next == current || limit.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Учёт измерения и минимальный RTT за два последних окна.
+     */
+    private long minRtt(long rttNanos) {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= minRttWindowNanos && windowStart.compareAndSet(start, now)) {
+            previousMinRtt.set(currentMinRtt.getAndSet(Long.MAX_VALUE));
+        }
+        if (rttNanos < currentMinRtt.get()) {
+            currentMinRtt.accumulateAndGet(rttNanos, Math::min);
+        }
+        return Math.min(currentMinRtt.get(), previousMinRtt.get());
+    }
+
+    double limit() {
+        return Double.longBitsToDouble(limit.get());
+    }
+
+    ConcurrencyLimits.LimitSnapshot snapshot() {
+        long minRtt = Math.min(currentMinRtt.get(), previousMinRtt.get());
+        return new ConcurrencyLimits.LimitSnapshot(
+                (int) limit(),
+                inflight.get(),
+                minRtt == Long.MAX_VALUE ? -1 : minRtt / 1000,
+                samples.sum(),
+                rejected.sum(),
+                drops.sum()
+        );
+    }
+}
@@ -0,0 +1,345 @@
+package oleborn.gateway.resilience;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * BudgetedRetryGatewayFilterFactory
+ *
+ * Retry с экспоненциальной задержкой, full jitter
+ * и бюджетом повторов на маршрут.
+ *
+ * Почему стандартного retry(3) недостаточно:
+ * - повторы идут СРАЗУ, без паузы;
+ * - когда backend деградирует, каждый запрос превращается в 4 обращения —
+ *   нагрузка растёт в 4 раза именно тогда,
+ *   когда backend меньше всего способен её выдержать (retry storm).
+ *
+ * Что делает этот фильтр:
+ * - пауза перед повтором n: случайная в [0, min(max-backoff, first-backoff × factor^n)]
+ *   (full jitter: повторы разных клиентов не синхронизируются в волны);
+ * - каждый повтор оплачивается токеном из RetryBudget маршрута:
+ *   доля повторов ограничена (например, 20% живого трафика);
+ * - повтор не начинается, если пауза и попытка не укладываются
+ *   в срок запроса (Deadline): тратить токен и соединение
+ *   на ответ, который уже никто не ждёт, бессмысленно —
+ *   клиент сразу получает 504;
+ * - счётчики попыток, исчерпания бюджета и коэффициент
+ *   усиления нагрузки публикуются через RetryMetrics.
+ *
+ * Повтор выполняется переподпиской на оставшуюся часть цепочки,
+ * как и в стандартном RetryGatewayFilterFactory:
+ * перед повтором соединение с backend закрывается,
+ * а атрибуты "уже проксировано" сбрасываются.
+ *
+ * Доступен и из YAML: filters: - name: BudgetedRetry.
+ */
+public class BudgetedRetryGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<BudgetedRetryGatewayFilterFactory.Config> {
+
+    // Исход попытки без ошибки.
+    private static final Mono<Optional<Throwable>> SUCCESS = Mono.just(Optional.empty());
+
+    private final RetryMetrics metrics;
+
+    public BudgetedRetryGatewayFilterFactory(RetryMetrics metrics) {
+        super(Config.class);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return new GatewayFilter() {
+
+            @Override
+            public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+                RetryMetrics.RouteRetries route = metrics.route(routeId(config, exchange), config.budgetRatio, config.budgetMaxTokens);
+                route.requests.increment();
+                route.budget.deposit();
+
+                if (!config.methods.contains(exchange.getRequest().getMethod())) {
+                    route.attempts.increment();
+                    return chain.filter(exchange);
+                }
+                return attempt(exchange, chain, config, route, 0);
+            }
+
+            @Override
+            public String toString() {
+                return "BudgetedRetry[retries=" + config.retries
+                        + ", backoff=" + config.firstBackoff + ".." + config.maxBackoff
+                        + ", budget=" + config.budgetRatio + "]";
+            }
+        };
+    }
+
+    private Mono<Void> attempt(
+            ServerWebExchange exchange,
+            GatewayFilterChain chain,
+            Config config,
+            RetryMetrics.RouteRetries route,
+            int retry
+    ) {
+        route.attempts.increment();
+        return chain.filter(exchange)
+                .then(SUCCESS)
+                .onErrorResume(error -> Mono.just(Optional.of(error)))
+                .flatMap(outcome -> {
+                    Throwable error = outcome.orElse(null);
+                    boolean retryable = error != null
+                            ? isRetryable(error, config)
+                            : isRetryable(exchange.getResponse().getStatusCode(), config);
+
+                    if (retryable) {
+                        if (retry >= config.retries) {
+                            route.retriesExhausted.increment();
+                        } else {
+                            Duration pause = backoff(config, retry);
+                            Deadline deadline = Deadline.of(exchange);
+                            if (deadline != null && !deadline.coversAttemptAfter(pause.toNanos())) {
+                                // Повтор не успеет до срока запроса: клиент сразу получает 504.
+                                // Ответ последней попытки ещё не отправлен — отбрасывается
+                                // (как перед повтором), иначе остаётся как есть.
+                                route.deadlineExhausted.increment();
+                                if (!exchange.getResponse().isCommitted()) {
+                                    reset(exchange);
+                                    exchange.getResponse().getHeaders().clear();
+                                    return Mono.error(new ResponseStatusException(
+                                            HttpStatus.GATEWAY_TIMEOUT, "Request deadline exceeded before retry", error));
+                                }
+                            } else if (!route.budget.tryWithdraw()) {
+                                route.budgetExhausted.increment();
+                            } else {
+                                route.retries.increment();
+                                reset(exchange);
+                                return Mono.delay(pause)
+                                        .then(attempt(exchange, chain, config, route, retry + 1));
+                            }
+                        }
+                    }
+                    return error != null ? Mono.error(error) : Mono.empty();
+                });
+    }
+
+    /**
+     * Пауза перед повтором с номером retry (с нуля), full jitter.
+     */
+    static Duration backoff(Config config, int retry) {
+        long first = config.firstBackoff.toNanos();
+        long max = config.maxBackoff.toNanos();
+        double exponential = first * Math.pow(config.factor, retry);
+        long ceiling = exponential >= max ? max : (long) exponential;
+        if (!config.jitter || ceiling <= 0) {
+            return Duration.ofNanos(Math.max(ceiling, 0));
+        }
+        return Duration.ofNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    private static boolean isRetryable(HttpStatusCode status, Config config) {
+        if (status == null) {
+            return false;
+        }
+        if (status instanceof HttpStatus known && config.statuses.contains(known)) {
+            return true;
+        }
+        HttpStatus.Series series = HttpStatus.Series.resolve(status.value());
+        return series != null && config.series.contains(series);
+    }
+
+    private static boolean isRetryable(Throwable error, Config config) {
+        for (Class<? extends Throwable> type : config.exceptions) {
+            if (type.isInstance(error) || type.isInstance(error.getCause())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Подготовка exchange к повтору — то же,
+     * что делает стандартный RetryGatewayFilterFactory.
+     */
+    private static void reset(ServerWebExchange exchange) {
+        Connection connection = exchange.getAttribute(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR);
+        if (connection != null) {
+            connection.dispose();
+            exchange.getAttributes().remove(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR);
+        }
+        ServerWebExchangeUtils.reset(exchange);
+    }
+
+    private static String routeId(Config config, ServerWebExchange exchange) {
+        if (config.routeId != null) {
+            return config.routeId;
+        }
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : "unknown";
+    }
+
+    /**
+     * Настройки фильтра.
+     *
+     * Setter'ы возвращают this — для Java DSL:
+     * factory.apply("route-id", c -> c.setRetries(3).setBudgetRatio(0.2)).
+     */
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        // Максимум повторов (не считая исходной попытки).
+        private int retries = 3;
+
+        // Повторяемые ответы: статус из statuses ИЛИ из серии series.
+        private Set<HttpStatus> statuses = Set.of();
+
+        private Set<HttpStatus.Series> series = Set.of(HttpStatus.Series.SERVER_ERROR);
+
+        // Повторяются только идемпотентные методы.
+        private Set<HttpMethod> methods = Set.of(HttpMethod.GET);
+
+        private List<Class<? extends Throwable>> exceptions = List.of(IOException.class, TimeoutException.class);
+
+        private Duration firstBackoff = Duration.ofMillis(50);
+
+        private Duration maxBackoff = Duration.ofSeconds(2);
+
+        private double factor = 2.0;
+
+        // Full jitter: пауза случайна в [0, потолок].
+        private boolean jitter = true;
+
+        // Токенов на один исходный запрос: 0.2 — повторы не более 20% трафика.
+        private double budgetRatio = 0.2;
+
+        // Ёмкость корзины — допустимый всплеск повторов.
+        private int budgetMaxTokens = 10;
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public Config setRetries(int retries) {
+            this.retries = retries;
+            return this;
+        }
+
+        public Set<HttpStatus> getStatuses() {
+            return statuses;
+        }
+
+        public Config setStatuses(HttpStatus... statuses) {
+            this.statuses = Set.of(statuses);
+            return this;
+        }
+
+        public Set<HttpStatus.Series> getSeries() {
+            return series;
+        }
+
+        public Config setSeries(HttpStatus.Series... series) {
+            this.series = Set.of(series);
+            return this;
+        }
+
+        public Set<HttpMethod> getMethods() {
+            return methods;
+        }
+
+        public Config setMethods(HttpMethod... methods) {
+            this.methods = Set.of(methods);
+            return this;
+        }
+
+        public List<Class<? extends Throwable>> getExceptions() {
+            return exceptions;
+        }
+
+        public Config setExceptions(List<Class<? extends Throwable>> exceptions) {
+            this.exceptions = List.copyOf(exceptions);
+            return this;
+        }
+
+        public Duration getFirstBackoff() {
+            return firstBackoff;
+        }
+
+        public Config setFirstBackoff(Duration firstBackoff) {
+            this.firstBackoff = firstBackoff;
+            return this;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public Config setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public double getFactor() {
+            return factor;
+        }
+
+        public Config setFactor(double factor) {
+            this.factor = factor;
+            return this;
+        }
+
+        public boolean isJitter() {
+            return jitter;
+        }
+
+        public Config setJitter(boolean jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public Config setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+            return this;
+        }
+
+        public int getBudgetMaxTokens() {
+            return budgetMaxTokens;
+        }
+
+        public Config setBudgetMaxTokens(int budgetMaxTokens) {
+            this.budgetMaxTokens = budgetMaxTokens;
+            return this;
+        }
+    }
+}
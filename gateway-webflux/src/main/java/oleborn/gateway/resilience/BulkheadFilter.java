@@ -0,0 +1,108 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.filter.RouteScopedFilter;
+import oleborn.gateway.routing.RouteMetadata;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * BulkheadFilter
+ *
+ * Bulkhead для маршрутов, включивших его через metadata "bulkhead.enabled".
+ *
+ * Проблема:
+ * - все маршруты делят один пул соединений (max-connections: 200);
+ * - /unstable у service B иногда отвечает секундами,
+ *   и под нагрузкой его запросы занимают весь пул —
+ *   маршруты service A ждут соединений, хотя сам service A здоров.
+ *
+ * Что делает этот фильтр:
+ * - маршрут получает не больше max-concurrent запросов в работе;
+ * - лишние ждут в очереди не дольше queue-timeout,
+ *   при переполнении очереди или по таймауту — 503 без обращения к backend'у;
+ * - у запроса со сроком (Deadline) ожидание ограничено и остатком срока.
+ *
+ * Архитектурный смысл:
+ * - фильтр стоит сразу после CircuitBreakerFilter (order -9):
+ *   открытый breaker отвечает fallback'ом, не занимая места,
+ *   а Retry маршрута работает внутри одного места bulkhead'а —
+ *   повторы не увеличивают нагрузку маршрута на пул;
+ * - ожидание не блокирует event loop: запрос продолжится
+ *   на потоке, освободившем место.
+ */
+public class BulkheadFilter implements GlobalFilter, Ordered, RouteScopedFilter {
+
+    public static final int ORDER = CircuitBreakerFilter.ORDER + 1;
+
+    private final Bulkheads bulkheads;
+
+    public BulkheadFilter(Bulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+    @Override
+    public boolean appliesTo(Route route) {
+        return RouteMetadata.flag(route.getMetadata(), BulkheadPolicy.ENABLED);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        RouteBulkhead bulkhead = route != null ? bulkheads.bulkhead(route) : null;
+        if (bulkhead == null) {
+            return chain.filter(exchange);
+        }
+
+        RouteBulkhead.Waiter waiter = bulkhead.tryEnter();
+        if (waiter == null) {
+            return reject(exchange, bulkhead.policy.rejectStatus());
+        }
+        if (waiter == RouteBulkhead.ADMITTED) {
+            return chain.filter(exchange).doFinally(signal -> bulkhead.release());
+        }
+
+        // Ждём не дольше queue-timeout и не дольше остатка срока запроса:
+        // если раньше истекает срок — ответ 504, а не 503.
+        Duration wait = bulkhead.policy.queueTimeout();
+        HttpStatus timeoutStatus = bulkhead.policy.rejectStatus();
+        Deadline deadline = Deadline.of(exchange);
+        if (deadline != null && deadline.remainingNanos() < wait.toNanos()) {
+            wait = Duration.ofNanos(Math.max(0, deadline.remainingNanos()));
+            timeoutStatus = HttpStatus.GATEWAY_TIMEOUT;
+        }
+        HttpStatus status = timeoutStatus;
+
+        // Таймаут ожидания: если место успели передать одновременно
+        // с таймаутом, abandon вернёт false, и запрос всё же выполняется.
+        return waiter.signal.asMono()
+                .thenReturn(true)
+                .timeout(wait, Mono.fromSupplier(() -> !bulkhead.abandon(waiter, true)))
+                .flatMap(admitted -> admitted ? chain.filter(exchange) : reject(exchange, status))
+                .doFinally(signal -> {
+                    // Отмена клиентом во время ожидания снимает запрос с очереди;
+                    // если место уже передано — освобождаем его.
+                    if (!bulkhead.abandon(waiter, false) && waiter.granted()) {
+                        bulkhead.release();
+                    }
+                });
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, HttpStatus status) {
+        GatewayRejection.mark(exchange);
+        exchange.getResponse().setStatusCode(status);
+        return exchange.getResponse().setComplete();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,50 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.routing.RouteMetadata;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * BulkheadPolicy
+ *
+ * Настройки bulkhead маршрута из Route metadata:
+ *
+ *   .metadata("bulkhead.enabled", true)
+ *   .metadata("bulkhead.max-concurrent", 50)
+ *   .metadata("bulkhead.max-queue", 100)
+ *   .metadata("bulkhead.queue-timeout", "500ms")
+ *
+ * @param maxConcurrent запросов маршрута в работе одновременно.
+ * @param maxQueue      запросов, ожидающих места; 0 — без очереди.
+ * @param queueTimeout  максимальное ожидание в очереди.
+ * @param rejectStatus  ответ при переполнении очереди или таймауте ожидания.
+ */
+record BulkheadPolicy(int maxConcurrent, int maxQueue, Duration queueTimeout, HttpStatus rejectStatus) {
+
+    static final String PREFIX = "bulkhead.";
+
+    static final String ENABLED = PREFIX + "enabled";
+
+    /**
+     * @return политика маршрута либо null, если bulkhead не включён.
+     * @throws IllegalArgumentException при некорректных значениях.
+     */
+    static BulkheadPolicy from(Map<String, Object> metadata) {
+        if (!RouteMetadata.flag(metadata, ENABLED)) {
+            return null;
+        }
+        int maxConcurrent = RouteMetadata.integer(metadata, PREFIX + "max-concurrent", 20);
+        int maxQueue = RouteMetadata.integer(metadata, PREFIX + "max-queue", 50);
+        if (maxConcurrent < 1 || maxQueue < 0) {
+            throw new IllegalArgumentException("Invalid bulkhead max-concurrent=" + maxConcurrent + ", max-queue=" + maxQueue);
+        }
+        return new BulkheadPolicy(
+                maxConcurrent,
+                maxQueue,
+                RouteMetadata.duration(metadata, PREFIX + "queue-timeout", Duration.ofSeconds(1)),
+                HttpStatus.valueOf(RouteMetadata.integer(metadata, PREFIX + "reject-status", HttpStatus.SERVICE_UNAVAILABLE.value()))
+        );
+    }
+}
@@ -0,0 +1,98 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.metrics.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bulkheads
+ *
+ * Реестр bulkhead'ов по маршрутам.
+ *
+ * Устроен так же, как CircuitBreakerMetrics:
+ * политика читается из metadata маршрута,
+ * а bulkhead пересоздаётся только при изменении политики —
+ * иначе обновление маршрутов "забыло" бы запросы в работе и в очереди.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/bulkhead.
+ */
+public class Bulkheads implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(Bulkheads.class);
+
+    private final Map<String, Binding> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * @return bulkhead маршрута либо null, если он не включён
+     *         или его metadata некорректна.
+     */
+    RouteBulkhead bulkhead(Route route) {
+        Binding binding = bulkheads.get(route.getId());
+        if (binding != null && binding.route == route) {
+            return binding.bulkhead;
+        }
+        return bind(route, binding);
+    }
+
+    private RouteBulkhead bind(Route route, Binding previous) {
+        RouteBulkhead bulkhead = null;
+        try {
+            BulkheadPolicy policy = BulkheadPolicy.from(route.getMetadata());
+            if (policy != null) {
+                bulkhead = previous != null && previous.bulkhead != null && previous.bulkhead.policy.equals(policy)
+                        ? previous.bulkhead
+                        : new RouteBulkhead(policy);
+            }
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid bulkhead metadata on route '{}', bulkhead disabled", route.getId(), e);
+        }
+        bulkheads.put(route.getId(), new Binding(route, bulkhead));
+        return bulkhead;
+    }
+
+    @Override
+    public String metricsName() {
+        return "bulkhead";
+    }
+
+    @Override
+    public Map<String, BulkheadSnapshot> metricsSnapshot() {
+        Map<String, BulkheadSnapshot> result = new TreeMap<>();
+        bulkheads.forEach((id, binding) -> {
+            if (binding.bulkhead != null) {
+                result.put(id, binding.bulkhead.snapshot());
+            }
+        });
+        return result;
+    }
+
+    private record Binding(Route route, RouteBulkhead bulkhead) {
+    }
+
+    /**
+     * Состояние bulkhead'а маршрута.
+     *
+     * @param inflight   запросов в работе сейчас.
+     * @param queued     глубина очереди сейчас.
+     * @param admitted   запросов, получивших место (сразу или из очереди).
+     * @param enqueued   запросов, ждавших в очереди.
+     * @param rejected   отклонённых: очередь переполнена или таймаут ожидания.
+     * @param timedOut   из них — по таймауту ожидания.
+     */
+    public record BulkheadSnapshot(
+            int inflight,
+            int queued,
+            int maxConcurrent,
+            int maxQueue,
+            long admitted,
+            long enqueued,
+            long rejected,
+            long timedOut
+    ) {
+    }
+}
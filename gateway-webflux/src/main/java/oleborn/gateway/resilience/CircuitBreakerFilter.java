@@ -0,0 +1,97 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.filter.RouteScopedFilter;
+import oleborn.gateway.routing.RouteMetadata;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * CircuitBreakerFilter
+ *
+ * Circuit breaker и fallback для маршрутов,
+ * включивших его через metadata "circuit-breaker.enabled".
+ *
+ * Архитектурный смысл:
+ * - фильтр стоит ДО фильтров маршрута (order -10 < 0),
+ *   поэтому оборачивает Retry целиком:
+ *   один запрос клиента — один исход для breaker'а,
+ *   сколько бы повторов ни сделал Retry внутри;
+ * - когда breaker открыт, запрос завершается здесь же (short-circuit):
+ *   ни Retry, ни backend не вызываются;
+ * - fallback — заранее собранный ответ из CircuitBreakerPolicy,
+ *   без обращения к upstream'у.
+ *
+ * Неудача — исключение в цепочке или ответ 5xx.
+ * Отказы самого Gateway (GatewayRejection: сброс нагрузки, bulkhead)
+ * неудачей не считаются — backend их не видел.
+ * Маршрутам без breaker'а фильтр не нужен:
+ * через RouteScopedFilter он исключается из их цепочек.
+ */
+public class CircuitBreakerFilter implements GlobalFilter, Ordered, RouteScopedFilter {
+
+    public static final int ORDER = -10;
+
+    private final CircuitBreakerMetrics breakers;
+
+    public CircuitBreakerFilter(CircuitBreakerMetrics breakers) {
+        this.breakers = breakers;
+    }
+
+    @Override
+    public boolean appliesTo(Route route) {
+        return RouteMetadata.flag(route.getMetadata(), CircuitBreakerPolicy.ENABLED);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        SlidingWindowCircuitBreaker breaker = route != null ? breakers.breaker(route) : null;
+        if (breaker == null) {
+            return chain.filter(exchange);
+        }
+
+        int permit = breaker.tryAcquire();
+        if (permit == SlidingWindowCircuitBreaker.REJECTED) {
+            return fallback(exchange, breaker.policy);
+        }
+
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        breaker.onCancel(permit);
+                        return;
+                    }
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    boolean failure = signal == SignalType.ON_ERROR
+                            || (status != null && status.is5xxServerError() && !GatewayRejection.isMarked(exchange));
+                    breaker.onResult(permit, failure);
+                });
+    }
+
+    /**
+     * Готовый ответ: тело оборачивается в DataBuffer без копирования.
+     */
+    private static Mono<Void> fallback(ServerWebExchange exchange, CircuitBreakerPolicy policy) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(policy.fallbackStatus());
+        response.getHeaders().setContentType(policy.fallbackContentType());
+        response.getHeaders().setContentLength(policy.fallbackBody().length);
+        if (policy.fallbackBody().length == 0) {
+            return response.setComplete();
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(policy.fallbackBody())));
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
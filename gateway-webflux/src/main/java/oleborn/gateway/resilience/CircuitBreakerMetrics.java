@@ -0,0 +1,106 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.metrics.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CircuitBreakerMetrics
+ *
+ * Реестр circuit breaker'ов по маршрутам.
+ *
+ * Как и бюджет повторов в RetryMetrics, состояние breaker'а
+ * живёт по id маршрута и переживает обновление маршрутов:
+ * после обновления политика читается из metadata заново,
+ * и breaker пересоздаётся ТОЛЬКО если политика изменилась.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/circuit-breaker.
+ */
+public class CircuitBreakerMetrics implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreakerMetrics.class);
+
+    private final Map<String, Binding> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * Breaker маршрута.
+     *
+     * Быстрый путь — сравнение Route по ссылке:
+     * между обновлениями маршрутов CachingRouteLocator
+     * отдаёт одни и те же экземпляры, и metadata не разбирается.
+     *
+     * @return breaker либо null, если breaker для маршрута не включён
+     *         или его metadata некорректна.
+     */
+    SlidingWindowCircuitBreaker breaker(Route route) {
+        Binding binding = breakers.get(route.getId());
+        if (binding != null && binding.route == route) {
+            return binding.breaker;
+        }
+        return bind(route, binding);
+    }
+
+    private SlidingWindowCircuitBreaker bind(Route route, Binding previous) {
+        SlidingWindowCircuitBreaker breaker = null;
+        try {
+            CircuitBreakerPolicy policy = CircuitBreakerPolicy.from(route.getMetadata());
+            if (policy != null) {
+                breaker = previous != null && previous.breaker != null && previous.breaker.policy.equals(policy)
+                        ? previous.breaker
+                        : new SlidingWindowCircuitBreaker(route.getId(), policy);
+            }
+        } catch (IllegalArgumentException e) {
+            // Маршрут продолжает работать без breaker'а:
+            // ошибка конфигурации не должна превращаться в 500 на каждый запрос.
+            log.error("Invalid circuit-breaker metadata on route '{}', breaker disabled", route.getId(), e);
+        }
+        breakers.put(route.getId(), new Binding(route, breaker));
+        return breaker;
+    }
+
+    @Override
+    public String metricsName() {
+        return "circuit-breaker";
+    }
+
+    @Override
+    public Map<String, CircuitBreakerSnapshot> metricsSnapshot() {
+        Map<String, CircuitBreakerSnapshot> result = new TreeMap<>();
+        breakers.forEach((id, binding) -> {
+            if (binding.breaker != null) {
+                result.put(id, binding.breaker.snapshot());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Маршрут, для которого разобрана политика, и его breaker.
+     */
+    private record Binding(Route route, SlidingWindowCircuitBreaker breaker) {
+    }
+
+    /**
+     * Состояние breaker'а.
+     *
+     * @param calls       вызовы в текущем окне.
+     * @param failures    неудачные вызовы в текущем окне.
+     * @param failureRate доля неудач в окне, %.
+     * @param rejected    отклонённые вызовы (fallback) за всё время.
+     * @param opened      сколько раз breaker открывался.
+     */
+    public record CircuitBreakerSnapshot(
+            String state,
+            long calls,
+            long failures,
+            double failureRate,
+            long rejected,
+            long opened
+    ) {
+    }
+}
@@ -0,0 +1,114 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.routing.RouteMetadata;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * CircuitBreakerPolicy
+ *
+ * Настройки circuit breaker маршрута, прочитанные из Route metadata
+ * (в стиле Step7RoutesWithMetadata):
+ *
+ *   .metadata("circuit-breaker.enabled", true)
+ *   .metadata("circuit-breaker.failure-rate", 50)
+ *   .metadata("circuit-breaker.open-duration", "5s")
+ *
+ * В YAML ключи с точкой записываются в квадратных скобках:
+ *
+ *   metadata:
+ *     "[circuit-breaker.enabled]": true
+ *
+ * Fallback-ответ собирается здесь ОДИН раз:
+ * тело хранится готовым массивом байт и на каждый запрос
+ * только оборачивается в DataBuffer без копирования.
+ */
+record CircuitBreakerPolicy(
+        // Доля неудачных вызовов в окне (проценты), при которой breaker открывается.
+        int failureRate,
+        // Минимум вызовов в окне: на малой выборке доля неудач не показательна.
+        int minimumCalls,
+        // Длительность скользящего окна и число корзин в нём.
+        long windowNanos,
+        int buckets,
+        // Сколько breaker остаётся открытым до пробных вызовов.
+        long openNanos,
+        // Число пробных вызовов в half-open.
+        int halfOpenCalls,
+        // Fallback-ответ.
+        HttpStatus fallbackStatus,
+        MediaType fallbackContentType,
+        byte[] fallbackBody
+) {
+
+    static final String PREFIX = "circuit-breaker.";
+
+    static final String ENABLED = PREFIX + "enabled";
+
+    /**
+     * @return политика маршрута либо null, если breaker для маршрута не включён.
+     * @throws IllegalArgumentException при некорректных значениях.
+     */
+    static CircuitBreakerPolicy from(Map<String, Object> metadata) {
+        if (!RouteMetadata.flag(metadata, ENABLED)) {
+            return null;
+        }
+        Duration window = RouteMetadata.duration(metadata, PREFIX + "window", Duration.ofSeconds(10));
+        int buckets = RouteMetadata.integer(metadata, PREFIX + "buckets", 10);
+        if (buckets < 1 || window.toNanos() / buckets <= 0) {
+            throw new IllegalArgumentException("Invalid circuit-breaker window " + window + " / " + buckets + " buckets");
+        }
+        int failureRate = RouteMetadata.integer(metadata, PREFIX + "failure-rate", 50);
+        if (failureRate < 1 || failureRate > 100) {
+            throw new IllegalArgumentException("circuit-breaker.failure-rate must be in 1..100: " + failureRate);
+        }
+        String body = RouteMetadata.string(metadata, PREFIX + "fallback-body", "");
+        String contentType = RouteMetadata.string(metadata, PREFIX + "fallback-content-type", MediaType.TEXT_PLAIN_VALUE);
+        return new CircuitBreakerPolicy(
+                failureRate,
+                Math.max(1, RouteMetadata.integer(metadata, PREFIX + "minimum-calls", 10)),
+                window.toNanos(),
+                buckets,
+                RouteMetadata.duration(metadata, PREFIX + "open-duration", Duration.ofSeconds(5)).toNanos(),
+                Math.max(1, RouteMetadata.integer(metadata, PREFIX + "half-open-calls", 3)),
+                HttpStatus.valueOf(RouteMetadata.integer(metadata, PREFIX + "fallback-status", HttpStatus.SERVICE_UNAVAILABLE.value())),
+                MediaType.parseMediaType(contentType),
+                body.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    // Сравнение по содержимому тела: политика пересоздаётся
+    // при каждом обновлении маршрутов, а состояние breaker'а
+    // сохраняется, пока политика не изменилась.
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CircuitBreakerPolicy other
+                && failureRate == other.failureRate
+                && minimumCalls == other.minimumCalls
+                && windowNanos == other.windowNanos
+                && buckets == other.buckets
+                && openNanos == other.openNanos
+                && halfOpenCalls == other.halfOpenCalls
+                && fallbackStatus == other.fallbackStatus
+                && fallbackContentType.equals(other.fallbackContentType)
+                && Arrays.equals(fallbackBody, other.fallbackBody);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(fallbackBody) + failureRate;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreakerPolicy[failureRate=" + failureRate + "%, minimumCalls=" + minimumCalls
+                + ", window=" + Duration.ofNanos(windowNanos) + "/" + buckets
+                + ", open=" + Duration.ofNanos(openNanos) + ", halfOpenCalls=" + halfOpenCalls
+                + ", fallback=" + fallbackStatus.value() + "]";
+    }
+}
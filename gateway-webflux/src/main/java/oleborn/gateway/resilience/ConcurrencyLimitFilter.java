@@ -0,0 +1,84 @@
+package oleborn.gateway.resilience;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+
+/**
+ * ConcurrencyLimitFilter
+ *
+ * Адаптивный лимит параллельных запросов к каждому backend'у.
+ *
+ * Проблема:
+ * - service B обрабатывает 50 запросов одновременно (потоки Tomcat);
+ * - пул соединений Gateway допускает сотни —
+ *   лишние запросы ждут в очереди Tomcat, и растёт задержка ВСЕХ запросов.
+ *
+ * Что делает этот фильтр:
+ * - запрос сверх лимита backend'а сразу получает 503 в Gateway
+ *   и не занимает ни соединение, ни поток backend'а;
+ * - лимит подстраивается под RTT ответов (AdaptiveConcurrencyLimit).
+ *
+ * Архитектурный смысл:
+ * - фильтр стоит перед UpstreamLatencyFilter и NettyRoutingFilter:
+ *   итоговый URL уже вычислен, а отклонённые запросы
+ *   не попадают в задержки backend'а;
+ * - RTT — время до заголовков ответа: NettyWriteResponseFilter
+ *   передаёт тело клиенту уже ПОСЛЕ завершения этой части цепочки;
+ * - Retry переподписывается на эту часть цепочки,
+ *   поэтому каждая попытка занимает место в лимите отдельно.
+ */
+public class ConcurrencyLimitFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = NettyRoutingFilter.ORDER - 2;
+
+    private final ConcurrencyLimits limits;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimits limits) {
+        this.limits = limits;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        // Только HTTP-backend'ы: forward:, ws: и т.п. не ограничиваются.
+        if (url == null || url.getRawAuthority() == null || !url.getScheme().startsWith("http")) {
+            return chain.filter(exchange);
+        }
+
+        AdaptiveConcurrencyLimit limit = limits.upstream(url.getRawAuthority());
+        int busy = limit.tryAcquire();
+        if (busy < 0) {
+            // 503 — решение Gateway, не ответ backend'а: breaker его не учитывает.
+            GatewayRejection.mark(exchange);
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return exchange.getResponse().setComplete();
+        }
+        // Попытка идёт к backend'у: отметка прошлой попытки Retry больше не действует.
+        GatewayRejection.clear(exchange);
+
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    limit.release();
+                    if (signal == SignalType.ON_COMPLETE) {
+                        limit.onSample(System.nanoTime() - start, busy);
+                    } else if (signal == SignalType.ON_ERROR) {
+                        limit.onDrop();
+                    }
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
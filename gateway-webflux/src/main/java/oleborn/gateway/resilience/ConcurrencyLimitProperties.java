@@ -0,0 +1,106 @@
+package oleborn.gateway.resilience;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * ConcurrencyLimitProperties
+ *
+ * Настройки адаптивного лимита параллельных запросов к backend'ам
+ * (блок gateway.concurrency-limit).
+ */
+@ConfigurationProperties(prefix = "gateway.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    // false — фильтр не ограничивает запросы.
+    // Выключен по умолчанию: включается профилем step6,
+    // чтобы 503 лимита не искажали замеры остальных шагов.
+    private boolean enabled = false;
+
+    // Лимит до первых измерений.
+    private int initialLimit = 20;
+
+    // Границы лимита.
+    private int minLimit = 4;
+
+    private int maxLimit = 200;
+
+    // Во сколько раз текущий RTT может превышать минимальный,
+    // прежде чем лимит начнёт снижаться.
+    private double rttTolerance = 1.5;
+
+    // Доля нового значения при сглаживании лимита (0..1].
+    private double smoothing = 0.2;
+
+    // Минимальный RTT ищется в двух последних окнах такой длины:
+    // если backend стал медленнее "навсегда", базовая линия догонит его.
+    private Duration minRttWindow = Duration.ofSeconds(30);
+
+    // Множитель лимита при ошибке или таймауте вызова.
+    private double backoffRatio = 0.9;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    public void setRttTolerance(double rttTolerance) {
+        this.rttTolerance = rttTolerance;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    public Duration getMinRttWindow() {
+        return minRttWindow;
+    }
+
+    public void setMinRttWindow(Duration minRttWindow) {
+        this.minRttWindow = minRttWindow;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+}
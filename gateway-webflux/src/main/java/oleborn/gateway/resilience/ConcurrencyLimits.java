@@ -0,0 +1,69 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.metrics.MetricsSource;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ConcurrencyLimits
+ *
+ * Адаптивные лимиты по backend'ам (host:port).
+ *
+ * Лимит создаётся при первом запросе к backend'у;
+ * число ключей ограничено конфигурацией маршрутов,
+ * как и в LatencyRecorder.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/concurrency.
+ */
+public class ConcurrencyLimits implements MetricsSource {
+
+    private final ConcurrencyLimitProperties properties;
+
+    private final Map<String, AdaptiveConcurrencyLimit> upstreams = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimits(ConcurrencyLimitProperties properties) {
+        this.properties = properties;
+    }
+
+    AdaptiveConcurrencyLimit upstream(String authority) {
+        AdaptiveConcurrencyLimit limit = upstreams.get(authority);
+        if (limit == null) {
+            limit = upstreams.computeIfAbsent(authority, key -> new AdaptiveConcurrencyLimit(properties));
+        }
+        return limit;
+    }
+
+    @Override
+    public String metricsName() {
+        return "concurrency";
+    }
+
+    @Override
+    public Map<String, LimitSnapshot> metricsSnapshot() {
+        Map<String, LimitSnapshot> result = new TreeMap<>();
+        upstreams.forEach((authority, limit) -> result.put(authority, limit.snapshot()));
+        return result;
+    }
+
+    /**
+     * Состояние лимита backend'а.
+     *
+     * @param limit       текущий лимит параллельных запросов.
+     * @param inflight    запросов в работе.
+     * @param minRttMicros минимальный RTT (базовая линия), мкс; -1 — измерений нет.
+     * @param samples     ответов, по которым пересчитывался лимит.
+     * @param rejected    запросов, получивших 503 из-за лимита.
+     * @param drops       ошибок и таймаутов, снизивших лимит.
+     */
+    public record LimitSnapshot(
+            int limit,
+            int inflight,
+            long minRttMicros,
+            long samples,
+            long rejected,
+            long drops
+    ) {
+    }
+}
@@ -0,0 +1,53 @@
+package oleborn.gateway.resilience;
+
+import org.springframework.web.server.ServerWebExchange;
+
+import java.time.Duration;
+
+/**
+ * Deadline
+ *
+ * Срок, к которому запрос клиента должен быть обслужен целиком —
+ * со всеми повторами, ожиданием в bulkhead'е и паузами между попытками.
+ *
+ * Создаётся DeadlineFilter'ом один раз на запрос
+ * и хранится в атрибуте exchange ATTR.
+ * Отсчёт — System.nanoTime(), поэтому срок не зависит
+ * от перевода системных часов.
+ */
+public final class Deadline {
+
+    public static final String ATTR = Deadline.class.getName();
+
+    private final long deadlineNanos;
+
+    // Меньше этого остатка новую попытку к backend'у не начинаем:
+    // она заведомо не успеет получить ответ.
+    private final long minAttemptNanos;
+
+    Deadline(long startNanos, Duration timeout, Duration minAttempt) {
+        this.deadlineNanos = startNanos + timeout.toNanos();
+        this.minAttemptNanos = minAttempt.toNanos();
+    }
+
+    /**
+     * @return срок запроса либо null, если у запроса его нет.
+     */
+    public static Deadline of(ServerWebExchange exchange) {
+        return exchange.getAttribute(ATTR);
+    }
+
+    /**
+     * Остаток времени; отрицательный — срок уже истёк.
+     */
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    /**
+     * Хватит ли остатка на попытку, начатую через delayNanos.
+     */
+    public boolean coversAttemptAfter(long delayNanos) {
+        return remainingNanos() - delayNanos >= minAttemptNanos;
+    }
+}
@@ -0,0 +1,123 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.routing.RouteMetadata;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * DeadlineFilter
+ *
+ * Назначает запросу сквозной срок обслуживания (Deadline).
+ *
+ * Проблема:
+ * - response-timeout (15s) действует на КАЖДУЮ попытку отдельно;
+ * - с тремя повторами Retry один запрос клиента
+ *   может занимать Gateway около минуты,
+ *   хотя клиент давно перестал ждать ответ.
+ *
+ * Откуда берётся срок (первое найденное):
+ * - заголовок клиента X-Request-Timeout ("1500", "500ms", "2s"),
+ *   не больше max-timeout; некорректное значение не отклоняет запрос,
+ *   а игнорируется (счётчик invalidHeader);
+ * - metadata маршрута "deadline.timeout";
+ * - gateway.deadline.default-timeout.
+ *
+ * Архитектурный смысл:
+ * - фильтр стоит раньше CircuitBreakerFilter и BulkheadFilter:
+ *   время ожидания в очереди bulkhead'а тоже входит в срок;
+ * - сам фильтр ничего не прерывает — срок соблюдают
+ *   Retry (не начинает повтор без остатка времени),
+ *   BulkheadFilter (ждёт место не дольше остатка)
+ *   и UpstreamDeadlineFilter (ограничивает каждую попытку остатком
+ *   и передаёт его backend'у).
+ */
+public class DeadlineFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = CircuitBreakerFilter.ORDER - 1;
+
+    /**
+     * Срок маршрута по умолчанию, например .metadata("deadline.timeout", "5s").
+     */
+    public static final String ROUTE_TIMEOUT = "deadline.timeout";
+
+    private final DeadlineProperties properties;
+
+    private final DeadlineMetrics metrics;
+
+    public DeadlineFilter(DeadlineProperties properties, DeadlineMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long start = System.nanoTime();
+        Duration timeout = null;
+        String header = exchange.getRequest().getHeaders().getFirst(properties.getHeader());
+        if (header != null) {
+            timeout = parse(header);
+            if (timeout == null) {
+                metrics.invalidHeader.increment();
+            } else {
+                metrics.fromHeader.increment();
+            }
+        }
+        if (timeout == null) {
+            timeout = routeTimeout(exchange);
+            if (timeout == null) {
+                return chain.filter(exchange);
+            }
+        }
+
+        metrics.requests.increment();
+        exchange.getAttributes().put(Deadline.ATTR, new Deadline(start, timeout, properties.getMinAttempt()));
+        return chain.filter(exchange);
+    }
+
+    /**
+     * @return срок из заголовка, ограниченный max-timeout,
+     *         либо null, если значение некорректно.
+     */
+    private Duration parse(String value) {
+        Duration timeout;
+        try {
+            // Число без единиц — миллисекунды.
+            timeout = DurationStyle.detectAndParse(value.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            return null;
+        }
+        return timeout.compareTo(properties.getMaxTimeout()) > 0 ? properties.getMaxTimeout() : timeout;
+    }
+
+    private Duration routeTimeout(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route != null) {
+            try {
+                Duration timeout = RouteMetadata.duration(route.getMetadata(), ROUTE_TIMEOUT, null);
+                if (timeout != null) {
+                    return timeout;
+                }
+            } catch (IllegalArgumentException e) {
+                // Ошибка конфигурации маршрута не должна превращаться
+                // в ошибку каждого запроса: действует срок по умолчанию.
+            }
+        }
+        return properties.getDefaultTimeout();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
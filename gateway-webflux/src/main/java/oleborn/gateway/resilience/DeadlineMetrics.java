@@ -0,0 +1,55 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.metrics.MetricsSource;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DeadlineMetrics
+ *
+ * Счётчики сквозных сроков запросов.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/deadline.
+ */
+public class DeadlineMetrics implements MetricsSource {
+
+    // Запросы, получившие срок (из заголовка или по умолчанию).
+    final LongAdder requests = new LongAdder();
+
+    // Из них — со сроком из заголовка клиента.
+    final LongAdder fromHeader = new LongAdder();
+
+    // Некорректный заголовок срока: проигнорирован, действует срок маршрута.
+    final LongAdder invalidHeader = new LongAdder();
+
+    // Попытка не начата: остатка срока не хватает (504 без обращения к backend'у).
+    final LongAdder expiredBeforeAttempt = new LongAdder();
+
+    // Попытка прервана по истечении срока (504).
+    final LongAdder attemptTimeouts = new LongAdder();
+
+    @Override
+    public String metricsName() {
+        return "deadline";
+    }
+
+    @Override
+    public DeadlineSnapshot metricsSnapshot() {
+        return new DeadlineSnapshot(
+                requests.sum(),
+                fromHeader.sum(),
+                invalidHeader.sum(),
+                expiredBeforeAttempt.sum(),
+                attemptTimeouts.sum()
+        );
+    }
+
+    public record DeadlineSnapshot(
+            long requests,
+            long fromHeader,
+            long invalidHeader,
+            long expiredBeforeAttempt,
+            long attemptTimeouts
+    ) {
+    }
+}
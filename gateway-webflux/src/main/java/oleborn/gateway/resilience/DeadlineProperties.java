@@ -0,0 +1,83 @@
+package oleborn.gateway.resilience;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * DeadlineProperties
+ *
+ * Настройки сквозного срока обслуживания запроса
+ * (блок gateway.deadline).
+ */
+@ConfigurationProperties(prefix = "gateway.deadline")
+public class DeadlineProperties {
+
+    // false — сроки не вычисляются, работают только response-timeout'ы.
+    private boolean enabled = true;
+
+    // Заголовок клиента со сроком: "1500" (мс), "500ms", "2s".
+    private String header = "X-Request-Timeout";
+
+    // Заголовок с остатком срока в миллисекундах для backend'а.
+    // Совпадает с header: следующий Gateway в цепочке прочитает его так же.
+    private String upstreamHeader = "X-Request-Timeout";
+
+    // Срок для маршрутов без metadata "deadline.timeout",
+    // если клиент его не прислал. null — без срока.
+    private Duration defaultTimeout;
+
+    // Верхняя граница срока из заголовка клиента.
+    private Duration maxTimeout = Duration.ofSeconds(60);
+
+    // Минимальный остаток, с которым начинается попытка к backend'у.
+    private Duration minAttempt = Duration.ofMillis(20);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    public String getUpstreamHeader() {
+        return upstreamHeader;
+    }
+
+    public void setUpstreamHeader(String upstreamHeader) {
+        this.upstreamHeader = upstreamHeader;
+    }
+
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    public void setDefaultTimeout(Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public Duration getMaxTimeout() {
+        return maxTimeout;
+    }
+
+    public void setMaxTimeout(Duration maxTimeout) {
+        this.maxTimeout = maxTimeout;
+    }
+
+    public Duration getMinAttempt() {
+        return minAttempt;
+    }
+
+    public void setMinAttempt(Duration minAttempt) {
+        this.minAttempt = minAttempt;
+    }
+}
@@ -0,0 +1,38 @@
+package oleborn.gateway.resilience;
+
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * GatewayRejection
+ *
+ * Отметка в атрибуте exchange ATTR: ответ сформировал сам Gateway,
+ * не обращаясь к backend'у (503 ConcurrencyLimitFilter'а,
+ * отказ BulkheadFilter'а).
+ *
+ * CircuitBreakerFilter не считает такие ответы неудачей backend'а:
+ * иначе сброс нагрузки Gateway'ем открывал бы breaker
+ * здоровому, но занятому backend'у.
+ */
+final class GatewayRejection {
+
+    static final String ATTR = GatewayRejection.class.getName();
+
+    private GatewayRejection() {
+    }
+
+    static void mark(ServerWebExchange exchange) {
+        exchange.getAttributes().put(ATTR, Boolean.TRUE);
+    }
+
+    /**
+     * Снимает отметку: попытка всё же дошла до backend'а
+     * (Retry повторяет запрос после отказа).
+     */
+    static void clear(ServerWebExchange exchange) {
+        exchange.getAttributes().remove(ATTR);
+    }
+
+    static boolean isMarked(ServerWebExchange exchange) {
+        return exchange.getAttributes().containsKey(ATTR);
+    }
+}
@@ -0,0 +1,151 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.metrics.LatencyHistogram;
+import oleborn.gateway.metrics.MetricsSource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HedgeMetrics
+ *
+ * Состояние и счётчики hedge-запросов по маршрутам.
+ *
+ * Как и бюджет повторов в RetryMetrics, здесь живёт всё,
+ * что должно переживать пересоздание фильтров при обновлении маршрутов:
+ * - лимит доли hedge-запросов (token bucket);
+ * - гистограмма задержек маршрута, из которой берётся задержка hedge;
+ * - сама задержка, пересчитываемая не чаще раза в DELAY_REFRESH.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/hedge.
+ */
+public class HedgeMetrics implements MetricsSource {
+
+    // Короткое окно: задержка hedge должна следовать
+    // за текущим состоянием backend'а, а не за прошлым часом.
+    private static final long SLICE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int WINDOW_SLICES = 10;
+
+    // Перцентиль — слияние ~17 тысяч счётчиков,
+    // поэтому он пересчитывается не на каждый запрос.
+    private static final long DELAY_REFRESH = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final Map<String, RouteHedges> routes = new ConcurrentHashMap<>();
+
+    RouteHedges route(String routeId, double ratio, int maxTokens) {
+        return routes.computeIfAbsent(routeId, id -> new RouteHedges(new RetryBudget(ratio, maxTokens)));
+    }
+
+    @Override
+    public String metricsName() {
+        return "hedge";
+    }
+
+    @Override
+    public Map<String, HedgeSnapshot> metricsSnapshot() {
+        Map<String, HedgeSnapshot> result = new TreeMap<>();
+        routes.forEach((id, route) -> result.put(id, route.snapshot()));
+        return result;
+    }
+
+    /**
+     * Состояние одного маршрута.
+     */
+    static final class RouteHedges {
+
+        // Лимит доли hedge-запросов: та же корзина, что у повторов.
+        final RetryBudget budget;
+
+        // Время до заголовков ответа (от старта основного запроса).
+        final LatencyHistogram latency = new LatencyHistogram(SLICE_NANOS, WINDOW_SLICES);
+
+        // Запросы, для которых hedge был возможен.
+        final LongAdder requests = new LongAdder();
+
+        // Отправленные hedge-запросы.
+        final LongAdder hedges = new LongAdder();
+
+        // Ответ hedge пришёл раньше основного.
+        final LongAdder hedgeWins = new LongAdder();
+
+        // Hedge был нужен, но лимит исчерпан.
+        final LongAdder capped = new LongAdder();
+
+        // Hedge завершился ошибкой (основной запрос продолжал ждать).
+        final LongAdder hedgeErrors = new LongAdder();
+
+        private final AtomicLong refreshAt = new AtomicLong(System.nanoTime());
+
+        private volatile long delayNanos = -1;
+
+        RouteHedges(RetryBudget budget) {
+            this.budget = budget;
+        }
+
+        /**
+         * Текущая задержка hedge.
+         *
+         * Пересчёт выполняет один поток — тот, что выиграл CAS на refreshAt;
+         * остальные в это время читают предыдущее значение.
+         */
+        Duration delay(HedgingGatewayFilterFactory.Config config) {
+            if (config.getPercentile() <= 0) {
+                return config.getDelay();
+            }
+            long now = System.nanoTime();
+            long due = refreshAt.get();
+            if (now - due >= 0 && refreshAt.compareAndSet(due, now + DELAY_REFRESH)) {
+                long micros = latency.percentile(WINDOW_SLICES, config.getPercentile(), config.getMinSamples());
+                delayNanos = micros < 0
+                        ? config.getDelay().toNanos()
+                        : Math.clamp(TimeUnit.MICROSECONDS.toNanos(micros),
+                                config.getMinDelay().toNanos(), config.getMaxDelay().toNanos());
+            }
+            long current = delayNanos;
+            return current < 0 ? config.getDelay() : Duration.ofNanos(current);
+        }
+
+        HedgeSnapshot snapshot() {
+            long requestCount = requests.sum();
+            long hedgeCount = hedges.sum();
+            long current = delayNanos;
+            return new HedgeSnapshot(
+                    requestCount,
+                    hedgeCount,
+                    hedgeWins.sum(),
+                    capped.sum(),
+                    hedgeErrors.sum(),
+                    requestCount == 0 ? 1.0 : (double) (requestCount + hedgeCount) / requestCount,
+                    current < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(current),
+                    budget.tokens()
+            );
+        }
+    }
+
+    /**
+     * Счётчики маршрута.
+     *
+     * @param amplification во сколько раз нагрузка на backend
+     *                      больше входящей: (requests + hedges) / requests.
+     * @param delayMicros   текущая адаптивная задержка hedge, мкс
+     *                      (-1 — ещё не вычислялась).
+     * @param budgetTokens  текущий остаток лимита hedge-запросов.
+     */
+    public record HedgeSnapshot(
+            long requests,
+            long hedges,
+            long hedgeWins,
+            long capped,
+            long hedgeErrors,
+            double amplification,
+            long delayMicros,
+            double budgetTokens
+    ) {
+    }
+}
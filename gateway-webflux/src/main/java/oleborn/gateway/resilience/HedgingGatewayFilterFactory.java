@@ -0,0 +1,449 @@
+package oleborn.gateway.resilience;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.RouteMetadataUtils;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientResponse;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * HedgingGatewayFilterFactory
+ *
+ * Hedged requests: борьба с "хвостом" задержек на идемпотентных маршрутах.
+ *
+ * Проблема:
+ * - у backend'а с длинным хвостом (service B /unstable: 0–3 секунды)
+ *   p99 определяется редкими медленными ответами;
+ * - повтор после ошибки (Retry) здесь не помогает —
+ *   ошибки нет, ответ просто долгий.
+ *
+ * Что делает этот фильтр:
+ * - отправляет основной запрос к backend'у;
+ * - если ответа нет дольше задержки hedge (по умолчанию — наблюдаемый p95
+ *   маршрута), отправляет ВТОРОЙ такой же запрос —
+ *   тому же backend'у или другому экземпляру (hedge-uri);
+ * - клиенту уходит тот ответ, чьи заголовки пришли первыми;
+ * - второй запрос отменяется: его соединение закрывается,
+ *   backend перестаёт тратить на него ресурсы.
+ *
+ * Ограничение нагрузки:
+ * - hedge отправляется только при наличии токена в RetryBudget маршрута
+ *   (ratio 0.1 — hedge-запросов не более 10% трафика);
+ * - задержка не опускается ниже min-delay,
+ *   чтобы быстрый backend не получал hedge на каждый запрос.
+ *
+ * Архитектурный смысл:
+ * - фильтр стоит НЕПОСРЕДСТВЕННО перед NettyRoutingFilter и сам выполняет
+ *   вызов backend'а так же, как он (те же HttpClient, HttpHeadersFilter'ы
+ *   и атрибуты exchange), только двумя запросами вместо одного;
+ * - после выбора победителя exchange помечается как "уже проксирован":
+ *   NettyRoutingFilter пропускает его, а NettyWriteResponseFilter
+ *   передаёт клиенту тело ответа победителя;
+ * - запросы, не подходящие для hedge (не GET, не http/https),
+ *   проходят к NettyRoutingFilter без изменений.
+ *
+ * Ошибка основного запроса возвращается сразу (hedge отменяется) —
+ * повторять после ошибки должен Retry, а не hedge.
+ * Ошибка hedge-запроса игнорируется: основной продолжает ждать.
+ *
+ * Доступен и из YAML: filters: - name: Hedging.
+ */
+public class HedgingGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<HedgingGatewayFilterFactory.Config> {
+
+    public static final int ORDER = NettyRoutingFilter.ORDER - 1;
+
+    private final HttpClient httpClient;
+
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider;
+
+    private final HttpClientProperties properties;
+
+    private final HedgeMetrics metrics;
+
+    private volatile List<HttpHeadersFilter> headersFilters;
+
+    public HedgingGatewayFilterFactory(
+            HttpClient httpClient,
+            ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+            HttpClientProperties properties,
+            HedgeMetrics metrics
+    ) {
+        super(Config.class);
+        this.httpClient = httpClient;
+        this.headersFiltersProvider = headersFiltersProvider;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        GatewayFilter hedging = new GatewayFilter() {
+
+            @Override
+            public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+                return hedge(exchange, chain, config);
+            }
+
+            @Override
+            public String toString() {
+                return "Hedging[delay=" + (config.percentile > 0 ? "p" + config.percentile : config.delay)
+                        + ", ratio=" + config.budgetRatio
+                        + (config.hedgeUri != null ? ", hedge-uri=" + config.hedgeUri : "") + "]";
+            }
+        };
+        // Фильтру маршрута нужен итоговый URL backend'а,
+        // который RouteToRequestUrlFilter вычисляет уже после фильтров с order 0.
+        return new OrderedGatewayFilter(hedging, ORDER);
+    }
+
+    private Mono<Void> hedge(ServerWebExchange exchange, GatewayFilterChain chain, Config config) {
+        URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        if (ServerWebExchangeUtils.isAlreadyRouted(exchange)
+                || url == null
+                || !("http".equalsIgnoreCase(url.getScheme()) || "https".equalsIgnoreCase(url.getScheme()))
+                || !config.methods.contains(exchange.getRequest().getMethod())) {
+            return chain.filter(exchange);
+        }
+        ServerWebExchangeUtils.setAlreadyRouted(exchange);
+
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        HedgeMetrics.RouteHedges hedges = metrics.route(routeId(config, route), config.budgetRatio, config.budgetMaxTokens);
+        hedges.requests.increment();
+        hedges.budget.deposit();
+
+        HttpHeaders filtered = HttpHeadersFilter.filterRequest(getHeadersFilters(), exchange);
+        // Единственный победитель: только он пишет в exchange,
+        // сигнал проигравшего не доходит до гонки.
+        AtomicBoolean decided = new AtomicBoolean();
+        long start = System.nanoTime();
+
+        Mono<Boolean> primary = send(exchange, url, filtered, decided, false)
+                .onErrorResume(error -> decided.compareAndSet(false, true) ? Mono.error(error) : Mono.never());
+
+        URI hedgeUrl = config.hedgeUri != null ? rebase(url, config.hedgeUri) : url;
+        Mono<Boolean> secondary = Mono.delay(hedges.delay(config))
+                .flatMap(tick -> {
+                    if (!hedges.budget.tryWithdraw()) {
+                        hedges.capped.increment();
+                        return Mono.never();
+                    }
+                    hedges.hedges.increment();
+                    return send(exchange, hedgeUrl, filtered, decided, true)
+                            .onErrorResume(error -> {
+                                hedges.hedgeErrors.increment();
+                                return Mono.never();
+                            });
+                });
+
+        // firstWithSignal отменяет проигравшего: незавершённый запрос
+        // Reactor Netty прерывает, закрывая его соединение.
+        Mono<Boolean> race = Mono.firstWithSignal(primary, secondary);
+
+        Duration responseTimeout = responseTimeout(route);
+        if (responseTimeout != null) {
+            race = race.timeout(responseTimeout,
+                            Mono.error(() -> new TimeoutException("Response took longer than timeout: " + responseTimeout)))
+                    .onErrorMap(TimeoutException.class,
+                            error -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, error.getMessage(), error));
+        }
+
+        return race
+                .doOnNext(hedgeWon -> {
+                    hedges.latency.record(System.nanoTime() - start);
+                    if (hedgeWon) {
+                        hedges.hedgeWins.increment();
+                    }
+                })
+                .then(chain.filter(exchange));
+    }
+
+    /**
+     * Один запрос к backend'у — как в NettyRoutingFilter, но только GET без тела.
+     *
+     * Заголовки ответа применяются к exchange ТОЛЬКО победителем гонки.
+     * Соединение победителя сразу кладётся в CLIENT_RESPONSE_CONN_ATTR:
+     * при отмене или ошибке его закроет NettyWriteResponseFilter.
+     *
+     * @return true, если ответил hedge-запрос.
+     */
+    private Mono<Boolean> send(
+            ServerWebExchange exchange,
+            URI url,
+            HttpHeaders filtered,
+            AtomicBoolean decided,
+            boolean hedge
+    ) {
+        DefaultHttpHeaders httpHeaders = new DefaultHttpHeaders();
+        filtered.forEach(httpHeaders::set);
+        boolean preserveHost = exchange.getAttributeOrDefault(ServerWebExchangeUtils.PRESERVE_HOST_HEADER_ATTRIBUTE, false);
+
+        return httpClient
+                .headers(headers -> {
+                    headers.add(httpHeaders);
+                    headers.remove(HttpHeaders.HOST);
+                    if (preserveHost) {
+                        headers.add(HttpHeaders.HOST, exchange.getRequest().getHeaders().getFirst(HttpHeaders.HOST));
+                    }
+                })
+                .request(io.netty.handler.codec.http.HttpMethod.GET)
+                .uri(url.toASCIIString())
+                .responseConnection((res, connection) -> {
+                    if (!decided.compareAndSet(false, true)) {
+                        // Оба ответа пришли одновременно: этот опоздал.
+                        connection.dispose();
+                        return Mono.<Boolean>never();
+                    }
+                    applyResponse(exchange, res, connection);
+                    return Mono.just(hedge);
+                })
+                .next();
+    }
+
+    /**
+     * Перенос статуса и заголовков ответа backend'а в ответ клиенту —
+     * повторяет NettyRoutingFilter.
+     */
+    private void applyResponse(ServerWebExchange exchange, HttpClientResponse res, Connection connection) {
+        exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR, res);
+        exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR, connection);
+
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = new HttpHeaders();
+        res.responseHeaders().forEach(entry -> headers.add(entry.getKey(), entry.getValue()));
+
+        String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+        if (StringUtils.hasLength(contentType)) {
+            exchange.getAttributes().put(ServerWebExchangeUtils.ORIGINAL_RESPONSE_CONTENT_TYPE_ATTR, contentType);
+        }
+        setResponseStatus(res.status().code(), response);
+
+        HttpHeaders filteredResponseHeaders = HttpHeadersFilter.filter(
+                getHeadersFilters(), headers, exchange, HttpHeadersFilter.Type.RESPONSE);
+        if (!filteredResponseHeaders.containsKey(HttpHeaders.TRANSFER_ENCODING)
+                && filteredResponseHeaders.containsKey(HttpHeaders.CONTENT_LENGTH)) {
+            response.getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+        }
+        exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_HEADER_NAMES, filteredResponseHeaders.keySet());
+        response.getHeaders().addAll(filteredResponseHeaders);
+    }
+
+    private static void setResponseStatus(int code, ServerHttpResponse response) {
+        HttpStatus status = HttpStatus.resolve(code);
+        if (status != null) {
+            response.setStatusCode(status);
+            return;
+        }
+        while (response instanceof ServerHttpResponseDecorator decorator) {
+            response = decorator.getDelegate();
+        }
+        if (response instanceof AbstractServerHttpResponse raw) {
+            raw.setRawStatusCode(code);
+            return;
+        }
+        throw new IllegalStateException("Unable to set status code " + code
+                + " on response of type " + response.getClass().getName());
+    }
+
+    /**
+     * Тот же путь и query, но хост, порт и схема другого экземпляра.
+     */
+    static URI rebase(URI url, URI instance) {
+        return UriComponentsBuilder.fromUri(url)
+                .scheme(instance.getScheme())
+                .host(instance.getHost())
+                .port(instance.getPort())
+                .build(true)
+                .toUri();
+    }
+
+    /**
+     * Таймаут ответа: метаданные маршрута response-timeout (мс)
+     * либо spring.cloud.gateway.httpclient.response-timeout.
+     */
+    private Duration responseTimeout(Route route) {
+        if (route != null && route.getMetadata().containsKey(RouteMetadataUtils.RESPONSE_TIMEOUT_ATTR)) {
+            Object value = route.getMetadata().get(RouteMetadataUtils.RESPONSE_TIMEOUT_ATTR);
+            try {
+                long millis = value instanceof Number number ? number.longValue() : Long.parseLong(String.valueOf(value));
+                return millis >= 0 ? Duration.ofMillis(millis) : null;
+            } catch (NumberFormatException ignored) {
+                // Некорректное значение — как в NettyRoutingFilter, берётся глобальный таймаут.
+            }
+        }
+        return properties.getResponseTimeout();
+    }
+
+    private List<HttpHeadersFilter> getHeadersFilters() {
+        if (headersFilters == null) {
+            headersFilters = headersFiltersProvider.getIfAvailable();
+        }
+        return headersFilters;
+    }
+
+    private static String routeId(Config config, Route route) {
+        if (config.routeId != null) {
+            return config.routeId;
+        }
+        return route != null ? route.getId() : "unknown";
+    }
+
+    /**
+     * Настройки фильтра.
+     *
+     * Setter'ы возвращают this — для Java DSL:
+     * factory.apply("route-id", c -> c.setPercentile(95).setBudgetRatio(0.1)).
+     */
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        // Hedge допустим только для идемпотентных методов.
+        private Set<HttpMethod> methods = Set.of(HttpMethod.GET);
+
+        // Задержка hedge = этот перцентиль задержки маршрута за последние 10 секунд.
+        // 0 — всегда фиксированная задержка delay.
+        private double percentile = 95.0;
+
+        // Фиксированная задержка, а также задержка до накопления min-samples измерений.
+        private Duration delay = Duration.ofMillis(200);
+
+        // Границы адаптивной задержки.
+        private Duration minDelay = Duration.ofMillis(10);
+
+        private Duration maxDelay = Duration.ofSeconds(2);
+
+        // Минимум измерений в окне, чтобы доверять перцентилю.
+        private int minSamples = 20;
+
+        // Другой экземпляр backend'а для hedge (схема, хост, порт);
+        // null — тот же backend, что и у основного запроса.
+        private URI hedgeUri;
+
+        // Токенов на один запрос: 0.1 — hedge не более 10% трафика.
+        private double budgetRatio = 0.1;
+
+        // Ёмкость корзины — допустимый всплеск hedge-запросов.
+        private int budgetMaxTokens = 10;
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        public Set<HttpMethod> getMethods() {
+            return methods;
+        }
+
+        public Config setMethods(HttpMethod... methods) {
+            this.methods = Set.of(methods);
+            return this;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public Config setPercentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        public Duration getDelay() {
+            return delay;
+        }
+
+        public Config setDelay(Duration delay) {
+            this.delay = delay;
+            return this;
+        }
+
+        public Duration getMinDelay() {
+            return minDelay;
+        }
+
+        public Config setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+            return this;
+        }
+
+        public Duration getMaxDelay() {
+            return maxDelay;
+        }
+
+        public Config setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        public int getMinSamples() {
+            return minSamples;
+        }
+
+        public Config setMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        public URI getHedgeUri() {
+            return hedgeUri;
+        }
+
+        public Config setHedgeUri(URI hedgeUri) {
+            this.hedgeUri = hedgeUri;
+            return this;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public Config setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+            return this;
+        }
+
+        public int getBudgetMaxTokens() {
+            return budgetMaxTokens;
+        }
+
+        public Config setBudgetMaxTokens(int budgetMaxTokens) {
+            this.budgetMaxTokens = budgetMaxTokens;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package oleborn.gateway.resilience;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.List;
+
+/**
+ * ResilienceConfig
+ *
+ * Регистрация фильтров устойчивости и их метрик.
+ */
+@Configuration
+@EnableConfigurationProperties({ConcurrencyLimitProperties.class, DeadlineProperties.class})
+public class ResilienceConfig {
+
+    @Bean
+    public RetryMetrics retryMetrics() {
+        return new RetryMetrics();
+    }
+
+    @Bean
+    public BudgetedRetryGatewayFilterFactory budgetedRetryGatewayFilterFactory(RetryMetrics retryMetrics) {
+        return new BudgetedRetryGatewayFilterFactory(retryMetrics);
+    }
+
+    @Bean
+    public HedgeMetrics hedgeMetrics() {
+        return new HedgeMetrics();
+    }
+
+    /**
+     * Hedge-запросы идут через тот же HttpClient, что и NettyRoutingFilter:
+     * общий пул соединений, таймауты и настройки TLS.
+     */
+    @Bean
+    public HedgingGatewayFilterFactory hedgingGatewayFilterFactory(
+            HttpClient httpClient,
+            ObjectProvider<List<HttpHeadersFilter>> headersFilters,
+            HttpClientProperties httpClientProperties,
+            HedgeMetrics hedgeMetrics
+    ) {
+        return new HedgingGatewayFilterFactory(httpClient, headersFilters, httpClientProperties, hedgeMetrics);
+    }
+
+    @Bean
+    public CircuitBreakerMetrics circuitBreakerMetrics() {
+        return new CircuitBreakerMetrics();
+    }
+
+    @Bean
+    public CircuitBreakerFilter circuitBreakerFilter(CircuitBreakerMetrics circuitBreakerMetrics) {
+        return new CircuitBreakerFilter(circuitBreakerMetrics);
+    }
+
+    @Bean
+    public Bulkheads bulkheads() {
+        return new Bulkheads();
+    }
+
+    @Bean
+    public BulkheadFilter bulkheadFilter(Bulkheads bulkheads) {
+        return new BulkheadFilter(bulkheads);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.concurrency-limit.enabled")
+    public ConcurrencyLimits concurrencyLimits(ConcurrencyLimitProperties properties) {
+        return new ConcurrencyLimits(properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.concurrency-limit.enabled")
+    public ConcurrencyLimitFilter concurrencyLimitFilter(ConcurrencyLimits concurrencyLimits) {
+        return new ConcurrencyLimitFilter(concurrencyLimits);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.deadline.enabled", matchIfMissing = true)
+    public DeadlineMetrics deadlineMetrics() {
+        return new DeadlineMetrics();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.deadline.enabled", matchIfMissing = true)
+    public DeadlineFilter deadlineFilter(DeadlineProperties properties, DeadlineMetrics deadlineMetrics) {
+        return new DeadlineFilter(properties, deadlineMetrics);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.deadline.enabled", matchIfMissing = true)
+    public UpstreamDeadlineFilter upstreamDeadlineFilter(DeadlineProperties properties, DeadlineMetrics deadlineMetrics) {
+        return new UpstreamDeadlineFilter(properties, deadlineMetrics);
+    }
+}
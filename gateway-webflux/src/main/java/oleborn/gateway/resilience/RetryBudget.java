@@ -0,0 +1,75 @@
+package oleborn.gateway.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RetryBudget
+ *
+ * Бюджет повторов маршрута в виде token bucket.
+ *
+ * Цель этого класса — ограничить ДОЛЮ повторов в трафике:
+ * - каждый исходный запрос кладёт в корзину ratio токена (например, 0.2);
+ * - каждый повтор забирает один токен;
+ * - нет токена — повтора нет, клиент получает исходный ответ.
+ *
+ * Пока backend здоров, повторов мало и корзина полна.
+ * Когда backend деградирует, повторы быстро выбирают корзину,
+ * и нагрузка на backend растёт не в (retries + 1) раз,
+ * а не более чем в (1 + ratio) раз.
+ *
+ * Ёмкость корзины (max-tokens) допускает короткий всплеск повторов
+ * после долгой спокойной работы.
+ *
+ * Баланс хранится в фиксированной точке (тысячные доли токена)
+ * в одном AtomicLong и меняется CAS-ом — без блокировок.
+ */
+final class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+
+    private final long capacity;
+
+    private final AtomicLong balance;
+
+    RetryBudget(double ratio, int maxTokens) {
+        this.deposit = Math.round(ratio * SCALE);
+        this.capacity = (long) maxTokens * SCALE;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    /**
+     * Пополнение бюджета исходным запросом.
+     */
+    void deposit() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    /**
+     * @return true, если токен на повтор получен.
+     */
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    /**
+     * @return текущий баланс в токенах.
+     */
+    double tokens() {
+        return (double) balance.get() / SCALE;
+    }
+}
@@ -0,0 +1,104 @@
+package oleborn.gateway.resilience;
+
+import oleborn.gateway.metrics.MetricsSource;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RetryMetrics
+ *
+ * Бюджеты и счётчики повторов по маршрутам.
+ *
+ * Бюджет живёт здесь, а не в экземпляре фильтра:
+ * маршруты из конфигурации пересоздают фильтры при каждом обновлении,
+ * а бюджет маршрута должен переживать обновления.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/retry.
+ */
+public class RetryMetrics implements MetricsSource {
+
+    private final Map<String, RouteRetries> routes = new ConcurrentHashMap<>();
+
+    RouteRetries route(String routeId, double ratio, int maxTokens) {
+        return routes.computeIfAbsent(routeId, id -> new RouteRetries(new RetryBudget(ratio, maxTokens)));
+    }
+
+    @Override
+    public String metricsName() {
+        return "retry";
+    }
+
+    @Override
+    public Map<String, RetrySnapshot> metricsSnapshot() {
+        Map<String, RetrySnapshot> result = new TreeMap<>();
+        routes.forEach((id, route) -> result.put(id, route.snapshot()));
+        return result;
+    }
+
+    /**
+     * Счётчики и бюджет одного маршрута.
+     */
+    static final class RouteRetries {
+
+        final RetryBudget budget;
+
+        // Исходные запросы через фильтр.
+        final LongAdder requests = new LongAdder();
+
+        // Все обращения к backend: исходные + повторы.
+        final LongAdder attempts = new LongAdder();
+
+        // Выполненные повторы.
+        final LongAdder retries = new LongAdder();
+
+        // Повтор был нужен, но бюджет исчерпан.
+        final LongAdder budgetExhausted = new LongAdder();
+
+        // Повтор был нужен, но попытки закончились.
+        final LongAdder retriesExhausted = new LongAdder();
+
+        // Повтор был нужен, но не укладывался в срок запроса.
+        final LongAdder deadlineExhausted = new LongAdder();
+
+        RouteRetries(RetryBudget budget) {
+            this.budget = budget;
+        }
+
+        RetrySnapshot snapshot() {
+            long requestCount = requests.sum();
+            long attemptCount = attempts.sum();
+            return new RetrySnapshot(
+                    requestCount,
+                    attemptCount,
+                    retries.sum(),
+                    budgetExhausted.sum(),
+                    retriesExhausted.sum(),
+                    deadlineExhausted.sum(),
+                    requestCount == 0 ? 1.0 : (double) attemptCount / requestCount,
+                    budget.tokens()
+            );
+        }
+    }
+
+    /**
+     * Счётчики маршрута.
+     *
+     * @param amplification во сколько раз нагрузка на backend
+     *                      больше входящей: attempts / requests.
+     * @param budgetTokens  текущий остаток бюджета повторов.
+     */
+    public record RetrySnapshot(
+            long requests,
+            long attempts,
+            long retries,
+            long budgetExhausted,
+            long retriesExhausted,
+            long deadlineExhausted,
+            double amplification,
+            double budgetTokens
+    ) {
+    }
+}
@@ -0,0 +1,182 @@
+package oleborn.gateway.resilience;
+
+import reactor.core.publisher.Sinks;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RouteBulkhead
+ *
+ * Изоляция маршрута: не больше max-concurrent запросов в работе
+ * и не больше max-queue ожидающих, остальные сразу отклоняются.
+ *
+ * Цель этого класса — чтобы один медленный маршрут
+ * не занял весь общий пул соединений Gateway
+ * (spring.cloud.gateway.httpclient.pool.max-connections)
+ * и не оставил без соединений остальные маршруты.
+ *
+ * Ключевая идея — семафор без блокировок:
+ * - inflight и queued — AtomicInteger, место занимается CAS'ом;
+ * - ожидающий запрос — Waiter с Sinks.Empty в FIFO-очереди,
+ *   поток event loop'а не блокируется: подписка на Mono
+ *   просто продолжится, когда место освободится;
+ * - освободивший место поток сам передаёт его первому в очереди (drain).
+ *
+ * Новые запросы не обгоняют очередь:
+ * быстрый путь доступен, только пока очередь пуста.
+ */
+final class RouteBulkhead {
+
+    private static final int WAITING = 0;
+
+    private static final int GRANTED = 1;
+
+    private static final int CANCELLED = 2;
+
+    final BulkheadPolicy policy;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    // Ожидающие, ещё не получившие место и не отменённые.
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder enqueued = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    RouteBulkhead(BulkheadPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Ожидание места в очереди.
+     * Сигнал приходит, когда место передано этому запросу.
+     */
+    static final class Waiter {
+
+        final Sinks.Empty<Void> signal = Sinks.empty();
+
+        private final AtomicInteger state;
+
+        private Waiter(int state) {
+            this.state = new AtomicInteger(state);
+        }
+
+        boolean granted() {
+            return state.get() == GRANTED;
+        }
+    }
+
+    /** Место занято сразу. */
+    static final Waiter ADMITTED = new Waiter(GRANTED);
+
+    /**
+     * Занять место под запрос.
+     *
+     * @return ADMITTED — место занято;
+     *         Waiter — запрос поставлен в очередь;
+     *         null — очередь переполнена, запрос отклонён.
+     */
+    Waiter tryEnter() {
+        if (queued.get() == 0 && tryAcquireSlot()) {
+            admitted.increment();
+            return ADMITTED;
+        }
+        while (true) {
+            int depth = queued.get();
+            if (depth >= policy.maxQueue()) {
+                rejected.increment();
+                return null;
+            }
+            if (queued.compareAndSet(depth, depth + 1)) {
+                break;
+            }
+        }
+        Waiter waiter = new Waiter(WAITING);
+        waiters.offer(waiter);
+        enqueued.increment();
+        // Место могло освободиться между проверкой и постановкой в очередь.
+        drain();
+        return waiter;
+    }
+
+    /**
+     * Освободить место запроса, получившего его.
+     */
+    void release() {
+        inflight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Ожидание прервано (таймаут или отмена клиентом).
+     *
+     * @return true — запрос снят с очереди;
+     *         false — место уже передано ему, и его нужно освободить.
+     */
+    boolean abandon(Waiter waiter, boolean timeout) {
+        if (waiter.state.compareAndSet(WAITING, CANCELLED)) {
+            queued.decrementAndGet();
+            // Очередь не копит отменённых, даже если места не освобождаются.
+            waiters.remove(waiter);
+            if (timeout) {
+                timedOut.increment();
+                rejected.increment();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Передать свободные места ожидающим по порядку очереди.
+     * Ожидающий, отменённый одновременно с передачей места,
+     * пропускается, и место достаётся следующему.
+     */
+    private void drain() {
+        while (!waiters.isEmpty() && tryAcquireSlot()) {
+            Waiter waiter = waiters.poll();
+            if (waiter != null && waiter.state.compareAndSet(WAITING, GRANTED)) {
+                queued.decrementAndGet();
+                admitted.increment();
+                waiter.signal.tryEmitEmpty();
+            } else {
+                inflight.decrementAndGet();
+            }
+        }
+    }
+
+    private boolean tryAcquireSlot() {
+        while (true) {
+            int busy = inflight.get();
+            if (busy >= policy.maxConcurrent()) {
+                return false;
+            }
+            if (inflight.compareAndSet(busy, busy + 1)) {
+                return true;
+            }
+        }
+    }
+
+    Bulkheads.BulkheadSnapshot snapshot() {
+        return new Bulkheads.BulkheadSnapshot(
+                inflight.get(),
+                queued.get(),
+                policy.maxConcurrent(),
+                policy.maxQueue(),
+                admitted.sum(),
+                enqueued.sum(),
+                rejected.sum(),
+                timedOut.sum()
+        );
+    }
+}
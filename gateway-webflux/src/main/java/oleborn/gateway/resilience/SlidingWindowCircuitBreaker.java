@@ -0,0 +1,306 @@
+package oleborn.gateway.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SlidingWindowCircuitBreaker
+ *
+ * Circuit breaker маршрута со скользящим окном по времени.
+ *
+ * Цель этого класса — перестать обращаться к backend'у,
+ * который отвечает ошибками почти на каждый вызов,
+ * и через паузу осторожно проверить, не восстановился ли он.
+ *
+ * Состояния:
+ * - CLOSED    — вызовы проходят, исходы считаются в окне;
+ *               доля неудач ≥ failure-rate (при ≥ minimum-calls вызовов) → OPEN;
+ * - OPEN      — вызовы отклоняются (клиент получает fallback)
+ *               в течение open-duration;
+ * - HALF_OPEN — пропускаются half-open-calls пробных вызовов:
+ *               все успешны → CLOSED с чистым окном,
+ *               хотя бы один неудачен → снова OPEN.
+ *
+ * Окно — кольцо корзин по времени (window / buckets каждая).
+ * Корзина — ОДИН long: метка интервала | число вызовов | число неудач.
+ * Запись исхода — один CAS: устаревшая корзина (чужая метка)
+ * перезаписывается заново, актуальная увеличивается.
+ * Поэтому сброс корзины и инкремент не могут "разъехаться" между потоками.
+ *
+ * Состояние — тоже один long (код состояния | данные состояния),
+ * все переходы выполняются CAS-ом. Блокировок нет.
+ */
+final class SlidingWindowCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(SlidingWindowCircuitBreaker.class);
+
+    /**
+     * Исход tryAcquire().
+     */
+    static final int REJECTED = 0;
+
+    static final int PERMITTED = 1;
+
+    static final int PROBE = 2;
+
+    // Корзина: [метка интервала: 24 бита | вызовы: 20 бит | неудачи: 20 бит].
+    private static final int COUNT_BITS = 20;
+
+    private static final long COUNT_MAX = (1L << COUNT_BITS) - 1;
+
+    private static final long CALL = 1L << COUNT_BITS;
+
+    private static final int TAG_SHIFT = 2 * COUNT_BITS;
+
+    private static final long TAG_MASK = (1L << (Long.SIZE - TAG_SHIFT)) - 1;
+
+    // Состояние: [код: 2 бита | данные: 62 бита].
+    // OPEN      — момент окончания паузы (нс от origin);
+    // HALF_OPEN — выданные пробные вызовы (младшие 16 бит)
+    //             и успешные из них (следующие 16 бит).
+    private static final int STATE_SHIFT = 62;
+
+    private static final long PAYLOAD_MASK = (1L << STATE_SHIFT) - 1;
+
+    private static final long CLOSED = 0;
+
+    private static final long OPEN = 1;
+
+    private static final long HALF_OPEN = 2;
+
+    private static final long CLOSED_WORD = CLOSED << STATE_SHIFT;
+
+    private static final String[] STATE_NAMES = {"closed", "open", "half_open"};
+
+    final CircuitBreakerPolicy policy;
+
+    private final String name;
+
+    private final long bucketNanos;
+
+    // Точка отсчёта: время хранится неотрицательным.
+    private final long origin = System.nanoTime();
+
+    private final AtomicLongArray ring;
+
+    private final AtomicLong state = new AtomicLong(CLOSED_WORD);
+
+    // Отклонённые вызовы (отданный fallback).
+    final LongAdder rejected = new LongAdder();
+
+    // Сколько раз breaker открывался.
+    final LongAdder opened = new LongAdder();
+
+    SlidingWindowCircuitBreaker(String name, CircuitBreakerPolicy policy) {
+        this.name = name;
+        this.policy = policy;
+        this.bucketNanos = policy.windowNanos() / policy.buckets();
+        this.ring = new AtomicLongArray(policy.buckets());
+    }
+
+    /**
+     * Решение о вызове.
+     *
+     * @return PERMITTED — обычный вызов (CLOSED);
+     *         PROBE     — пробный вызов (HALF_OPEN);
+     *         REJECTED  — вызов запрещён, нужен fallback.
+     */
+    int tryAcquire() {
+        while (true) {
+            long current = state.get();
+            long code = current >>> STATE_SHIFT;
+
+            if (code == CLOSED) {
+                return PERMITTED;
+            }
+            if (code == OPEN) {
+                if (now() - (current & PAYLOAD_MASK) < 0) {
+                    rejected.increment();
+                    return REJECTED;
+                }
+                // Пауза истекла: первый успевший поток
+                // переводит breaker в HALF_OPEN и становится первой пробой.
+                if (state.compareAndSet(current, halfOpen(1, 0))) {
+                    log.info("Circuit breaker '{}' half-open: probing with {} calls", name, policy.halfOpenCalls());
+                    return PROBE;
+                }
+                continue;
+            }
+            long issued = current & 0xFFFF;
+            if (issued >= policy.halfOpenCalls()) {
+                rejected.increment();
+                return REJECTED;
+            }
+            if (state.compareAndSet(current, current + 1)) {
+                return PROBE;
+            }
+        }
+    }
+
+    /**
+     * Исход вызова, разрешённого tryAcquire().
+     *
+     * @param permit  значение, которое вернул tryAcquire().
+     * @param failure true — ошибка или ответ, считающийся неудачей.
+     */
+    void onResult(int permit, boolean failure) {
+        if (permit == PERMITTED) {
+            record(failure);
+            if (failure) {
+                tripIfNeeded();
+            }
+        } else if (permit == PROBE) {
+            if (failure) {
+                reopen();
+            } else {
+                probeSucceeded();
+            }
+        }
+    }
+
+    /**
+     * Вызов отменён (клиент ушёл) — исход неизвестен.
+     *
+     * Пробный вызов возвращает своё место,
+     * иначе HALF_OPEN мог бы никогда не завершиться.
+     */
+    void onCancel(int permit) {
+        if (permit != PROBE) {
+            return;
+        }
+        while (true) {
+            long current = state.get();
+            if (current >>> STATE_SHIFT != HALF_OPEN || (current & 0xFFFF) == 0) {
+                return;
+            }
+            if (state.compareAndSet(current, current - 1)) {
+                return;
+            }
+        }
+    }
+
+    private void record(boolean failure) {
+        long epoch = now() / bucketNanos;
+        int slot = (int) (epoch % ring.length());
+        long tag = epoch & TAG_MASK;
+        while (true) {
+            long word = ring.get(slot);
+            long next;
+            if (word >>> TAG_SHIFT != tag) {
+                // Корзина осталась от прошлого оборота кольца.
+                next = (tag << TAG_SHIFT) | CALL | (failure ? 1 : 0);
+            } else if (((word >>> COUNT_BITS) & COUNT_MAX) == COUNT_MAX) {
+                // Счётчики насыщены: больше миллиона вызовов в корзине
+                // долю неудач уже не изменят.
+                return;
+            } else {
+                next = word + CALL + (failure ? 1 : 0);
+            }
+            if (ring.compareAndSet(slot, word, next)) {
+                return;
+            }
+        }
+    }
+
+    private void tripIfNeeded() {
+        long current = state.get();
+        if (current != CLOSED_WORD) {
+            return;
+        }
+        long[] window = window();
+        long calls = window[0];
+        long failures = window[1];
+        if (calls >= policy.minimumCalls() && failures * 100 >= policy.failureRate() * calls) {
+            if (state.compareAndSet(current, openUntil())) {
+                opened.increment();
+                log.warn("Circuit breaker '{}' opened: {} of {} calls failed", name, failures, calls);
+            }
+        }
+    }
+
+    private void reopen() {
+        while (true) {
+            long current = state.get();
+            if (current >>> STATE_SHIFT != HALF_OPEN) {
+                return;
+            }
+            if (state.compareAndSet(current, openUntil())) {
+                opened.increment();
+                log.warn("Circuit breaker '{}' re-opened: probe call failed", name);
+                return;
+            }
+        }
+    }
+
+    private void probeSucceeded() {
+        while (true) {
+            long current = state.get();
+            if (current >>> STATE_SHIFT != HALF_OPEN) {
+                return;
+            }
+            long succeeded = ((current >>> 16) & 0xFFFF) + 1;
+            if (succeeded >= policy.halfOpenCalls()) {
+                if (state.compareAndSet(current, CLOSED_WORD)) {
+                    // Неудачи до открытия не должны сразу открыть breaker снова.
+                    for (int i = 0; i < ring.length(); i++) {
+                        ring.set(i, 0);
+                    }
+                    log.info("Circuit breaker '{}' closed", name);
+                    return;
+                }
+            } else if (state.compareAndSet(current, halfOpen(current & 0xFFFF, succeeded))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return {вызовы, неудачи} за последние window / buckets × buckets.
+     */
+    private long[] window() {
+        long epoch = now() / bucketNanos;
+        long calls = 0;
+        long failures = 0;
+        for (int i = 0; i < ring.length(); i++) {
+            long word = ring.get(i);
+            long age = (epoch - (word >>> TAG_SHIFT)) & TAG_MASK;
+            if (age < ring.length()) {
+                calls += (word >>> COUNT_BITS) & COUNT_MAX;
+                failures += word & COUNT_MAX;
+            }
+        }
+        return new long[]{calls, failures};
+    }
+
+    private long openUntil() {
+        return (OPEN << STATE_SHIFT) | ((now() + policy.openNanos()) & PAYLOAD_MASK);
+    }
+
+    private static long halfOpen(long issued, long succeeded) {
+        return (HALF_OPEN << STATE_SHIFT) | (succeeded << 16) | issued;
+    }
+
+    private long now() {
+        return System.nanoTime() - origin;
+    }
+
+    String stateName() {
+        return STATE_NAMES[(int) (state.get() >>> STATE_SHIFT)];
+    }
+
+    CircuitBreakerMetrics.CircuitBreakerSnapshot snapshot() {
+        long[] window = window();
+        return new CircuitBreakerMetrics.CircuitBreakerSnapshot(
+                stateName(),
+                window[0],
+                window[1],
+                window[0] == 0 ? 0.0 : 100.0 * window[1] / window[0],
+                rejected.sum(),
+                opened.sum()
+        );
+    }
+}
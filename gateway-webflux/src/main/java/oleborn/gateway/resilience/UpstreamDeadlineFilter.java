@@ -0,0 +1,89 @@
+package oleborn.gateway.resilience;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * UpstreamDeadlineFilter
+ *
+ * Каждая попытка обращения к backend'у получает
+ * только ОСТАТОК срока запроса (Deadline).
+ *
+ * Что делает этот фильтр на каждой попытке:
+ * - остатка меньше min-attempt — сразу 504, backend не вызывается;
+ * - остаток в миллисекундах передаётся backend'у в заголовке
+ *   X-Request-Timeout: backend (или следующий Gateway)
+ *   может не начинать работу, результат которой уже никто не ждёт;
+ * - попытка, не получившая заголовки ответа за остаток срока,
+ *   прерывается с 504 (соединение с backend'ом закрывается).
+ *
+ * Архитектурный смысл:
+ * - фильтр стоит перед ConcurrencyLimitFilter и NettyRoutingFilter,
+ *   а Retry переподписывается на эту часть цепочки —
+ *   поэтому фильтр выполняется для каждой попытки отдельно;
+ * - response-timeout по-прежнему действует:
+ *   попытка ограничена меньшим из двух значений;
+ * - срок ограничивает время до заголовков ответа,
+ *   передачу тела клиенту он не прерывает.
+ */
+public class UpstreamDeadlineFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = ConcurrencyLimitFilter.ORDER - 1;
+
+    private final DeadlineProperties properties;
+
+    private final DeadlineMetrics metrics;
+
+    public UpstreamDeadlineFilter(DeadlineProperties properties, DeadlineMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Deadline deadline = Deadline.of(exchange);
+        if (deadline == null) {
+            return chain.filter(exchange);
+        }
+        if (!deadline.coversAttemptAfter(0)) {
+            metrics.expiredBeforeAttempt.increment();
+            return Mono.error(deadlineExceeded());
+        }
+
+        long remaining = deadline.remainingNanos();
+        String remainingMillis = Long.toString(TimeUnit.NANOSECONDS.toMillis(remaining));
+        ServerWebExchange attempt = exchange.mutate()
+                .request(request -> request.headers(headers -> headers.set(properties.getUpstreamHeader(), remainingMillis)))
+                .build();
+
+        return chain.filter(attempt)
+                .timeout(Duration.ofNanos(remaining), Mono.defer(() -> {
+                    metrics.attemptTimeouts.increment();
+                    return Mono.error(deadlineExceeded());
+                }));
+    }
+
+    /**
+     * Тот же вид ошибки, что и при response-timeout в NettyRoutingFilter:
+     * 504, причина — TimeoutException.
+     */
+    private static ResponseStatusException deadlineExceeded() {
+        return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Request deadline exceeded",
+                new TimeoutException("Request deadline exceeded"));
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
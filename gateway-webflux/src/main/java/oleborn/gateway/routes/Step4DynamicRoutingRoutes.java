@@ -1,17 +1,11 @@
 package oleborn.gateway.routes;
 
-import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
-import org.springframework.cloud.gateway.route.Route;
+import oleborn.gateway.routing.HeaderRoutingFilter;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
-import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
-import org.springframework.core.Ordered;
-import org.springframework.http.server.reactive.ServerHttpRequest;
-
-import java.net.URI;
 
 /**
  * Step4DynamicRoutingRoutes
@@ -45,19 +39,22 @@ public class Step4DynamicRoutingRoutes {
     /**
      * Создание RouteLocator с динамической маршрутизацией.
      * <p>
-     * В данном методе используется кастомный GatewayFilter,
-     * определённый напрямую через Java DSL,
-     * без создания отдельного класса.
+     * В данном методе используется кастомный GatewayFilter
+     * (HeaderRoutingFilter), который выбирает backend
+     * по заранее скомпилированной таблице маршрутизации.
      *
      * @param builder RouteLocatorBuilder —
      *                DSL-строитель маршрутов Spring Cloud Gateway,
      *                позволяющий декларативно и программно
      *                описывать маршруты.
+     * @param headerRoutingFilter HeaderRoutingFilter —
+     *                            фильтр, подменяющий Route и request URL
+     *                            по значению заголовка X-Target.
      * @return RouteLocator с маршрутом,
      * использующим динамическое определение backend.
      */
     @Bean
-    public RouteLocator dynamicRoutes(RouteLocatorBuilder builder) {
+    public RouteLocator dynamicRoutes(RouteLocatorBuilder builder, HeaderRoutingFilter headerRoutingFilter) {
 
         return builder.routes()
                 // Определение маршрута с идентификатором "smart".
@@ -85,93 +82,18 @@ public class Step4DynamicRoutingRoutes {
                         .filters(
                                 f -> f
                                         .rewritePath("/smart/(?<segment>.*)", "/${segment}")
-                                        .filter((exchange, chain) -> {
-
-                                            // ServerWebExchange — центральный объект WebFlux,
-                                            // представляющий состояние одного HTTP-запроса.
-                                            //
-                                            // Он содержит:
-                                            // - ServerHttpRequest (request);
-                                            // - ServerHttpResponse (response);
-                                            // - attributes — контекст выполнения.
-                                            //
-                                            // Через exchange Gateway получает доступ
-                                            // ко всем данным запроса.
-
-                                            // Извлечение значения HTTP-заголовка "X-Target"
-                                            // из входящего запроса.
-                                            //
-                                            // Заголовок используется как управляющий параметр
-                                            // для выбора backend-сервиса.
-                                            String target = exchange.getRequest()
-                                                    // Получение объекта ServerHttpRequest
-                                                    // — представления входящего HTTP-запроса.
-                                                    .getHeaders()
-                                                    // Получение первого значения заголовка "X-Target".
-                                                    .getFirst("X-Target");
-
-                                            // Инициализация базового URI по умолчанию.
-                                            //
-                                            // Это значение будет использовано,
-                                            // если условие ниже не выполнится.
-                                            String baseUri = "http://localhost:8081";
-
-                                            // Условная логика маршрутизации.
-                                            //
-                                            // ВАЖНО:
-                                            // - именно здесь появляется императивная логика;
-                                            // - это невозможно выразить в YAML.
-                                            if ("B".equalsIgnoreCase(target)) {
-                                                // Если заголовок X-Target равен "B",
-                                                // то запрос будет направлен на другой backend.
-                                                baseUri = "http://localhost:8082";
-                                            }
-
-                                            // КЛЮЧЕВОЙ МОМЕНТ:
-                                            // мы создаём НОВЫЙ Route во время выполнения запроса.
-                                            // Gateway дальше будет работать УЖЕ С НИМ.
-                                            Route newRoute = Route.async()
-                                                    // id нужен только для логов и отладки
-                                                    .id("dynamic-" + target)
-                                                    // URI backend-сервиса
-                                                    .uri(URI.create(baseUri))
-                                                    // порядок роли не играет — Route уже выбран
-                                                    .order(0)
-                                                    // predicate всегда true,
-                                                    // потому что маршрут уже выбран ранее
-                                                    .predicate(e -> true)
-                                                    .build();
-
-                                            // Подменяем Route в exchange.
-                                            // С этого момента Gateway СЧИТАЕТ,
-                                            // что именно этот Route является текущим.
-                                            exchange.getAttributes().put(
-                                                    ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR,
-                                                    newRoute
-                                            );
-
-                                            // Явно кладём request URL,
-                                            // чтобы системные фильтры
-                                            // (RouteToRequestUrlFilter, NettyRoutingFilter)
-                                            // использовали НОВЫЙ backend,
-                                            // а не исходный route.uri().
-                                            exchange.getAttributes().put(
-                                                    ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR,
-                                                    URI.create(baseUri)
-                                            );
-
-
-                                            // GatewayFilterChain представляет собой
-                                            // цепочку фильтров Gateway.
-                                            //
-                                            // Вызов chain.filter(exchange) передаёт управление
-                                            // следующему фильтру в pipeline.
-                                            //
-                                            // Если этот вызов НЕ сделать,
-                                            // pipeline будет остановлен (short-circuit).
-                                            return chain.filter(exchange);
-                                        }
-                                )
+                                        // Выбор backend'а по заголовку X-Target.
+                                        //
+                                        // Вся логика выбора вынесена в HeaderRoutingFilter:
+                                        // соответствие "X-Target → backend" берётся
+                                        // из конфигурации gateway.header-routing,
+                                        // а Route и URI для каждого backend'а
+                                        // создаются ОДИН раз при загрузке конфигурации,
+                                        // а не на каждый запрос.
+                                        //
+                                        // На запрос остаются только чтение заголовка
+                                        // и поиск в готовой таблице.
+                                        .filter(headerRoutingFilter)
                         )
 
                         // Обязательное указание uri().
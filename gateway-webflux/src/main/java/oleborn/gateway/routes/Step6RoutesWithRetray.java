@@ -1,5 +1,7 @@
 package oleborn.gateway.routes;
 
+import oleborn.gateway.resilience.BudgetedRetryGatewayFilterFactory;
+import oleborn.gateway.resilience.HedgingGatewayFilterFactory;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
@@ -8,6 +10,8 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 
+import java.time.Duration;
+
 /**
  * Step6RoutesWithRetray
  *
@@ -45,11 +49,24 @@ public class Step6RoutesWithRetray {
      *                DSL-строитель маршрутов,
      *                позволяющий декларативно описывать
      *                Route, Predicate и Filters.
+     * @param budgetedRetry фабрика Retry-фильтра с бюджетом повторов.
+     * @param hedging фабрика фильтра hedged requests.
      * @return RouteLocator с маршрутом,
      *         использующим Retry как часть pipeline.
      */
     @Bean
-    public RouteLocator routeLocator(RouteLocatorBuilder builder) {
+    public RouteLocator routeLocator(
+            RouteLocatorBuilder builder,
+
+            // Фабрика Retry с backoff, jitter и бюджетом повторов.
+            // Счётчики попыток и коэффициент усиления нагрузки:
+            // GET /gateway/metrics/retry.
+            BudgetedRetryGatewayFilterFactory budgetedRetry,
+
+            // Фабрика hedged requests для маршрутов с длинным хвостом задержек.
+            // Счётчики hedge и текущая задержка: GET /gateway/metrics/hedge.
+            HedgingGatewayFilterFactory hedging
+    ) {
         return builder.routes()
                 // Определение маршрута с идентификатором "retry-demo".
                 // Идентификатор используется для логирования,
@@ -77,26 +94,33 @@ public class Step6RoutesWithRetray {
                                 // не ожидает маршрутизирующий префикс.
                                 .stripPrefix(1)
 
-                                // retry(...) — встроенный GatewayFilter,
-                                // предоставляемый Spring Cloud Gateway.
+                                // Retry с экспоненциальной паузой, jitter
+                                // и бюджетом повторов на маршрут.
                                 //
-                                // Он отвечает за повтор backend-вызова
-                                // при определённых условиях.
-                                .retry(retry -> retry
+                                // Встроенный retry(3) повторяет запрос СРАЗУ:
+                                // когда service B деградирует (50 потоков Tomcat,
+                                // ответы до 3 секунд), каждый запрос превращается
+                                // в 4 обращения — нагрузка растёт в 4 раза
+                                // именно тогда, когда backend меньше всего
+                                // способен её выдержать (retry storm).
+                                .filter(budgetedRetry.apply("retry-demo", retry -> retry
 
-                                        // setRetries(3) задаёт количество повторных попыток.
+                                        // setRetries(3) задаёт максимальное количество повторов.
                                         //
                                         // Это означает:
-                                        // - первый вызов + 3 повтора;
-                                        // - всего до 4 попыток обращения к backend.
+                                        // - первый вызов + до 3 повторов;
+                                        // - но каждый повтор ещё должен
+                                        //   получить токен из бюджета.
                                         .setRetries(3)
 
                                         // setStatuses(...) ограничивает Retry
                                         // ТОЛЬКО определёнными HTTP-статусами.
                                         //
-                                        // В данном случае:
-                                        // - retry срабатывает ТОЛЬКО при 500 Internal Server Error;
-                                        // - бизнес-ошибки (4xx) не затрагиваются.
+                                        // setSeries() без аргументов отключает
+                                        // серию 5xx по умолчанию: повторяется
+                                        // ТОЛЬКО 500 Internal Server Error,
+                                        // бизнес-ошибки (4xx) не затрагиваются.
+                                        .setSeries()
                                         .setStatuses(HttpStatus.INTERNAL_SERVER_ERROR)
 
                                         // setMethods(...) ограничивает Retry
@@ -108,9 +132,62 @@ public class Step6RoutesWithRetray {
                                         //
                                         // Здесь явно разрешён только GET.
                                         .setMethods(HttpMethod.GET)
-                                )
+
+                                        // Пауза перед повтором n — случайная
+                                        // в [0, min(1s, 100ms × 2^n)] (full jitter):
+                                        // повторы разных клиентов не приходят
+                                        // на backend одной синхронной волной.
+                                        .setFirstBackoff(Duration.ofMillis(100))
+                                        .setMaxBackoff(Duration.ofSeconds(1))
+                                        .setFactor(2)
+
+                                        // Бюджет: каждый запрос даёт 0.2 токена,
+                                        // каждый повтор стоит 1 токен —
+                                        // повторов не больше 20% живого трафика,
+                                        // то есть нагрузка на backend растёт
+                                        // не более чем в 1.2 раза, а не в 4.
+                                        .setBudgetRatio(0.2)
+                                        .setBudgetMaxTokens(10)
+                                ))
                         )
 
+                        // Circuit breaker маршрута (CircuitBreakerFilter).
+                        //
+                        // Он оборачивает Retry целиком: если больше половины
+                        // запросов за 10 секунд (минимум 10 запросов)
+                        // закончились 5xx даже после повторов,
+                        // breaker открывается на 5 секунд —
+                        // service B /fail перестаёт получать запросы,
+                        // а клиент сразу получает fallback.
+                        //
+                        // Затем 3 пробных запроса:
+                        // все успешны — breaker закрывается,
+                        // хотя бы один неудачен — снова открыт.
+                        .metadata("circuit-breaker.enabled", true)
+                        .metadata("circuit-breaker.failure-rate", 50)
+                        .metadata("circuit-breaker.minimum-calls", 10)
+                        .metadata("circuit-breaker.window", "10s")
+                        .metadata("circuit-breaker.buckets", 10)
+                        .metadata("circuit-breaker.open-duration", "5s")
+                        .metadata("circuit-breaker.half-open-calls", 3)
+
+                        // Fallback: готовый ответ из памяти Gateway.
+                        .metadata("circuit-breaker.fallback-status", 503)
+                        .metadata("circuit-breaker.fallback-content-type", "application/json")
+                        .metadata("circuit-breaker.fallback-body",
+                                "{\"error\":\"service_b_unavailable\",\"fallback\":true}")
+
+                        // Сквозной срок запроса (DeadlineFilter).
+                        //
+                        // response-timeout (15s) действует на каждую попытку:
+                        // исходный вызов и 3 повтора — до минуты на один запрос.
+                        // Со сроком 5s все попытки вместе с паузами
+                        // укладываются в 5 секунд: каждая получает только остаток,
+                        // повтор без остатка не начинается, клиент получает 504.
+                        //
+                        // Клиент может задать свой срок заголовком X-Request-Timeout.
+                        .metadata("deadline.timeout", "5s")
+
                         // URI указывает backend-сервис,
                         // к которому будет выполняться вызов.
                         //
@@ -119,6 +196,44 @@ public class Step6RoutesWithRetray {
                         .uri("http://localhost:8082")
                 )
 
+                // Маршрут "hedge-demo": service B /unstable отвечает
+                // за 0–3 секунды случайно. Ошибки нет — Retry бесполезен,
+                // а p99 определяют редкие медленные ответы.
+                .route("hedge-demo", r -> r
+                        .path("/hedge/**")
+                        .filters(f -> f
+
+                                // /hedge/unstable → /unstable
+                                .stripPrefix(1)
+
+                                // Если ответа нет дольше p95 маршрута,
+                                // тот же GET отправляется ещё раз;
+                                // клиент получает первый ответ,
+                                // второй запрос отменяется.
+                                .filter(hedging.apply("hedge-demo", hedge -> hedge
+
+                                        // Задержка hedge — p95 маршрута за 10 секунд,
+                                        // но не меньше 50 мс и не больше 1 с.
+                                        // Пока измерений мало — 500 мс.
+                                        .setPercentile(95)
+                                        .setMinDelay(Duration.ofMillis(50))
+                                        .setMaxDelay(Duration.ofSeconds(1))
+                                        .setDelay(Duration.ofMillis(500))
+
+                                        // Hedge-запросов не больше 10% трафика:
+                                        // нагрузка на service B растёт
+                                        // не более чем в 1.1 раза.
+                                        .setBudgetRatio(0.1)
+                                        .setBudgetMaxTokens(10)
+
+                                        // Второй экземпляр service B,
+                                        // если он запущен:
+                                        // .setHedgeUri(URI.create("http://localhost:8083"))
+                                ))
+                        )
+                        .uri("http://localhost:8082")
+                )
+
                 // Завершение конфигурации маршрутов.
                 // После вызова build() RouteLocator
                 // становится доступным Gateway.
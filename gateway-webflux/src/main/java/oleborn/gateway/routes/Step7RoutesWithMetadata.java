@@ -1,5 +1,6 @@
 package oleborn.gateway.routes;
 
+import oleborn.gateway.cache.CoalescingGatewayFilterFactory;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
@@ -44,11 +45,14 @@ public class Step7RoutesWithMetadata {
      *                DSL-строитель маршрутов,
      *                позволяющий декларативно описывать
      *                Route, Predicate, Filters и Metadata.
+     * @param coalescing фабрика фильтра, объединяющего одинаковые
+     *                   одновременные GET-запросы в один вызов backend'а.
+     *                   Счётчики: GET /gateway/metrics/coalescing.
      * @return RouteLocator с маршрутами,
      *         содержащими metadata.
      */
     @Bean
-    public RouteLocator routes(RouteLocatorBuilder builder) {
+    public RouteLocator routes(RouteLocatorBuilder builder, CoalescingGatewayFilterFactory coalescing) {
         return builder.routes()
 
                 // Определение первого маршрута с идентификатором "only-a".
@@ -62,7 +66,14 @@ public class Step7RoutesWithMetadata {
                         // Только запросы, удовлетворяющие этому условию,
                         // попадут под данный маршрут.
                         .path("/a/**")
-                        .filters(f -> f.stripPrefix(1))
+                        .filters(f -> f
+                                .stripPrefix(1)
+
+                                // Клиенты опрашивают /a/ping одновременно:
+                                // одинаковые GET, пришедшие, пока первый
+                                // ещё ждёт ответ, получают его ответ
+                                // без отдельного вызова service A.
+                                .filter(coalescing.apply("only-a", c -> { })))
 
                         // Metadata с ключом "service".
                         //
@@ -86,6 +97,24 @@ public class Step7RoutesWithMetadata {
                         // и не может быть подделана.
                         .metadata("log", true)
 
+                        // ETag маршрута (ETagFilter).
+                        //
+                        // "pong from SERVICE A" не меняется:
+                        // 5 секунд клиент с совпадающим If-None-Match
+                        // получает 304 без вызова service A.
+                        .metadata("etag.maxAge", "5s")
+
+                        // Ограничение частоты запросов (RateLimitFilter).
+                        //
+                        // Каждый пользователь получает до 50 запросов подряд
+                        // и 20 запросов в секунду в среднем;
+                        // сверх этого — 429 с Retry-After.
+                        // Анонимный клиент ограничивается по IP.
+                        .metadata("rate-limit.enabled", true)
+                        .metadata("rate-limit.capacity", 50)
+                        .metadata("rate-limit.refill-rate", 20)
+                        .metadata("rate-limit.key", "principal")
+
                         // URI указывает backend-сервис,
                         // на который будут направлены запросы,
                         // удовлетворяющие predicate "/a/**".
@@ -103,7 +132,11 @@ public class Step7RoutesWithMetadata {
                         // Только такие запросы будут сопоставлены
                         // с данным маршрутом.
                         .path("/b/**")
-                        .filters(f -> f.stripPrefix(1))
+                        .filters(f -> f
+                                .stripPrefix(1)
+
+                                // То же для /b/info и других опрашиваемых ресурсов service B.
+                                .filter(coalescing.apply("only-b", c -> { })))
 
                         // Metadata "service" со значением "B".
                         //
@@ -127,6 +160,54 @@ public class Step7RoutesWithMetadata {
                         // а в соответствующих фильтрах.
                         .metadata("log", false)
 
+                        // Bulkhead маршрута (BulkheadFilter).
+                        //
+                        // Медленные ответы service B (/unstable)
+                        // не должны занимать весь общий пул соединений:
+                        // маршруту достаётся не больше 50 соединений,
+                        // ещё 100 запросов ждут в очереди до 500 мс,
+                        // остальные сразу получают 503.
+                        //
+                        // Маршрут "only-a" при этом не ограничен
+                        // и продолжает получать соединения из пула.
+                        .metadata("bulkhead.enabled", true)
+                        .metadata("bulkhead.max-concurrent", 50)
+                        .metadata("bulkhead.max-queue", 100)
+                        .metadata("bulkhead.queue-timeout", "500ms")
+
+                        // Кеш ответов маршрута (ResponseCacheFilter).
+                        //
+                        // /b/info не меняется секундами: ответ хранится
+                        // до 10 секунд (меньше, если service B пришлёт
+                        // Cache-Control: max-age), кеш маршрута — до 16 MB.
+                        // Попадание отдаётся без вызова service B.
+                        // Запросы здесь с Authorization, поэтому ответ
+                        // сохраняется, только если service B пометил его
+                        // общим (Cache-Control: public, как /info).
+                        .metadata("cache.ttl", "10s")
+                        .metadata("cache.maxBytes", "16MB")
+
+                        // Устаревший ответ (ResponseCacheFilter).
+                        //
+                        // Ещё 30 секунд после ttl ответ отдаётся сразу,
+                        // а за новым идёт один фоновый запрос.
+                        // Если service B отвечает 5xx, недоступен
+                        // или его breaker открыт — до 5 минут после ttl
+                        // клиент получает последний хороший ответ.
+                        .metadata("cache.staleWhileRevalidate", "30s")
+                        .metadata("cache.staleIfError", "5m")
+
+                        // Ограничение частоты запросов (RateLimitFilter).
+                        //
+                        // Договор с потребителями service B записан как
+                        // "300 запросов за любую минуту": скользящее окно,
+                        // а не корзина. Считаются и ответы из кеша —
+                        // ограничение стоит раньше него.
+                        .metadata("rate-limit.enabled", true)
+                        .metadata("rate-limit.algorithm", "sliding-window")
+                        .metadata("rate-limit.limit", 300)
+                        .metadata("rate-limit.window", "1m")
+
                         // URI backend-сервиса,
                         // на который будут направлены запросы
                         // для маршрута "only-b".
@@ -0,0 +1,26 @@
+package oleborn.gateway.routing;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * HeaderRoutingConfig
+ *
+ * Регистрация таблицы маршрутизации по заголовку
+ * и фильтра, который её использует.
+ */
+@Configuration
+@EnableConfigurationProperties(HeaderRoutingProperties.class)
+public class HeaderRoutingConfig {
+
+    @Bean
+    public HeaderRoutingTable headerRoutingTable(HeaderRoutingProperties properties) {
+        return new HeaderRoutingTable(properties);
+    }
+
+    @Bean
+    public HeaderRoutingFilter headerRoutingFilter(HeaderRoutingTable headerRoutingTable) {
+        return new HeaderRoutingFilter(headerRoutingTable);
+    }
+}
@@ -0,0 +1,57 @@
+package oleborn.gateway.routing;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * HeaderRoutingFilter
+ *
+ * GatewayFilter, выбирающий backend по заголовку запроса
+ * (по умолчанию X-Target) через HeaderRoutingTable.
+ *
+ * Работа фильтра на каждый запрос:
+ * - одно чтение заголовка;
+ * - один поиск в неизменяемой таблице;
+ * - подмена Route и request URL заранее созданными объектами.
+ *
+ * Новых Route и URI во время запроса НЕ создаётся.
+ */
+public class HeaderRoutingFilter implements GatewayFilter {
+
+    private final HeaderRoutingTable table;
+
+    public HeaderRoutingFilter(HeaderRoutingTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+
+        // Снимок читается один раз: header и targets
+        // гарантированно относятся к одной версии конфигурации.
+        HeaderRoutingTable.Snapshot routing = table.current();
+
+        HeaderRoutingTable.Target target = routing.resolve(
+                exchange.getRequest().getHeaders().getFirst(routing.header())
+        );
+
+        // Таблица не настроена — маршрут остаётся исходным.
+        if (target == null) {
+            return chain.filter(exchange);
+        }
+
+        // Подменяем Route в exchange.
+        // С этого момента Gateway СЧИТАЕТ,
+        // что именно этот Route является текущим.
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, target.route());
+
+        // Явно кладём request URL,
+        // чтобы системные фильтры использовали НОВЫЙ backend.
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR, target.uri());
+
+        return chain.filter(exchange);
+    }
+}
@@ -0,0 +1,57 @@
+package oleborn.gateway.routing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HeaderRoutingProperties
+ *
+ * Конфигурация маршрутизации по заголовку запроса
+ * (блок gateway.header-routing в application.yml).
+ *
+ * Класс намеренно изменяемый (JavaBean, а не record):
+ * при EnvironmentChangeEvent spring-cloud-context
+ * перепривязывает значения к существующему бину,
+ * после чего HeaderRoutingTable перестраивает таблицу.
+ */
+@ConfigurationProperties(prefix = "gateway.header-routing")
+public class HeaderRoutingProperties {
+
+    // Имя заголовка, значение которого выбирает backend.
+    private String header = "X-Target";
+
+    // Ключ backend'а, используемого при отсутствии
+    // или неизвестном значении заголовка.
+    private String defaultTarget = "A";
+
+    // Соответствие "значение заголовка → базовый URI backend'а".
+    // Сравнение значений — без учёта регистра.
+    private Map<String, URI> targets = new LinkedHashMap<>();
+
+    public String getHeader() {
+        return header;
+    }
+
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    public String getDefaultTarget() {
+        return defaultTarget;
+    }
+
+    public void setDefaultTarget(String defaultTarget) {
+        this.defaultTarget = defaultTarget;
+    }
+
+    public Map<String, URI> getTargets() {
+        return targets;
+    }
+
+    public void setTargets(Map<String, URI> targets) {
+        this.targets = targets;
+    }
+}
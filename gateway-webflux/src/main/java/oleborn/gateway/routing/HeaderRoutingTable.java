@@ -0,0 +1,168 @@
+package oleborn.gateway.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.context.event.EventListener;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * HeaderRoutingTable
+ *
+ * Неизменяемая таблица "значение заголовка → готовый Route + URI",
+ * используемая HeaderRoutingFilter.
+ *
+ * Цель этого класса — вынести из пути запроса всё,
+ * что не зависит от запроса:
+ * - Route для каждого backend'а строится один раз;
+ * - URI разбирается один раз;
+ * - на запрос остаётся одно чтение заголовка и один поиск в таблице.
+ *
+ * Архитектурный смысл:
+ * - конфигурация (HeaderRoutingProperties) описывает, КУДА можно направить запрос;
+ * - таблица — скомпилированная форма этой конфигурации;
+ * - при изменении конфигурации собирается НОВАЯ таблица
+ *   и подменяется одной атомарной записью;
+ * - запрос всегда видит целиком старую или целиком новую таблицу.
+ *
+ * Ключевая идея:
+ * - поиск идёт по TreeMap с CASE_INSENSITIVE_ORDER:
+ *   "b" и "B" находят один backend без toUpperCase() и лишних строк.
+ */
+public class HeaderRoutingTable {
+
+    private static final Logger log = LoggerFactory.getLogger(HeaderRoutingTable.class);
+
+    private final HeaderRoutingProperties properties;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    public HeaderRoutingTable(HeaderRoutingProperties properties) {
+        this.properties = properties;
+        this.snapshot.set(Snapshot.compile(properties));
+    }
+
+    /**
+     * @return текущая таблица маршрутизации.
+     */
+    public Snapshot current() {
+        return snapshot.get();
+    }
+
+    /**
+     * Перестроение таблицы после изменения gateway.header-routing.*
+     * (например, через /actuator/refresh или Config Server).
+     */
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        boolean affected = event.getKeys()
+                .stream()
+                .anyMatch(key -> key.startsWith("gateway.header-routing"));
+        if (affected) {
+            refresh();
+        }
+    }
+
+    /**
+     * Перестроение таблицы вместе с обновлением маршрутов Gateway.
+     */
+    @EventListener
+    public void onRefreshRoutes(RefreshRoutesEvent event) {
+        refresh();
+    }
+
+    /**
+     * Компиляция новой таблицы и атомарная подмена текущей.
+     *
+     * Вызывается из обработчиков событий: исключение отсюда
+     * прервало бы доставку события остальным слушателям.
+     * Поэтому некорректная конфигурация только логируется,
+     * а запросы продолжают идти по предыдущей таблице.
+     * (При старте та же ошибка, наоборот, останавливает Gateway —
+     * конструктор компилирует таблицу напрямую.)
+     */
+    public void refresh() {
+        try {
+            snapshot.set(Snapshot.compile(properties));
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild header routing table, keeping previous one", e);
+        }
+    }
+
+    /**
+     * Backend, выбираемый по значению заголовка.
+     *
+     * @param route готовый Route, подставляемый в GATEWAY_ROUTE_ATTR.
+     * @param uri   базовый URI backend'а для GATEWAY_REQUEST_URL_ATTR.
+     */
+    public record Target(Route route, URI uri) {
+    }
+
+    /**
+     * Скомпилированная неизменяемая версия конфигурации.
+     *
+     * @param header   имя управляющего заголовка.
+     * @param targets  backend'ы по значению заголовка (без учёта регистра).
+     * @param fallback backend для отсутствующего или неизвестного значения
+     *                 (null, если targets не настроены).
+     */
+    public record Snapshot(String header, NavigableMap<String, Target> targets, Target fallback) {
+
+        /**
+         * Выбор backend'а по значению заголовка.
+         *
+         * @param value значение заголовка (может быть null).
+         * @return готовый Target либо null, если таблица пуста.
+         */
+        public Target resolve(String value) {
+            if (value == null) {
+                return fallback;
+            }
+            Target target = targets.get(value);
+            return target != null ? target : fallback;
+        }
+
+        static Snapshot compile(HeaderRoutingProperties properties) {
+            TreeMap<String, Target> targets = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Map.Entry<String, URI> entry : properties.getTargets().entrySet()) {
+                targets.put(entry.getKey(), new Target(
+                        Route.async()
+                                // id нужен только для логов и отладки
+                                .id("dynamic-" + entry.getKey())
+                                .uri(entry.getValue())
+                                // порядок роли не играет — Route уже выбран
+                                .order(0)
+                                // predicate всегда true,
+                                // потому что маршрут уже выбран ранее
+                                .predicate(exchange -> true)
+                                .build(),
+                        entry.getValue()
+                ));
+            }
+
+            // Пустая таблица — маршрутизация по заголовку не настроена,
+            // фильтр оставит Route без изменений.
+            Target fallback = targets.get(properties.getDefaultTarget());
+            if (fallback == null && !targets.isEmpty()) {
+                throw new IllegalStateException(
+                        "gateway.header-routing.default-target '" + properties.getDefaultTarget()
+                                + "' is not listed in gateway.header-routing.targets"
+                );
+            }
+
+            return new Snapshot(
+                    properties.getHeader(),
+                    Collections.unmodifiableNavigableMap(targets),
+                    fallback
+            );
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package oleborn.gateway.routing;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * RouteIndexConfig
+ *
+ * Подключение индексированного выбора маршрутов.
+ *
+ * GatewayAutoConfiguration объявляет RoutePredicateHandlerMapping
+ * с @ConditionalOnMissingBean, поэтому бин, объявленный здесь,
+ * ЗАМЕНЯЕТ стандартную реализацию, а не добавляется к ней.
+ *
+ * Отключается свойством gateway.route-index.enabled=false —
+ * тогда Gateway возвращается к линейному перебору маршрутов.
+ */
+@Configuration
+@ConditionalOnProperty(name = "gateway.route-index.enabled", matchIfMissing = true)
+public class RouteIndexConfig {
+
+    @Bean
+    public RoutePredicateHandlerMapping routePredicateHandlerMapping(
+            FilteringWebHandler webHandler,
+            RouteLocator routeLocator,
+            GlobalCorsProperties globalCorsProperties,
+            Environment environment
+    ) {
+        return new TrieRoutePredicateHandlerMapping(webHandler, routeLocator, globalCorsProperties, environment);
+    }
+}
@@ -0,0 +1,129 @@
+package oleborn.gateway.routing;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RouteMetadata
+ *
+ * Чтение типизированных значений из Route metadata.
+ *
+ * Одни и те же настройки приходят в разном виде:
+ * - из Java DSL — как объекты (.metadata("x.limit", 50), .metadata("x.on", true));
+ * - из YAML — чаще всего как строки ("50", "true", "5s");
+ * - числа из YAML могут оказаться Integer, Long или String.
+ *
+ * Методы принимают любой из этих вариантов.
+ * Некорректное значение — IllegalArgumentException
+ * с именем ключа в сообщении.
+ */
+public final class RouteMetadata {
+
+    private RouteMetadata() {
+    }
+
+    public static boolean flag(Map<String, Object> metadata, String key) {
+        Object value = metadata.get(key);
+        return value != null && Boolean.parseBoolean(value.toString().trim());
+    }
+
+    public static int integer(Map<String, Object> metadata, String key, int defaultValue) {
+        Object value = metadata.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid integer for metadata '" + key + "': " + value, e);
+        }
+    }
+
+    public static long longValue(Map<String, Object> metadata, String key, long defaultValue) {
+        Object value = metadata.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for metadata '" + key + "': " + value, e);
+        }
+    }
+
+    /**
+     * Число — миллисекунды, строка — "5s", "500ms" или ISO-8601 ("PT5S").
+     */
+    public static Duration duration(Map<String, Object> metadata, String key, Duration defaultValue) {
+        Object value = metadata.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Duration duration) {
+            return duration;
+        }
+        if (value instanceof Number number) {
+            return Duration.ofMillis(number.longValue());
+        }
+        try {
+            return DurationStyle.detectAndParse(value.toString().trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid duration for metadata '" + key + "': " + value, e);
+        }
+    }
+
+    /**
+     * Число — байты, строка — "512KB", "16MB".
+     */
+    public static DataSize dataSize(Map<String, Object> metadata, String key, DataSize defaultValue) {
+        Object value = metadata.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof DataSize size) {
+            return size;
+        }
+        if (value instanceof Number number) {
+            return DataSize.ofBytes(number.longValue());
+        }
+        try {
+            return DataSize.parse(value.toString().trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid data size for metadata '" + key + "': " + value, e);
+        }
+    }
+
+    /**
+     * Список через запятую ("Accept, Accept-Encoding") или List.
+     */
+    public static List<String> list(Map<String, Object> metadata, String key, List<String> defaultValue) {
+        Object value = metadata.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.stream().map(Object::toString).map(String::trim).toList();
+        }
+        return Arrays.stream(value.toString().split(","))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toList();
+    }
+
+    public static String string(Map<String, Object> metadata, String key, String defaultValue) {
+        Object value = metadata.get(key);
+        return value != null ? value.toString() : defaultValue;
+    }
+}
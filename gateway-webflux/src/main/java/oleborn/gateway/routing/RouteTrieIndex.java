@@ -0,0 +1,459 @@
+package oleborn.gateway.routing;
+
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
+import org.springframework.cloud.gateway.handler.predicate.GatewayPredicate;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasConfig;
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RouteTrieIndex
+ *
+ * Скомпилированный индекс таблицы маршрутов Gateway
+ * в виде префиксного дерева (trie) по сегментам пути.
+ *
+ * Цель этого класса — убрать линейный перебор Route
+ * при выборе маршрута для запроса.
+ * Стандартный RoutePredicateHandlerMapping вызывает predicate
+ * КАЖДОГО маршрута по очереди, пока один не совпадёт.
+ * При тысячах маршрутов время выбора растёт линейно.
+ *
+ * Архитектурный смысл:
+ * - маршруты с Path-predicate раскладываются по дереву сегментов:
+ *   /a/**  →  root → "a" (prefix)
+ *   /b/x   →  root → "b" → "x" (exact)
+ * - поиск идёт за O(глубина пути), а не за O(число маршрутов);
+ * - маршруты, которые нельзя проиндексировать
+ *   (без Path, Path только под ИЛИ или НЕ, незнакомые узлы predicate),
+ *   остаются в "линейном" списке и проверяются как раньше.
+ *
+ * Ключевая идея:
+ * - индекс возвращает НАДМНОЖЕСТВО подходящих маршрутов (кандидатов);
+ * - окончательное решение всё равно принимает настоящий predicate Route;
+ * - поэтому семантика выбора (order, trailing slash, переменные пути)
+ *   полностью совпадает со стандартной.
+ *
+ * Экземпляр неизменяемый: при обновлении маршрутов
+ * строится новый индекс и подменяется целиком.
+ */
+public final class RouteTrieIndex {
+
+    // Пустой массив индексов — общий для всех узлов без маршрутов.
+    private static final int[] NONE = new int[0];
+
+    // Все маршруты в порядке, в котором их отдал RouteLocator
+    // (он уже отсортирован по Route.getOrder()).
+    private final Route[] routes;
+
+    // Позиции маршрутов, которые не удалось проиндексировать.
+    // Отсортированы по возрастанию.
+    private final int[] linear;
+
+    // Корень дерева сегментов.
+    private final Node root;
+
+    private RouteTrieIndex(Route[] routes, int[] linear, Node root) {
+        this.routes = routes;
+        this.linear = linear;
+        this.root = root;
+    }
+
+    /**
+     * Построение индекса по таблице маршрутов.
+     *
+     * @param routes маршруты в порядке приоритета.
+     * @param basePath spring.webflux.base-path (может быть null) —
+     *                 PathRoutePredicateFactory добавляет его к каждому шаблону,
+     *                 поэтому индекс делает то же самое.
+     * @return неизменяемый индекс.
+     */
+    public static RouteTrieIndex compile(List<Route> routes, String basePath) {
+
+        Builder root = new Builder();
+        List<Integer> linear = new ArrayList<>();
+
+        for (int i = 0; i < routes.size(); i++) {
+
+            List<String> patterns = indexablePatterns(routes.get(i), basePath);
+
+            // Маршрут без пригодных Path-шаблонов
+            // проверяется линейно, как в стандартном mapping.
+            if (patterns == null) {
+                linear.add(i);
+                continue;
+            }
+
+            for (String pattern : patterns) {
+                root.insert(pattern, i);
+            }
+        }
+
+        return new RouteTrieIndex(
+                routes.toArray(new Route[0]),
+                linear.stream().mapToInt(Integer::intValue).toArray(),
+                root.freeze()
+        );
+    }
+
+    /**
+     * Выбор маршрутов-кандидатов для пути запроса.
+     *
+     * Результат упорядочен так же, как исходная таблица маршрутов:
+     * кандидаты из дерева сливаются с линейными маршрутами по позиции.
+     *
+     * @param path разобранный путь запроса
+     *             (тот же PathContainer, что использует Path-predicate).
+     * @return маршруты, predicate которых нужно проверить по порядку.
+     */
+    public List<Route> candidates(PathContainer path) {
+
+        // Сбор позиций маршрутов, совпавших по дереву.
+        IntCollector matched = new IntCollector();
+        root.collect(path.elements(), 0, matched);
+        int[] fromTrie = matched.sorted();
+
+        // Слияние двух отсортированных последовательностей позиций.
+        List<Route> result = new ArrayList<>(fromTrie.length + linear.length);
+        int t = 0;
+        int l = 0;
+        while (t < fromTrie.length || l < linear.length) {
+            if (l == linear.length || (t < fromTrie.length && fromTrie[t] < linear[l])) {
+                result.add(routes[fromTrie[t++]]);
+            } else {
+                result.add(routes[linear[l++]]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return количество маршрутов, проверяемых линейно.
+     */
+    public int linearSize() {
+        return linear.length;
+    }
+
+    /**
+     * @return общее количество маршрутов в индексе.
+     */
+    public int size() {
+        return routes.length;
+    }
+
+    /**
+     * Извлечение Path-шаблонов, по которым маршрут можно проиндексировать.
+     *
+     * Route хранит predicate как дерево AsyncPredicate.
+     * Обход через Visitor отдаёт конфигурации листьев,
+     * но НЕ показывает, как они соединены (И / ИЛИ / НЕ),
+     * поэтому дерево обходится по его узлам (см. conjunctPaths).
+     *
+     * @return шаблоны первого Path-листа
+     *         либо null, если маршрут нужно проверять линейно.
+     */
+    private static List<String> indexablePatterns(Route route, String basePath) {
+
+        List<PathRoutePredicateFactory.Config> paths = new ArrayList<>();
+        conjunctPaths(route.getPredicate(), paths);
+
+        if (paths.isEmpty()) {
+            return null;
+        }
+
+        List<String> patterns = new ArrayList<>();
+        for (String pattern : paths.get(0).getPatterns()) {
+            String full = withBasePath(pattern, basePath);
+
+            // Шаблон, который дерево не умеет представить,
+            // отправляет в линейный список весь маршрут.
+            if (!Builder.supports(full)) {
+                return null;
+            }
+            patterns.add(full);
+        }
+        return patterns.isEmpty() ? null : patterns;
+    }
+
+    /**
+     * Сбор Path-листьев, соединённых с корнем predicate только через И.
+     *
+     * Такой лист ограничивает множество путей маршрута сверху:
+     * что бы ни стояло рядом с ним через И, запрос с другим путём
+     * маршрут не выберет.
+     *
+     * Узлы:
+     * - И (AsyncPredicate / GatewayPredicate) — обходятся оба операнда;
+     * - обёртки (DefaultAsyncPredicate, GatewayPredicateWrapper) — обходится вложенный;
+     * - Path-лист — добавляется в paths;
+     * - ИЛИ, НЕ и любой незнакомый узел — непрозрачны: Path-листья
+     *   внутри них путь НЕ ограничивают, поэтому не собираются.
+     *   Рядом с Path-листом через И такой узел индексу не мешает,
+     *   а без него маршрут уйдёт в линейный список.
+     *
+     * Операнды композитных узлов в Spring Cloud Gateway — приватные поля.
+     * Если поле не найдено (другая версия), узел считается непрозрачным:
+     * ошибка обхода может только отправить маршрут в линейный список,
+     * но не проиндексировать его неверно.
+     */
+    private static void conjunctPaths(Object node, List<PathRoutePredicateFactory.Config> paths) {
+        if (node instanceof AsyncPredicate.AndAsyncPredicate<?>
+                || node instanceof GatewayPredicate.AndGatewayPredicate) {
+            Object left = operand(node, "left");
+            Object right = operand(node, "right");
+            if (left != null && right != null) {
+                conjunctPaths(left, paths);
+                conjunctPaths(right, paths);
+            }
+        } else if (node instanceof AsyncPredicate.DefaultAsyncPredicate<?>
+                || node instanceof GatewayPredicate.GatewayPredicateWrapper) {
+            Object delegate = operand(node, "delegate");
+            if (delegate != null) {
+                conjunctPaths(delegate, paths);
+            }
+        } else if (node instanceof AsyncPredicate.OrAsyncPredicate<?>
+                || node instanceof AsyncPredicate.NegateAsyncPredicate<?>
+                || node instanceof GatewayPredicate.OrGatewayPredicate
+                || node instanceof GatewayPredicate.NegateGatewayPredicate) {
+            // ИЛИ / НЕ: непрозрачны.
+        } else if (node instanceof HasConfig leaf
+                && leaf.getConfig() instanceof PathRoutePredicateFactory.Config config) {
+            paths.add(config);
+        }
+    }
+
+    // Значение приватного поля узла predicate; null — поле недоступно.
+    private static Object operand(Object node, String name) {
+        Field field = ReflectionUtils.findField(node.getClass(), name);
+        if (field == null) {
+            return null;
+        }
+        try {
+            ReflectionUtils.makeAccessible(field);
+            return ReflectionUtils.getField(field, node);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Повторяет логику PathRoutePredicateFactory.apply(...) для base-path.
+    private static String withBasePath(String pattern, String basePath) {
+        if (!StringUtils.hasText(basePath)) {
+            return pattern;
+        }
+        if (pattern.length() > 1 && !pattern.startsWith("/")) {
+            return basePath + "/" + pattern;
+        }
+        return basePath + pattern;
+    }
+
+    /**
+     * Узел скомпилированного дерева.
+     *
+     * literal  — дочерние узлы для конкретных сегментов ("a", "b");
+     * wildcard — дочерний узел для "*" и "{var}" (любой один сегмент);
+     * exact    — маршруты, шаблон которых заканчивается ровно здесь;
+     * prefix   — маршруты вида "/x/**", совпадающие с любым остатком пути.
+     */
+    private static final class Node {
+
+        private final Map<String, Node> literal;
+        private final Node wildcard;
+        private final int[] exact;
+        private final int[] prefix;
+
+        private Node(Map<String, Node> literal, Node wildcard, int[] exact, int[] prefix) {
+            this.literal = literal;
+            this.wildcard = wildcard;
+            this.exact = exact;
+            this.prefix = prefix;
+        }
+
+        /**
+         * Рекурсивный спуск по элементам пути.
+         *
+         * Разделители и пустые сегменты ("//", завершающий "/") пропускаются:
+         * это может только РАСШИРИТЬ множество кандидатов,
+         * а точное совпадение проверит сам predicate.
+         */
+        void collect(List<PathContainer.Element> elements, int from, IntCollector out) {
+
+            // "/x/**" совпадает с любым остатком, включая пустой.
+            out.addAll(prefix);
+
+            int i = from;
+            while (i < elements.size() && !isSegment(elements.get(i))) {
+                i++;
+            }
+
+            if (i == elements.size()) {
+                out.addAll(exact);
+                return;
+            }
+
+            // valueToMatch — декодированное значение без matrix-переменных,
+            // именно его сравнивает PathPattern с литеральными сегментами.
+            String segment = ((PathContainer.PathSegment) elements.get(i)).valueToMatch();
+
+            Node next = literal.get(segment);
+            if (next != null) {
+                next.collect(elements, i + 1, out);
+            }
+            if (wildcard != null) {
+                wildcard.collect(elements, i + 1, out);
+            }
+        }
+
+        private static boolean isSegment(PathContainer.Element element) {
+            return element instanceof PathContainer.PathSegment segment
+                    && !segment.valueToMatch().isEmpty();
+        }
+    }
+
+    /**
+     * Изменяемый узел, используемый только во время компиляции индекса.
+     */
+    private static final class Builder {
+
+        private final Map<String, Builder> literal = new HashMap<>();
+        private Builder wildcard;
+        private final List<Integer> exact = new ArrayList<>();
+        private final List<Integer> prefix = new ArrayList<>();
+
+        /**
+         * Проверка, что шаблон состоит только из сегментов,
+         * которые дерево умеет представить:
+         * литералы, "*", "{var}" и завершающие "**" / "{*var}".
+         */
+        static boolean supports(String pattern) {
+            String[] segments = StringUtils.tokenizeToStringArray(pattern, "/");
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                boolean last = i == segments.length - 1;
+                if (last && isCatchAll(segment)) {
+                    continue;
+                }
+                if (isSingleWildcard(segment)) {
+                    continue;
+                }
+                if (!isLiteral(segment)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void insert(String pattern, int route) {
+            String[] segments = StringUtils.tokenizeToStringArray(pattern, "/");
+            Builder node = this;
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (i == segments.length - 1 && isCatchAll(segment)) {
+                    node.prefix.add(route);
+                    return;
+                }
+                if (isSingleWildcard(segment)) {
+                    if (node.wildcard == null) {
+                        node.wildcard = new Builder();
+                    }
+                    node = node.wildcard;
+                } else {
+                    node = node.literal.computeIfAbsent(segment, s -> new Builder());
+                }
+            }
+            node.exact.add(route);
+        }
+
+        Node freeze() {
+            Map<String, Node> children = new HashMap<>();
+            literal.forEach((segment, child) -> children.put(segment, child.freeze()));
+            return new Node(
+                    Map.copyOf(children),
+                    wildcard == null ? null : wildcard.freeze(),
+                    toArray(exact),
+                    toArray(prefix)
+            );
+        }
+
+        private static boolean isCatchAll(String segment) {
+            return "**".equals(segment)
+                    || (segment.startsWith("{*") && segment.endsWith("}"));
+        }
+
+        private static boolean isSingleWildcard(String segment) {
+            if ("*".equals(segment)) {
+                return true;
+            }
+            // "{id}" или "{id:\\d+}" целиком занимают сегмент.
+            // Регулярное ограничение индекс не проверяет — это сделает predicate.
+            return segment.startsWith("{")
+                    && segment.endsWith("}")
+                    && !segment.startsWith("{*")
+                    && segment.indexOf('}') == segment.length() - 1;
+        }
+
+        private static boolean isLiteral(String segment) {
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                if (c == '*' || c == '?' || c == '{' || c == '}' || c == '%' || c == ';') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int[] toArray(List<Integer> values) {
+            return values.isEmpty()
+                    ? NONE
+                    : values.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Минимальный накопитель позиций маршрутов.
+     *
+     * Один маршрут может попасть в кандидаты несколько раз
+     * (например, два его шаблона совпали с путём),
+     * поэтому sorted() убирает дубликаты.
+     */
+    private static final class IntCollector {
+
+        private int[] values = NONE;
+        private int size;
+
+        void addAll(int[] more) {
+            if (more.length == 0) {
+                return;
+            }
+            if (size + more.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(8, (size + more.length) * 2));
+            }
+            System.arraycopy(more, 0, values, size, more.length);
+            size += more.length;
+        }
+
+        int[] sorted() {
+            if (size == 0) {
+                return NONE;
+            }
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            int unique = 1;
+            for (int i = 1; i < result.length; i++) {
+                if (result[i] != result[unique - 1]) {
+                    result[unique++] = result[i];
+                }
+            }
+            return unique == result.length ? result : Arrays.copyOf(result, unique);
+        }
+    }
+}
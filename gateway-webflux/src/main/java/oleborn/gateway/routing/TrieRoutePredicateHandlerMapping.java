@@ -0,0 +1,188 @@
+package oleborn.gateway.routing;
+
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * TrieRoutePredicateHandlerMapping
+ *
+ * Замена стандартного RoutePredicateHandlerMapping,
+ * которая выбирает маршрут через RouteTrieIndex.
+ *
+ * Стандартная реализация на КАЖДЫЙ запрос:
+ * - перебирает все Route из RouteLocator;
+ * - вызывает predicate каждого по очереди;
+ * - берёт первый совпавший.
+ *
+ * Эта реализация:
+ * - по пути запроса получает из индекса короткий список кандидатов;
+ * - проверяет predicate ТОЛЬКО у кандидатов, в том же порядке;
+ * - остальное поведение (CORS, management-порт, атрибуты exchange)
+ *   наследуется без изменений.
+ *
+ * Индекс перестраивается после каждого успешного обновления маршрутов
+ * (RefreshRoutesResultEvent) и подменяется атомарно.
+ * Запросы, пришедшие во время перестроения, используют предыдущий индекс.
+ *
+ * Публикуется только успешно построенный индекс:
+ * - неудачное построение не запоминается — следующий запрос
+ *   или следующее обновление маршрутов попробуют снова;
+ * - каждое построение получает номер поколения при старте,
+ *   и индекс подменяется, только если он новее опубликованного:
+ *   перекрывающиеся перестроения не вернут старую таблицу маршрутов.
+ */
+public class TrieRoutePredicateHandlerMapping extends RoutePredicateHandlerMapping
+        implements ApplicationListener<RefreshRoutesResultEvent> {
+
+    // "Бесконечный" TTL Mono.cache: значение не вытесняется и таймер не заводится.
+    private static final Duration INFINITE = Duration.ofMillis(Long.MAX_VALUE);
+
+    private final RouteLocator routeLocator;
+
+    private final String basePath;
+
+    // Номер последнего начатого построения.
+    private final AtomicLong generations = new AtomicLong();
+
+    // Опубликованный индекс и номер построения, которое его создало;
+    // null — ни одно построение ещё не завершилось успешно.
+    private final AtomicReference<Generation> published = new AtomicReference<>();
+
+    // Первое построение, общее для запросов, пришедших до публикации:
+    // успешный результат кешируется, ошибка — нет.
+    private final Mono<RouteTrieIndex> initial;
+
+    public TrieRoutePredicateHandlerMapping(
+            FilteringWebHandler webHandler,
+            RouteLocator routeLocator,
+            GlobalCorsProperties globalCorsProperties,
+            Environment environment
+    ) {
+        super(webHandler, routeLocator, globalCorsProperties, environment);
+        this.routeLocator = routeLocator;
+        this.basePath = environment.getProperty("spring.webflux.base-path");
+        this.initial = rebuild().cache(built -> INFINITE, error -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    /**
+     * Перестроение индекса после обновления таблицы маршрутов.
+     *
+     * CachingRouteLocator публикует RefreshRoutesResultEvent
+     * уже ПОСЛЕ того, как новый список маршрутов закеширован,
+     * поэтому getRoutes() здесь отдаёт актуальные данные.
+     */
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (event.isSuccess()) {
+            // Построение запускается сразу, а не на первом запросе,
+            // чтобы запросы не ждали компиляции.
+            rebuild().subscribe(
+                    built -> {
+                    },
+                    error -> logger.error("Failed to rebuild route index, keeping previous one", error)
+            );
+        }
+    }
+
+    /**
+     * Выбор маршрута для запроса.
+     *
+     * Логика повторяет RoutePredicateHandlerMapping.lookupRoute(...),
+     * но перебирает не все маршруты, а только кандидатов из индекса.
+     */
+    @Override
+    protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
+        Generation current = published.get();
+        return (current != null ? Mono.just(current.index()) : initial)
+                .flatMapMany(routes -> Flux.fromIterable(routes.candidates(pathOf(exchange))))
+                .filterWhen(route -> {
+                    // Тот же атрибут, что выставляет стандартный mapping:
+                    // Path-predicate использует его для GATEWAY_PREDICATE_MATCHED_PATH_ROUTE_ID_ATTR.
+                    exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR, route.getId());
+                    try {
+                        return route.getPredicate().apply(exchange);
+                    } catch (Exception e) {
+                        logger.error("Error applying predicate for route: " + route.getId(), e);
+                        return Mono.just(false);
+                    }
+                })
+                .next()
+                .map(route -> {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Route matched: " + route.getId());
+                    }
+                    validateRoute(route, exchange);
+                    return route;
+                });
+    }
+
+    @Override
+    protected String getSimpleName() {
+        return "TrieRoutePredicateHandlerMapping";
+    }
+
+    /**
+     * Построение индекса с публикацией при успехе.
+     *
+     * Номер поколения берётся при подписке, то есть тогда же,
+     * когда читается таблица маршрутов: больший номер — более свежая таблица.
+     */
+    private Mono<RouteTrieIndex> rebuild() {
+        return Mono.defer(() -> {
+            long number = generations.incrementAndGet();
+            return routeLocator.getRoutes()
+                    .collectList()
+                    .map(routes -> {
+                        RouteTrieIndex built = RouteTrieIndex.compile(routes, basePath);
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Route index compiled: generation=" + number + ", routes=" + built.size()
+                                    + ", linear=" + built.linearSize());
+                        }
+                        publish(new Generation(number, built));
+                        return built;
+                    });
+        });
+    }
+
+    // Более позднее построение могло завершиться раньше:
+    // тогда этот, уже устаревший, индекс не публикуется.
+    private void publish(Generation next) {
+        Generation previous = published.getAndUpdate(
+                current -> current == null || current.number() < next.number() ? next : current);
+        if (previous != null && previous.number() > next.number() && logger.isDebugEnabled()) {
+            logger.debug("Route index generation " + next.number() + " superseded by " + previous.number());
+        }
+    }
+
+    /**
+     * Разбор пути запроса.
+     *
+     * Результат сохраняется в тот же атрибут,
+     * который использует PathRoutePredicateFactory,
+     * поэтому путь разбирается один раз на запрос.
+     */
+    private static PathContainer pathOf(ServerWebExchange exchange) {
+        return (PathContainer) exchange.getAttributes().computeIfAbsent(
+                ServerWebExchangeUtils.GATEWAY_PREDICATE_PATH_CONTAINER_ATTR,
+                key -> PathContainer.parsePath(exchange.getRequest().getURI().getRawPath())
+        );
+    }
+
+    private record Generation(long number, RouteTrieIndex index) {
+    }
+}
@@ -0,0 +1,193 @@
+package oleborn.gateway.security;
+
+import oleborn.gateway.metrics.MetricsSource;
+import oleborn.gateway.security.IntrospectionClient.TokenIntrospection;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * IntrospectionAuthenticationManager
+ *
+ * ReactiveAuthenticationManager для непрозрачных токенов:
+ * действует ли токен и чей он, знает только сервис интроспекции.
+ *
+ * Проблема:
+ * - вызов сервиса на каждый запрос удваивает задержку
+ *   и нагружает сервис столько же, сколько Gateway;
+ * - при всплеске одни и те же токены проверяются параллельно много раз.
+ *
+ * Что делает этот менеджер:
+ * - результаты кешируются по SHA-256 токена: действующие — на positive-ttl
+ *   (не дольше exp токена), недействующие — на negative-ttl,
+ *   в отдельных кешах (см. TokenCache);
+ * - промахи кеша собираются IntrospectionBatcher'ом в пакеты
+ *   за batch-window, повторы токена в полёте не отправляются;
+ * - сервис вызывается через IntrospectionClient — точку расширения.
+ *
+ * Сбой сервиса — AuthenticationServiceException (401) и не кешируется.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/introspection.
+ */
+public class IntrospectionAuthenticationManager implements ReactiveAuthenticationManager, MetricsSource, AutoCloseable {
+
+    private final int maxTokenLength;
+
+    private final long positiveTtlMillis;
+
+    private final long negativeTtlMillis;
+
+    private final TokenCache<TokenIntrospection> positive;
+
+    private final TokenCache<TokenIntrospection> negative;
+
+    // Таймеры окон пакетов.
+    private final Scheduler timer = Schedulers.newSingle("gateway-introspection", true);
+
+    private final IntrospectionBatcher batcher;
+
+    private final LongAdder positiveHits = new LongAdder();
+
+    private final LongAdder negativeHits = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public IntrospectionAuthenticationManager(IntrospectionProperties properties, IntrospectionClient client) {
+        this.maxTokenLength = properties.getMaxTokenLength();
+        this.positiveTtlMillis = properties.getPositiveTtl().toMillis();
+        this.negativeTtlMillis = properties.getNegativeTtl().toMillis();
+        this.positive = new TokenCache<>(properties.getPositiveCacheSize());
+        this.negative = new TokenCache<>(properties.getNegativeCacheSize());
+        this.batcher = new IntrospectionBatcher(
+                client,
+                properties.getBatchWindow(),
+                properties.getMaxBatchSize(),
+                timer,
+                this::remember
+        );
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        Object credentials = authentication.getCredentials();
+        String token = credentials != null ? credentials.toString() : "";
+        if (token.isEmpty() || token.length() > maxTokenLength) {
+            return reject("Malformed token");
+        }
+        if (positive.enabled() || negative.enabled()) {
+            ByteBuffer key = TokenCache.key(token);
+            long now = System.currentTimeMillis();
+            TokenIntrospection cached = positive.get(key, now);
+            if (cached != null) {
+                positiveHits.increment();
+                return authenticated(cached);
+            }
+            if (negative.get(key, now) != null) {
+                negativeHits.increment();
+                return reject("Inactive token");
+            }
+        }
+        return batcher.introspect(token).flatMap(this::authenticated);
+    }
+
+    // Результат пакета — в кеш до того, как токен перестанет ждать в batcher'е.
+    private void remember(String token, TokenIntrospection result) {
+        if (!positive.enabled() && !negative.enabled()) {
+            return;
+        }
+        ByteBuffer key = TokenCache.key(token);
+        long now = System.currentTimeMillis();
+        if (result.active()) {
+            long until = now + positiveTtlMillis;
+            if (result.expiresAt() > 0) {
+                until = Math.min(until, result.expiresAt() * 1000);
+            }
+            positive.put(key, result, until, now);
+        } else {
+            negative.put(key, result, now + negativeTtlMillis, now);
+        }
+    }
+
+    private Mono<Authentication> authenticated(TokenIntrospection result) {
+        if (!result.active()) {
+            return reject("Inactive token");
+        }
+        if (result.subject() == null || result.subject().isEmpty()) {
+            return reject("Introspection result without subject");
+        }
+        List<GrantedAuthority> authorities = result.scopes()
+                .stream()
+                .<GrantedAuthority>map(scope -> new SimpleGrantedAuthority("SCOPE_" + scope))
+                .toList();
+        return Mono.just(UsernamePasswordAuthenticationToken.authenticated(result.subject(), null, authorities));
+    }
+
+    private Mono<Authentication> reject(String message) {
+        rejected.increment();
+        return Mono.error(new BadCredentialsException(message));
+    }
+
+    @Override
+    public String metricsName() {
+        return "introspection";
+    }
+
+    @Override
+    public IntrospectionSnapshot metricsSnapshot() {
+        return new IntrospectionSnapshot(
+                positive.size(),
+                negative.size(),
+                positiveHits.sum(),
+                negativeHits.sum(),
+                batcher.batches(),
+                batcher.lookups(),
+                batcher.coalesced(),
+                batcher.pending(),
+                batcher.failures(),
+                rejected.sum()
+        );
+    }
+
+    @Override
+    public void close() {
+        timer.dispose();
+    }
+
+    /**
+     * Состояние интроспекции.
+     *
+     * @param positiveCached действующих токенов в кеше.
+     * @param negativeCached недействующих токенов в кеше.
+     * @param positiveHits   запросов, принятых по кешу.
+     * @param negativeHits   запросов, отклонённых по кешу.
+     * @param batches        вызовов сервиса интроспекции.
+     * @param lookups        токенов, отправленных в сервис.
+     * @param coalesced      запросов, присоединившихся к ожидающей интроспекции того же токена.
+     * @param pending        токенов, ожидающих ответа сейчас.
+     * @param failures       неудачных вызовов сервиса.
+     * @param rejected       отказов (недействующий, без владельца, слишком длинный).
+     */
+    public record IntrospectionSnapshot(
+            int positiveCached,
+            int negativeCached,
+            long positiveHits,
+            long negativeHits,
+            long batches,
+            long lookups,
+            long coalesced,
+            int pending,
+            long failures,
+            long rejected
+    ) {
+    }
+}
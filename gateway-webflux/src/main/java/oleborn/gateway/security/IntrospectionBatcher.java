@@ -0,0 +1,184 @@
+package oleborn.gateway.security;
+
+import oleborn.gateway.security.IntrospectionClient.TokenIntrospection;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * IntrospectionBatcher
+ *
+ * Сбор одновременных интроспекций в пакеты.
+ *
+ * - первый токен открывает пакет и запускает таймер на batch-window;
+ *   токены, пришедшие за это время, уходят в сервис одним вызовом;
+ * - заполненный до max-batch-size пакет отправляется сразу;
+ * - токен, который уже ждёт ответа (в пакете или в полёте),
+ *   в пакет не добавляется: запрос присоединяется к ожидающему результату.
+ *
+ * Окно добавляет к промаху кеша не больше batch-window задержки,
+ * зато при всплеске запросов число вызовов сервиса
+ * растёт не с числом запросов, а с числом окон.
+ */
+final class IntrospectionBatcher {
+
+    private final IntrospectionClient client;
+
+    private final long windowNanos;
+
+    private final int maxBatchSize;
+
+    private final Scheduler timer;
+
+    // Вызывается с результатом до того, как токен перестаёт считаться ожидающим:
+    // запрос, пришедший следом, найдёт результат в кеше.
+    private final BiConsumer<String, TokenIntrospection> onResult;
+
+    // Токены, ожидающие ответа: в открытом пакете или в отправленном.
+    private final Map<String, Sinks.One<TokenIntrospection>> pending = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Открытый пакет и его номер (для таймера): под lock.
+    private List<String> batch = new ArrayList<>();
+
+    private long generation;
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    IntrospectionBatcher(IntrospectionClient client, Duration window, int maxBatchSize, Scheduler timer,
+                         BiConsumer<String, TokenIntrospection> onResult) {
+        this.client = client;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.timer = timer;
+        this.onResult = onResult;
+    }
+
+    /**
+     * @return результат интроспекции; ошибка — AuthenticationServiceException.
+     */
+    Mono<TokenIntrospection> introspect(String token) {
+        Sinks.One<TokenIntrospection> created = Sinks.one();
+        Sinks.One<TokenIntrospection> existing = pending.putIfAbsent(token, created);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.asMono();
+        }
+
+        List<String> full = null;
+        lock.lock();
+        try {
+            batch.add(token);
+            if (batch.size() >= maxBatchSize || windowNanos <= 0) {
+                full = takeBatch();
+            } else if (batch.size() == 1) {
+                long opened = generation;
+                timer.schedule(() -> flush(opened), windowNanos, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            send(full);
+        }
+        return created.asMono();
+    }
+
+    // Таймер пакета: если пакет ещё не ушёл по размеру — отправить.
+    private void flush(long opened) {
+        List<String> tokens = null;
+        lock.lock();
+        try {
+            if (generation == opened && !batch.isEmpty()) {
+                tokens = takeBatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (tokens != null) {
+            send(tokens);
+        }
+    }
+
+    private List<String> takeBatch() {
+        List<String> tokens = batch;
+        batch = new ArrayList<>();
+        generation++;
+        return tokens;
+    }
+
+    private void send(List<String> tokens) {
+        batches.increment();
+        lookups.add(tokens.size());
+        Mono.defer(() -> client.introspect(tokens))
+                .filter(results -> results.size() == tokens.size())
+                .switchIfEmpty(Mono.error(() -> new AuthenticationServiceException(
+                        "Introspection response does not match " + tokens.size() + " tokens")))
+                .subscribe(
+                        results -> {
+                            for (int i = 0; i < tokens.size(); i++) {
+                                complete(tokens.get(i), results.get(i));
+                            }
+                        },
+                        error -> {
+                            failures.increment();
+                            AuthenticationServiceException failure = error instanceof AuthenticationServiceException e
+                                    ? e
+                                    : new AuthenticationServiceException("Introspection failed: " + error, error);
+                            // Ошибка не кешируется: следующий запрос с токеном спросит снова.
+                            for (String token : tokens) {
+                                Sinks.One<TokenIntrospection> sink = pending.remove(token);
+                                if (sink != null) {
+                                    sink.tryEmitError(failure);
+                                }
+                            }
+                        }
+                );
+    }
+
+    private void complete(String token, TokenIntrospection result) {
+        onResult.accept(token, result);
+        Sinks.One<TokenIntrospection> sink = pending.remove(token);
+        if (sink != null) {
+            sink.tryEmitValue(result);
+        }
+    }
+
+    long batches() {
+        return batches.sum();
+    }
+
+    long lookups() {
+        return lookups.sum();
+    }
+
+    long coalesced() {
+        return coalesced.sum();
+    }
+
+    long failures() {
+        return failures.sum();
+    }
+
+    int pending() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,36 @@
+package oleborn.gateway.security;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * IntrospectionClient
+ *
+ * Вызов сервиса интроспекции непрозрачных токенов — сразу для пакета.
+ *
+ * Точка расширения: по умолчанию — WebClientIntrospectionClient
+ * (пакетный JSON endpoint); другой протокол подключается
+ * собственным бином этого типа.
+ */
+public interface IntrospectionClient {
+
+    /**
+     * @param tokens токены без повторов.
+     * @return результаты в том же порядке, что и tokens.
+     */
+    Mono<List<TokenIntrospection>> introspect(List<String> tokens);
+
+    /**
+     * Результат интроспекции одного токена.
+     *
+     * @param active    действует ли токен.
+     * @param subject   владелец токена (sub, username или client_id).
+     * @param scopes    права токена.
+     * @param expiresAt exp токена, секунды epoch; 0 — не сообщён.
+     */
+    record TokenIntrospection(boolean active, String subject, List<String> scopes, long expiresAt) {
+
+        public static final TokenIntrospection INACTIVE = new TokenIntrospection(false, null, List.of(), 0);
+    }
+}
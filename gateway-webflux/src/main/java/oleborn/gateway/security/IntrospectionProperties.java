@@ -0,0 +1,127 @@
+package oleborn.gateway.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * IntrospectionProperties
+ *
+ * Настройки проверки непрозрачных токенов через сервис интроспекции
+ * (блок gateway.introspection).
+ */
+@ConfigurationProperties(prefix = "gateway.introspection")
+public class IntrospectionProperties {
+
+    // Проверять токены без точек (не JWT) через сервис интроспекции.
+    private boolean enabled = false;
+
+    // Пакетный endpoint интроспекции (см. WebClientIntrospectionClient).
+    private String uri = "http://localhost:8081/introspect";
+
+    // Сколько ждать других токенов, прежде чем отправить пакет.
+    private Duration batchWindow = Duration.ofMillis(2);
+
+    // Наибольший пакет: заполненный отправляется, не дожидаясь окна.
+    private int maxBatchSize = 64;
+
+    // Таймаут вызова сервиса интроспекции.
+    private Duration timeout = Duration.ofSeconds(2);
+
+    // Сколько помнить действующий токен (но не дольше его exp).
+    private Duration positiveTtl = Duration.ofMinutes(5);
+
+    // Сколько помнить недействующий токен: короче — быстрее
+    // замечается только что выданный, но ещё не распространившийся токен.
+    private Duration negativeTtl = Duration.ofSeconds(30);
+
+    // Действующих токенов в кеше; 0 — не кешируются.
+    private int positiveCacheSize = 10_000;
+
+    // Недействующих токенов в кеше; 0 — не кешируются.
+    // Отдельный кеш: поток мусорных токенов не вытесняет действующие.
+    private int negativeCacheSize = 10_000;
+
+    // Наибольшая длина токена: длиннее — отказ без интроспекции.
+    private int maxTokenLength = 4096;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    public Duration getBatchWindow() {
+        return batchWindow;
+    }
+
+    public void setBatchWindow(Duration batchWindow) {
+        this.batchWindow = batchWindow;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public Duration getPositiveTtl() {
+        return positiveTtl;
+    }
+
+    public void setPositiveTtl(Duration positiveTtl) {
+        this.positiveTtl = positiveTtl;
+    }
+
+    public Duration getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    public void setNegativeTtl(Duration negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+
+    public int getPositiveCacheSize() {
+        return positiveCacheSize;
+    }
+
+    public void setPositiveCacheSize(int positiveCacheSize) {
+        this.positiveCacheSize = positiveCacheSize;
+    }
+
+    public int getNegativeCacheSize() {
+        return negativeCacheSize;
+    }
+
+    public void setNegativeCacheSize(int negativeCacheSize) {
+        this.negativeCacheSize = negativeCacheSize;
+    }
+
+    public int getMaxTokenLength() {
+        return maxTokenLength;
+    }
+
+    public void setMaxTokenLength(int maxTokenLength) {
+        this.maxTokenLength = maxTokenLength;
+    }
+}
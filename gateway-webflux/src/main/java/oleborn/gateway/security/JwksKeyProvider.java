@@ -0,0 +1,298 @@
+package oleborn.gateway.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import oleborn.gateway.metrics.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JwksKeyProvider
+ *
+ * Открытые ключи RS256 из JWK Set (RFC 7517) издателя токенов.
+ *
+ * Проблема:
+ * - издатель меняет ключи подписи (ротация), и Gateway
+ *   должен узнавать новые, не перезапускаясь;
+ * - загрузка и разбор JWKS — сеть, JSON и BigInteger;
+ *   на пути запроса это недопустимо.
+ *
+ * Как устроено:
+ * - ключи разбираются заранее и лежат в неизменяемой карте kid → PublicKey;
+ *   запрос только читает volatile-ссылку на неё;
+ * - поток "gateway-jwks" перечитывает JWKS раз в refresh-interval
+ *   и подменяет карту целиком; при ошибке остаётся прежняя;
+ * - токен с неизвестным kid (новый ключ, а плановое обновление ещё не прошло)
+ *   запускает внеочередное обновление — не чаще раза в unknown-key-interval:
+ *   поток токенов с выдуманными kid не превращается в поток запросов к издателю.
+ *
+ * Источник — файл или HTTP(S)-адрес: для проверок без сети
+ * достаточно файла или локального endpoint'а.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/jwks.
+ */
+public class JwksKeyProvider implements MetricsSource, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JwksKeyProvider.class);
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(5);
+
+    private final String location;
+
+    // null — источник JWKS файл.
+    private final HttpClient http;
+
+    private final long unknownKeyIntervalNanos;
+
+    private volatile Keys keys = new Keys(Map.of(), null);
+
+    // Последнее внеочередное обновление: запросы с тем же неизвестным kid ждут его,
+    // а не получают отказ, пока новый ключ загружается.
+    // Время старта и future — в одной ссылке: новое обновление
+    // публикуется одним CAS, до того как начнёт выполняться.
+    private final AtomicReference<UnknownKeyRefresh> pendingRefresh;
+
+    // Последний разобранный документ: неизменный JWKS не разбирается заново.
+    // Только в потоке "gateway-jwks" (и в конструкторе).
+    private byte[] lastDocument;
+
+    private volatile Instant loadedAt;
+
+    private final LongAdder refreshes = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder unknownKeys = new LongAdder();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gateway-jwks");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public JwksKeyProvider(String location, Duration refreshInterval, Duration unknownKeyInterval) {
+        this.location = location;
+        this.http = location.startsWith("http://") || location.startsWith("https://")
+                ? HttpClient.newBuilder().connectTimeout(FETCH_TIMEOUT).build()
+                : null;
+        this.unknownKeyIntervalNanos = unknownKeyInterval.toNanos();
+        this.pendingRefresh = new AtomicReference<>(new UnknownKeyRefresh(
+                System.nanoTime() - unknownKeyIntervalNanos, CompletableFuture.completedFuture(null)));
+        // Первая загрузка — при старте, до первого запроса.
+        // Неудача не останавливает Gateway: ключи появятся при следующем обновлении.
+        refresh();
+        long period = refreshInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::refresh, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Неизменяемый набор ключей.
+     *
+     * @param sole единственный ключ набора — для токенов без kid; иначе null.
+     */
+    private record Keys(Map<String, PublicKey> byKeyId, PublicKey sole) {
+    }
+
+    /**
+     * Внеочередное обновление.
+     *
+     * @param startedAt System.nanoTime() запуска.
+     * @param done      завершается после обновления.
+     */
+    private record UnknownKeyRefresh(long startedAt, CompletableFuture<Void> done) {
+    }
+
+    /**
+     * @param keyId kid из заголовка токена; null — токен без kid.
+     * @return ключ или null, если такого нет.
+     */
+    PublicKey key(String keyId) {
+        Keys current = keys;
+        return keyId != null ? current.byKeyId().get(keyId) : current.sole();
+    }
+
+    /**
+     * Внеочередное обновление для токена с неизвестным kid.
+     *
+     * Не чаще раза в unknown-key-interval; в остальное время
+     * возвращается текущее обновление (если оно ещё идёт)
+     * или уже завершённый future.
+     *
+     * @return завершается после обновления; никогда не завершается ошибкой.
+     */
+    CompletableFuture<Void> refreshForUnknownKey() {
+        unknownKeys.increment();
+        long now = System.nanoTime();
+        UnknownKeyRefresh last = pendingRefresh.get();
+        if (now - last.startedAt() < unknownKeyIntervalNanos) {
+            return last.done();
+        }
+        // Future публикуется до запуска: одновременный запрос
+        // либо проиграет CAS и получит это обновление, либо увидит его сразу.
+        UnknownKeyRefresh next = new UnknownKeyRefresh(now, new CompletableFuture<>());
+        if (!pendingRefresh.compareAndSet(last, next)) {
+            return pendingRefresh.get().done();
+        }
+        try {
+            scheduler.execute(() -> {
+                try {
+                    refresh();
+                } finally {
+                    next.done().complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Провайдер закрыт: ждать нечего.
+            next.done().complete(null);
+        }
+        return next.done();
+    }
+
+    private void refresh() {
+        refreshes.increment();
+        try {
+            byte[] document = load();
+            if (!Arrays.equals(document, lastDocument)) {
+                Keys next = parse(document);
+                keys = next;
+                lastDocument = document;
+                log.info("JWKS loaded from {}: {} key(s) {}", location, next.byKeyId().size(), next.byKeyId().keySet());
+            }
+            loadedAt = Instant.now();
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            log.warn("Failed to load JWKS from {}, keeping previous keys: {}", location, e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] load() throws IOException, InterruptedException {
+        if (http == null) {
+            return Files.readAllBytes(Path.of(location));
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(location))
+                .timeout(FETCH_TIMEOUT)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    /**
+     * Ключи RSA для подписи: kty=RSA, use отсутствует или "sig",
+     * alg отсутствует или "RS256". Остальные пропускаются.
+     */
+    private static Keys parse(byte[] document) throws IOException {
+        JsonNode keys = JSON.readTree(document).path("keys");
+        if (!keys.isArray()) {
+            throw new IOException("JWKS without keys array");
+        }
+        Map<String, PublicKey> byKeyId = new HashMap<>();
+        List<PublicKey> all = new ArrayList<>();
+        for (JsonNode jwk : keys) {
+            if (!"RSA".equals(jwk.path("kty").asText())
+                    || !"sig".equals(jwk.path("use").asText("sig"))
+                    || !"RS256".equals(jwk.path("alg").asText("RS256"))) {
+                continue;
+            }
+            PublicKey key;
+            try {
+                key = KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+                        new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("n").asText())),
+                        new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("e").asText()))
+                ));
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                log.warn("Skipping invalid JWK {}: {}", jwk.path("kid").asText(""), e.toString());
+                continue;
+            }
+            all.add(key);
+            String keyId = jwk.path("kid").asText(null);
+            if (keyId != null) {
+                byKeyId.put(keyId, key);
+            }
+        }
+        // Пустой набор — скорее сбой издателя, чем отзыв всех ключей:
+        // прежние ключи остаются.
+        if (all.isEmpty()) {
+            throw new IOException("JWKS without usable RS256 keys");
+        }
+        return new Keys(Map.copyOf(byKeyId), all.size() == 1 ? all.get(0) : null);
+    }
+
+    @Override
+    public String metricsName() {
+        return "jwks";
+    }
+
+    @Override
+    public JwksSnapshot metricsSnapshot() {
+        Instant loaded = loadedAt;
+        return new JwksSnapshot(
+                location,
+                keys.byKeyId().keySet().stream().sorted().toList(),
+                loaded != null ? loaded.toString() : null,
+                refreshes.sum(),
+                failures.sum(),
+                unknownKeys.sum()
+        );
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Состояние набора ключей.
+     *
+     * @param keyIds      kid загруженных ключей.
+     * @param loadedAt    последняя успешная загрузка.
+     * @param refreshes   попыток загрузки (плановых и внеочередных).
+     * @param failures    неудачных загрузок.
+     * @param unknownKeys токенов с неизвестным kid.
+     */
+    public record JwksSnapshot(
+            String location,
+            List<String> keyIds,
+            String loadedAt,
+            long refreshes,
+            long failures,
+            long unknownKeys
+    ) {
+    }
+}
@@ -0,0 +1,168 @@
+package oleborn.gateway.security;
+
+import oleborn.gateway.metrics.MetricsSource;
+import oleborn.gateway.security.JwtRejectedException.Reason;
+import oleborn.gateway.security.JwtVerifier.ParsedJwt;
+import oleborn.gateway.security.JwtVerifier.VerifiedJwt;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JwtAuthenticationManager
+ *
+ * ReactiveAuthenticationManager для Bearer-токенов JWT (HS256, RS256).
+ *
+ * Проблема:
+ * - проверка подписи RS256 — десятки микросекунд процессора,
+ *   а клиенты присылают один и тот же токен тысячи раз;
+ * - на event loop такая работа задерживает все соединения потока.
+ *
+ * Что делает этот менеджер:
+ * - дешёвые проверки (длина, формат, alg, exp, nbf, iss, aud) — сразу,
+ *   на event loop: мусор и истёкшие токены не доходят до проверки подписи;
+ * - проверенный токен кешируется до своего exp по SHA-256 токена —
+ *   сами токены в памяти не хранятся; повторный запрос с ним
+ *   стоит одного хеша и поиска в карте;
+ * - промах кеша проверяется на отдельном пуле "gateway-jwt":
+ *   event loop только ставит задачу и продолжает обслуживать соединения.
+ *
+ * Кеш ограничен cache-size (см. TokenCache):
+ * потерянная запись стоит одной проверки подписи.
+ *
+ * Токен RS256 с kid, которого ещё нет в JwksKeyProvider, ждёт
+ * внеочередного обновления JWKS (не чаще раза в интервал) —
+ * без блокировки потоков — и только потом проверяется.
+ *
+ * Публикуется как GET {gateway.metrics.base-path}/jwt.
+ */
+public class JwtAuthenticationManager implements ReactiveAuthenticationManager, MetricsSource, AutoCloseable {
+
+    private final JwtVerifier verifier;
+
+    // null — JWKS не настроен.
+    private final JwksKeyProvider jwks;
+
+    private final int maxTokenLength;
+
+    private final long clockSkewSeconds;
+
+    private final TokenCache<VerifiedJwt> cache;
+
+    private final Scheduler verifiers;
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder verified = new LongAdder();
+
+    private final Map<Reason, LongAdder> rejected = new EnumMap<>(Reason.class);
+
+    /**
+     * @param jwks ключи RS256 из JWKS; null — ключ из public-key-location.
+     */
+    public JwtAuthenticationManager(JwtProperties properties, JwksKeyProvider jwks) {
+        this.verifier = new JwtVerifier(properties, jwks);
+        this.jwks = jwks;
+        this.maxTokenLength = properties.getMaxTokenLength();
+        this.clockSkewSeconds = properties.getClockSkew().toSeconds();
+        this.cache = new TokenCache<>(properties.getCacheSize());
+        int threads = properties.getVerifierThreads() > 0
+                ? properties.getVerifierThreads()
+                : Runtime.getRuntime().availableProcessors();
+        this.verifiers = Schedulers.newParallel("gateway-jwt", threads, true);
+        for (Reason reason : Reason.values()) {
+            rejected.put(reason, new LongAdder());
+        }
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        Object credentials = authentication.getCredentials();
+        String token = credentials != null ? credentials.toString() : "";
+        if (token.isEmpty() || token.length() > maxTokenLength) {
+            return reject(new JwtRejectedException(Reason.FORMAT, "Malformed JWT"));
+        }
+        long nowMillis = System.currentTimeMillis();
+
+        // Истёкшая запись кеша не возвращается:
+        // такой токен отклонит parse(...) как EXPIRED.
+        ByteBuffer key = cache.enabled() ? TokenCache.key(token) : null;
+        if (key != null) {
+            VerifiedJwt cached = cache.get(key, nowMillis);
+            if (cached != null) {
+                cacheHits.increment();
+                return Mono.just(authentication(cached));
+            }
+        }
+
+        ParsedJwt parsed;
+        try {
+            parsed = verifier.parse(token, nowMillis / 1000);
+        } catch (JwtRejectedException e) {
+            return reject(e);
+        }
+        Mono<VerifiedJwt> verification = Mono.fromCallable(() -> verifier.verifySignature(parsed))
+                .subscribeOn(verifiers);
+        if (!verifier.hasKey(parsed)) {
+            // Возможно, издатель сменил ключ: проверка после обновления JWKS.
+            // suppressCancel: отмена одного запроса не отменяет общее обновление.
+            verification = Mono.fromFuture(jwks.refreshForUnknownKey(), true).then(verification);
+        }
+        return verification
+                .doOnNext(jwt -> {
+                    verified.increment();
+                    if (key != null) {
+                        cache.put(key, jwt, (jwt.expiresAt() + clockSkewSeconds) * 1000, nowMillis);
+                    }
+                })
+                .map(JwtAuthenticationManager::authentication)
+                .onErrorResume(JwtRejectedException.class, this::reject);
+    }
+
+    private Mono<Authentication> reject(JwtRejectedException e) {
+        rejected.get(e.reason).increment();
+        return Mono.error(e);
+    }
+
+    // Новый объект на запрос: Authentication изменяем (details, eraseCredentials).
+    private static Authentication authentication(VerifiedJwt jwt) {
+        return UsernamePasswordAuthenticationToken.authenticated(jwt.subject(), null, jwt.authorities());
+    }
+
+    @Override
+    public String metricsName() {
+        return "jwt";
+    }
+
+    @Override
+    public JwtSnapshot metricsSnapshot() {
+        Map<String, Long> reasons = new TreeMap<>();
+        rejected.forEach((reason, count) -> reasons.put(reason.name().toLowerCase(), count.sum()));
+        return new JwtSnapshot(cache.size(), cacheHits.sum(), verified.sum(), reasons);
+    }
+
+    @Override
+    public void close() {
+        verifiers.dispose();
+    }
+
+    /**
+     * Состояние проверки JWT.
+     *
+     * @param cached    проверенных токенов в кеше.
+     * @param cacheHits запросов, принятых по кешу без проверки подписи.
+     * @param verified  проверок подписи с успехом.
+     * @param rejected  отказов по причинам (в том числе из кеша — expired).
+     */
+    public record JwtSnapshot(int cached, long cacheHits, long verified, Map<String, Long> rejected) {
+    }
+}
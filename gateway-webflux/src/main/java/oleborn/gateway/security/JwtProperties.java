@@ -0,0 +1,161 @@
+package oleborn.gateway.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * JwtProperties
+ *
+ * Настройки проверки JWT (блок gateway.jwt).
+ */
+@ConfigurationProperties(prefix = "gateway.jwt")
+public class JwtProperties {
+
+    // Проверять Bearer-токены как JWT. Выключено — действует
+    // учебная проверка SecurityConfig (фиксированный "valid-token"),
+    // и ключи не нужны.
+    private boolean enabled = false;
+
+    // Секрет HS256 (не короче 32 байт); пусто — HS256 не принимается.
+    private String hmacSecret;
+
+    // PEM-файл с открытым ключом RS256 ("BEGIN PUBLIC KEY");
+    // пусто — RS256 не принимается.
+    private String publicKeyLocation;
+
+    // JWK Set с ключами RS256: путь к файлу или http(s)://-адрес.
+    // Если задан, public-key-location не используется.
+    private String jwksLocation;
+
+    // Период планового обновления JWKS.
+    private Duration jwksRefreshInterval = Duration.ofMinutes(5);
+
+    // Внеочередное обновление JWKS из-за неизвестного kid — не чаще этого.
+    private Duration jwksUnknownKeyInterval = Duration.ofSeconds(30);
+
+    // Ожидаемый iss; пусто — не проверяется.
+    private String issuer;
+
+    // Ожидаемое значение aud (строка или элемент массива); пусто — не проверяется.
+    private String audience;
+
+    // Допустимое расхождение часов Gateway и издателя токенов.
+    private Duration clockSkew = Duration.ofSeconds(30);
+
+    // Claim с именем пользователя.
+    private String principalClaim = "sub";
+
+    // Проверенных токенов в кеше; 0 — кеш отключён.
+    private int cacheSize = 10_000;
+
+    // Потоков проверки подписей; 0 — по числу процессоров.
+    private int verifierThreads = 0;
+
+    // Наибольшая длина токена: длиннее — отказ без разбора.
+    private int maxTokenLength = 8192;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getHmacSecret() {
+        return hmacSecret;
+    }
+
+    public void setHmacSecret(String hmacSecret) {
+        this.hmacSecret = hmacSecret;
+    }
+
+    public String getPublicKeyLocation() {
+        return publicKeyLocation;
+    }
+
+    public void setPublicKeyLocation(String publicKeyLocation) {
+        this.publicKeyLocation = publicKeyLocation;
+    }
+
+    public String getJwksLocation() {
+        return jwksLocation;
+    }
+
+    public void setJwksLocation(String jwksLocation) {
+        this.jwksLocation = jwksLocation;
+    }
+
+    public Duration getJwksRefreshInterval() {
+        return jwksRefreshInterval;
+    }
+
+    public void setJwksRefreshInterval(Duration jwksRefreshInterval) {
+        this.jwksRefreshInterval = jwksRefreshInterval;
+    }
+
+    public Duration getJwksUnknownKeyInterval() {
+        return jwksUnknownKeyInterval;
+    }
+
+    public void setJwksUnknownKeyInterval(Duration jwksUnknownKeyInterval) {
+        this.jwksUnknownKeyInterval = jwksUnknownKeyInterval;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public void setIssuer(String issuer) {
+        this.issuer = issuer;
+    }
+
+    public String getAudience() {
+        return audience;
+    }
+
+    public void setAudience(String audience) {
+        this.audience = audience;
+    }
+
+    public Duration getClockSkew() {
+        return clockSkew;
+    }
+
+    public void setClockSkew(Duration clockSkew) {
+        this.clockSkew = clockSkew;
+    }
+
+    public String getPrincipalClaim() {
+        return principalClaim;
+    }
+
+    public void setPrincipalClaim(String principalClaim) {
+        this.principalClaim = principalClaim;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public int getVerifierThreads() {
+        return verifierThreads;
+    }
+
+    public void setVerifierThreads(int verifierThreads) {
+        this.verifierThreads = verifierThreads;
+    }
+
+    public int getMaxTokenLength() {
+        return maxTokenLength;
+    }
+
+    public void setMaxTokenLength(int maxTokenLength) {
+        this.maxTokenLength = maxTokenLength;
+    }
+}
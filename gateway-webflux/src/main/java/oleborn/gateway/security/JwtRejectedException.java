@@ -0,0 +1,43 @@
+package oleborn.gateway.security;
+
+import org.springframework.security.authentication.BadCredentialsException;
+
+/**
+ * JwtRejectedException
+ *
+ * Отказ в токене с причиной — для счётчиков JwtAuthenticationManager.
+ * Для Spring Security это обычный BadCredentialsException (401).
+ */
+class JwtRejectedException extends BadCredentialsException {
+
+    private static final long serialVersionUID = 1L;
+
+    enum Reason {
+
+        // Не три части base64url, не JSON, нет обязательных claims.
+        FORMAT,
+
+        // alg не HS256/RS256 или для него не настроен ключ.
+        ALGORITHM,
+
+        EXPIRED,
+
+        NOT_YET_VALID,
+
+        ISSUER,
+
+        AUDIENCE,
+
+        // kid токена нет в JWKS даже после внеочередного обновления.
+        UNKNOWN_KEY,
+
+        SIGNATURE
+    }
+
+    final Reason reason;
+
+    JwtRejectedException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,295 @@
+package oleborn.gateway.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import oleborn.gateway.security.JwtRejectedException.Reason;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * JwtVerifier
+ *
+ * Разбор и проверка JWT (JWS компактной формы) с HS256 и RS256
+ * средствами JDK — без сторонних JWT-библиотек.
+ *
+ * Проверка разделена на две части разной цены:
+ * - parse(...) — дешёвые проверки: формат, alg, exp/nbf, iss, aud.
+ *   Микросекунды; выполняется на event loop и отсекает
+ *   мусор и истёкшие токены до очереди на проверку подписи;
+ * - verifySignature(...) — HMAC-SHA256 или RSA-SHA256.
+ *   RSA — десятки микросекунд процессора на токен;
+ *   выполняется на отдельном пуле JwtAuthenticationManager.
+ *
+ * alg "none" и любые другие алгоритмы отклоняются:
+ * алгоритм выбирает Gateway (по настроенным ключам), а не токен.
+ *
+ * Ключ RS256 — из JwksKeyProvider по kid токена, если задан jwks-location;
+ * иначе — единственный ключ из public-key-location.
+ */
+final class JwtVerifier {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final Base64.Decoder BASE64URL = Base64.getUrlDecoder();
+
+    private final SecretKeySpec hmacKey;
+
+    private final PublicKey rsaKey;
+
+    // null — JWKS не настроен.
+    private final JwksKeyProvider jwks;
+
+    private final String issuer;
+
+    private final String audience;
+
+    private final long clockSkewSeconds;
+
+    private final String principalClaim;
+
+    // Mac и Signature не потокобезопасны: по экземпляру на поток пула.
+    private final ThreadLocal<Mac> macs;
+
+    private static final ThreadLocal<Signature> RSA_SIGNATURES = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("SHA256withRSA");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA256withRSA is required by every Java platform", e);
+        }
+    });
+
+    JwtVerifier(JwtProperties properties, JwksKeyProvider jwks) {
+        this.hmacKey = hmacKey(properties.getHmacSecret());
+        this.jwks = jwks;
+        this.rsaKey = jwks == null ? rsaKey(properties.getPublicKeyLocation()) : null;
+        if (hmacKey == null && rsaKey == null && jwks == null) {
+            throw new IllegalStateException(
+                    "gateway.jwt.enabled=true, but no JWT keys: set GATEWAY_JWT_SECRET (gateway.jwt.hmac-secret), "
+                            + "gateway.jwt.public-key-location or gateway.jwt.jwks-location");
+        }
+        this.issuer = blankToNull(properties.getIssuer());
+        this.audience = blankToNull(properties.getAudience());
+        this.clockSkewSeconds = properties.getClockSkew().toSeconds();
+        this.principalClaim = properties.getPrincipalClaim();
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(hmacKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is required by every Java platform", e);
+            }
+        });
+    }
+
+    /**
+     * Токен, прошедший дешёвые проверки; подпись ещё не проверена.
+     *
+     * @param keyId        kid из заголовка; null — не указан.
+     * @param signingInput "header.payload" в ASCII — то, что подписано.
+     */
+    record ParsedJwt(String algorithm, String keyId, byte[] signingInput, byte[] signature, VerifiedJwt claims) {
+    }
+
+    /**
+     * Результат проверки: то, что нужно для Authentication.
+     *
+     * @param expiresAt exp токена, секунды epoch.
+     */
+    record VerifiedJwt(String subject, List<GrantedAuthority> authorities, long expiresAt) {
+    }
+
+    /**
+     * Дешёвые проверки.
+     *
+     * @param nowSeconds текущее время, секунды epoch.
+     * @throws JwtRejectedException если токен отклонён.
+     */
+    ParsedJwt parse(String token, long nowSeconds) {
+        int first = token.indexOf('.');
+        int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+        if (first <= 0 || second <= first + 1 || second == token.length() - 1 || token.indexOf('.', second + 1) >= 0) {
+            throw new JwtRejectedException(Reason.FORMAT, "Malformed JWT");
+        }
+        JsonNode header = json(token, 0, first);
+        JsonNode payload = json(token, first + 1, second);
+        byte[] signature = decode(token, second + 1, token.length());
+
+        String algorithm = header.path("alg").asText();
+        boolean supported = "HS256".equals(algorithm) ? hmacKey != null
+                : "RS256".equals(algorithm) && (rsaKey != null || jwks != null);
+        if (!supported || header.has("crit")) {
+            throw new JwtRejectedException(Reason.ALGORITHM, "Unsupported JWT algorithm: " + algorithm);
+        }
+
+        JsonNode exp = payload.get("exp");
+        if (exp == null || !exp.canConvertToLong()) {
+            throw new JwtRejectedException(Reason.FORMAT, "JWT without exp");
+        }
+        long expiresAt = exp.asLong();
+        if (nowSeconds - clockSkewSeconds >= expiresAt) {
+            throw new JwtRejectedException(Reason.EXPIRED, "JWT expired");
+        }
+        JsonNode nbf = payload.get("nbf");
+        if (nbf != null && !nbf.canConvertToLong()) {
+            throw new JwtRejectedException(Reason.FORMAT, "JWT with non-numeric nbf");
+        }
+        if (nbf != null && nbf.asLong() > nowSeconds + clockSkewSeconds) {
+            throw new JwtRejectedException(Reason.NOT_YET_VALID, "JWT not yet valid");
+        }
+        if (issuer != null && !issuer.equals(payload.path("iss").asText(null))) {
+            throw new JwtRejectedException(Reason.ISSUER, "Unexpected JWT issuer");
+        }
+        if (audience != null && !hasAudience(payload.get("aud"))) {
+            throw new JwtRejectedException(Reason.AUDIENCE, "Unexpected JWT audience");
+        }
+        String subject = payload.path(principalClaim).asText(null);
+        if (subject == null || subject.isEmpty()) {
+            throw new JwtRejectedException(Reason.FORMAT, "JWT without " + principalClaim);
+        }
+
+        byte[] signingInput = token.substring(0, second).getBytes(StandardCharsets.US_ASCII);
+        return new ParsedJwt(algorithm, header.path("kid").asText(null), signingInput, signature, new VerifiedJwt(subject, authorities(payload), expiresAt));
+    }
+
+    /**
+     * Известен ли ключ для проверки подписи токена.
+     * false — только для RS256 с JWKS, когда kid ещё не загружен.
+     */
+    boolean hasKey(ParsedJwt jwt) {
+        return jwks == null || !"RS256".equals(jwt.algorithm()) || jwks.key(jwt.keyId()) != null;
+    }
+
+    /**
+     * Проверка подписи — дорогая часть, вызывается на пуле проверки.
+     *
+     * @throws JwtRejectedException если подпись не сходится или ключ неизвестен.
+     */
+    VerifiedJwt verifySignature(ParsedJwt jwt) {
+        boolean valid;
+        if ("HS256".equals(jwt.algorithm())) {
+            // Сравнение за постоянное время: не выдаёт, сколько байт совпало.
+            valid = MessageDigest.isEqual(macs.get().doFinal(jwt.signingInput()), jwt.signature());
+        } else {
+            PublicKey key = jwks != null ? jwks.key(jwt.keyId()) : rsaKey;
+            if (key == null) {
+                throw new JwtRejectedException(Reason.UNKNOWN_KEY, "Unknown JWT key: " + jwt.keyId());
+            }
+            try {
+                Signature signature = RSA_SIGNATURES.get();
+                signature.initVerify(key);
+                signature.update(jwt.signingInput());
+                valid = signature.verify(jwt.signature());
+            } catch (GeneralSecurityException e) {
+                valid = false;
+            }
+        }
+        if (!valid) {
+            throw new JwtRejectedException(Reason.SIGNATURE, "Invalid JWT signature");
+        }
+        return jwt.claims();
+    }
+
+    /**
+     * "scope": "read write" или "scp": ["read", "write"] → SCOPE_read, SCOPE_write
+     * (как JwtGrantedAuthoritiesConverter Spring Security).
+     */
+    private static List<GrantedAuthority> authorities(JsonNode payload) {
+        JsonNode scopes = payload.has("scope") ? payload.get("scope") : payload.get("scp");
+        if (scopes == null) {
+            return List.of();
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        if (scopes.isArray()) {
+            scopes.forEach(scope -> authorities.add(new SimpleGrantedAuthority("SCOPE_" + scope.asText())));
+        } else {
+            for (String scope : scopes.asText().split(" ")) {
+                if (!scope.isEmpty()) {
+                    authorities.add(new SimpleGrantedAuthority("SCOPE_" + scope));
+                }
+            }
+        }
+        return List.copyOf(authorities);
+    }
+
+    private boolean hasAudience(JsonNode aud) {
+        if (aud == null) {
+            return false;
+        }
+        if (aud.isArray()) {
+            for (JsonNode value : aud) {
+                if (audience.equals(value.asText())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return audience.equals(aud.asText());
+    }
+
+    private static JsonNode json(String token, int from, int to) {
+        try {
+            JsonNode node = JSON.readTree(decode(token, from, to));
+            if (node == null || !node.isObject()) {
+                throw new JwtRejectedException(Reason.FORMAT, "JWT part is not a JSON object");
+            }
+            return node;
+        } catch (IOException e) {
+            throw new JwtRejectedException(Reason.FORMAT, "JWT part is not JSON");
+        }
+    }
+
+    private static byte[] decode(String token, int from, int to) {
+        try {
+            return BASE64URL.decode(token.substring(from, to));
+        } catch (IllegalArgumentException e) {
+            throw new JwtRejectedException(Reason.FORMAT, "JWT part is not base64url");
+        }
+    }
+
+    private static SecretKeySpec hmacKey(String secret) {
+        if (secret == null || secret.isBlank()) {
+            return null;
+        }
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        // RFC 7518: ключ HS256 не короче выхода хеша.
+        if (bytes.length < 32) {
+            throw new IllegalStateException("gateway.jwt.hmac-secret must be at least 32 bytes");
+        }
+        return new SecretKeySpec(bytes, "HmacSHA256");
+    }
+
+    private static PublicKey rsaKey(String location) {
+        if (location == null || location.isBlank()) {
+            return null;
+        }
+        try {
+            String pem = Files.readString(Path.of(location), StandardCharsets.US_ASCII)
+                    .replaceAll("-----(BEGIN|END) PUBLIC KEY-----", "")
+                    .replaceAll("\\s", "");
+            return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(pem)));
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Cannot read RSA public key from " + location, e);
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
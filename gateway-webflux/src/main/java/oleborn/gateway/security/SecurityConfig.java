@@ -1,17 +1,24 @@
 package oleborn.gateway.security;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
 import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
+import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
@@ -44,6 +51,7 @@ import java.util.List;
  */
 @Configuration
 @EnableWebFluxSecurity
+@EnableConfigurationProperties({JwtProperties.class, IntrospectionProperties.class})
 public class SecurityConfig {
 
     /**
@@ -60,12 +68,14 @@ public class SecurityConfig {
      * - это реактивная цепочка WebFilter'ов;
      * - Gateway начнёт работу ТОЛЬКО ПОСЛЕ успешного прохождения Security.
      *
-     * @param http ServerHttpSecurity —
-     *             DSL-объект для конфигурации WebFlux Security.
+     * @param http                  ServerHttpSecurity —
+     *                              DSL-объект для конфигурации WebFlux Security.
+     * @param authenticationManager проверка токенов (см. authenticationManager(...)).
      * @return SecurityWebFilterChain — готовая security-цепочка.
      */
     @Bean
-    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         ReactiveAuthenticationManager authenticationManager) {
 
         /**
          * AuthenticationWebFilter —
@@ -81,7 +91,7 @@ public class SecurityConfig {
          * - это НЕ WebFilter общего назначения;
          * - его нельзя реализовывать вручную для JWT.
          */
-        AuthenticationWebFilter jwtAuthFilter = new AuthenticationWebFilter(authenticationManager());
+        AuthenticationWebFilter jwtAuthFilter = new AuthenticationWebFilter(authenticationManager);
 
         /**
          * requiresAuthenticationMatcher определяет,
@@ -173,38 +183,146 @@ public class SecurityConfig {
      * ReactiveAuthenticationManager —
      * компонент, отвечающий за ПРОВЕРКУ учетных данных.
      *
+     * Bearer-токены бывают двух видов:
+     * - JWT (header.payload.signature) — проверяется самим Gateway
+     *   (JwtAuthenticationManager), если включён gateway.jwt.enabled;
+     *   иначе действует учебная проверка demoToken(...);
+     * - непрозрачный токен (без точек) — проверяется сервисом
+     *   интроспекции (IntrospectionAuthenticationManager),
+     *   если включён gateway.introspection.enabled.
+     *
+     * Этот менеджер только выбирает проверку по виду токена.
+     * @Primary — именно он используется AuthenticationWebFilter'ом
+     * и Spring Security; остальные менеджеры — его делегаты.
+     *
+     * @param jwt           проверка JWT, если включена.
+     * @param introspection проверка непрозрачных токенов, если включена.
+     * @return ReactiveAuthenticationManager — менеджер аутентификации.
+     */
+    @Bean
+    @Primary
+    public ReactiveAuthenticationManager authenticationManager(ObjectProvider<JwtAuthenticationManager> jwt,
+                                                               ObjectProvider<IntrospectionAuthenticationManager> introspection) {
+        JwtAuthenticationManager verifier = jwt.getIfAvailable();
+        // Ссылка на метод, а не сам verifier: один объект под двумя бинами
+        // дважды попал бы в метрики и дважды закрывался.
+        ReactiveAuthenticationManager tokens = verifier != null ? verifier::authenticate : SecurityConfig::demoToken;
+        IntrospectionAuthenticationManager opaque = introspection.getIfAvailable();
+        if (opaque == null) {
+            return tokens;
+        }
+        return authentication -> {
+            Object credentials = authentication.getCredentials();
+            boolean looksLikeJwt = credentials != null && credentials.toString().indexOf('.') >= 0;
+            return looksLikeJwt ? tokens.authenticate(authentication) : opaque.authenticate(authentication);
+        };
+    }
+
+    /**
+     * Учебная проверка при выключенном gateway.jwt.enabled.
+     *
      * В данном учебном примере:
-     * - credentials = JWT-токен (строка);
+     * - credentials = токен (строка);
      * - токен сравнивается с фиксированным значением;
      * - при успехе создаётся Authentication.
      *
-     * В реальной системе здесь выполняется:
-     * - проверка подписи JWT;
-     * - проверка срока действия;
-     * - извлечение claims;
-     * - построение authorities.
+     * Ключи и секреты не нужны: так запускаются шаги step1–step8.
+     * Проверка настоящих JWT — JwtAuthenticationManager.
+     */
+    private static Mono<Authentication> demoToken(Authentication authentication) {
+        String token = authentication.getCredentials().toString();
+
+        if ("valid-token".equals(token)) {
+            return Mono.just(
+                    new UsernamePasswordAuthenticationToken(
+                            "user",
+                            token,
+                            List.of()
+                    )
+            );
+        }
+
+        return Mono.error(
+                new BadCredentialsException("Invalid token")
+        );
+    }
+
+    /**
+     * Проверка JWT.
      *
-     * @return ReactiveAuthenticationManager — менеджер аутентификации.
+     * Здесь:
+     * - credentials = JWT-токен (строка);
+     * - проверяются подпись (HS256 / RS256), срок действия,
+     *   iss и aud — по настройкам gateway.jwt;
+     * - principal — claim sub, authorities — SCOPE_* из scope/scp.
+     *
+     * Дорогая часть — подпись — выполняется вне event loop,
+     * а проверенные токены кешируются до exp
+     * (подробно — в JwtAuthenticationManager).
+     *
+     * Включается gateway.jwt.enabled; тогда без ключей
+     * (GATEWAY_JWT_SECRET, public-key-location или jwks-location)
+     * Gateway не запускается.
+     *
+     * @param properties настройки gateway.jwt.
+     * @param jwks       ключи RS256 из JWKS, если задан gateway.jwt.jwks-location.
+     * @return JwtAuthenticationManager — проверка JWT.
      */
     @Bean
-    public ReactiveAuthenticationManager authenticationManager() {
-        return authentication -> {
+    @ConditionalOnProperty(name = "gateway.jwt.enabled")
+    public JwtAuthenticationManager jwtAuthenticationManager(JwtProperties properties,
+                                                             ObjectProvider<JwksKeyProvider> jwks) {
+        return new JwtAuthenticationManager(properties, jwks.getIfAvailable());
+    }
 
-            String token = authentication.getCredentials().toString();
+    /**
+     * Ключи RS256 из JWK Set издателя токенов.
+     *
+     * Загружаются и обновляются в фоне: на пути запроса —
+     * только чтение готовой карты kid → PublicKey.
+     *
+     * @param properties настройки gateway.jwt.
+     * @return JwksKeyProvider — набор ключей.
+     */
+    @Bean
+    @ConditionalOnProperty(name = {"gateway.jwt.enabled", "gateway.jwt.jwks-location"})
+    public JwksKeyProvider jwksKeyProvider(JwtProperties properties) {
+        return new JwksKeyProvider(
+                properties.getJwksLocation(),
+                properties.getJwksRefreshInterval(),
+                properties.getJwksUnknownKeyInterval()
+        );
+    }
 
-            if ("valid-token".equals(token)) {
-                return Mono.just(
-                        new UsernamePasswordAuthenticationToken(
-                                "user",
-                                token,
-                                List.of()
-                        )
-                );
-            }
+    /**
+     * Проверка непрозрачных токенов сервисом интроспекции.
+     *
+     * Результаты кешируются, промахи собираются в пакеты
+     * (подробно — в IntrospectionAuthenticationManager).
+     *
+     * @param properties настройки gateway.introspection.
+     * @param client     вызов сервиса интроспекции.
+     * @return IntrospectionAuthenticationManager — проверка непрозрачных токенов.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "gateway.introspection.enabled")
+    public IntrospectionAuthenticationManager introspectionAuthenticationManager(IntrospectionProperties properties,
+                                                                                 IntrospectionClient client) {
+        return new IntrospectionAuthenticationManager(properties, client);
+    }
 
-            return Mono.error(
-                    new BadCredentialsException("Invalid token")
-            );
-        };
+    /**
+     * Клиент пакетного endpoint'а интроспекции по умолчанию.
+     * Собственный бин IntrospectionClient заменяет его.
+     *
+     * @param properties настройки gateway.introspection.
+     * @param builder    WebClient.Builder Spring Boot.
+     * @return IntrospectionClient — вызов сервиса интроспекции.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "gateway.introspection.enabled")
+    @ConditionalOnMissingBean(IntrospectionClient.class)
+    public IntrospectionClient introspectionClient(IntrospectionProperties properties, WebClient.Builder builder) {
+        return new WebClientIntrospectionClient(builder, properties.getUri(), properties.getTimeout());
     }
 }
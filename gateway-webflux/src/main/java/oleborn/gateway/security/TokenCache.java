@@ -0,0 +1,118 @@
+package oleborn.gateway.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TokenCache
+ *
+ * Ограниченный кеш результатов проверки токенов.
+ *
+ * - ключ — SHA-256 токена: сами токены в памяти не хранятся;
+ * - у каждой записи свой срок (exp токена, TTL результата);
+ *   истёкшая запись не возвращается и удаляется при обращении;
+ * - при переполнении вытесняется истёкшая запись из первых нескольких,
+ *   иначе — первая попавшаяся (как ETagIndex): потерянная запись
+ *   стоит одной повторной проверки.
+ *
+ * @param <V> результат проверки.
+ */
+final class TokenCache<V> {
+
+    // Сколько записей просматривается в поисках истёкшей при вытеснении.
+    private static final int EVICTION_SAMPLE = 8;
+
+    // Ключ считается на event loop: MessageDigest на поток,
+    // без поиска провайдера на каждый запрос.
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+        }
+    });
+
+    /**
+     * @param expiresAt до какого момента запись действительна, мс epoch.
+     */
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    private final int maxSize;
+
+    private final Map<ByteBuffer, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSize наибольшее число записей; 0 — кеш отключён.
+     */
+    TokenCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Ключ кеша для токена.
+     */
+    static ByteBuffer key(String token) {
+        // Токен — ASCII (base64url, точки): кодирование без таблиц.
+        return ByteBuffer.wrap(SHA256.get().digest(token.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    boolean enabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * @return действующий результат или null.
+     */
+    V get(ByteBuffer key, long nowMillis) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (nowMillis >= entry.expiresAt()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value();
+    }
+
+    /**
+     * @param expiresAt до какого момента результат действителен, мс epoch.
+     */
+    void put(ByteBuffer key, V value, long expiresAt, long nowMillis) {
+        if (maxSize <= 0 || expiresAt <= nowMillis) {
+            return;
+        }
+        if (entries.size() >= maxSize && !entries.containsKey(key)) {
+            evictOne(nowMillis);
+        }
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evictOne(long nowMillis) {
+        Iterator<Map.Entry<ByteBuffer, Entry<V>>> iterator = entries.entrySet().iterator();
+        ByteBuffer first = null;
+        for (int i = 0; i < EVICTION_SAMPLE && iterator.hasNext(); i++) {
+            Map.Entry<ByteBuffer, Entry<V>> candidate = iterator.next();
+            if (nowMillis >= candidate.getValue().expiresAt()) {
+                entries.remove(candidate.getKey(), candidate.getValue());
+                return;
+            }
+            if (first == null) {
+                first = candidate.getKey();
+            }
+        }
+        if (first != null) {
+            entries.remove(first);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package oleborn.gateway.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WebClientIntrospectionClient
+ *
+ * IntrospectionClient для пакетного JSON endpoint'а.
+ *
+ * Запрос:  POST {uri}  {"tokens": ["t1", "t2"]}
+ * Ответ:   {"results": [{"active": true, "sub": "alice", "scope": "read write", "exp": 1700000000},
+ *                       {"active": false}]}
+ *
+ * Поля результата — как в RFC 7662; результаты — в порядке токенов запроса.
+ * RFC 7662 проверяет один токен за вызов; пакетный вариант
+ * позволяет отправить все токены окна одним запросом.
+ */
+public class WebClientIntrospectionClient implements IntrospectionClient {
+
+    private final WebClient webClient;
+
+    private final Duration timeout;
+
+    public WebClientIntrospectionClient(WebClient.Builder builder, String uri, Duration timeout) {
+        this.webClient = builder.baseUrl(uri).build();
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Mono<List<TokenIntrospection>> introspect(List<String> tokens) {
+        return webClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("tokens", tokens))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .timeout(timeout)
+                .map(body -> results(body, tokens.size()));
+    }
+
+    private static List<TokenIntrospection> results(JsonNode body, int expected) {
+        JsonNode results = body.path("results");
+        if (!results.isArray() || results.size() != expected) {
+            throw new AuthenticationServiceException(
+                    "Introspection returned " + results.size() + " results for " + expected + " tokens");
+        }
+        List<TokenIntrospection> introspections = new ArrayList<>(expected);
+        for (JsonNode result : results) {
+            introspections.add(introspection(result));
+        }
+        return introspections;
+    }
+
+    private static TokenIntrospection introspection(JsonNode result) {
+        if (!result.path("active").asBoolean(false)) {
+            return TokenIntrospection.INACTIVE;
+        }
+        String subject = result.path("sub").asText(null);
+        if (subject == null) {
+            subject = result.path("username").asText(null);
+        }
+        if (subject == null) {
+            subject = result.path("client_id").asText(null);
+        }
+        List<String> scopes = new ArrayList<>();
+        for (String scope : result.path("scope").asText("").split(" ")) {
+            if (!scope.isEmpty()) {
+                scopes.add(scope);
+            }
+        }
+        return new TokenIntrospection(true, subject, List.copyOf(scopes), result.path("exp").asLong(0));
+    }
+}
@@ -6,6 +6,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @SpringBootApplication
@@ -63,4 +66,44 @@ public class ServiceAApplication {
 
         return headers;
     }
+
+    /**
+     * Учебный сервис интроспекции непрозрачных токенов
+     * для gateway.introspection (пакетный вариант RFC 7662).
+     *
+     * Действующие токены — "opaque-<пользователь>", остальные — нет.
+     * Задержка 20 мс имитирует обращение к хранилищу токенов:
+     * один вызов на пакет, независимо от числа токенов.
+     */
+    @PostMapping("/introspect")
+    public Map<String, List<Map<String, Object>>> introspect(
+            @RequestBody IntrospectionRequest request
+    ) throws InterruptedException {
+
+        System.out.println("[SERVICE A] /introspect called, tokens=" + request.tokens().size());
+
+        Thread.sleep(20);
+
+        long exp = Instant.now().plusSeconds(3600).getEpochSecond();
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String token : request.tokens()) {
+            if (token.startsWith("opaque-") && token.length() > "opaque-".length()) {
+                results.add(Map.of(
+                        "active", true,
+                        "sub", token.substring("opaque-".length()),
+                        "scope", "read",
+                        "exp", exp
+                ));
+            } else {
+                results.add(Map.of("active", false));
+            }
+        }
+        return Map.of("results", results);
+    }
+
+    /**
+     * Тело запроса интроспекции: {"tokens": ["t1", "t2"]}.
+     */
+    public record IntrospectionRequest(List<String> tokens) {
+    }
 }
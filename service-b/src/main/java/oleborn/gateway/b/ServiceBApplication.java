@@ -2,10 +2,12 @@ package oleborn.gateway.b;
 
 import org.springframework.boot.*;
 import org.springframework.boot.autoconfigure.*;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.Map;
 
 @SpringBootApplication
@@ -57,11 +59,16 @@ public class ServiceBApplication {
     /**
      * Endpoint для демонстрации динамического routing
      * (например, через X-Target=B).
+     *
+     * Ответ одинаков для всех пользователей: Cache-Control: public
+     * разрешает Gateway кешировать его и для запросов с Authorization.
      */
     @GetMapping("/info")
-    public String info() {
+    public ResponseEntity<String> info() {
         System.out.println("[SERVICE B] /info called");
-        return "response from SERVICE B";
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(10)).cachePublic())
+                .body("response from SERVICE B");
     }
 
     /**